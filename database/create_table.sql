@@ -1,17 +1,25 @@
+-- id_word is the ID given by the term dictionary of the indexer
 CREATE TABLE word (
-    id_word     varchar(50) NOT NULL,
-    CONSTRAINT PK_WORD PRIMARY KEY (id_word)
+    id_word     integer     NOT NULL,
+    term        varchar(50) NOT NULL,
+    CONSTRAINT PK_WORD PRIMARY KEY (id_word),
+    CONSTRAINT UQ_WORD_TERM UNIQUE (term)
 );
 
+-- size, modified and hash tell if the file changed since it was indexed
+-- name is the path of the entry when the documents come from an archive
 CREATE TABLE document (
     id_document numeric     NOT NULL,
-    name        varchar(10) NOT NULL,
+    name        varchar(1024) NOT NULL,
+    size        bigint      NOT NULL,
+    modified    bigint      NOT NULL,
+    hash        char(40)    NOT NULL,
     CONSTRAINT PK_DOCUMENT PRIMARY KEY (id_document)
 );
 
 -- index is a reserved word of SQL
 CREATE TABLE indx (
-    id_word     varchar(50) NOT NULL,
+    id_word     integer     NOT NULL,
     document    numeric     NOT NULL,    
     weight      numeric     NOT NULL,
     CONSTRAINT PK_INDEX PRIMARY KEY (id_word,document),
@@ -21,9 +29,17 @@ CREATE TABLE indx (
         REFERENCES document (id_document)
 );
 
+-- changed every time the tf-idf weights are deleted, so the searchers know
+-- the postings they cached are old
+CREATE TABLE index_generation (
+    generation  bigint      NOT NULL
+);
+
+INSERT INTO index_generation VALUES (0);
+
 -- to store calculated tf-idf weights
 CREATE TABLE tf_idf_index (
-    id_word     varchar(50) NOT NULL,
+    id_word     integer     NOT NULL,
     document    numeric     NOT NULL,    
     weight      numeric     NOT NULL,
     CONSTRAINT PK_TF_IF_INDEX PRIMARY KEY (id_word,document),
@@ -2,3 +2,4 @@ DROP TABLE tf_if_index;
 DROP TABLE indx;
 DROP TABLE word;
 DROP TABLE document;
+DROP TABLE index_generation;
@@ -0,0 +1,96 @@
+package model.database.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.database.layer.DBLayer;
+import model.indexation.IndexedDocument;
+
+/**
+ * Class to read and update the documents of the index, used to index again
+ * only the files that changed.
+ * @see IndexedDocument
+ */
+public class DocumentDAO {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private DBLayer sqlDAL;
+
+    /**
+     * Initializes the DAO and connects to the Data Access Layer.
+     * @see DBLayer
+     */
+    public DocumentDAO() {
+        sqlDAL = new DBLayer();
+    }
+
+    /**
+     * Gets the documents in the index.
+     * @return the list of documents, or null if they could not be read.
+     */
+    public List<IndexedDocument> getDocuments() {
+
+        LOGGER.entry();
+
+        try {
+            return LOGGER.exit(sqlDAL.getDocuments());
+        } catch (SQLException e) {
+            LOGGER.error("Could not read the documents of the database.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the new fingerprint of a document whose content did not change.
+     * @param document the document with its new fingerprint.
+     */
+    public void updateFingerprint(IndexedDocument document) {
+
+        try {
+            sqlDAL.updateDocument(document.getDocumentId(), document.getFingerprint());
+        } catch (SQLException e) {
+            LOGGER.error("Could not update document " + document.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Removes a document and its words from the index.
+     * @param document the document to remove.
+     */
+    public void remove(IndexedDocument document) {
+
+        LOGGER.debug("Removing document {}.", document.getName());
+
+        try {
+            sqlDAL.deleteDocument(document.getDocumentId());
+        } catch (SQLException e) {
+            LOGGER.error("Could not remove document " + document.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Deletes the tf-idf weights, which depend on the number of documents and
+     * on the documents of each word. They are calculated again when the
+     * indexation finishes.
+     */
+    public void invalidateTfIdf() {
+
+        try {
+            sqlDAL.deleteTfIdfIndex();
+        } catch (SQLException e) {
+            LOGGER.error("Could not delete the tf-idf weights.", e);
+        }
+    }
+
+    /**
+     * Closes the connection of the database.
+     * It should be used after all the operations are done.
+     */
+    public void closeConnection() {
+        sqlDAL.closeConnection();
+        sqlDAL = null;
+    }
+}
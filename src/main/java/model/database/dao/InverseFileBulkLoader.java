@@ -0,0 +1,222 @@
+package model.database.dao;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.database.layer.DBLayer;
+import model.indexation.DocumentFingerprint;
+import model.indexation.InverseFile;
+import model.indexation.TermCounts;
+import model.indexation.TermDictionary;
+
+/**
+ * Class to load the whole index in an empty database. It is used to index
+ * all the documents again: the tables are emptied and their secondary
+ * indexes dropped, the rows are sent as CSV with the COPY protocol and
+ * finally the indexes are created again. Only one loader must be used at a
+ * time, since it keeps the set of words already loaded.
+ * @see InverseFileDAO
+ */
+public class InverseFileBulkLoader {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private DBLayer sqlDAL;
+    private final TermDictionary dictionary;
+    private final int commitInterval;
+
+    // Indexes to create again once everything is loaded.
+    private List<String> indexDefinitions = new ArrayList<String>();
+
+    // Words already in the database.
+    private Set<String> loadedWords = new HashSet<String>();
+
+    // Rows waiting to be loaded.
+    private StringBuilder documentRows = new StringBuilder();
+    private StringBuilder wordRows = new StringBuilder();
+    private StringBuilder entryRows = new StringBuilder();
+    private List<String> newWords = new ArrayList<String>();
+    private int pendingDocuments = 0;
+
+    /**
+     * Connects to the Data Access Layer and prepares the database. All the
+     * documents in the database are deleted.
+     * @param dictionary gives the IDs of the words, it should be empty.
+     * @param commitInterval number of documents loaded in each transaction.
+     * @see DBLayer
+     */
+    public InverseFileBulkLoader(TermDictionary dictionary, int commitInterval) {
+
+        this(dictionary, commitInterval, null);
+
+        try {
+            sqlDAL.truncateIndex();
+            indexDefinitions = sqlDAL.dropSecondaryIndexes();
+        } catch (SQLException e) {
+            LOGGER.error("Could not prepare the database to load the index.", e);
+        }
+    }
+
+    /**
+     * Connects to the Data Access Layer to continue a load that did not
+     * finish. The documents and words in the database are kept.
+     * @param dictionary gives the IDs of the words, with the words in the
+     * database.
+     * @param commitInterval number of documents loaded in each transaction.
+     * @param indexDefinitions the indexes dropped by the load that did not
+     * finish.
+     * @see DBLayer
+     */
+    public InverseFileBulkLoader(TermDictionary dictionary, int commitInterval,
+            List<String> indexDefinitions) {
+
+        this.dictionary = dictionary;
+        this.commitInterval = commitInterval;
+        sqlDAL = new DBLayer();
+        loadedWords.addAll(dictionary.terms());
+
+        if (indexDefinitions != null) {
+            this.indexDefinitions = indexDefinitions;
+        }
+    }
+
+    /**
+     * Gets the indexes dropped to load the index faster.
+     * @return the statements to create the indexes again.
+     */
+    public List<String> getIndexDefinitions() {
+        return indexDefinitions;
+    }
+
+    /**
+     * Adds the entries of the InverseFile to the rows to load. The rows are
+     * sent when enough documents are waiting or when the loader is flushed.
+     * @param inv The InverseFile object to store.
+     * @return false if the rows sent could not be loaded.
+     */
+    public boolean store(InverseFile inv) {
+
+        LOGGER.entry();
+
+        DocumentFingerprint fingerprint = inv.getFingerprint();
+        addCsvRow(documentRows, inv.getDocumentId(), inv.getDocumentName(),
+                fingerprint.getSize(), fingerprint.getLastModified(), fingerprint.getHash());
+
+        TermCounts.Cursor elem = inv.words();
+
+        while (elem.next()) {
+            String word = elem.term();
+            int idWord = dictionary.getId(word);
+
+            if (loadedWords.add(word)) {
+                newWords.add(word);
+                addCsvRow(wordRows, idWord, word);
+            }
+
+            addCsvRow(entryRows, idWord, inv.getDocumentId(), elem.count());
+        }
+
+        boolean loaded = ++pendingDocuments < commitInterval || flush();
+
+        return LOGGER.exit(loaded);
+    }
+
+    /**
+     * Loads the rows that are waiting in a single transaction. If it fails,
+     * the rows are dropped.
+     * @return true if the rows were loaded, false if their documents are
+     * lost.
+     */
+    public boolean flush() {
+
+        if (pendingDocuments == 0) {
+            return true;
+        }
+
+        boolean loaded = false;
+
+        try {
+            sqlDAL.beginBatch();
+            sqlDAL.copyDocuments(new StringReader(documentRows.toString()));
+            sqlDAL.copyWords(new StringReader(wordRows.toString()));
+            sqlDAL.copyInverseTfEntries(new StringReader(entryRows.toString()));
+            sqlDAL.commitBatch();
+            loaded = true;
+
+        } catch (SQLException | IOException e) {
+            LOGGER.error("Could not load " + pendingDocuments + " documents in the database.", e);
+            sqlDAL.rollbackBatch();
+            loadedWords.removeAll(newWords);
+        }
+
+        documentRows.setLength(0);
+        wordRows.setLength(0);
+        entryRows.setLength(0);
+        newWords.clear();
+        pendingDocuments = 0;
+        return loaded;
+    }
+
+    /**
+     * Gets the number of requests sent to the database to store the
+     * documents.
+     * @return the number of round trips, until the connection is closed.
+     * @see DBLayer#getRoundTrips()
+     */
+    public long getRoundTrips() {
+        return sqlDAL.getRoundTrips();
+    }
+
+    /**
+     * Loads the rows that are waiting, creates the indexes again and closes
+     * the connection of the database. It should be used after all the
+     * documents are stored.
+     * @return false if the rows waiting could not be loaded or the indexes
+     * could not be created.
+     */
+    public boolean closeConnection() {
+
+        boolean complete = flush();
+
+        try {
+            sqlDAL.createIndexes(indexDefinitions);
+        } catch (SQLException e) {
+            LOGGER.error("Could not create the indexes of the database again.", e);
+            complete = false;
+        }
+
+        sqlDAL.closeConnection();
+        sqlDAL = null;
+        return complete;
+    }
+
+    /**
+     * Adds a CSV row, quoting the text values.
+     * @param rows the rows where the new row is added.
+     * @param values the values of the row.
+     */
+    private static void addCsvRow(StringBuilder rows, Object... values) {
+
+        for (int i = 0; i < values.length; ++i) {
+            if (i > 0) {
+                rows.append(',');
+            }
+
+            if (values[i] instanceof String) {
+                rows.append('"').append(((String) values[i]).replace("\"", "\"\"")).append('"');
+            } else {
+                rows.append(values[i]);
+            }
+        }
+
+        rows.append('\n');
+    }
+}
@@ -1,56 +1,249 @@
 package model.database.dao;
 
-import java.util.Map.Entry;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import model.database.layer.DBLayer;
+import model.indexation.DocumentFingerprint;
 import model.indexation.InverseFile;
+import model.indexation.TermCounts;
+import model.indexation.TermDictionary;
 
 /**
  * Class to store an InverseFile object in a database.
+ * The inverse files are kept until a number of them is reached and then
+ * stored in a single transaction, sending the rows in batches.
  * @see InverseFile
  */
 public class InverseFileDAO {
 
     private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of rows sent to the database at once. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Default number of documents stored in each transaction. */
+    public static final int DEFAULT_COMMIT_INTERVAL = 50;
+
+    // Times a transaction is tried when the database asks to retry it.
+    private static final int MAX_ATTEMPTS = 3;
+
+    // SQL states of the errors that can be solved retrying the transaction.
+    private static final String TRANSACTION_ROLLBACK_CLASS = "40";
+
     private DBLayer sqlDAL;
+    private final TermDictionary dictionary;
+    private final int batchSize;
+    private final int commitInterval;
+
+    // Inverse files waiting to be stored.
+    private List<InverseFile> pending = new ArrayList<InverseFile>();
+
+    /**
+     * Initializes the DAO and connects to the Data Access Layer.
+     * @param dictionary gives the IDs of the words stored.
+     * @see DBLayer
+     */
+    public InverseFileDAO(TermDictionary dictionary) {
+        this(dictionary, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_INTERVAL);
+    }
 
     /**
      * Initializes the DAO and connects to the Data Access Layer.
+     * @param dictionary gives the IDs of the words stored.
+     * @param batchSize number of rows sent to the database at once.
+     * @param commitInterval number of documents stored in each transaction.
      * @see DBLayer
      */
-    public InverseFileDAO() {
+    public InverseFileDAO(TermDictionary dictionary, int batchSize, int commitInterval) {
+        this.dictionary = dictionary;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
         sqlDAL = new DBLayer();
     }
 
     /**
-     * Stores the entries of the InverseFile in the database.
+     * Stores the entries of the InverseFile in the database, replacing the
+     * ones of the same document if it was indexed before. The entries are
+     * written when enough documents are waiting or when the DAO is flushed.
      * @param inv The InverseFile object to store.
+     * @return false if the documents written could not all be stored.
      */
-    public void store(InverseFile inv){
+    public boolean store(InverseFile inv){
 
         LOGGER.entry();
 
-        boolean stored = sqlDAL.storeDocument(inv.getDocumentId(), inv.getDocumentName());
+        pending.add(inv);
+        boolean stored = pending.size() < commitInterval || flush();
+
+        return LOGGER.exit(stored);
+    }
+
+    /**
+     * Stores the inverse files that are waiting. If the transaction fails,
+     * the documents are stored one by one so a wrong document does not keep
+     * the others out of the database.
+     * @return true if all the documents were stored, false if some of them
+     * are lost.
+     */
+    public boolean flush() {
+
+        if (pending.isEmpty()) {
+            return true;
+        }
+
+        boolean stored = storeAll(pending);
+
+        if (!stored && pending.size() > 1) {
+            stored = true;
+
+            for (InverseFile inv : pending) {
+                if (!storeAll(Collections.singletonList(inv))) {
+                    stored = false;
+                }
+            }
+        }
+
+        pending.clear();
+        return stored;
+    }
+
+    /**
+     * Stores inverse files in a single transaction.
+     * @param invFiles the inverse files to store.
+     * @return true if the inverse files were stored.
+     */
+    private boolean storeAll(List<InverseFile> invFiles) {
+
+        for (int attempt = 1;; ++attempt) {
+
+            try {
+                write(invFiles);
+                return true;
+
+            } catch (SQLException e) {
+                sqlDAL.rollbackBatch();
+
+                if (attempt == MAX_ATTEMPTS || !isTransient(e)) {
+                    LOGGER.error("Could not store " + invFiles.size()
+                            + " documents in the database.", e);
+                    return false;
+                }
+
+                LOGGER.debug("Retrying to store {} documents.", invFiles.size());
+            }
+        }
+    }
+
+    /**
+     * Sends the rows of the inverse files and commits them. Every word used
+     * is sent, since the thread that gave it an ID might not have stored it
+     * yet. The words are sent in order so two transactions never wait for
+     * each other.
+     * @param invFiles the inverse files to store.
+     * @throws SQLException if the rows could not be stored.
+     */
+    private void write(List<InverseFile> invFiles) throws SQLException {
+
+        SortedSet<String> words = new TreeSet<String>();
+
+        for (InverseFile inv : invFiles) {
+            TermCounts.Cursor elem = inv.words();
+
+            while (elem.next()) {
+                words.add(elem.term());
+            }
+        }
+
+        sqlDAL.beginBatch();
+        int rows = 0;
+
+        for (String word : words) {
+            sqlDAL.addWordToBatch(dictionary.getId(word), word);
+            rows = executeIfFull(rows + 1);
+        }
+
+        for (InverseFile inv : invFiles) {
+            DocumentFingerprint fingerprint = inv.getFingerprint();
+            sqlDAL.addDocumentToBatch(inv.getDocumentId(), inv.getDocumentName(),
+                    fingerprint.getSize(), fingerprint.getLastModified(),
+                    fingerprint.getHash());
+            rows = executeIfFull(rows + 1);
 
-        if (stored) {
-            for (Entry<String, Integer> elem : inv) {
-                sqlDAL.storeWord(elem.getKey());
-                sqlDAL.storeInverseTfEntry(elem.getKey(), inv.getDocumentId(), elem.getValue());
+            TermCounts.Cursor elem = inv.words();
+
+            while (elem.next()) {
+                sqlDAL.addInverseTfEntryToBatch(dictionary.getId(elem.term()),
+                        inv.getDocumentId(), elem.count());
+                rows = executeIfFull(rows + 1);
             }
         }
 
-        LOGGER.exit();
+        sqlDAL.executeBatch();
+        sqlDAL.commitBatch();
+    }
+
+    /**
+     * Sends the batch if it has reached its size.
+     * @param rows number of rows in the batch.
+     * @return number of rows left in the batch.
+     * @throws SQLException if the rows could not be stored.
+     */
+    private int executeIfFull(int rows) throws SQLException {
+
+        if (rows < batchSize) {
+            return rows;
+        }
+
+        sqlDAL.executeBatch();
+        return 0;
+    }
+
+    /**
+     * Tells if an error was caused by other transactions, like a deadlock or
+     * a serialization failure, so the transaction can be tried again.
+     * @param e the error.
+     * @return true if the transaction can be retried.
+     */
+    private static boolean isTransient(SQLException e) {
+
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            String state = cause.getSQLState();
+
+            if (state != null && state.startsWith(TRANSACTION_ROLLBACK_CLASS)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the number of requests sent to the database to store the
+     * documents.
+     * @return the number of round trips, until the connection is closed.
+     * @see DBLayer#getRoundTrips()
+     */
+    public long getRoundTrips() {
+        return sqlDAL.getRoundTrips();
     }
 
     /**
-     * Closes the connection of the database.
-     * It should be used after all the operations are done.
+     * Stores the inverse files that are waiting and closes the connection of
+     * the database. It should be used after all the operations are done.
+     * @return false if the documents waiting could not all be stored.
      */
-    public void closeConnection() {
+    public boolean closeConnection() {
+        boolean stored = flush();
         sqlDAL.closeConnection();
         sqlDAL = null;
+        return stored;
     }
 }
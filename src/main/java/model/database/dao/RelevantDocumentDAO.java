@@ -1,37 +1,117 @@
 package model.database.dao;
 
+import java.io.File;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import model.database.layer.DBLayer;
+import model.search.FieldBoosts;
+import model.search.PostingsCache;
+import model.search.PostingsSource;
 import model.search.RelevantDocument;
+import model.segment.SegmentIndex;
 
 /**
- * Class to retrieve the relevant documents from the database.
+ * Class to retrieve the relevant documents from the database, or from the
+ * segment files if the system property {@value SegmentIndex#FOLDER_PROPERTY}
+ * has their folder, split in shards or not. The postings of the searched
+ * words are kept in the shared {@link PostingsCache}.
  * @see RelevantDocument
  */
 public class RelevantDocumentDAO {
 
     private static final Logger LOGGER = LogManager.getLogger();
+
+    // Separates a word from the boosts in the keys of the cache.
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    // Null when the postings are not read from the database.
     private DBLayer sqlDAL;
+    private PostingsSource source;
+    private FieldBoosts boosts;
+
+    // Null when the postings are not cached.
+    private PostingsCache cache;
+    // Version of the index read, for the cache.
+    private String version;
 
     /**
-     * Initializes the DAO and connects to the Data Access Layer.
+     * Initializes the DAO and connects to the Data Access Layer or opens the
+     * segments of the index. The fields are weighted with the boosts of the
+     * system property {@value FieldBoosts#PROPERTY}.
      * @see DBLayer
+     * @see SegmentIndex
      */
     public RelevantDocumentDAO() {
-        sqlDAL = new DBLayer();
+        this(FieldBoosts.fromSystemProperty());
+    }
+
+    /**
+     * Initializes the DAO and connects to the Data Access Layer or opens the
+     * segments of the index.
+     * @param boosts the boosts of the fields of the documents.
+     * @see DBLayer
+     * @see SegmentIndex
+     */
+    public RelevantDocumentDAO(FieldBoosts boosts) {
+
+        this.boosts = boosts;
+
+        String folder = System.getProperty(SegmentIndex.FOLDER_PROPERTY);
+
+        cache = PostingsCache.getInstance();
+
+        if (folder == null) {
+            sqlDAL = new DBLayer();
+            source = sqlDAL;
+            long generation = sqlDAL.getIndexGeneration();
+
+            // Without a generation the cached postings could be old ones.
+            if (generation < 0) {
+                cache = null;
+            } else {
+                version = "database:" + generation;
+            }
+        } else {
+            SegmentIndex index = SegmentIndex.open(new File(folder));
+            source = index;
+            version = index.getVersion();
+        }
+
+        if (cache != null) {
+            cache.validate(version);
+        }
+    }
+
+    /**
+     * Initializes the DAO to read the postings from a source. The tf-idf
+     * weights are calculated each time and not stored, and the postings are
+     * not cached.
+     * @param source the source of the postings.
+     */
+    public RelevantDocumentDAO(PostingsSource source) {
+        this.source = source;
+        this.boosts = new FieldBoosts();
+    }
+
+    /**
+     * Sets the boosts of the fields of the documents, used by the next
+     * searches.
+     * @param boosts the boosts.
+     */
+    public void setFieldBoosts(FieldBoosts boosts) {
+        this.boosts = boosts;
     }
 
     /**
      * Gets the list of relevant documents from the database using some keyword.
-     * Each Relevant Document will be associated with a tf-idf weight. The first
-     * time this method is called with a specific keyword it will calculate the
-     * tf-idf weights and it will store them in the database. Any subsequent call
-     * of this method using the same keyword will retrieve the data stored and
-     * will not calculate the weights again in order to improve performance.
+     * Each Relevant Document will be associated with a tf-idf weight. The
+     * weights are calculated by the indexer when it finishes, so searching
+     * only reads them. If they are not calculated yet, because an indexation
+     * is running, they are calculated for this search without storing them.
+     * The documents found are read from the postings cache when possible.
      * @param keyword searches in the database documents containing this String.
      * @return the list of relevant documents.
      */
@@ -39,22 +119,76 @@ public class RelevantDocumentDAO {
 
         LOGGER.entry(keyword);
 
+        String key = sqlDAL != null || boosts.isDefault() ? keyword
+                : keyword + KEY_SEPARATOR + boosts;
+
+        if (cache != null) {
+            List<RelevantDocument> cached = cache.get(version, key);
+
+            if (cached != null) {
+                return LOGGER.exit(cached);
+            }
+        }
+
+        if (sqlDAL == null) {
+            List<RelevantDocument> listTf = source.getRelevantDocsTf(keyword, boosts);
+            int numDocs = source.getNumberOfDocuments();
+            List<RelevantDocument> listTfIdf =
+                    numDocs > 0 ? calculateTfIdf(listTf, numDocs) : listTf;
+            cachePostings(key, listTfIdf);
+            return LOGGER.exit(listTfIdf);
+        }
+
         List<RelevantDocument> listTfIdf = sqlDAL.getRelevantDocsTfIdf(keyword);
 
         // If there is no data of tf-idf in the database, we calculate it.
+        // Those weights are not cached, they change until the index finishes.
         if (listTfIdf.isEmpty()) {
             List<RelevantDocument> listTf = sqlDAL.getRelevantDocsTf(keyword);
-            int numDocs = sqlDAL.getNumberOfDocuments();
 
-            if (numDocs > 0) {
-                listTfIdf = calculateTfIdf(listTf,numDocs);
-                storeTfIdf(keyword, listTfIdf);
+            if (!listTf.isEmpty()) {
+                LOGGER.debug("No tf-idf weights for {}, the index is not finished.", keyword);
+                int numDocs = sqlDAL.getNumberOfDocuments();
+                listTfIdf = numDocs > 0 ? calculateTfIdf(listTf, numDocs) : listTf;
             }
+        } else {
+            cachePostings(key, listTfIdf);
         }
 
         return LOGGER.exit(listTfIdf);
     }
 
+    private void cachePostings(String key, List<RelevantDocument> list) {
+
+        if (cache != null) {
+            cache.put(version, key, list);
+        }
+    }
+
+    /**
+     * Gets the list of relevant documents containing a phrase, each one with
+     * a tf-idf weight calculated with the number of times the phrase is found
+     * in it. The weights are calculated for each search.
+     * @param words the normalized words of the phrase.
+     * @param offsets the position of each word in the phrase, in increasing
+     * order.
+     * @return the list of relevant documents, or null if the index does not
+     * have the positions of the words.
+     */
+    public List<RelevantDocument> getRelevantDocsOfPhrase(String[] words, int[] offsets) {
+
+        LOGGER.entry(words, offsets);
+
+        List<RelevantDocument> listTf = source.getRelevantDocsOfPhraseTf(words, offsets);
+
+        if (listTf == null) {
+            return LOGGER.exit(null);
+        }
+
+        int numDocs = source.getNumberOfDocuments();
+        return LOGGER.exit(numDocs > 0 ? calculateTfIdf(listTf, numDocs) : listTf);
+    }
+
     /**
      * Calculates tf-idf weights for the documents in list using the associated tf.
      * @param list has the documents with their tf weight associated.
@@ -74,21 +208,11 @@ public class RelevantDocumentDAO {
         return LOGGER.exit(list);
     }
 
-    /*
-     * Stores the results of the calculated tf-idf weights in the database.
-     */
-    private void storeTfIdf(String keyword, List<RelevantDocument> list) {
-
-        for(RelevantDocument doc : list){
-            sqlDAL.storeInverseTfIdfEntry(keyword,doc.getDocumentId(),doc.getRelevance());
-        }
-    }
-
     /**
      * Closes the connection of the database.
      * It should be used after all the operations are done.
      */
     public void closeConnection() {
-        sqlDAL.closeConnection();
+        source.close();
     }
 }
@@ -0,0 +1,67 @@
+package model.database.dao;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.database.layer.DBLayer;
+import model.indexation.TermDictionary;
+
+/**
+ * Class to read the term dictionary stored in the database. The terms are
+ * written with the documents that use them.
+ * @see TermDictionary
+ * @see InverseFileDAO
+ */
+public class TermDictionaryDAO {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private DBLayer sqlDAL;
+
+    /**
+     * Initializes the DAO and connects to the Data Access Layer.
+     * @see DBLayer
+     */
+    public TermDictionaryDAO() {
+        sqlDAL = new DBLayer();
+    }
+
+    /**
+     * Adds the terms stored in the database to a dictionary, so new terms
+     * take IDs that are not used.
+     * @param dictionary the dictionary to fill.
+     * @return true if the terms were read.
+     */
+    public boolean load(TermDictionary dictionary) {
+
+        LOGGER.entry();
+
+        Map<String, Integer> words;
+
+        try {
+            words = sqlDAL.getWords();
+        } catch (SQLException e) {
+            LOGGER.error("Could not read the words of the database.", e);
+            return false;
+        }
+
+        for (Entry<String, Integer> word : words.entrySet()) {
+            dictionary.put(word.getKey(), word.getValue());
+        }
+
+        LOGGER.debug("{} words read from the database.", words.size());
+        return LOGGER.exit(true);
+    }
+
+    /**
+     * Closes the connection of the database.
+     * It should be used after all the operations are done.
+     */
+    public void closeConnection() {
+        sqlDAL.closeConnection();
+        sqlDAL = null;
+    }
+}
@@ -0,0 +1,90 @@
+package model.database.dao;
+
+import java.sql.SQLException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.database.layer.DBLayer;
+
+/**
+ * Class to calculate the tf-idf weights of the whole index inside the
+ * database, once the documents are stored. The searches only read them.
+ * Each object opens its own connection, so several threads can calculate
+ * the weights of different words at once.
+ */
+public class TfIdfIndexDAO {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private DBLayer sqlDAL;
+
+    /**
+     * Initializes the DAO and connects to the Data Access Layer.
+     * @see DBLayer
+     */
+    public TfIdfIndexDAO() {
+        sqlDAL = new DBLayer();
+    }
+
+    /**
+     * Gets the number of documents in the index.
+     * @return the number of documents, -1 if it could not be read.
+     */
+    public int getNumberOfDocuments() {
+        return sqlDAL.getNumberOfDocuments();
+    }
+
+    /**
+     * Deletes all the tf-idf weights.
+     * @return true if they were deleted.
+     */
+    public boolean clear() {
+
+        try {
+            sqlDAL.deleteTfIdfIndex();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.error("Could not delete the tf-idf weights.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Calculates and stores the tf-idf weights of a range of words.
+     * @param firstWord ID of the first word.
+     * @param lastWord ID of the last word, included.
+     * @param numDocs number of documents in the index.
+     * @return the number of weights stored, -1 if they could not be stored.
+     */
+    public int compute(int firstWord, int lastWord, int numDocs) {
+
+        try {
+            return sqlDAL.computeTfIdf(firstWord, lastWord, numDocs);
+        } catch (SQLException e) {
+            LOGGER.error("Could not calculate the tf-idf weights of words "
+                    + firstWord + " to " + lastWord + ".", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Updates the statistics the database uses to read the weights.
+     */
+    public void analyze() {
+
+        try {
+            sqlDAL.analyzeTfIdfIndex();
+        } catch (SQLException e) {
+            LOGGER.error("Could not analyze the tf-idf weights.", e);
+        }
+    }
+
+    /**
+     * Closes the connection of the database.
+     * It should be used after all the operations are done.
+     */
+    public void closeConnection() {
+        sqlDAL.closeConnection();
+        sqlDAL = null;
+    }
+}
@@ -0,0 +1,484 @@
+package model.database.layer;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded pool of connections to the database, so a search or an indexing
+ * thread does not open a connection of its own. A connection is borrowed
+ * with {@link #acquire()} and given back with {@link #release(Connection)};
+ * the most recently released one is borrowed first. Some connections are
+ * opened when the pool starts, and a connection idle for a while is
+ * validated before it is borrowed again. Each connection keeps its prepared
+ * statements until it is closed, see {@link #prepare(Connection, String)}.
+ * The metrics of the pool are published over JMX.
+ * @see ConnectionPoolConfiguration
+ * @see DBLayer
+ */
+public class ConnectionPool implements ConnectionPoolMBean {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Name of the metrics of the pool in the platform MBean server. */
+    public static final String OBJECT_NAME = "model.database:type=ConnectionPool";
+
+    // Time given to a connection to answer its validation, in seconds.
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    // Pool used by the DBLayer objects, created the first time.
+    private static ConnectionPool instance;
+
+    /**
+     * Opens the connections of the pool.
+     */
+    interface ConnectionFactory {
+
+        /**
+         * Opens a connection.
+         * @return the connection, or null if it could not be opened.
+         */
+        Connection open();
+    }
+
+    private final ConnectionFactory factory;
+    private final ConnectionPoolConfiguration config;
+
+    // Idle connections, the most recently released first.
+    private final Deque<IdleConnection> idle = new ArrayDeque<IdleConnection>();
+
+    // Prepared statements of the open connections.
+    private final Map<Connection, StatementCache> statements =
+            new IdentityHashMap<Connection, StatementCache>();
+    private int open = 0;
+    private int waiting = 0;
+    private boolean closed = false;
+
+    private long acquired = 0;
+    private long created = 0;
+    private long validationFailures = 0;
+    private long timeouts = 0;
+    private long acquireTime = 0;
+    private long maxAcquireTime = 0;
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    /**
+     * Creates a pool and opens its first connections.
+     * @param factory opens the connections.
+     * @param config the options of the pool.
+     */
+    ConnectionPool(ConnectionFactory factory, ConnectionPoolConfiguration config) {
+
+        this.factory = factory;
+        this.config = config;
+        warmUp();
+    }
+
+    /**
+     * Gets the pool of the connections to the database, creating it with
+     * the default options the first time.
+     * @return the pool.
+     */
+    public static synchronized ConnectionPool getInstance() {
+
+        if (instance == null) {
+            configure(new ConnectionPoolConfiguration());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Replaces the pool of the connections to the database by a new one. The
+     * idle connections of the previous pool are closed, the borrowed ones
+     * when they are released.
+     * @param config the options of the new pool.
+     */
+    public static synchronized void configure(ConnectionPoolConfiguration config) {
+
+        if (instance != null) {
+            instance.close();
+        }
+
+        instance = new ConnectionPool(new ConnectionFactory() {
+            @Override
+            public Connection open() {
+                return ConnectionBuilder.getConnection();
+            }
+        }, config);
+
+        instance.register();
+    }
+
+    private void warmUp() {
+
+        int count = Math.min(config.getMinIdle(), config.getMaxSize());
+
+        for (int i = 0; i < count; ++i) {
+            Connection connection = factory.open();
+
+            if (connection == null) {
+                LOGGER.warn("Could not open the first connections of the pool.");
+                return;
+            }
+
+            synchronized (this) {
+                ++open;
+                ++created;
+                idle.push(new IdleConnection(connection));
+            }
+        }
+
+        LOGGER.debug("Connection pool started with {} connections.", count);
+    }
+
+    /**
+     * Borrows a connection: an idle one, a new one if the pool is not full,
+     * or the first one released within the acquire timeout.
+     * @return the connection, or null if none is available in time or it
+     * could not be opened.
+     */
+    public Connection acquire() {
+
+        long start = System.nanoTime();
+        Connection connection = null;
+
+        try {
+            connection = borrow(start);
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for a connection.", e);
+            Thread.currentThread().interrupt();
+        }
+
+        long time = System.nanoTime() - start;
+
+        synchronized (this) {
+            if (connection != null) {
+                ++acquired;
+                acquireTime += time;
+                maxAcquireTime = Math.max(maxAcquireTime, time);
+            }
+        }
+
+        return connection;
+    }
+
+    private Connection borrow(long start) throws InterruptedException {
+
+        long deadline = start + config.getAcquireTimeout() * 1000000L;
+
+        while (true) {
+            IdleConnection candidate = null;
+
+            synchronized (this) {
+                while (idle.isEmpty() && open >= config.getMaxSize() && !closed) {
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) {
+                        ++timeouts;
+                        LOGGER.error("No connection available after {} ms, {} are borrowed.",
+                                config.getAcquireTimeout(), open);
+                        return null;
+                    }
+
+                    ++waiting;
+
+                    try {
+                        wait(Math.max(1, remaining / 1000000L));
+                    } finally {
+                        --waiting;
+                    }
+                }
+
+                if (closed) {
+                    LOGGER.error("The connection pool is closed.");
+                    return null;
+                }
+
+                if (!idle.isEmpty()) {
+                    candidate = idle.pop();
+                } else {
+                    // The slot is taken before the connection is opened.
+                    ++open;
+                }
+            }
+
+            if (candidate == null) {
+                return openConnection();
+            }
+
+            if (isValid(candidate)) {
+                return candidate.connection;
+            }
+
+            discard(candidate.connection);
+
+            synchronized (this) {
+                ++validationFailures;
+            }
+        }
+    }
+
+    private Connection openConnection() {
+
+        Connection connection = factory.open();
+
+        synchronized (this) {
+            if (connection == null) {
+                --open;
+                notifyAll();
+            } else {
+                ++created;
+            }
+        }
+
+        return connection;
+    }
+
+    /**
+     * Validates an idle connection if it was not used for a while.
+     */
+    private boolean isValid(IdleConnection candidate) {
+
+        if (System.nanoTime() - candidate.since
+                < config.getValidationInterval() * 1000000L) {
+            return true;
+        }
+
+        try {
+            return candidate.connection.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            LOGGER.debug("Could not validate a connection.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Gets a prepared statement of a borrowed connection, prepared the first
+     * time the query is run on the connection. The statement belongs to the
+     * pool and must not be closed, but its ResultSets must.
+     * @param connection the connection, borrowed from this pool.
+     * @param sql the query, the same String on every call.
+     * @return the statement, with its parameters cleared.
+     * @throws SQLException if the query could not be prepared.
+     */
+    PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+
+        StatementCache cache;
+
+        synchronized (this) {
+            cache = statements.get(connection);
+
+            if (cache == null) {
+                cache = new StatementCache(connection, config.getStatementCacheSize());
+                statements.put(connection, cache);
+            }
+        }
+
+        // Only the borrower of the connection uses its cache.
+        PreparedStatement statement = cache.get(sql);
+
+        if (statement != null) {
+            statementHits.incrementAndGet();
+            return statement;
+        }
+
+        statementMisses.incrementAndGet();
+        return cache.prepare(sql);
+    }
+
+    /**
+     * Gives back a borrowed connection. A transaction left open is rolled
+     * back; a connection that is closed or cannot be reset is discarded.
+     * @param connection the connection, ignored if null.
+     */
+    public void release(Connection connection) {
+
+        if (connection == null) {
+            return;
+        }
+
+        boolean reusable;
+
+        try {
+            reusable = !connection.isClosed();
+
+            if (reusable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Could not reset a connection, it is closed.", e);
+            reusable = false;
+        }
+
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.push(new IdleConnection(connection));
+                notifyAll();
+                return;
+            }
+        }
+
+        discard(connection);
+    }
+
+    /**
+     * Closes a connection and frees its place in the pool.
+     */
+    private void discard(Connection connection) {
+
+        StatementCache cache;
+
+        synchronized (this) {
+            cache = statements.remove(connection);
+        }
+
+        if (cache != null) {
+            cache.close();
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.error("A problem occurred closing a connection of the pool.", e);
+        }
+
+        synchronized (this) {
+            --open;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes the idle connections. The borrowed ones are closed when they
+     * are released, and no more connections are borrowed.
+     */
+    public void close() {
+
+        Deque<IdleConnection> connections;
+
+        synchronized (this) {
+            closed = true;
+            connections = new ArrayDeque<IdleConnection>(idle);
+            idle.clear();
+            notifyAll();
+        }
+
+        for (IdleConnection connection : connections) {
+            discard(connection.connection);
+        }
+    }
+
+    private void register() {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.error("Could not publish the metrics of the connection pool.", e);
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return config.getMaxSize();
+    }
+
+    @Override
+    public synchronized int getOpenConnections() {
+        return open;
+    }
+
+    @Override
+    public synchronized int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public synchronized int getActiveConnections() {
+        return open - idle.size();
+    }
+
+    @Override
+    public synchronized int getWaitingThreads() {
+        return waiting;
+    }
+
+    @Override
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    @Override
+    public synchronized long getCreated() {
+        return created;
+    }
+
+    @Override
+    public synchronized long getValidationFailures() {
+        return validationFailures;
+    }
+
+    @Override
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public synchronized double getMeanAcquireMillis() {
+        return acquired == 0 ? 0 : acquireTime / NANOS_PER_MILLI / acquired;
+    }
+
+    @Override
+    public synchronized double getMaxAcquireMillis() {
+        return maxAcquireTime / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementHits.get();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementMisses.get();
+    }
+
+    /**
+     * Connection waiting in the pool, with the time it was released.
+     */
+    private static class IdleConnection {
+
+        final Connection connection;
+        final long since = System.nanoTime();
+
+        IdleConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
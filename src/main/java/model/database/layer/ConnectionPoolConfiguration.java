@@ -0,0 +1,149 @@
+package model.database.layer;
+
+/**
+ * Options of the pool of connections to the database. A new object has the
+ * default value of each option.
+ * @see ConnectionPool
+ */
+public class ConnectionPoolConfiguration {
+
+    // Default maximum number of connections, enough for the default number
+    // of store threads of the indexer and a few searches.
+    private static final int DEFAULT_MAX_SIZE = 16;
+
+    // Default number of connections opened when the pool starts.
+    private static final int DEFAULT_MIN_IDLE = 2;
+
+    // Default time waiting for a connection, in milliseconds.
+    private static final long DEFAULT_ACQUIRE_TIMEOUT = 30000;
+
+    // Default time after which an idle connection is validated, in milliseconds.
+    private static final long DEFAULT_VALIDATION_INTERVAL = 30000;
+
+    // Default number of prepared statements kept for each connection.
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private int minIdle = DEFAULT_MIN_IDLE;
+    private long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+    private long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+    private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+    /**
+     * Gets the maximum number of connections open at the same time.
+     * @return the size of the pool.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of connections open at the same time. When all
+     * of them are borrowed, the next borrower waits. It should be more than
+     * the number of store threads of the indexer. By default 16.
+     * @param maxSize the size of the pool, at least one.
+     */
+    public void setMaxSize(int maxSize) {
+
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The size of the pool must be positive.");
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the number of connections opened when the pool starts.
+     * @return the number of connections.
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Sets the number of connections opened when the pool starts, so the
+     * first searches do not wait for a connection. No more than the size of
+     * the pool are opened. By default two.
+     * @param minIdle the number of connections, not negative.
+     */
+    public void setMinIdle(int minIdle) {
+
+        if (minIdle < 0) {
+            throw new IllegalArgumentException("The idle connections must not be negative.");
+        }
+
+        this.minIdle = minIdle;
+    }
+
+    /**
+     * Gets the maximum time waiting for a connection.
+     * @return the time in milliseconds.
+     */
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Sets the maximum time waiting for a connection when all of them are
+     * borrowed. By default 30 seconds.
+     * @param acquireTimeout the time in milliseconds, zero to not wait.
+     */
+    public void setAcquireTimeout(long acquireTimeout) {
+
+        if (acquireTimeout < 0) {
+            throw new IllegalArgumentException("The acquire timeout must not be negative.");
+        }
+
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /**
+     * Gets the time after which an idle connection is validated.
+     * @return the time in milliseconds.
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * Sets the time after which an idle connection is validated before it is
+     * borrowed again, which costs a round trip. An invalid connection is
+     * replaced by a new one. By default 30 seconds.
+     * @param validationInterval the time in milliseconds, zero to validate
+     * every connection borrowed.
+     */
+    public void setValidationInterval(long validationInterval) {
+
+        if (validationInterval < 0) {
+            throw new IllegalArgumentException(
+                    "The validation interval must not be negative.");
+        }
+
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Gets the number of prepared statements kept for each connection.
+     * @return the number of statements.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Sets the number of prepared statements kept for each connection, so
+     * the queries of the searches are not parsed and planned again. The
+     * least recently used statement is closed when there are more. By
+     * default 32.
+     * @param statementCacheSize the number of statements, at least one.
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+
+        if (statementCacheSize < 1) {
+            throw new IllegalArgumentException(
+                    "The size of the statement cache must be positive.");
+        }
+
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -0,0 +1,90 @@
+package model.database.layer;
+
+/**
+ * Management interface of the pool of connections to the database, read
+ * over JMX with the name {@value ConnectionPool#OBJECT_NAME}.
+ * @see ConnectionPool
+ */
+public interface ConnectionPoolMBean {
+
+    /**
+     * Gets the maximum number of connections open at the same time.
+     * @return the size of the pool.
+     */
+    int getMaxSize();
+
+    /**
+     * Gets the number of connections open, borrowed or idle.
+     * @return the number of connections.
+     */
+    int getOpenConnections();
+
+    /**
+     * Gets the number of connections waiting in the pool.
+     * @return the number of connections.
+     */
+    int getIdleConnections();
+
+    /**
+     * Gets the number of connections borrowed.
+     * @return the number of connections.
+     */
+    int getActiveConnections();
+
+    /**
+     * Gets the number of threads waiting for a connection.
+     * @return the number of threads.
+     */
+    int getWaitingThreads();
+
+    /**
+     * Gets the number of connections borrowed since the pool started.
+     * @return the number of times a connection was borrowed.
+     */
+    long getAcquired();
+
+    /**
+     * Gets the number of connections opened since the pool started.
+     * @return the number of connections.
+     */
+    long getCreated();
+
+    /**
+     * Gets the number of idle connections found invalid and replaced.
+     * @return the number of connections.
+     */
+    long getValidationFailures();
+
+    /**
+     * Gets the number of times no connection was available in time.
+     * @return the number of timeouts.
+     */
+    long getTimeouts();
+
+    /**
+     * Gets the mean time taken to borrow a connection, including opening it
+     * or waiting for it.
+     * @return the time in milliseconds.
+     */
+    double getMeanAcquireMillis();
+
+    /**
+     * Gets the longest time taken to borrow a connection.
+     * @return the time in milliseconds.
+     */
+    double getMaxAcquireMillis();
+
+    /**
+     * Gets the number of queries whose statement was already prepared on
+     * their connection.
+     * @return the number of queries.
+     */
+    long getStatementCacheHits();
+
+    /**
+     * Gets the number of queries that had to be prepared on their
+     * connection.
+     * @return the number of queries.
+     */
+    long getStatementCacheMisses();
+}
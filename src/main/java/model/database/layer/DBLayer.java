@@ -1,18 +1,29 @@
 package model.database.layer;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
+import model.indexation.DocumentFingerprint;
+import model.indexation.IndexedDocument;
+import model.search.FieldBoosts;
+import model.search.PostingsSource;
 import model.search.RelevantDocument;
 
-public class DBLayer {
+public class DBLayer implements PostingsSource {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
@@ -21,83 +32,227 @@ public class DBLayer {
     private static final String INDEX_TABLE = "indx";
     private static final String INDEX_TF_IDF_TABLE = "tf_idf_index";
     private static final String DOC_TABLE = "document";
+    private static final String GENERATION_TABLE = "index_generation";
 
     // Queries
-    private static final String INSERT_DOC = "INSERT INTO " + DOC_TABLE + " VALUES (?,?);";
+    private static final String UPSERT_DOC = "INSERT INTO " + DOC_TABLE + " VALUES (?,?,?,?,?) "
+                                             + "ON CONFLICT (id_document) DO UPDATE "
+                                             + "SET name=EXCLUDED.name, size=EXCLUDED.size, "
+                                             + "modified=EXCLUDED.modified, hash=EXCLUDED.hash;";
+    private static final String SELECT_DOCS = "SELECT id_document, name, size, modified, hash " +
+                                              "FROM " + DOC_TABLE + ";";
+    private static final String UPDATE_DOC = "UPDATE " + DOC_TABLE + " SET size=?, modified=?, hash=? "
+                                             + "WHERE id_document=?;";
+    private static final String DELETE_DOC = "DELETE FROM " + DOC_TABLE + " WHERE id_document=?;";
+    private static final String DELETE_DOC_INDEX = "DELETE FROM " + INDEX_TABLE + " WHERE document=?;";
+    private static final String DELETE_DOC_TF_IDF_INDEX = "DELETE FROM " + INDEX_TF_IDF_TABLE
+                                                          + " WHERE document=?;";
+    private static final String TRUNCATE_TF_IDF_INDEX = "TRUNCATE " + INDEX_TF_IDF_TABLE + ";";
+    private static final String UPDATE_GENERATION = "UPDATE " + GENERATION_TABLE
+                                                    + " SET generation = generation + 1;";
+    private static final String SELECT_GENERATION = "SELECT generation " +
+                                                    "FROM " + GENERATION_TABLE + ";";
     private static final String SELECT_NUMBER_OF_DOCS = "SELECT COUNT(*) " +
                                                         "FROM " + DOC_TABLE + ";";
-    private static final String SELECT_WORD = "SELECT * " +
-                                              "FROM " + WORD_TABLE +
-                                              " WHERE id_word=?;";
-    private static final String INSERT_WORD = "INSERT INTO " + WORD_TABLE + " VALUES (?);";
+    private static final String SELECT_WORDS = "SELECT id_word, term " +
+                                               "FROM " + WORD_TABLE + ";";
+    private static final String UPSERT_WORD = "INSERT INTO " + WORD_TABLE + " VALUES (?,?) "
+                                              + "ON CONFLICT (id_word) DO NOTHING;";
 
     private static final String DELETE_STMT = "DELETE FROM ?";
 
-    private static final String INDEX_INSERT = "INSERT INTO " + INDEX_TABLE + " VALUES (?,?,?);";
-    private static final String TF_IDF_INDEX_INSERT = "INSERT INTO " + INDEX_TF_IDF_TABLE + " VALUES (?,?,?);";
+    // Postings of a word with the names of their documents, for each index.
+    private static final String SELECT_RELEVANT_DOCS = "SELECT id_document, name, weight "
+            + "FROM %1$s, " + DOC_TABLE + ", " + WORD_TABLE + " "
+            + "WHERE id_document = document AND %1$s.id_word = " + WORD_TABLE + ".id_word "
+            + "AND term=? ORDER BY id_document;";
+    private static final String SELECT_RELEVANT_DOCS_TF =
+            String.format(SELECT_RELEVANT_DOCS, INDEX_TABLE);
+    private static final String SELECT_RELEVANT_DOCS_TF_IDF =
+            String.format(SELECT_RELEVANT_DOCS, INDEX_TF_IDF_TABLE);
+
+    // Statements used to load the whole index at once.
+    private static final String TRUNCATE_INDEX = "TRUNCATE " + INDEX_TABLE + ", "
+                                                 + INDEX_TF_IDF_TABLE + ", "
+                                                 + WORD_TABLE + ", " + DOC_TABLE + ";";
+    private static final String SELECT_SECONDARY_INDEXES =
+            "SELECT indexrelid::regclass::text, pg_get_indexdef(indexrelid) "
+            + "FROM pg_index "
+            + "WHERE indrelid = ?::regclass AND NOT indisprimary AND NOT indisunique;";
+    private static final String COPY_STMT = "COPY %s FROM STDIN WITH CSV";
 
-    // For efficiency store the most used prepared statements.
-    private PreparedStatement storeWordPrepStmt;
-    private PreparedStatement checkWordPrepStmt;
-    private PreparedStatement tfPrepStmt;
-    private PreparedStatement tfIdfPrepStmt;
+    private static final String INDEX_INSERT = "INSERT INTO " + INDEX_TABLE + " VALUES (?,?,?);";
 
-    // Connection to the database.
+    // The tf of each posting times the idf of its word, for a range of words.
+    private static final String TF_IDF_INDEX_COMPUTE = "INSERT INTO " + INDEX_TF_IDF_TABLE
+            + " SELECT id_word, document, weight * LN(CAST(? AS double precision)"
+            + " / (1 + COUNT(*) OVER (PARTITION BY id_word)))"
+            + " FROM " + INDEX_TABLE + " WHERE id_word BETWEEN ? AND ?;";
+
+    // Statements used to store documents in batches, null until a row is
+    // added to a batch.
+    private PreparedStatement tfIdfDeleteBatchStmt;
+    private PreparedStatement tfDeleteBatchStmt;
+    private PreparedStatement docBatchStmt;
+    private PreparedStatement wordBatchStmt;
+    private PreparedStatement tfBatchStmt;
+
+    // Statements of the current batch with rows to send.
+    private boolean documentsBatched = false;
+    private boolean wordsBatched = false;
+    private boolean entriesBatched = false;
+
+    // Requests sent to store documents, for the metrics of the indexation.
+    private long roundTrips = 0;
+
+    // Connection to the database, borrowed from the pool.
+    private final ConnectionPool pool;
     private Connection connection;
 
     /**
-     * Establishes a connection to the database and builds the most used
-     * prepared statements for efficiency.
+     * Borrows a connection to the database from the pool. The statements of
+     * the batches are prepared when the first row is added, so the searches
+     * never prepare them.
+     * @throws IllegalStateException if no connection is available, because
+     * the pool is busy or the database cannot be reached.
+     * @see ConnectionPool
      */
     public DBLayer() {
-        connection = ConnectionBuilder.getConnection();
+        pool = ConnectionPool.getInstance();
+        connection = pool.acquire();
 
-        try {
-            storeWordPrepStmt = connection.prepareStatement(INSERT_WORD);
-            checkWordPrepStmt = connection.prepareStatement(SELECT_WORD);
-            tfPrepStmt = connection.prepareStatement(INDEX_INSERT);
-            tfIdfPrepStmt = connection.prepareStatement(TF_IDF_INDEX_INSERT);
-        } catch (SQLException e) {
-            LOGGER.error("Could not create prepared statements.",e);
+        if (connection == null) {
+            throw new IllegalStateException("No connection to the database is available.");
         }
     }
 
     /**
-     * Stores the name of the document in the database.
-     * @param idDocument ID of the document to store
-     * @param documentName name of the document to store.
-     * @return true if the document was stored.
+     * Gets the documents in the database with the fingerprint of their files.
+     * @return the list of documents.
+     * @throws SQLException if the documents could not be read.
      */
-    public boolean storeDocument(int idDocument, String documentName) {
+    public List<IndexedDocument> getDocuments() throws SQLException {
 
-        LOGGER.debug("Storing document {}.", documentName);
+        List<IndexedDocument> documents = new ArrayList<IndexedDocument>();
 
-        try {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery(SELECT_DOCS)) {
 
-            PreparedStatement prepstmt = connection.prepareStatement(INSERT_DOC);
-            prepstmt.setInt(1, idDocument);
-            prepstmt.setString(2, documentName);
+            while (rs.next()) {
+                DocumentFingerprint fingerprint = new DocumentFingerprint(
+                        rs.getLong("size"), rs.getLong("modified"), rs.getString("hash"));
+                documents.add(new IndexedDocument(rs.getInt("id_document"),
+                        rs.getString("name"), fingerprint));
+            }
+        }
+
+        return documents;
+    }
+
+    /**
+     * Updates the fingerprint of the file of a document.
+     * @param idDocument ID of the document.
+     * @param fingerprint the new fingerprint.
+     * @throws SQLException if the document could not be updated.
+     */
+    public void updateDocument(int idDocument, DocumentFingerprint fingerprint)
+            throws SQLException {
+
+        try (PreparedStatement prepstmt = connection.prepareStatement(UPDATE_DOC)) {
+            prepstmt.setLong(1, fingerprint.getSize());
+            prepstmt.setLong(2, fingerprint.getLastModified());
+            prepstmt.setString(3, fingerprint.getHash());
+            prepstmt.setInt(4, idDocument);
             prepstmt.executeUpdate();
+        }
+    }
 
+    /**
+     * Deletes a document and its entries in the indexes.
+     * @param idDocument ID of the document.
+     * @throws SQLException if the document could not be deleted.
+     */
+    public void deleteDocument(int idDocument) throws SQLException {
+
+        for (String query : new String[] {DELETE_DOC_TF_IDF_INDEX, DELETE_DOC_INDEX, DELETE_DOC}) {
+            try (PreparedStatement prepstmt = connection.prepareStatement(query)) {
+                prepstmt.setInt(1, idDocument);
+                prepstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Deletes the tf-idf weights. They are calculated again when the
+     * indexation finishes, so they must be deleted when the documents of the
+     * index change. The generation of the index is increased.
+     * @throws SQLException if the weights could not be deleted.
+     * @see #getIndexGeneration()
+     */
+    public void deleteTfIdfIndex() throws SQLException {
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(TRUNCATE_TF_IDF_INDEX);
+            stmt.executeUpdate(UPDATE_GENERATION);
+        }
+    }
+
+    /**
+     * Gets the generation of the index, which changes every time its tf-idf
+     * weights are deleted or the whole index is loaded again.
+     * @return the generation, or -1 if it could not be read.
+     */
+    public long getIndexGeneration() {
+
+        try (ResultSet rs = pool.prepare(connection, SELECT_GENERATION).executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
         } catch (SQLException e) {
-            LOGGER.error("Could not add a document to database.", e);
-            return false;
+            LOGGER.error("Could not read the generation of the index.", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Calculates and stores the tf-idf weights of a range of words in a
+     * single statement, without sending the postings to the client. Each
+     * word is stored at once, so a reader finds all its weights or none.
+     * @param firstWord ID of the first word of the range.
+     * @param lastWord ID of the last word of the range, included.
+     * @param numDocs number of documents in the index.
+     * @return the number of weights stored.
+     * @throws SQLException if the weights could not be stored.
+     */
+    public int computeTfIdf(int firstWord, int lastWord, int numDocs) throws SQLException {
+
+        try (PreparedStatement prepstmt = connection.prepareStatement(TF_IDF_INDEX_COMPUTE)) {
+            prepstmt.setInt(1, numDocs);
+            prepstmt.setInt(2, firstWord);
+            prepstmt.setInt(3, lastWord);
+            return prepstmt.executeUpdate();
         }
+    }
+
+    /**
+     * Updates the statistics of the tf-idf weights once they are calculated.
+     * @throws SQLException if the statistics could not be updated.
+     */
+    public void analyzeTfIdfIndex() throws SQLException {
 
-        return true;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("ANALYZE " + INDEX_TF_IDF_TABLE + ";");
+        }
     }
 
     /**
      * Gets the number of documents in the database.
      * @return the number of documents.
      */
+    @Override
     public int getNumberOfDocuments(){
 
         LOGGER.trace("Getting the number of docs");
 
-        try {
-            PreparedStatement prepstmt = connection.prepareStatement(SELECT_NUMBER_OF_DOCS);
-            ResultSet rs = prepstmt.executeQuery();
+        try (ResultSet rs = pool.prepare(connection, SELECT_NUMBER_OF_DOCS).executeQuery()) {
 
             if(!rs.next()){
                 return 0;
@@ -112,88 +267,352 @@ public class DBLayer {
     }
 
     /**
-     * Checks if a word exists in the database.
-     * @param word the word to check.
+     * Gets the words in the database with their IDs.
+     * @return a map from each word to its ID.
+     * @throws SQLException if the words could not be read.
      */
-    private boolean wordExists(String word) throws SQLException {
+    public Map<String, Integer> getWords() throws SQLException {
+
+        Map<String, Integer> words = new HashMap<String, Integer>();
 
-        checkWordPrepStmt.setString(1, word);
-        ResultSet rs = checkWordPrepStmt.executeQuery();
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery(SELECT_WORDS)) {
 
-        return rs.next();
+            while (rs.next()) {
+                words.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+
+        return words;
     }
 
     /**
-     * Stores a word in the database if it does not exist.
-     * @param word the word to store.
+     * Starts a transaction to store documents in batches. The rows are added
+     * with the batch methods and sent with executeBatch, nothing is visible
+     * until commitBatch is called.
+     * @throws SQLException if the transaction could not be started.
      */
-    public void storeWord(String word) {
+    public void beginBatch() throws SQLException {
+        connection.setAutoCommit(false);
+    }
 
-        try {
+    /**
+     * Prepares the statements of the batches that are not prepared yet.
+     * @throws SQLException if a statement could not be prepared.
+     */
+    private void prepareBatchStatements() throws SQLException {
 
-            if (!wordExists(word)) {
+        if (tfIdfDeleteBatchStmt == null) {
+            tfIdfDeleteBatchStmt = connection.prepareStatement(DELETE_DOC_TF_IDF_INDEX);
+        }
 
-                storeWordPrepStmt.setString(1, word);
-                storeWordPrepStmt.executeUpdate();
-            }
+        if (tfDeleteBatchStmt == null) {
+            tfDeleteBatchStmt = connection.prepareStatement(DELETE_DOC_INDEX);
+        }
 
-        } catch (SQLException e) {
-            LOGGER.debug("Could not store word \"{}\" in the database, "
-                    + "other thread might have stored it.", word);
+        if (docBatchStmt == null) {
+            docBatchStmt = connection.prepareStatement(UPSERT_DOC);
+        }
+
+        if (wordBatchStmt == null) {
+            wordBatchStmt = connection.prepareStatement(UPSERT_WORD);
+        }
+
+        if (tfBatchStmt == null) {
+            tfBatchStmt = connection.prepareStatement(INDEX_INSERT);
         }
     }
 
     /**
-     * Stores a word of a document using tf weight.
-     * @param word word to store.
-     * @param document document associated to the word.
-     * @param weight weight associated to the word.
+     * Gets the statements of the batches, in the order their rows are sent.
+     * @return the statements, with null for the ones not prepared.
      */
-    public void storeInverseTfEntry(String word, int document, float weight) {
-        storeInverseEntry(word, document, weight, tfPrepStmt);
+    private PreparedStatement[] getBatchStatements() {
+        return new PreparedStatement[] {
+            tfIdfDeleteBatchStmt, tfDeleteBatchStmt, docBatchStmt, wordBatchStmt, tfBatchStmt
+        };
     }
 
     /**
-     * Stores a word of a document using tf-idf weight.
-     * @param word word to store.
-     * @param document document associated to the word.
-     * @param weight weight associated to the word.
+     * Adds a document to the current batch. If the document exists, its
+     * entries in the indexes are deleted and its file is updated.
+     * @param idDocument ID of the document to store
+     * @param documentName name of the document to store.
+     * @param size size of the file of the document in bytes.
+     * @param modified modification time of the file in milliseconds.
+     * @param hash hash of the content of the file.
+     * @throws SQLException if the row could not be added.
+     */
+    public void addDocumentToBatch(int idDocument, String documentName, long size,
+            long modified, String hash) throws SQLException {
+
+        prepareBatchStatements();
+        tfIdfDeleteBatchStmt.setInt(1, idDocument);
+        tfIdfDeleteBatchStmt.addBatch();
+        tfDeleteBatchStmt.setInt(1, idDocument);
+        tfDeleteBatchStmt.addBatch();
+
+        docBatchStmt.setInt(1, idDocument);
+        docBatchStmt.setString(2, documentName);
+        docBatchStmt.setLong(3, size);
+        docBatchStmt.setLong(4, modified);
+        docBatchStmt.setString(5, hash);
+        docBatchStmt.addBatch();
+        documentsBatched = true;
+    }
+
+    /**
+     * Adds a word to the current batch. Words that already exist are ignored
+     * by the database.
+     * @param idWord the ID of the word in the term dictionary.
+     * @param word the word to store.
+     * @throws SQLException if the row could not be added.
      */
-    public void storeInverseTfIdfEntry(String word, int document, float weight) {
-        storeInverseEntry(word, document, weight, tfIdfPrepStmt);
+    public void addWordToBatch(int idWord, String word) throws SQLException {
+
+        prepareBatchStatements();
+        wordBatchStmt.setInt(1, idWord);
+        wordBatchStmt.setString(2, word);
+        wordBatchStmt.addBatch();
+        wordsBatched = true;
     }
 
     /**
-     * Stores a word of a document using some weight.
-     * @param word word to store.
+     * Adds a word of a document using tf weight to the current batch.
+     * @param idWord ID of the word to store.
      * @param document document associated to the word.
      * @param weight weight associated to the word.
-     * @param prepStmt the table it is going to insert the word.
+     * @throws SQLException if the row could not be added.
+     */
+    public void addInverseTfEntryToBatch(int idWord, int document, float weight)
+            throws SQLException {
+
+        prepareBatchStatements();
+        tfBatchStmt.setInt(1, idWord);
+        tfBatchStmt.setInt(2, document);
+        tfBatchStmt.setFloat(3, weight);
+        tfBatchStmt.addBatch();
+        entriesBatched = true;
+    }
+
+    /**
+     * Sends the rows added to the batch. The old entries of the documents
+     * are deleted first, then the documents and words are sent before the
+     * entries that refer to them.
+     * @throws SQLException if a row could not be stored.
      */
-    private void storeInverseEntry(String word, int document,
-            float weight, PreparedStatement prepStmt) {
+    public void executeBatch() throws SQLException {
+
+        // An empty batch is not sent.
+        roundTrips += (documentsBatched ? 3 : 0) + (wordsBatched ? 1 : 0)
+                + (entriesBatched ? 1 : 0);
+        documentsBatched = false;
+        wordsBatched = false;
+        entriesBatched = false;
+
+        for (PreparedStatement statement : getBatchStatements()) {
+            if (statement != null) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Commits the rows sent since beginBatch and goes back to auto-commit.
+     * @throws SQLException if the transaction could not be committed.
+     */
+    public void commitBatch() throws SQLException {
+        ++roundTrips;
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    /**
+     * Discards the rows of the current batch and transaction and goes back to
+     * auto-commit.
+     */
+    public void rollbackBatch() {
+
+        documentsBatched = false;
+        wordsBatched = false;
+        entriesBatched = false;
+        ++roundTrips;
 
         try {
-            prepStmt.setString(1, word);
-            prepStmt.setInt(2, document);
-            prepStmt.setFloat(3, weight);
-            prepStmt.execute();
+            for (PreparedStatement statement : getBatchStatements()) {
+                if (statement != null) {
+                    statement.clearBatch();
+                }
+            }
+
+            connection.rollback();
+            connection.setAutoCommit(true);
 
         } catch (SQLException e) {
-            LOGGER.error("Could not store index in the database.",e);
+            LOGGER.error("A problem occurred discarding a batch.", e);
         }
     }
 
+    /**
+     * Deletes the documents, the words and both indexes, before loading the
+     * whole index again. The generation of the index is increased.
+     * @throws SQLException if the tables could not be emptied.
+     */
+    public void truncateIndex() throws SQLException {
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(TRUNCATE_INDEX);
+            stmt.executeUpdate(UPDATE_GENERATION);
+        }
+    }
+
+    /**
+     * Drops the indexes of the tables loaded while indexing, except the ones
+     * behind primary keys and unique constraints. Loading is faster without
+     * them.
+     * @return the statements to create the indexes again.
+     * @throws SQLException if the indexes could not be dropped.
+     * @see #createIndexes(List)
+     */
+    public List<String> dropSecondaryIndexes() throws SQLException {
+
+        List<String> definitions = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+
+        try (PreparedStatement prepstmt = connection.prepareStatement(SELECT_SECONDARY_INDEXES)) {
+
+            for (String table : new String[] {DOC_TABLE, WORD_TABLE, INDEX_TABLE}) {
+                prepstmt.setString(1, table);
+
+                try (ResultSet rs = prepstmt.executeQuery()) {
+                    while (rs.next()) {
+                        names.add(rs.getString(1));
+                        definitions.add(rs.getString(2));
+                    }
+                }
+            }
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            for (String name : names) {
+                LOGGER.debug("Dropping index {}.", name);
+                stmt.executeUpdate("DROP INDEX " + name + ";");
+            }
+        }
+
+        return definitions;
+    }
+
+    /**
+     * Creates indexes and updates the statistics of the loaded tables.
+     * @param definitions the statements returned by dropSecondaryIndexes.
+     * @throws SQLException if an index could not be created.
+     */
+    public void createIndexes(List<String> definitions) throws SQLException {
+
+        try (Statement stmt = connection.createStatement()) {
+
+            for (String definition : definitions) {
+                LOGGER.debug("Creating index: {}", definition);
+                stmt.executeUpdate(definition);
+            }
+
+            for (String table : new String[] {DOC_TABLE, WORD_TABLE, INDEX_TABLE}) {
+                stmt.executeUpdate("ANALYZE " + table + ";");
+            }
+        }
+    }
+
+    /**
+     * Loads documents using the COPY protocol.
+     * @param rows the CSV rows, with the ID, the name, the size, the
+     * modification time and the hash of each document.
+     * @return the number of rows loaded.
+     * @throws SQLException if the rows could not be loaded.
+     * @throws IOException if the rows could not be read.
+     */
+    public long copyDocuments(Reader rows) throws SQLException, IOException {
+        return copy(DOC_TABLE, rows);
+    }
+
+    /**
+     * Loads words using the COPY protocol. The words must not exist.
+     * @param rows the CSV rows, with the ID and the word.
+     * @return the number of rows loaded.
+     * @throws SQLException if the rows could not be loaded.
+     * @throws IOException if the rows could not be read.
+     */
+    public long copyWords(Reader rows) throws SQLException, IOException {
+        return copy(WORD_TABLE, rows);
+    }
+
+    /**
+     * Loads words of documents with tf weights using the COPY protocol.
+     * @param rows the CSV rows, with the ID of the word, the document and the
+     * weight.
+     * @return the number of rows loaded.
+     * @throws SQLException if the rows could not be loaded.
+     * @throws IOException if the rows could not be read.
+     */
+    public long copyInverseTfEntries(Reader rows) throws SQLException, IOException {
+        return copy(INDEX_TABLE, rows);
+    }
+
+    private long copy(String table, Reader rows) throws SQLException, IOException {
+
+        if (!(connection instanceof PGConnection)) {
+            throw new SQLException("COPY is only supported by PostgreSQL connections.");
+        }
+
+        CopyManager copyManager = ((PGConnection) connection).getCopyAPI();
+        ++roundTrips;
+        return copyManager.copyIn(String.format(COPY_STMT, table), rows);
+    }
+
+    /**
+     * Gets the number of requests sent to the database to store documents:
+     * the statements of each batch with rows, the loads with the COPY
+     * protocol, and the commits and rollbacks of their transactions.
+     * @return the number of round trips since the connection was opened.
+     */
+    public long getRoundTrips() {
+        return roundTrips;
+    }
+
+    @Override
+    public void close() {
+        closeConnection();
+    }
+
     /**
      * Gets the list of relevant documents with tf weights associated to a word.
      * @param word searches in the database documents containing this String.
      * @return the list of relevant documents with tf weights associated.
      * @see RelevantDocument
      */
+    @Override
     public List<RelevantDocument> getRelevantDocsTf(String word) {
 
         LOGGER.trace("Getting relevant documents of the word {} using tf.", word);
-        return getRelevantDocs(word,INDEX_TABLE);
+        return getRelevantDocs(word, SELECT_RELEVANT_DOCS_TF);
+    }
+
+    /**
+     * The database only has the words of the body, so the boosts are ignored.
+     * @return the list of relevant documents with tf weights associated.
+     */
+    @Override
+    public List<RelevantDocument> getRelevantDocsTf(String word, FieldBoosts boosts) {
+        return getRelevantDocsTf(word);
+    }
+
+    /**
+     * The database does not have the positions of the words.
+     * @return always null.
+     */
+    @Override
+    public List<RelevantDocument> getRelevantDocsOfPhraseTf(String[] words, int[] offsets) {
+        return null;
     }
 
     /**
@@ -205,29 +624,28 @@ public class DBLayer {
     public List<RelevantDocument> getRelevantDocsTfIdf(String word) {
 
         LOGGER.trace("Getting relevant documents of the word {} using tf-idf.", word);
-        return getRelevantDocs(word,INDEX_TF_IDF_TABLE);
+        return getRelevantDocs(word, SELECT_RELEVANT_DOCS_TF_IDF);
     }
 
     /**
-     * Gets the list of relevant documents associated to a word.
+     * Gets the list of relevant documents associated to a word. The query is
+     * prepared once for each connection of the pool.
      * @param word searches in the database documents containing this String.
-     * @param table where the documents will be found.
+     * @param query the query of the index where the documents will be found.
      * @return the list of relevant documents n the table.
      * @see RelevantDocument
      */
-    private List<RelevantDocument> getRelevantDocs(String word, String table) {
+    private List<RelevantDocument> getRelevantDocs(String word, String query) {
 
-        String strQuery = "SELECT * FROM " + table + " , " + DOC_TABLE
-                + " WHERE id_document = document AND id_word=? "
-                + "order by id_document;";
-        PreparedStatement prepstmt;
         List<RelevantDocument> list;
 
         try {
-            prepstmt = connection.prepareStatement(strQuery);
+            PreparedStatement prepstmt = pool.prepare(connection, query);
             prepstmt.setString(1, word);
-            ResultSet rs = prepstmt.executeQuery();
-            list = buildRelevantDocList(rs);
+
+            try (ResultSet rs = prepstmt.executeQuery()) {
+                list = buildRelevantDocList(rs);
+            }
 
         } catch (SQLException e) {
             LOGGER.error("A problem occurred getting the relevant documents of a word.",
@@ -253,7 +671,7 @@ public class DBLayer {
         while (rs.next()) {
             int documentId = rs.getInt("id_document");
             String docName = rs.getString("name");
-            int weight = rs.getInt("weight");
+            float weight = rs.getFloat("weight");
 
             RelevantDocument aux = new RelevantDocument(documentId, docName,
                     weight);
@@ -271,8 +689,7 @@ public class DBLayer {
 
         LOGGER.debug("Deleting info from databse.");
 
-        try {
-            PreparedStatement prepstmt = connection.prepareStatement(DELETE_STMT);
+        try (PreparedStatement prepstmt = connection.prepareStatement(DELETE_STMT)) {
             prepstmt.setString(1, INDEX_TABLE);
             prepstmt.executeUpdate();
             prepstmt.setString(1, WORD_TABLE);
@@ -290,16 +707,28 @@ public class DBLayer {
     }
 
     /**
-     * Closes the connection of the database.
+     * Closes the prepared statements of the batches and gives the connection
+     * of the database back to the pool, which keeps the statements of the
+     * searches.
      */
     public void closeConnection(){
 
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            LOGGER.error("A problem occurred closing the connection of the database.",
-                    e);
+        if (connection == null) {
+            return;
         }
+
+        for (PreparedStatement statement : getBatchStatements()) {
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                LOGGER.error("A problem occurred closing a statement of the database.", e);
+            }
+        }
+
+        pool.release(connection);
+        connection = null;
     }
 
 }
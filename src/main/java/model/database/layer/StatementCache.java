@@ -0,0 +1,120 @@
+package model.database.layer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGStatement;
+
+/**
+ * Prepared statements of a connection of the pool, kept while the connection
+ * is open so a query is parsed and planned once and not on every call. The
+ * statements are prepared on the server from their first execution. When the
+ * cache is full, the least recently used statement is closed. The statements
+ * belong to the cache and must not be closed by their users, but their
+ * ResultSets must. The objects of this class are used by the borrower of the
+ * connection only.
+ * @see ConnectionPool#prepare(Connection, String)
+ */
+class StatementCache {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * Creates an empty cache.
+     * @param connection the connection of the statements.
+     * @param capacity the maximum number of statements.
+     */
+    StatementCache(Connection connection, final int capacity) {
+
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+
+                if (size() <= capacity) {
+                    return false;
+                }
+
+                close(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the statement of a query already prepared.
+     * @param sql the query.
+     * @return the statement, with its parameters cleared, or null if it is not
+     * in the cache.
+     * @throws SQLException if the parameters could not be cleared.
+     */
+    PreparedStatement get(String sql) throws SQLException {
+
+        PreparedStatement statement = statements.get(sql);
+
+        if (statement != null) {
+            statement.clearParameters();
+        }
+
+        return statement;
+    }
+
+    /**
+     * Prepares a query and keeps its statement.
+     * @param sql the query.
+     * @return the statement.
+     * @throws SQLException if the query could not be prepared.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+
+        if (statement instanceof PGStatement) {
+            // The driver waits five executions by default.
+            ((PGStatement) statement).setPrepareThreshold(1);
+        }
+
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Gets the number of statements in the cache.
+     * @return the number of statements.
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes all the statements, before the connection is closed.
+     */
+    void close() {
+
+        for (PreparedStatement statement : statements.values()) {
+            close(statement);
+        }
+
+        statements.clear();
+    }
+
+    private static void close(PreparedStatement statement) {
+
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.error("A problem occurred closing a cached statement.", e);
+        }
+    }
+}
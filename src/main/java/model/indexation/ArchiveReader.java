@@ -0,0 +1,531 @@
+package model.indexation;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the documents of a ZIP or tar archive, the tar one optionally
+ * compressed with gzip, so a corpus is indexed without unpacking it. The
+ * archive is read once from the start to the end and only the entry being
+ * read is held in memory. Each regular entry is a document named by its
+ * path in the archive, with IDs given in the order of the entries.
+ * @see IndexingPipeline
+ */
+abstract class ArchiveReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Initial buffer of an entry whose size is unknown.
+    private static final int INITIAL_CONTENT_SIZE = 16 * 1024;
+
+    // Largest array the virtual machines can allocate.
+    private static final int MAX_CONTENT_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final InputStream in;
+    private int nextId = 0;
+
+    // Size in bytes and modification time of the current entry.
+    long entrySize;
+    long entryTime;
+
+    private ArchiveReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Tells if a file is an archive this class can read, from its extension:
+     * .zip, .tar, .tar.gz or .tgz.
+     * @param file the file.
+     * @return true if the file is an archive.
+     */
+    static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || isTarGzip(name);
+    }
+
+    private static boolean isTarGzip(String name) {
+        return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * Opens an archive.
+     * @param file the archive, with one of the extensions known by
+     * {@link #isArchive(File)}.
+     * @return the reader of the archive.
+     * @throws IOException if the file could not be opened or is not an
+     * archive.
+     */
+    static ArchiveReader open(File file) throws IOException {
+
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        InputStream in = new FileInputStream(file);
+
+        try {
+            if (name.endsWith(".zip")) {
+                return new ZipReader(new BufferedInputStream(in, BUFFER_SIZE));
+            } else if (isTarGzip(name)) {
+                return new TarReader(new BufferedInputStream(
+                        new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE));
+            } else if (name.endsWith(".tar")) {
+                return new TarReader(new BufferedInputStream(in, BUFFER_SIZE));
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+
+        in.close();
+        throw new IOException(file.getName() + " is not a ZIP or tar archive.");
+    }
+
+    /**
+     * Reads the next document of the archive.
+     * @return the document with its content, or null if there are no more
+     * entries.
+     * @throws IOException if the archive could not be read.
+     */
+    RawDocument next() throws IOException {
+
+        String name = nextEntry();
+
+        if (name == null) {
+            return null;
+        }
+
+        if (entrySize > MAX_CONTENT_SIZE) {
+            throw new IOException("Entry " + name + " is too large to be indexed.");
+        }
+
+        ByteBuffer content = readContent(entryContent(), entrySize);
+        return new RawDocument(nextId++, name, entryTime, content);
+    }
+
+    /**
+     * Reads the bytes of an entry.
+     * @param entry the stream of the entry, ending with it.
+     * @param size the size of the entry, or -1 if it is unknown.
+     */
+    private static ByteBuffer readContent(InputStream entry, long size) throws IOException {
+
+        byte[] bytes = new byte[size >= 0 ? (int) size : INITIAL_CONTENT_SIZE];
+        int length = 0;
+
+        while (true) {
+            if (length == bytes.length) {
+                if (size >= 0 || length == MAX_CONTENT_SIZE) {
+                    // The entry has the announced size, unless it is longer.
+                    if (size < 0 || entry.read() >= 0) {
+                        throw new IOException("Entry is larger than expected.");
+                    }
+
+                    break;
+                }
+
+                bytes = Arrays.copyOf(bytes, (int) Math.min(2L * length, MAX_CONTENT_SIZE));
+            }
+
+            int read = entry.read(bytes, length, bytes.length - length);
+
+            if (read < 0) {
+                break;
+            }
+
+            length += read;
+        }
+
+        if (size >= 0 && length != size) {
+            throw new EOFException("Entry is shorter than expected.");
+        }
+
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Moves to the next regular entry, skipping folders and links, and sets
+     * its size and modification time.
+     * @return the name of the entry, or null if there are no more entries.
+     * @throws IOException if the archive could not be read.
+     */
+    abstract String nextEntry() throws IOException;
+
+    /**
+     * Gets the bytes of the current entry.
+     * @return a stream that ends with the entry.
+     */
+    abstract InputStream entryContent();
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the entries of a ZIP archive with their local headers, without
+     * its central directory at the end.
+     */
+    private static class ZipReader extends ArchiveReader {
+
+        private final ZipInputStream zip;
+
+        ZipReader(InputStream in) {
+            this(new ZipInputStream(in, CHARSET));
+        }
+
+        private ZipReader(ZipInputStream zip) {
+            super(zip);
+            this.zip = zip;
+        }
+
+        @Override
+        String nextEntry() throws IOException {
+
+            ZipEntry entry = zip.getNextEntry();
+
+            while (entry != null && entry.isDirectory()) {
+                entry = zip.getNextEntry();
+            }
+
+            if (entry == null) {
+                return null;
+            }
+
+            entrySize = entry.getSize();
+            entryTime = entry.getTime();
+            return entry.getName();
+        }
+
+        @Override
+        InputStream entryContent() {
+            // The stream ends with the current entry.
+            return zip;
+        }
+    }
+
+    /**
+     * Reads the entries of a tar archive in the ustar format, with the GNU
+     * and POSIX extensions for long names.
+     */
+    private static class TarReader extends ArchiveReader {
+
+        private static final int BLOCK_SIZE = 512;
+
+        // Fields of a header: offset and length.
+        private static final int NAME = 0;
+        private static final int NAME_LENGTH = 100;
+        private static final int SIZE = 124;
+        private static final int SIZE_LENGTH = 12;
+        private static final int TIME = 136;
+        private static final int TIME_LENGTH = 12;
+        private static final int TYPE = 156;
+        private static final int MAGIC = 257;
+        private static final int PREFIX = 345;
+        private static final int PREFIX_LENGTH = 155;
+
+        private static final byte[] USTAR = "ustar".getBytes(CHARSET);
+
+        // Types of entries.
+        private static final byte REGULAR = '0';
+        private static final byte OLD_REGULAR = 0;
+        private static final byte CONTIGUOUS = '7';
+        private static final byte GNU_LONG_NAME = 'L';
+        private static final byte PAX_HEADER = 'x';
+
+        private static final String PAX_PATH = "path";
+
+        private final InputStream in;
+        private final byte[] header = new byte[BLOCK_SIZE];
+        private final byte[] skipBuffer = new byte[BLOCK_SIZE];
+
+        // Bytes of the current entry not read yet, and padding after them.
+        private long remaining = 0;
+        private int padding = 0;
+
+        private final InputStream entry = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+
+                if (remaining == 0) {
+                    return -1;
+                }
+
+                int b = in.read();
+
+                if (b < 0) {
+                    throw new EOFException("Tar archive is truncated.");
+                }
+
+                --remaining;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+
+                if (remaining == 0) {
+                    return -1;
+                }
+
+                int read = in.read(bytes, offset, (int) Math.min(length, remaining));
+
+                if (read < 0) {
+                    throw new EOFException("Tar archive is truncated.");
+                }
+
+                remaining -= read;
+                return read;
+            }
+        };
+
+        TarReader(InputStream in) {
+            super(in);
+            this.in = in;
+        }
+
+        @Override
+        String nextEntry() throws IOException {
+
+            String longName = null;
+
+            while (true) {
+                skip(remaining + padding);
+
+                if (!readHeader()) {
+                    return null;
+                }
+
+                byte type = header[TYPE];
+                long size = parseNumber(SIZE, SIZE_LENGTH);
+                remaining = size;
+                padding = (int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+
+                if (type == GNU_LONG_NAME) {
+                    longName = trim(readEntry(size));
+                } else if (type == PAX_HEADER) {
+                    String path = parsePaxPath(readEntry(size));
+                    longName = path != null ? path : longName;
+                } else if (type == REGULAR || type == OLD_REGULAR || type == CONTIGUOUS) {
+                    entrySize = size;
+                    entryTime = parseNumber(TIME, TIME_LENGTH) * 1000L;
+                    return longName != null ? longName : headerName();
+                } else {
+                    // Folders, links and other extensions are skipped.
+                    longName = null;
+                }
+            }
+        }
+
+        @Override
+        InputStream entryContent() {
+            return entry;
+        }
+
+        /**
+         * Reads a header.
+         * @return false if it is the end of the archive.
+         */
+        private boolean readHeader() throws IOException {
+
+            int length = 0;
+
+            while (length < BLOCK_SIZE) {
+                int read = in.read(header, length, BLOCK_SIZE - length);
+
+                if (read < 0) {
+                    if (length == 0) {
+                        // Some writers leave out the blocks of zeros.
+                        return false;
+                    }
+
+                    throw new EOFException("Tar archive is truncated.");
+                }
+
+                length += read;
+            }
+
+            for (byte b : header) {
+                if (b != 0) {
+                    return true;
+                }
+            }
+
+            // A block of zeros marks the end of the archive.
+            return false;
+        }
+
+        /**
+         * Reads the data of an extension entry, which is small.
+         */
+        private byte[] readEntry(long size) throws IOException {
+
+            if (size > BUFFER_SIZE) {
+                throw new IOException("Tar extension header is too large.");
+            }
+
+            byte[] bytes = new byte[(int) size];
+            int length = 0;
+
+            while (length < bytes.length) {
+                int read = entry.read(bytes, length, bytes.length - length);
+
+                if (read < 0) {
+                    throw new EOFException("Tar archive is truncated.");
+                }
+
+                length += read;
+            }
+
+            return bytes;
+        }
+
+        private void skip(long count) throws IOException {
+
+            while (count > 0) {
+                int read = in.read(skipBuffer, 0, (int) Math.min(count, skipBuffer.length));
+
+                if (read < 0) {
+                    throw new EOFException("Tar archive is truncated.");
+                }
+
+                count -= read;
+            }
+
+            remaining = 0;
+            padding = 0;
+        }
+
+        /**
+         * Gets the name of the header, with its prefix in the ustar format.
+         */
+        private String headerName() {
+
+            String name = field(NAME, NAME_LENGTH);
+
+            if (matches(MAGIC, USTAR)) {
+                String prefix = field(PREFIX, PREFIX_LENGTH);
+
+                if (!prefix.isEmpty()) {
+                    return prefix + "/" + name;
+                }
+            }
+
+            return name;
+        }
+
+        private boolean matches(int offset, byte[] value) {
+
+            for (int i = 0; i < value.length; ++i) {
+                if (header[offset + i] != value[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private String field(int offset, int length) {
+
+            int end = offset;
+
+            while (end < offset + length && header[end] != 0) {
+                ++end;
+            }
+
+            return new String(header, offset, end - offset, CHARSET);
+        }
+
+        /**
+         * Parses a number in octal, or in base 256 when its first bit is set.
+         */
+        private long parseNumber(int offset, int length) throws IOException {
+
+            long value = 0;
+
+            if ((header[offset] & 0x80) != 0) {
+                for (int i = 1; i < length; ++i) {
+                    value = (value << 8) | (header[offset + i] & 0xFF);
+                }
+
+                return value;
+            }
+
+            for (int i = offset; i < offset + length; ++i) {
+                byte b = header[i];
+
+                if (b >= '0' && b <= '7') {
+                    value = (value << 3) | (b - '0');
+                } else if (b != ' ' && b != 0) {
+                    throw new IOException("Invalid number in tar header.");
+                } else if (value > 0) {
+                    break;
+                }
+            }
+
+            return value;
+        }
+
+        /**
+         * Gets the path in the records of a POSIX extended header. Each
+         * record is "length key=value\n", the length counting the whole
+         * record in bytes.
+         * @return the path, or null if there is none.
+         */
+        private static String parsePaxPath(byte[] records) {
+
+            String path = null;
+            int offset = 0;
+
+            while (offset < records.length) {
+                int space = offset;
+                int length = 0;
+
+                while (space < records.length && records[space] >= '0'
+                        && records[space] <= '9') {
+                    length = 10 * length + records[space++] - '0';
+                }
+
+                if (length == 0 || offset + length > records.length
+                        || space >= records.length || records[space] != ' ') {
+                    break;
+                }
+
+                String record = new String(records, space + 1,
+                        offset + length - space - 2, CHARSET);
+                int equals = record.indexOf('=');
+
+                if (equals > 0 && record.substring(0, equals).equals(PAX_PATH)) {
+                    path = record.substring(equals + 1);
+                }
+
+                offset += length;
+            }
+
+            return path;
+        }
+
+        private static String trim(byte[] name) {
+
+            int end = 0;
+
+            while (end < name.length && name[end] != 0) {
+                ++end;
+            }
+
+            return new String(name, 0, end, CHARSET);
+        }
+    }
+}
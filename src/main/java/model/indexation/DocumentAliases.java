@@ -0,0 +1,128 @@
+package model.indexation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Names of the near-duplicate documents that were not indexed, as aliases of
+ * the document they duplicate. The aliases are kept in a text file with one
+ * line for each duplicate: the ID of the original document, a tab and the
+ * name of the duplicate.
+ * @see DuplicateMode#ALIAS
+ */
+public class DocumentAliases {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final Map<Integer, List<String>> aliases = new HashMap<Integer, List<String>>();
+    private int size = 0;
+
+    /**
+     * Reads the aliases of a file.
+     * @param file the file of the aliases.
+     * @return the aliases, empty if the file does not exist.
+     * @throws IOException if the file could not be read or is not a file of
+     * aliases.
+     */
+    public static DocumentAliases read(File file) throws IOException {
+
+        DocumentAliases documentAliases = new DocumentAliases();
+
+        if (!file.exists()) {
+            return documentAliases;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), CHARSET)) {
+            String line = reader.readLine();
+
+            while (line != null) {
+                int tab = line.indexOf('\t');
+
+                if (tab < 0) {
+                    throw new IOException("Not a file of aliases: " + file.getName() + ".");
+                }
+
+                try {
+                    documentAliases.add(Integer.parseInt(line.substring(0, tab)),
+                            line.substring(tab + 1));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Not a file of aliases: " + file.getName() + ".", e);
+                }
+
+                line = reader.readLine();
+            }
+        }
+
+        return documentAliases;
+    }
+
+    /**
+     * Adds an alias.
+     * @param documentId ID of the original document.
+     * @param name name of the duplicate.
+     */
+    public synchronized void add(int documentId, String name) {
+
+        List<String> names = aliases.get(documentId);
+
+        if (names == null) {
+            names = new ArrayList<String>(1);
+            aliases.put(documentId, names);
+        }
+
+        names.add(name);
+        ++size;
+    }
+
+    /**
+     * Gets the aliases of a document.
+     * @param documentId ID of the document.
+     * @return the names of its duplicates, empty if it has none.
+     */
+    public synchronized List<String> getAliases(int documentId) {
+
+        List<String> names = aliases.get(documentId);
+        return names == null ? Collections.<String>emptyList()
+                : new ArrayList<String>(names);
+    }
+
+    /**
+     * Gets the number of aliases.
+     * @return the number of duplicates.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes the aliases to a file, replacing it atomically.
+     * @param file the file of the aliases.
+     * @throws IOException if the file could not be written.
+     */
+    public synchronized void write(File file) throws IOException {
+
+        File temporary = new File(file.getPath() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary.toPath(), CHARSET)) {
+            for (Map.Entry<Integer, List<String>> entry : aliases.entrySet()) {
+                for (String name : entry.getValue()) {
+                    writer.write(entry.getKey() + "\t" + name);
+                    writer.newLine();
+                }
+            }
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
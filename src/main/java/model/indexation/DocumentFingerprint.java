@@ -0,0 +1,142 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Size, modification time and hash of the content of an indexed file. It is
+ * stored with the document to know, in the next indexation, if the file
+ * changed.
+ */
+public class DocumentFingerprint {
+
+    /**
+     * Hash of a file whose content was not hashed. It matches no content, so
+     * the file is indexed again when its size or modification time changes.
+     */
+    public static final String NO_HASH = "";
+
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    /**
+     * Creates a fingerprint.
+     * @param size the size of the file in bytes.
+     * @param lastModified the modification time of the file, in milliseconds
+     * since the epoch.
+     * @param hash the SHA-1 of the content of the file, in hexadecimal.
+     */
+    public DocumentFingerprint(long size, long lastModified, String hash) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates the fingerprint of a file that has been read.
+     * @param file the file.
+     * @param content the bytes of the file.
+     * @return the fingerprint of the file.
+     */
+    static DocumentFingerprint of(File file, ByteBuffer content) {
+        return of(file.lastModified(), content);
+    }
+
+    /**
+     * Creates the fingerprint of a document that is not a file, like an
+     * entry of an archive.
+     * @param lastModified the modification time of the document, in
+     * milliseconds since the epoch.
+     * @param content the bytes of the document.
+     * @return the fingerprint of the document.
+     */
+    static DocumentFingerprint of(long lastModified, ByteBuffer content) {
+        return new DocumentFingerprint(content.remaining(), lastModified, hash(content));
+    }
+
+    /**
+     * Creates the fingerprint of a file, reading it.
+     * @param file the file.
+     * @return the fingerprint of the file.
+     * @throws IOException if the file could not be read.
+     */
+    static DocumentFingerprint of(File file) throws IOException {
+
+        ByteBuffer content = MappedFiles.map(file);
+
+        try {
+            return of(file, content);
+        } finally {
+            MappedFiles.unmap(content);
+        }
+    }
+
+    /**
+     * Tells if a file has the size and the modification time of this
+     * fingerprint, in which case it is taken as unchanged without reading it.
+     * @param file the file.
+     * @return true if the file seems unchanged.
+     */
+    boolean hasSameAttributes(File file) {
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Gets the size of the file.
+     * @return the size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the modification time of the file.
+     * @return the time in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the hash of the content of the file.
+     * @return the SHA-1 of the content, in hexadecimal.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Computes the SHA-1 of some bytes.
+     * @param content the bytes.
+     * @return the hash in hexadecimal.
+     */
+    private static String hash(ByteBuffer content) {
+
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-1.
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(content.duplicate());
+        byte[] bytes = digest.digest();
+        char[] hex = new char[2 * bytes.length];
+
+        for (int i = 0; i < bytes.length; ++i) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+}
@@ -0,0 +1,251 @@
+package model.indexation;
+
+import java.util.Arrays;
+
+/**
+ * Finds the documents nearly identical to a document seen before, while the
+ * documents are tokenized. The words of each document are summed up in a
+ * MinHash signature, whose entries are equal in two documents with the
+ * probability that a word of one of them is in the other one (their Jaccard
+ * similarity). The signature is cut into bands, and the documents with an
+ * identical band fall in the same bucket of the locality-sensitive hashing,
+ * so only the documents of the buckets of a new document are compared to it.
+ * <p>
+ * The first document of a group of duplicates is the original one, the
+ * others are its duplicates. With several tokenizer threads, which one is
+ * first depends on the order the documents are parsed. The memory taken is a
+ * few hundred bytes for each original document.
+ * @see DuplicateMode
+ */
+class DuplicateDetector {
+
+    /** Default similarity above which a document is a duplicate. */
+    static final double DEFAULT_THRESHOLD = 0.9;
+
+    // A document is a candidate if it has an identical band; with bands of
+    // four rows, the documents 90% similar share one with a probability of
+    // more than 99.99%.
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    // Number of identical entries in the signature of a duplicate.
+    private final int minMatches;
+
+    // Signatures of the original documents, one after the other.
+    private int[] signatures = new int[INITIAL_CAPACITY * SIGNATURE_SIZE];
+    private int[] documentIds = new int[INITIAL_CAPACITY];
+    private int originals = 0;
+
+    // Buckets of the bands, each one with the first original document in it.
+    private final BucketTable buckets = new BucketTable();
+
+    private int duplicates = 0;
+
+    /**
+     * Creates an empty detector.
+     * @param threshold the similarity, between 0 and 1, above which a
+     * document is a duplicate.
+     */
+    DuplicateDetector(double threshold) {
+        this.minMatches = (int) Math.ceil(threshold * SIGNATURE_SIZE);
+    }
+
+    /**
+     * Looks for a document the given one duplicates. If there is none, the
+     * document becomes an original that the next ones are compared to. The
+     * documents without words are never duplicates.
+     * @param invFile the words of the document.
+     * @return the ID of the original document, or -1 if the document is not
+     * a duplicate.
+     */
+    int findOriginal(InverseFile invFile) {
+
+        if (invFile.size() == 0) {
+            return -1;
+        }
+
+        return findOriginal(invFile.getDocumentId(), signature(invFile));
+    }
+
+    /**
+     * Gets the number of duplicates found.
+     * @return the number of documents.
+     */
+    synchronized int getDuplicateCount() {
+        return duplicates;
+    }
+
+    private synchronized int findOriginal(int documentId, int[] signature) {
+
+        long[] keys = new long[BANDS];
+
+        for (int band = 0; band < BANDS; ++band) {
+            keys[band] = bandKey(signature, band);
+            int original = buckets.get(keys[band]);
+
+            if (original >= 0 && matches(signature, original) >= minMatches) {
+                ++duplicates;
+                return documentIds[original];
+            }
+        }
+
+        int original = addOriginal(documentId, signature);
+
+        for (long key : keys) {
+            buckets.putIfAbsent(key, original);
+        }
+
+        return -1;
+    }
+
+    private int addOriginal(int documentId, int[] signature) {
+
+        if (originals == documentIds.length) {
+            documentIds = Arrays.copyOf(documentIds, originals * 2);
+            signatures = Arrays.copyOf(signatures, originals * 2 * SIGNATURE_SIZE);
+        }
+
+        System.arraycopy(signature, 0, signatures, originals * SIGNATURE_SIZE, SIGNATURE_SIZE);
+        documentIds[originals] = documentId;
+        return originals++;
+    }
+
+    private int matches(int[] signature, int original) {
+
+        int offset = original * SIGNATURE_SIZE;
+        int matches = 0;
+
+        for (int i = 0; i < SIGNATURE_SIZE; ++i) {
+            if (signature[i] == signatures[offset + i]) {
+                ++matches;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Computes the MinHash signature of the words of a document: each entry
+     * is the minimum of a different hash function over the words.
+     * @param invFile the words of the document.
+     * @return the signature.
+     */
+    static int[] signature(InverseFile invFile) {
+
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        TermCounts.Cursor words = invFile.words();
+
+        while (words.next()) {
+            long hash = mix(words.term().hashCode());
+
+            for (int i = 0; i < SIGNATURE_SIZE; ++i) {
+                int value = (int) mix(hash + (i + 1) * GOLDEN_RATIO);
+
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+
+        return signature;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+
+        long hash = band;
+
+        for (int i = band * ROWS; i < (band + 1) * ROWS; ++i) {
+            hash = hash * 31 + signature[i];
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3, to spread the bits of a hash.
+     */
+    private static long mix(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Hash table from the keys of the buckets to an original document, with
+     * open addressing so it takes twelve bytes for each bucket.
+     */
+    private static class BucketTable {
+
+        private long[] keys = new long[INITIAL_CAPACITY * BANDS];
+        private int[] values = new int[INITIAL_CAPACITY * BANDS];
+        private int size = 0;
+
+        BucketTable() {
+            Arrays.fill(values, -1);
+        }
+
+        int get(long key) {
+
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            return -1;
+        }
+
+        void putIfAbsent(long key, int value) {
+
+            // Kept at most half full.
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+            ++size;
+        }
+
+        private void grow() {
+
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(values, -1);
+            size = 0;
+
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldValues[i] >= 0) {
+                    putIfAbsent(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
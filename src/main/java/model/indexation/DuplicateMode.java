@@ -0,0 +1,23 @@
+package model.indexation;
+
+/**
+ * What the indexer does with the documents nearly identical to a document
+ * already indexed.
+ * @see IndexerConfiguration#setDuplicateMode(DuplicateMode)
+ * @see DuplicateDetector
+ */
+public enum DuplicateMode {
+
+    /** Every document is indexed, the duplicates are not looked for. */
+    KEEP,
+
+    /** The duplicates are not indexed. */
+    SKIP,
+
+    /**
+     * The duplicates are not indexed, and their names are written as aliases
+     * of the document they duplicate.
+     * @see DocumentAliases
+     */
+    ALIAS
+}
@@ -0,0 +1,41 @@
+package model.indexation;
+
+/**
+ * The parts of an HTML document whose words are counted separately. The body
+ * has all the text of the document, including the text of the other fields,
+ * so a word found in a title is counted once in the body and once in the title.
+ */
+public enum Field {
+
+    BODY(null),
+    TITLE("title"),
+    H1("h1"),
+    H2("h2"),
+    H3("h3");
+
+    // Cached to avoid copying the array of values on each lookup.
+    private static final Field[] FIELDS = values();
+
+    // Name of the HTML tag associated to the field.
+    private final String tagName;
+
+    private Field(String tagName) {
+        this.tagName = tagName;
+    }
+
+    /**
+     * Gets the field associated to an HTML tag other than the body.
+     * @param tagName the name of the tag in lower case.
+     * @return the field of the tag or null if the tag has no field of its own.
+     */
+    public static Field fromTag(String tagName) {
+
+        for (Field field : FIELDS) {
+            if (field.tagName != null && field.tagName.equals(tagName)) {
+                return field;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,254 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.jsoup.parser.Tag;
+
+/**
+ * Takes the content of an HTML file and builds the InverseFile with the words
+ * found in it. Implements the Strategy Pattern so the indexer can change the
+ * way the files are parsed. The objects of this class are not thread safe,
+ * each thread should use its own tokenizer.
+ * @see InverseFile
+ * @see TokenizerMode
+ */
+abstract class HtmlTokenizer {
+
+    /** Charset used to decode the files. */
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    // Unicode byte order mark, ignored at the start of a file.
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    // Splits the text into words, skipping the words to be ignored.
+    private final WordScanner scanner;
+
+    // True to keep the positions of the words.
+    private boolean positions = false;
+
+    // Position of the next word of the current document.
+    private int nextPosition;
+
+    // Number of characters of the text kept for the document store.
+    private int snippetLength = 0;
+    private final StringBuilder snippet = new StringBuilder();
+
+    // True if a space separates the next text from the snippet.
+    private boolean snippetSpace;
+
+    // Time spent in the last document, in nanoseconds.
+    private long parseTime;
+    private long tokenizeTime;
+
+    /**
+     * Creates a tokenizer that ignores a list of words.
+     * @param stopWords the words to be ignored.
+     */
+    HtmlTokenizer(StopWords stopWords) {
+        this.scanner = new WordScanner(stopWords);
+    }
+
+    /**
+     * Creates the tokenizer of a given mode.
+     * @param mode the way the files will be parsed.
+     * @param stopWords the words to be ignored.
+     * @return a new tokenizer.
+     */
+    static HtmlTokenizer create(TokenizerMode mode, StopWords stopWords) {
+
+        if (mode == TokenizerMode.STREAMING) {
+            return new StreamingHtmlTokenizer(stopWords);
+        }
+
+        return new JsoupHtmlTokenizer(stopWords);
+    }
+
+    /**
+     * Sets if the positions of the words in the body are kept, which phrase
+     * queries need. By default they are not.
+     * @param positions true to keep the positions.
+     */
+    void setPositions(boolean positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Sets the number of characters at the start of the text of each
+     * document that are kept, with their spaces collapsed, so the document
+     * store can show them. The text of the title is not part of it. By
+     * default none are kept.
+     * @param snippetLength the number of characters, 0 to keep none.
+     */
+    void setSnippetLength(int snippetLength) {
+        this.snippetLength = snippetLength;
+    }
+
+    /**
+     * Maps a file in memory so it can be tokenized.
+     * @param file the file to read.
+     * @return a read only buffer with the bytes of the file.
+     * @throws IOException if the file could not be read.
+     */
+    static ByteBuffer map(File file) throws IOException {
+        return MappedFiles.map(file);
+    }
+
+    /**
+     * Builds the InverseFile of a document.
+     * @param content the bytes of the HTML document encoded in UTF-8.
+     * @param documentId ID of the document.
+     * @param documentName name of the document.
+     * @return an InverseFile containing all the words found.
+     */
+    abstract InverseFile tokenize(ByteBuffer content, int documentId,
+            String documentName);
+
+    /**
+     * Creates the Inverse File of a new document. The words added after this
+     * call are the first ones of the document.
+     * @param documentId ID of the document.
+     * @param documentName name of the document.
+     * @return an empty Inverse File.
+     */
+    protected InverseFile createInverseFile(int documentId, String documentName) {
+        nextPosition = 0;
+        snippet.setLength(0);
+        snippetSpace = false;
+        return new InverseFile(documentId, documentName, positions);
+    }
+
+    /**
+     * Completes the Inverse File of a document once all its text is added.
+     * @param invFile the Inverse File of the current document.
+     * @return the same Inverse File.
+     */
+    protected InverseFile finishInverseFile(InverseFile invFile) {
+
+        if (snippet.length() > 0) {
+            invFile.setSnippet(snippet.toString());
+        }
+
+        return invFile;
+    }
+
+    /**
+     * Gets the time spent reading the structure of the last document.
+     * @return the time in nanoseconds.
+     */
+    long getParseTime() {
+        return parseTime;
+    }
+
+    /**
+     * Gets the time spent splitting the text of the last document in words.
+     * @return the time in nanoseconds.
+     */
+    long getTokenizeTime() {
+        return tokenizeTime;
+    }
+
+    /**
+     * Sets the time spent in the last document.
+     * @param parseTime the time spent parsing in nanoseconds.
+     * @param tokenizeTime the time spent tokenizing in nanoseconds.
+     */
+    protected void setTimes(long parseTime, long tokenizeTime) {
+        this.parseTime = parseTime;
+        this.tokenizeTime = tokenizeTime;
+    }
+
+    /**
+     * Tells if a character is the byte order mark, which is ignored at the
+     * start of a document.
+     * @param c the first character of a document.
+     * @return true if the character must be skipped.
+     */
+    static boolean isByteOrderMark(char c) {
+        return c == BYTE_ORDER_MARK;
+    }
+
+    /**
+     * Tells that a tag starts or ends. The text of a block tag is separated
+     * from the text around it in the snippet, as a browser shows it apart.
+     * @param tagName the name of the tag.
+     */
+    protected void tagBoundary(String tagName) {
+
+        if (snippet.length() < snippetLength && Tag.isKnownTag(tagName)
+                && Tag.valueOf(tagName).isBlock()) {
+            snippetSpace = true;
+        }
+    }
+
+    /**
+     * Adds the words of a text to the body of the Inverse File and to a field.
+     * The texts must be added in document order, the positions continue after
+     * the words of the previous text, and the snippet after its characters.
+     * @param text the text of a tag.
+     * @param invFile the Inverse file where the words will be added.
+     * @param field the field of the tag, null if the words only belong to the body.
+     * @see InverseFile
+     */
+    protected void addText(CharSequence text, InverseFile invFile, Field field) {
+
+        scanner.reset(text);
+        String word = scanner.next();
+
+        while (word != null) {
+            invFile.addWord(word, nextPosition + scanner.getWordsRead() - 1);
+
+            if (field != null) {
+                invFile.addWord(field, word);
+            }
+
+            word = scanner.next();
+        }
+
+        nextPosition += scanner.getWordsRead();
+
+        if (field == Field.TITLE) {
+            if (invFile.getTitle() == null) {
+                StringBuilder title = new StringBuilder();
+                appendCollapsed(title, text, Integer.MAX_VALUE, false);
+                invFile.setTitle(title.toString());
+            }
+        } else if (snippet.length() < snippetLength) {
+            snippetSpace = appendCollapsed(snippet, text, snippetLength, snippetSpace);
+        }
+    }
+
+    /**
+     * Appends a text with each run of spaces replaced by a single space and
+     * without spaces at the start, up to a maximum length.
+     * @param space true if the text follows a space not appended yet.
+     * @return true if the text ends with spaces not appended.
+     */
+    private static boolean appendCollapsed(StringBuilder target, CharSequence text,
+            int maxLength, boolean space) {
+
+        for (int i = 0; i < text.length() && target.length() < maxLength; ++i) {
+            char c = text.charAt(i);
+
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                space = true;
+            } else {
+                if (space && target.length() > 0) {
+                    // No space at the end when the text is cut.
+                    if (target.length() + 1 == maxLength) {
+                        break;
+                    }
+
+                    target.append(' ');
+                }
+
+                space = false;
+                target.append(c);
+            }
+        }
+
+        return space;
+    }
+}
@@ -0,0 +1,17 @@
+package model.indexation;
+
+/**
+ * Where the index is stored.
+ * @see IndexerConfiguration#setBackend(IndexBackend)
+ */
+public enum IndexBackend {
+
+    /** Tables of the PostgreSQL database. */
+    DATABASE,
+
+    /**
+     * Immutable segment files in a folder, read by memory-mapping them.
+     * @see model.segment.SegmentDirectory
+     */
+    SEGMENTS
+}
@@ -0,0 +1,149 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Marks that an indexation is running. The file is written when the
+ * indexation starts and deleted when it finishes, so if it exists when a new
+ * indexation starts the previous one did not finish and it is resumed.
+ * The documents themselves are checkpointed by the database: a document is
+ * committed in the same transaction as its words, so the documents in the
+ * database are exactly the ones that do not need to be indexed again.
+ * @see IndexPlan#resume(File[], java.util.Collection)
+ */
+class IndexCheckpoint {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String BULK_LOAD = "bulkLoad";
+    private static final String INDEX_PREFIX = "index.";
+
+    // Null if checkpoints are disabled.
+    private final File file;
+    private final Properties properties = new Properties();
+    private final boolean resuming;
+
+    /**
+     * Reads the checkpoint of the previous indexation, if it did not finish.
+     * @param file the file of the checkpoint, null to disable checkpoints.
+     */
+    IndexCheckpoint(File file) {
+
+        this.file = file;
+        this.resuming = file != null && file.exists();
+
+        if (resuming) {
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                LOGGER.error("Could not read checkpoint " + file.getName() + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Tells if the previous indexation did not finish.
+     * @return true if the indexation must be resumed.
+     */
+    boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * Tells if the indexation that did not finish was loading the index from
+     * scratch.
+     * @return true if it was a bulk load.
+     */
+    boolean wasBulkLoad() {
+        return Boolean.parseBoolean(properties.getProperty(BULK_LOAD));
+    }
+
+    /**
+     * Gets the indexes dropped by the bulk load that did not finish.
+     * @return the statements to create the indexes.
+     */
+    List<String> getIndexDefinitions() {
+
+        List<String> definitions = new ArrayList<String>();
+        String definition = properties.getProperty(INDEX_PREFIX + 0);
+
+        while (definition != null) {
+            definitions.add(definition);
+            definition = properties.getProperty(INDEX_PREFIX + definitions.size());
+        }
+
+        return Collections.unmodifiableList(definitions);
+    }
+
+    /**
+     * Records that an indexation started.
+     * @param bulkLoad true if the index is loaded from scratch.
+     */
+    void start(boolean bulkLoad) {
+        properties.setProperty(BULK_LOAD, Boolean.toString(bulkLoad));
+        write();
+    }
+
+    /**
+     * Records the indexes dropped by a bulk load, to create them again if it
+     * does not finish.
+     * @param definitions the statements to create the indexes.
+     */
+    void setIndexDefinitions(List<String> definitions) {
+
+        for (int i = 0; i < definitions.size(); ++i) {
+            properties.setProperty(INDEX_PREFIX + i, definitions.get(i));
+        }
+
+        write();
+    }
+
+    /**
+     * Records that the indexation finished.
+     */
+    void finish() {
+
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.error("Could not delete checkpoint {}.", file.getName());
+        }
+    }
+
+    /**
+     * Writes the checkpoint to disk. It is written to a temporary file which
+     * replaces the checkpoint, so a crash never leaves half a checkpoint.
+     */
+    private void write() {
+
+        if (file == null) {
+            return;
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+
+        try {
+            try (FileOutputStream out = new FileOutputStream(temporary)) {
+                properties.store(out, "Indexation in progress");
+                out.getFD().sync();
+            }
+
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            LOGGER.error("Could not write checkpoint " + file.getName() + ".", e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decides what must be done to bring the index up to date with a folder. A
+ * file keeps the ID of its document while it exists; new files take IDs after
+ * the greatest one in the index.
+ * @see DocumentFingerprint
+ */
+class IndexPlan {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // Documents to index, new or changed.
+    private final List<RawDocument> toIndex = new ArrayList<RawDocument>();
+
+    // Documents whose files no longer exist.
+    private final List<IndexedDocument> removed = new ArrayList<IndexedDocument>();
+
+    // Documents whose files were touched but have the same content.
+    private final List<IndexedDocument> touched = new ArrayList<IndexedDocument>();
+
+    private IndexPlan() {}
+
+    /**
+     * Plans to index all the files. The ID of each document is its position
+     * in the array.
+     * @param files the files to index.
+     * @return the plan.
+     */
+    static IndexPlan full(File[] files) {
+
+        IndexPlan plan = new IndexPlan();
+
+        for (int i = 0; i < files.length; ++i) {
+            plan.toIndex.add(new RawDocument(i, files[i]));
+        }
+
+        return plan;
+    }
+
+    /**
+     * Plans to finish an indexation of all the files that did not finish. The
+     * files already stored, with the same size and modification time, are
+     * skipped. The ID of each document is its position in the array, unless
+     * it was already in the index.
+     * @param files the files to index.
+     * @param committed the documents in the index.
+     * @return the plan.
+     */
+    static IndexPlan resume(File[] files, Collection<IndexedDocument> committed) {
+
+        IndexPlan plan = new IndexPlan();
+        Map<String, IndexedDocument> byName = new HashMap<String, IndexedDocument>();
+
+        for (IndexedDocument document : committed) {
+            byName.put(document.getName(), document);
+        }
+
+        for (int i = 0; i < files.length; ++i) {
+            IndexedDocument document = byName.get(files[i].getName());
+
+            if (document == null) {
+                plan.toIndex.add(new RawDocument(i, files[i]));
+            } else if (!document.getFingerprint().hasSameAttributes(files[i])) {
+                plan.toIndex.add(new RawDocument(document.getDocumentId(), files[i]));
+            }
+        }
+
+        LOGGER.info("Resuming indexation, {} of {} documents left.",
+                plan.toIndex.size(), files.length);
+
+        return plan;
+    }
+
+    /**
+     * Plans to index only the files that are new or whose content changed
+     * since they were indexed, and to remove the documents of deleted files.
+     * The content of a file is read only if its size or modification time
+     * changed.
+     * @param files the files in the folder.
+     * @param indexed the documents in the index.
+     * @return the plan.
+     */
+    static IndexPlan incremental(File[] files, Collection<IndexedDocument> indexed) {
+
+        IndexPlan plan = new IndexPlan();
+        Map<String, IndexedDocument> byName = new HashMap<String, IndexedDocument>();
+        int nextId = 0;
+
+        for (IndexedDocument document : indexed) {
+            byName.put(document.getName(), document);
+            nextId = Math.max(nextId, document.getDocumentId() + 1);
+        }
+
+        for (File file : files) {
+            IndexedDocument document = byName.remove(file.getName());
+
+            if (document == null) {
+                plan.toIndex.add(new RawDocument(nextId++, file));
+            } else if (!document.getFingerprint().hasSameAttributes(file)) {
+                plan.checkContent(document, file);
+            }
+        }
+
+        plan.removed.addAll(byName.values());
+
+        LOGGER.info("{} documents to index, {} to remove and {} unchanged.",
+                plan.toIndex.size(), plan.removed.size(),
+                files.length - plan.toIndex.size());
+
+        return plan;
+    }
+
+    /**
+     * Reads a file to know if its content changed.
+     * @param document the document of the file in the index.
+     * @param file the file.
+     */
+    private void checkContent(IndexedDocument document, File file) {
+
+        RawDocument raw = new RawDocument(document.getDocumentId(), file);
+
+        try {
+            DocumentFingerprint fingerprint = DocumentFingerprint.of(file);
+
+            if (fingerprint.getHash().equals(document.getFingerprint().getHash())) {
+                touched.add(new IndexedDocument(document.getDocumentId(),
+                        document.getName(), fingerprint));
+                return;
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Could not read file " + file.getName() + ".", e);
+        }
+
+        toIndex.add(raw);
+    }
+
+    /**
+     * Gets the documents to index.
+     * @return the new and the changed documents.
+     */
+    List<RawDocument> getDocumentsToIndex() {
+        return Collections.unmodifiableList(toIndex);
+    }
+
+    /**
+     * Gets the documents to remove from the index.
+     * @return the documents whose files were deleted.
+     */
+    List<IndexedDocument> getRemovedDocuments() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Gets the documents that only need a new fingerprint.
+     * @return the documents whose files were touched without changing them.
+     */
+    List<IndexedDocument> getTouchedDocuments() {
+        return Collections.unmodifiableList(touched);
+    }
+
+    /**
+     * Tells if the documents in the index change, in which case the
+     * statistics of the index change too.
+     * @return true if some document is indexed or removed.
+     */
+    boolean changesIndex() {
+        return !toIndex.isEmpty() || !removed.isEmpty();
+    }
+}
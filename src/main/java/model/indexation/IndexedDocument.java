@@ -0,0 +1,48 @@
+package model.indexation;
+
+/**
+ * A document stored in the index, as read from the database.
+ * @see DocumentFingerprint
+ */
+public class IndexedDocument {
+
+    private final int documentId;
+    private final String name;
+    private final DocumentFingerprint fingerprint;
+
+    /**
+     * Creates an indexed document.
+     * @param documentId ID of the document.
+     * @param name name of the file of the document.
+     * @param fingerprint the fingerprint of the file when it was indexed.
+     */
+    public IndexedDocument(int documentId, String name, DocumentFingerprint fingerprint) {
+        this.documentId = documentId;
+        this.name = name;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Gets the ID of the document.
+     * @return an ID.
+     */
+    public int getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Gets the name of the file of the document.
+     * @return the name of the file.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the fingerprint of the file when it was indexed.
+     * @return the fingerprint.
+     */
+    public DocumentFingerprint getFingerprint() {
+        return fingerprint;
+    }
+}
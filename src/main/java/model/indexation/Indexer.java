@@ -1,24 +1,27 @@
 package model.indexation;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Set;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import model.database.dao.DocumentDAO;
+import model.search.PostingsCache;
+import model.segment.SegmentDirectory;
+
 /**
  * Class to index files and store the data in a database. It uses several threads
  * to accelerate the indexing process.
- * @see IndexerRunnable
+ * @see IndexingPipeline
  */
 public class Indexer {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
-    // Number of threads to be used.
-    private static final int THREADS_NUM = 10;
-
     // To avoid instantiation
     private Indexer() {}
 
@@ -29,8 +32,55 @@ public class Indexer {
      * @param stopWordsfile the file with the words to be ignored.
      */
     public static void startIndexation(File folder, File stopWordsfile){
+        startIndexation(folder, stopWordsfile, new IndexerConfiguration());
+    }
+
+    /**
+     * Indexes the files inside a given folder and a file with the list of words
+     * to ignore, using the given options. If the previous indexation did not
+     * finish, it is resumed: it keeps its mode and only the documents that
+     * were not stored are indexed. Only one indexation runs at a time.
+     * Instead of a folder, it can be a ZIP or tar archive, read without
+     * unpacking it: all its documents are indexed, named by their path in
+     * the archive.
+     * @param folder the folder where the documents can be found, or the
+     * archive with them.
+     * @param stopWordsfile the file with the words to be ignored.
+     * @param config the options of the indexation.
+     * @see IndexerConfiguration
+     */
+    public static synchronized void startIndexation(File folder, File stopWordsfile,
+            IndexerConfiguration config){
+
+        LOGGER.entry(stopWordsfile,folder,config);
+
+        try {
+            index(folder, stopWordsfile, config);
+        } finally {
+            // The postings of the searches in this process may have changed.
+            PostingsCache.getInstance().invalidateAll();
+        }
+
+        LOGGER.exit();
+    }
+
+    /**
+     * Indexes the files of a folder or an archive.
+     * @param folder the folder where the documents can be found, or the
+     * archive with them.
+     * @param stopWordsfile the file with the words to be ignored.
+     * @param config the options of the indexation.
+     */
+    private static void index(File folder, File stopWordsfile, IndexerConfiguration config) {
 
-        LOGGER.entry(stopWordsfile,folder);
+        if (config.getShardCount() > 1 && !canSplit(folder, config)) {
+            return;
+        }
+
+        if (folder.isFile() && ArchiveReader.isArchive(folder)) {
+            indexArchive(folder, StopWords.load(stopWordsfile), config);
+            return;
+        }
 
         File[] listOfFiles = folder.listFiles();
 
@@ -40,65 +90,360 @@ public class Indexer {
         }
 
         Arrays.sort(listOfFiles);
-        Set<String> stopWordsSet = StopWordSetBuilder.createStopWordsSet(stopWordsfile);
+        StopWords stopWords = StopWords.load(stopWordsfile);
 
-        indexFiles(listOfFiles, stopWordsSet);
+        if (config.getBackend() == IndexBackend.SEGMENTS) {
+            indexSegments(listOfFiles, stopWords, config);
+            return;
+        }
 
-        LOGGER.exit();
+        IndexCheckpoint checkpoint = new IndexCheckpoint(config.getCheckpointFile());
+        boolean bulkLoad = config.isBulkLoad();
+        IndexPlan plan;
+
+        if (checkpoint.isResuming()) {
+            LOGGER.info("The previous indexation did not finish, resuming it.");
+            bulkLoad = checkpoint.wasBulkLoad();
+        }
+
+        if (config.isIncremental() && !bulkLoad) {
+            plan = planChanges(listOfFiles);
+        } else if (checkpoint.isResuming()) {
+            plan = planResume(listOfFiles);
+        } else {
+            plan = IndexPlan.full(listOfFiles);
+        }
+
+        if (plan != null) {
+            IndexingPipeline pipeline =
+                    new IndexingPipeline(stopWords, config, bulkLoad, checkpoint);
+            // A resumed indexation may have stopped while calculating tf-idf.
+            indexFiles(plan.getDocumentsToIndex(), plan.changesIndex()
+                    || checkpoint.isResuming(), stopWords, pipeline);
+        }
     }
 
     /**
-     * Indexes the files using the set of words to be ignored.
-     * @param listOfFiles array with the files to be indexed.
-     * @param stopWordsSet set of words to be ignored.
+     * Tells if the documents can be split in the shards of the options.
+     * @param folder the folder or the archive of the documents.
+     * @param config the options of the indexation.
+     * @return true if the shards can be written.
      */
-    private static void indexFiles(File[] listOfFiles, Set<String> stopWordsSet) {
+    private static boolean canSplit(File folder, IndexerConfiguration config) {
 
-        LOGGER.entry(listOfFiles, stopWordsSet);
-        LOGGER.info("Index process started.");
+        if (config.getBackend() != IndexBackend.SEGMENTS) {
+            LOGGER.error("Only the segment files can be split in shards, no file was indexed.");
+            return false;
+        }
 
-        Thread[] threads = initializeThreads(listOfFiles, stopWordsSet);
-        waitForThreads(threads);
+        if (folder.isFile()) {
+            LOGGER.error("Archive {} cannot be split in shards, no file was indexed.",
+                    folder.getName());
+            return false;
+        }
+
+        if (config.getShard() >= config.getShardCount()) {
+            LOGGER.error("There is no shard {} of {}, no file was indexed.",
+                    config.getShard(), config.getShardCount());
+            return false;
+        }
 
-        LOGGER.info("Index finished.");
+        return true;
     }
 
     /**
-     * Starts the threads that will index the files.
+     * Writes the index of all the files in segment files, replacing the
+     * segments of the previous indexation. If the index is split in shards,
+     * only the segments of the shards written are replaced.
      * @param listOfFiles array with the files to be indexed.
-     * @param stopWordsSet set of words to be ignored.
-     * @return an array with the threads created.
+     * @param stopWords the words to be ignored.
+     * @param config the options of the indexation.
      */
-    private static Thread[] initializeThreads(File[] listOfFiles,
-            Set<String> stopWordsSet) {
+    private static void indexSegments(File[] listOfFiles, StopWords stopWords,
+            IndexerConfiguration config) {
+
+        List<RawDocument> documents = IndexPlan.full(listOfFiles).getDocumentsToIndex();
+        int shardCount = config.getShardCount();
+
+        if (shardCount == 1) {
+            commitSegments(config.getSegmentFolder(),
+                    indexShard(documents, stopWords, config));
+        } else if (config.getShard() != IndexerConfiguration.ALL_SHARDS) {
+            IndexerConfiguration shardConfig = config.forShard(config.getShard());
+            commitSegments(shardConfig.getSegmentFolder(), indexShard(
+                    documentsOfShard(documents, config.getShard(), shardCount),
+                    stopWords, shardConfig));
+        } else {
+            indexShards(documents, stopWords, config);
+        }
+    }
+
+    /**
+     * Writes all the shards of the index at the same time, each one with its
+     * own pipeline and threads. The shards are committed once all of them
+     * are written, then the segments of a previous indexation that was not
+     * split, or split in more shards, are removed.
+     * @param documents the documents to be indexed.
+     * @param stopWords the words to be ignored.
+     * @param config the options of the indexation.
+     */
+    private static void indexShards(final List<RawDocument> documents,
+            final StopWords stopWords, final IndexerConfiguration config) {
+
+        final int shardCount = config.getShardCount();
+        final boolean[] indexed = new boolean[shardCount];
+        Thread[] threads = new Thread[shardCount];
+
+        for (int i = 0; i < shardCount; ++i) {
+            final int shard = i;
+
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    indexed[shard] = indexShard(documentsOfShard(documents, shard, shardCount),
+                            stopWords, config.forShard(shard));
+                }
+            }, "shard-" + shard);
+
+            threads[i].start();
+        }
 
-        Thread[] threads = new Thread[THREADS_NUM];
+        boolean complete = true;
 
-        for(int i = 0; i < threads.length; ++i){
-            threads[i] = new Thread(new IndexerRunnable(listOfFiles,stopWordsSet));
+        try {
+            for (int i = 0; i < shardCount; ++i) {
+                threads[i].join();
+                complete &= indexed[i];
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for the shards.", e);
+            Thread.currentThread().interrupt();
+            complete = false;
         }
 
-        for(Thread thread : threads){
-            thread.start();
+        for (int i = 0; i < shardCount; ++i) {
+            complete = commitSegments(SegmentDirectory.shardFolder(config.getSegmentFolder(), i),
+                    complete);
         }
 
-        return threads;
+        if (!complete) {
+            return;
+        }
+
+        new SegmentDirectory(config.getSegmentFolder()).clear();
+
+        for (SegmentDirectory shard : SegmentDirectory.openShards(config.getSegmentFolder())) {
+            if (SegmentDirectory.shardNumber(shard.getFolder()) >= shardCount) {
+                shard.clear();
+            }
+        }
     }
 
     /**
-     * Waits for all the threads to finish their job.
-     * @param threads the threads to wait.
+     * Writes the index of some documents in segment files, as a new
+     * generation of the segments of the folder of the options.
+     * @param documents the documents to be indexed.
+     * @param stopWords the words to be ignored.
+     * @param config the options of the indexation.
+     * @return true if all the documents were written.
      */
-    private static void waitForThreads(Thread[] threads) {
+    private static boolean indexShard(List<RawDocument> documents, StopWords stopWords,
+            IndexerConfiguration config) {
+
+        LOGGER.info("Index process started.");
+        return new IndexingPipeline(stopWords, config, false, new IndexCheckpoint(null))
+                .run(documents, false);
+    }
+
+    /**
+     * Replaces the segments of a folder by the new generation written by the
+     * indexation, or discards it if the indexation did not finish, so the
+     * searches keep the previous segments.
+     * @param folder the folder of the segments.
+     * @param indexed true if all the documents were written.
+     * @return true if the new generation was committed.
+     */
+    private static boolean commitSegments(File folder, boolean indexed) {
+
+        SegmentDirectory directory = new SegmentDirectory(folder);
+
+        if (!indexed) {
+            LOGGER.error("Index did not finish, the previous segments of {} are kept.",
+                    folder.getName());
+            directory.discardGeneration();
+            return false;
+        }
 
         try {
+            if (directory.commitGeneration()) {
+                LOGGER.info("Index finished.");
+                return true;
+            }
+
+            LOGGER.error("The new segments of {} were not written.", folder.getName());
+        } catch (IOException e) {
+            LOGGER.error("Could not replace the segments of " + folder.getName() + ".", e);
+        }
+
+        directory.discardGeneration();
+        return false;
+    }
+
+    /**
+     * Gets the documents of a shard: the ones whose ID modulo the number of
+     * shards is the number of the shard.
+     * @param documents all the documents.
+     * @param shard the number of the shard.
+     * @param shardCount the number of shards.
+     * @return the documents of the shard.
+     */
+    static List<RawDocument> documentsOfShard(List<RawDocument> documents, int shard,
+            int shardCount) {
 
-            for(Thread thread : threads){
-                thread.join();
+        List<RawDocument> result = new ArrayList<RawDocument>();
+
+        for (RawDocument document : documents) {
+            if (document.getDocumentId() % shardCount == shard) {
+                result.add(document);
             }
+        }
 
-        } catch (InterruptedException e) {
-            LOGGER.error("Main thread was interrupted while waiting for other threads.",e);
+        return result;
+    }
+
+    /**
+     * Writes the index of all the documents of an archive, streaming its
+     * entries into the parsers. It is always a full indexation, that cannot
+     * be resumed: the segments of the previous indexation are replaced, and
+     * the database must not have the documents yet.
+     * @param file the archive.
+     * @param stopWords the words to be ignored.
+     * @param config the options of the indexation.
+     */
+    private static void indexArchive(File file, StopWords stopWords,
+            IndexerConfiguration config) {
+
+        boolean database = config.getBackend() == IndexBackend.DATABASE;
+
+        if (database && config.isIncremental()) {
+            LOGGER.warn("Archive {} is indexed in full, not incrementally.", file.getName());
+        }
+
+        IndexingPipeline pipeline = new IndexingPipeline(stopWords, config,
+                database && config.isBulkLoad(), new IndexCheckpoint(null));
+
+        LOGGER.info("Index process of archive {} started.", file.getName());
+
+        try (ArchiveReader archive = ArchiveReader.open(file)) {
+
+            boolean indexed = pipeline.run(archive);
+
+            if (!database) {
+                commitSegments(config.getSegmentFolder(), indexed);
+            } else if (indexed) {
+                LOGGER.info("Index finished.");
+            } else {
+                LOGGER.error("Index of archive {} did not finish.", file.getName());
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Could not read archive " + file.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Skips the files already stored by an indexation that did not finish.
+     * @param listOfFiles array with the files in the folder.
+     * @return the plan with the documents to index, or null if the index
+     * could not be read.
+     */
+    private static IndexPlan planResume(File[] listOfFiles) {
+
+        DocumentDAO documentDAO = connect();
+
+        if (documentDAO == null) {
+            return null;
+        }
+
+        List<IndexedDocument> committed = documentDAO.getDocuments();
+        documentDAO.closeConnection();
+
+        return committed == null ? null : IndexPlan.resume(listOfFiles, committed);
+    }
+
+    /**
+     * Compares the files with the documents in the index. The documents of
+     * deleted files are removed and the fingerprints of touched files are
+     * updated.
+     * @param listOfFiles array with the files in the folder.
+     * @return the plan with the documents to index, or null if the index
+     * could not be read.
+     */
+    private static IndexPlan planChanges(File[] listOfFiles) {
+
+        DocumentDAO documentDAO = connect();
+
+        if (documentDAO == null) {
+            return null;
+        }
+
+        List<IndexedDocument> indexed = documentDAO.getDocuments();
+
+        if (indexed == null) {
+            documentDAO.closeConnection();
+            return null;
+        }
+
+        IndexPlan plan = IndexPlan.incremental(listOfFiles, indexed);
+
+        // The number of documents or the documents of some words change.
+        if (plan.changesIndex()) {
+            documentDAO.invalidateTfIdf();
+        }
+
+        for (IndexedDocument document : plan.getRemovedDocuments()) {
+            documentDAO.remove(document);
+        }
+
+        for (IndexedDocument document : plan.getTouchedDocuments()) {
+            documentDAO.updateFingerprint(document);
+        }
+
+        documentDAO.closeConnection();
+        return plan;
+    }
+
+    /**
+     * Connects to the documents of the index.
+     * @return the DAO, or null if there is no connection.
+     */
+    private static DocumentDAO connect() {
+
+        try {
+            return new DocumentDAO();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not connect to the database.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Indexes the documents using the set of words to be ignored.
+     * @param documents the documents to be indexed.
+     * @param indexChanged true if the tf-idf weights must be calculated again.
+     * @param stopWords the words to be ignored.
+     * @param pipeline the pipeline that indexes the documents.
+     */
+    private static void indexFiles(List<RawDocument> documents, boolean indexChanged,
+            StopWords stopWords, IndexingPipeline pipeline) {
+
+        LOGGER.entry(documents, stopWords);
+        LOGGER.info("Index process started.");
+
+        if (pipeline.run(documents, indexChanged)) {
+            LOGGER.info("Index finished.");
+        } else {
+            LOGGER.error("Index did not finish, it will be resumed by the next indexation.");
         }
     }
 }
@@ -0,0 +1,632 @@
+package model.indexation;
+
+import java.io.File;
+
+import model.database.dao.InverseFileDAO;
+import model.segment.SegmentDirectory;
+import model.segment.TieredMergePolicy;
+
+/**
+ * Options of the indexation process. A new object has the default value of
+ * each option.
+ * @see Indexer
+ */
+public class IndexerConfiguration implements Cloneable {
+
+    /** Shard of the processes that index all the shards. */
+    public static final int ALL_SHARDS = -1;
+
+    // Default number of threads storing documents, one connection each.
+    private static final int DEFAULT_STORE_THREADS = 10;
+
+    // Default file marking that an indexation is running.
+    private static final String DEFAULT_CHECKPOINT_FILE = "indexer.checkpoint";
+
+    // Default folder of the segment files.
+    private static final String DEFAULT_SEGMENT_FOLDER = "index";
+
+    // Default number of documents in each segment.
+    private static final int DEFAULT_SEGMENT_SIZE = 10000;
+
+    // Default memory for the postings not written yet, in megabytes.
+    private static final int DEFAULT_RAM_BUFFER_SIZE = 64;
+
+    // Default speed of the segment merges, in megabytes per second.
+    private static final int DEFAULT_MERGE_RATE = 32;
+
+    // Default number of characters of each document kept in the store.
+    private static final int DEFAULT_SNIPPET_LENGTH = 200;
+
+    // Default seconds between two summaries of the metrics in the log.
+    private static final int DEFAULT_METRICS_INTERVAL = 10;
+
+    // Default file of the aliases of the duplicates.
+    private static final String DEFAULT_ALIAS_FILE = "aliases.txt";
+
+    // Default number of documents waiting between two stages.
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private TokenizerMode tokenizerMode = TokenizerMode.JSOUP;
+    private int readerThreads = 1;
+    private int tokenizerThreads = Runtime.getRuntime().availableProcessors();
+    private int storeThreads = DEFAULT_STORE_THREADS;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int batchSize = InverseFileDAO.DEFAULT_BATCH_SIZE;
+    private int commitInterval = InverseFileDAO.DEFAULT_COMMIT_INTERVAL;
+    private boolean bulkLoad = false;
+    private boolean incremental = false;
+    private File checkpointFile = new File(DEFAULT_CHECKPOINT_FILE);
+    private IndexBackend backend = IndexBackend.DATABASE;
+    private File segmentFolder = new File(DEFAULT_SEGMENT_FOLDER);
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int ramBufferSize = DEFAULT_RAM_BUFFER_SIZE;
+    private boolean finalMerge = false;
+    private int mergeFactor = TieredMergePolicy.DEFAULT_MERGE_FACTOR;
+    private int mergeRate = DEFAULT_MERGE_RATE;
+    private boolean positions = false;
+    private File documentStoreFolder = null;
+    private int snippetLength = DEFAULT_SNIPPET_LENGTH;
+    private int metricsInterval = DEFAULT_METRICS_INTERVAL;
+    private DuplicateMode duplicateMode = DuplicateMode.KEEP;
+    private double duplicateThreshold = DuplicateDetector.DEFAULT_THRESHOLD;
+    private File aliasFile = new File(DEFAULT_ALIAS_FILE);
+    private int shardCount = 1;
+    private int shard = ALL_SHARDS;
+
+    /**
+     * Gets the way the HTML files are parsed.
+     * @return the mode of the tokenizer.
+     */
+    public TokenizerMode getTokenizerMode() {
+        return tokenizerMode;
+    }
+
+    /**
+     * Sets the way the HTML files are parsed. By default JSoup is used.
+     * @param tokenizerMode the mode of the tokenizer.
+     */
+    public void setTokenizerMode(TokenizerMode tokenizerMode) {
+        this.tokenizerMode = tokenizerMode;
+    }
+
+    /**
+     * Gets the number of threads reading the files.
+     * @return the number of threads.
+     */
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    /**
+     * Sets the number of threads reading the files. By default one.
+     * @param readerThreads the number of threads, at least one.
+     */
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = checkPositive(readerThreads, "reader threads");
+    }
+
+    /**
+     * Gets the number of threads parsing and tokenizing the files.
+     * @return the number of threads.
+     */
+    public int getTokenizerThreads() {
+        return tokenizerThreads;
+    }
+
+    /**
+     * Sets the number of threads parsing and tokenizing the files. By default
+     * the number of available processors.
+     * @param tokenizerThreads the number of threads, at least one.
+     */
+    public void setTokenizerThreads(int tokenizerThreads) {
+        this.tokenizerThreads = checkPositive(tokenizerThreads, "tokenizer threads");
+    }
+
+    /**
+     * Gets the number of threads storing the documents in the database.
+     * @return the number of threads.
+     */
+    public int getStoreThreads() {
+        return storeThreads;
+    }
+
+    /**
+     * Sets the number of threads storing the documents in the database. Each
+     * one opens its own connection. By default ten.
+     * @param storeThreads the number of threads, at least one.
+     */
+    public void setStoreThreads(int storeThreads) {
+        this.storeThreads = checkPositive(storeThreads, "store threads");
+    }
+
+    /**
+     * Gets the maximum number of documents waiting between two stages.
+     * @return the capacity of the queues.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of documents waiting between two stages. When a
+     * queue is full the stage before it waits. By default 64.
+     * @param queueCapacity the capacity of the queues, at least one.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = checkPositive(queueCapacity, "queue capacity");
+    }
+
+    /**
+     * Gets the number of rows sent to the database at once.
+     * @return the size of the batches.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of rows sent to the database at once. By default 1000.
+     * @param batchSize the size of the batches, at least one.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = checkPositive(batchSize, "batch size");
+    }
+
+    /**
+     * Gets the number of documents stored in each transaction.
+     * @return the number of documents.
+     */
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Sets the number of documents stored in each transaction. Each store
+     * thread keeps this many documents in memory before writing them. By
+     * default 50.
+     * @param commitInterval the number of documents, at least one.
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = checkPositive(commitInterval, "commit interval");
+    }
+
+    /**
+     * Tells if the index is loaded from scratch with the COPY protocol.
+     * @return true if bulk loading is used.
+     */
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    /**
+     * Sets if the index is loaded from scratch with the COPY protocol. This
+     * is meant to index all the documents again: the index in the database is
+     * deleted, and a single thread stores the documents, ignoring the number
+     * of store threads. By default the documents are inserted in batches.
+     * @param bulkLoad true to use bulk loading.
+     * @see model.database.dao.InverseFileBulkLoader
+     */
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    /**
+     * Tells if only the new and changed files are indexed.
+     * @return true if the indexation is incremental.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets if only the new and changed files are indexed. A file is taken as
+     * changed when the hash of its content changes; the hash is only computed
+     * when its size or modification time change. The documents of deleted
+     * files are removed and every file keeps its document ID. Ignored when
+     * bulk loading. By default all the files are indexed.
+     * @param incremental true to index only the new and changed files.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Gets the file marking that an indexation is running.
+     * @return the checkpoint file, null if checkpoints are disabled.
+     */
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Sets the file marking that an indexation is running. If it exists when
+     * an indexation starts, the previous one did not finish and it is
+     * resumed. By default "indexer.checkpoint" in the working directory.
+     * @param checkpointFile the checkpoint file, null to disable checkpoints.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Gets where the index is stored.
+     * @return the backend of the index.
+     */
+    public IndexBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Sets where the index is stored. With segment files every indexation
+     * writes the whole index again, the incremental mode, bulk loading and
+     * checkpoints only apply to the database. By default the database.
+     * @param backend the backend of the index.
+     */
+    public void setBackend(IndexBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Gets the folder of the segment files.
+     * @return the folder.
+     */
+    public File getSegmentFolder() {
+        return segmentFolder;
+    }
+
+    /**
+     * Sets the folder of the segment files. By default "index" in the working
+     * directory.
+     * @param segmentFolder the folder.
+     */
+    public void setSegmentFolder(File segmentFolder) {
+        this.segmentFolder = segmentFolder;
+    }
+
+    /**
+     * Gets the maximum number of documents in each segment.
+     * @return the number of documents.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the maximum number of documents in each segment. Each store thread
+     * keeps the postings of this many documents in memory before writing
+     * them, unless they reach the RAM buffer size first. By default 10000.
+     * @param segmentSize the number of documents, at least one.
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = checkPositive(segmentSize, "segment size");
+    }
+
+    /**
+     * Gets the memory for the postings collected and not written yet.
+     * @return the size in megabytes.
+     */
+    public int getRamBufferSize() {
+        return ramBufferSize;
+    }
+
+    /**
+     * Sets the memory for the postings collected and not written yet, shared
+     * by the store threads. When the postings of a thread reach its part, they
+     * are written as a segment, which is a sorted run merged later with the
+     * others, so the heap needed does not depend on the size of the corpus.
+     * By default 64 megabytes.
+     * @param ramBufferSize the size in megabytes, at least one.
+     */
+    public void setRamBufferSize(int ramBufferSize) {
+        this.ramBufferSize = checkPositive(ramBufferSize, "RAM buffer size");
+    }
+
+    /**
+     * Tells if all the segments are merged into one at the end.
+     * @return true if the segments are merged at the end.
+     */
+    public boolean isFinalMerge() {
+        return finalMerge;
+    }
+
+    /**
+     * Sets if all the segments are merged into one at the end of the
+     * indexation, so each search reads a single segment. The merge reads the
+     * segments and writes the new one sequentially. By default the segments
+     * are only merged by tiers while the documents are written.
+     * @param finalMerge true to merge all the segments at the end.
+     */
+    public void setFinalMerge(boolean finalMerge) {
+        this.finalMerge = finalMerge;
+    }
+
+    /**
+     * Gets the number of segments merged at once.
+     * @return the merge factor.
+     */
+    public int getMergeFactor() {
+        return mergeFactor;
+    }
+
+    /**
+     * Sets the number of segments merged at once. While the documents are
+     * written, as soon as there are this many segments of about the same
+     * size they are merged into a larger one in the background. A larger
+     * factor merges less often but leaves more segments to read. By default
+     * ten.
+     * @param mergeFactor the merge factor, at least two.
+     * @see TieredMergePolicy
+     */
+    public void setMergeFactor(int mergeFactor) {
+
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("The merge factor must be at least two.");
+        }
+
+        this.mergeFactor = mergeFactor;
+    }
+
+    /**
+     * Gets the maximum speed at which the merges read the segments.
+     * @return the speed in megabytes per second.
+     */
+    public int getMergeRate() {
+        return mergeRate;
+    }
+
+    /**
+     * Sets the maximum speed at which the merges read the segments, so they
+     * do not slow down the searches. By default 32 megabytes per second.
+     * @param mergeRate the speed in megabytes per second, at least one.
+     */
+    public void setMergeRate(int mergeRate) {
+        this.mergeRate = checkPositive(mergeRate, "merge rate");
+    }
+
+    /**
+     * Tells if the positions of the words are stored.
+     * @return true if the positions are stored.
+     */
+    public boolean isPositions() {
+        return positions;
+    }
+
+    /**
+     * Sets if the positions of the words in the body of each document are
+     * stored, so the searcher can find phrases. Only the segment files store
+     * them, the database ignores this option. The positions make the
+     * segments larger. By default they are not stored.
+     * @param positions true to store the positions.
+     */
+    public void setPositions(boolean positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Gets the folder of the document store.
+     * @return the folder, null if no store is written.
+     */
+    public File getDocumentStoreFolder() {
+        return documentStoreFolder;
+    }
+
+    /**
+     * Sets the folder of the document store, where the title and the first
+     * characters of the text of each document are kept so the searcher can
+     * show them without reading the files again. An incremental or resumed
+     * indexation adds its documents to the store, any other one writes it
+     * again. By default no store is written.
+     * @param documentStoreFolder the folder, null to not write a store.
+     * @see model.store.DocumentStore
+     */
+    public void setDocumentStoreFolder(File documentStoreFolder) {
+        this.documentStoreFolder = documentStoreFolder;
+    }
+
+    /**
+     * Gets the number of characters of the text of each document kept in
+     * the document store.
+     * @return the number of characters.
+     */
+    public int getSnippetLength() {
+        return snippetLength;
+    }
+
+    /**
+     * Sets the number of characters at the start of the text of each
+     * document kept in the document store, not counting the title. By default
+     * 200.
+     * @param snippetLength the number of characters, zero to keep only the
+     * title.
+     */
+    public void setSnippetLength(int snippetLength) {
+
+        if (snippetLength < 0) {
+            throw new IllegalArgumentException("The snippet length must not be negative.");
+        }
+
+        this.snippetLength = snippetLength;
+    }
+
+    /**
+     * Gets the time between two summaries of the metrics in the log.
+     * @return the time in seconds, 0 if only the final summary is logged.
+     */
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * Sets the time between two summaries of the metrics of the indexation
+     * in the log. The metrics can also be read over JMX at any time. By
+     * default 10 seconds.
+     * @param metricsInterval the time in seconds, zero to log only the final
+     * summary.
+     * @see IndexingMetrics
+     */
+    public void setMetricsInterval(int metricsInterval) {
+
+        if (metricsInterval < 0) {
+            throw new IllegalArgumentException("The metrics interval must not be negative.");
+        }
+
+        this.metricsInterval = metricsInterval;
+    }
+
+    /**
+     * Gets what is done with the near-duplicate documents.
+     * @return the mode.
+     */
+    public DuplicateMode getDuplicateMode() {
+        return duplicateMode;
+    }
+
+    /**
+     * Sets what is done with the documents nearly identical to a document
+     * already indexed in the same indexation. Not indexing them makes the
+     * index smaller and keeps the copies of a page out of the results. In an
+     * incremental indexation only the new and changed files are compared,
+     * with each other: a changed file that duplicates a document left in the
+     * index is indexed, and a changed file that duplicates a new or changed
+     * one is removed from the index. By default every document is indexed.
+     * @param duplicateMode the mode.
+     * @see DuplicateDetector
+     */
+    public void setDuplicateMode(DuplicateMode duplicateMode) {
+        this.duplicateMode = duplicateMode;
+    }
+
+    /**
+     * Gets the similarity above which a document is a duplicate.
+     * @return the similarity, between 0 and 1.
+     */
+    public double getDuplicateThreshold() {
+        return duplicateThreshold;
+    }
+
+    /**
+     * Sets the similarity above which a document is a duplicate of another
+     * one: the part of the different words of the two documents that are in
+     * both. By default 0.9.
+     * @param duplicateThreshold the similarity, more than 0 and at most 1.
+     */
+    public void setDuplicateThreshold(double duplicateThreshold) {
+
+        if (!(duplicateThreshold > 0 && duplicateThreshold <= 1)) {
+            throw new IllegalArgumentException(
+                    "The duplicate threshold must be more than 0 and at most 1.");
+        }
+
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    /**
+     * Gets the file where the aliases of the duplicates are written.
+     * @return the file.
+     */
+    public File getAliasFile() {
+        return aliasFile;
+    }
+
+    /**
+     * Sets the file where the names of the duplicates are written as aliases
+     * of the document they duplicate, with {@link DuplicateMode#ALIAS}. An
+     * incremental or resumed indexation adds its aliases to the file, any
+     * other one writes it again. By default aliases.txt.
+     * @param aliasFile the file.
+     * @see DocumentAliases
+     */
+    public void setAliasFile(File aliasFile) {
+        this.aliasFile = aliasFile;
+    }
+
+    /**
+     * Gets the number of shards the documents are split in.
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Sets the number of shards the documents are split in, by document ID:
+     * the shard of a document is its ID modulo the number of shards. Each
+     * shard has the segments of its documents in its own subfolder of the
+     * segment folder, and is written by its own pipeline, with the threads
+     * of this configuration. The searcher reads all the shards as one index.
+     * Only the segment files can be split. By default one shard.
+     * @param shardCount the number of shards, at least one.
+     * @see #setShard(int)
+     * @see SegmentDirectory#openShards(File)
+     */
+    public void setShardCount(int shardCount) {
+        this.shardCount = checkPositive(shardCount, "shard count");
+    }
+
+    /**
+     * Gets the shard written by this indexation.
+     * @return the number of the shard, or {@link #ALL_SHARDS}.
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Sets the shard written by this indexation, so each shard can be
+     * written by a different process at the same time. By default all the
+     * shards are written at the same time by this process.
+     * @param shard the number of the shard, less than the number of shards,
+     * or {@link #ALL_SHARDS}.
+     * @see ShardIndexer
+     */
+    public void setShard(int shard) {
+
+        if (shard < ALL_SHARDS) {
+            throw new IllegalArgumentException("The shard must not be negative.");
+        }
+
+        this.shard = shard;
+    }
+
+    /**
+     * Gets the options of the indexation of a shard: the segments and the
+     * document store of the shard are in its own subfolder, and its aliases
+     * in its own file.
+     * @param number the number of the shard.
+     * @return a copy of these options for the shard.
+     */
+    IndexerConfiguration forShard(int number) {
+
+        IndexerConfiguration config;
+
+        try {
+            config = (IndexerConfiguration) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+
+        config.shard = number;
+        config.segmentFolder = SegmentDirectory.shardFolder(segmentFolder, number);
+
+        if (documentStoreFolder != null) {
+            config.documentStoreFolder =
+                    SegmentDirectory.shardFolder(documentStoreFolder, number);
+        }
+
+        // The aliases of shard 0 of index/aliases.txt are in index/shard-0-aliases.txt.
+        File aliasFolder = aliasFile.getAbsoluteFile().getParentFile();
+        config.aliasFile = new File(SegmentDirectory.shardFolder(aliasFolder, number).getPath()
+                + "-" + aliasFile.getName());
+
+        return config;
+    }
+
+    private static int checkPositive(int value, String name) {
+
+        if (value < 1) {
+            throw new IllegalArgumentException("The " + name + " must be positive.");
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,314 @@
+package model.indexation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Live metrics of an indexation: throughput, depth of the channels between
+ * the stages and latency of each stage. They are published over JMX while
+ * the indexation runs, and stay there until the next one starts, and a
+ * summary is logged periodically.
+ * @see IndexingPipeline
+ */
+public class IndexingMetrics implements IndexingMetricsMBean {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Name of the metrics of the last indexation in the platform MBean server. */
+    public static final String OBJECT_NAME = "model.indexation:type=IndexingMetrics";
+
+    /**
+     * Key added to the name of the metrics of the indexation of a shard, with
+     * the number of the shard.
+     */
+    public static final String SHARD_KEY = "shard";
+
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final String objectName;
+    private final long startTime = System.nanoTime();
+    private volatile long endTime = -1;
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram tokenize = new LatencyHistogram();
+    private final LatencyHistogram store = new LatencyHistogram();
+
+    // Channels before the parsers and before the store workers.
+    private volatile PipelineChannel<?> parseQueue;
+    private volatile PipelineChannel<?> storeQueue;
+
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Creates the metrics of an indexation, published with the name
+     * {@value #OBJECT_NAME}.
+     */
+    IndexingMetrics() {
+        this(OBJECT_NAME);
+    }
+
+    /**
+     * Creates the metrics of an indexation.
+     * @param objectName the name of the metrics in the MBean server.
+     */
+    IndexingMetrics(String objectName) {
+        this.objectName = objectName;
+    }
+
+    /**
+     * Sets the channels whose depth is reported.
+     * @param parseQueue the channel of the documents waiting for a parser.
+     * @param storeQueue the channel of the inverse files waiting to be stored.
+     */
+    void watch(PipelineChannel<?> parseQueue, PipelineChannel<?> storeQueue) {
+        this.parseQueue = parseQueue;
+        this.storeQueue = storeQueue;
+    }
+
+    /**
+     * Records a document that has been parsed and tokenized.
+     * @param size size of the document in bytes.
+     * @param parseTime time spent parsing it, in nanoseconds.
+     * @param tokenizeTime time spent tokenizing it, in nanoseconds.
+     */
+    void documentParsed(long size, long parseTime, long tokenizeTime) {
+        documents.incrementAndGet();
+        bytes.addAndGet(size);
+        parse.record(parseTime);
+        tokenize.record(tokenizeTime);
+    }
+
+    /**
+     * Records a document that is not indexed because it duplicates another
+     * one.
+     */
+    void documentDuplicated() {
+        duplicates.incrementAndGet();
+    }
+
+    /**
+     * Records the time spent storing a document.
+     * @param time the time in nanoseconds.
+     */
+    void documentStored(long time) {
+        store.record(time);
+    }
+
+    /**
+     * Adds requests sent to the database.
+     * @param count the number of round trips.
+     */
+    void addRoundTrips(long count) {
+        roundTrips.addAndGet(count);
+    }
+
+    /**
+     * Publishes the metrics over JMX, replacing the ones of the previous
+     * indexation, and starts logging a summary periodically.
+     * @param interval seconds between two summaries, 0 to not log them.
+     */
+    synchronized void start(int interval) {
+
+        register();
+
+        if (interval > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "indexing-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    LOGGER.info(getSummary());
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the clock and the periodic summaries, and logs the last summary.
+     * The metrics stay published.
+     */
+    synchronized void finish() {
+
+        endTime = System.nanoTime();
+
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+
+        LOGGER.info(getSummary());
+    }
+
+    private void register() {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName(objectName);
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.error("Could not publish the indexing metrics.", e);
+        }
+    }
+
+    /**
+     * Gets a line with the main metrics, for the log.
+     * @return the summary.
+     */
+    public String getSummary() {
+        return String.format(Locale.ROOT, "Indexed %d documents (%.1f MB) in %.1f s: "
+                + "%.1f documents/s, %.2f MB/s. Queues: %d to parse, %d to store. "
+                + "p50/p99 ms: parse %.2f/%.2f, tokenize %.2f/%.2f, store %.2f/%.2f. "
+                + "%d duplicates, %d database round trips.",
+                getDocuments(), getBytes() / BYTES_PER_MEGABYTE, getElapsedSeconds(),
+                getDocumentsPerSecond(), getBytesPerSecond() / BYTES_PER_MEGABYTE,
+                getParseQueueDepth(), getStoreQueueDepth(),
+                getParseP50Millis(), getParseP99Millis(),
+                getTokenizeP50Millis(), getTokenizeP99Millis(),
+                getStoreP50Millis(), getStoreP99Millis(), getDuplicates(),
+                getDatabaseRoundTrips());
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        long end = endTime;
+        return ((end < 0 ? System.nanoTime() : end) - startTime) / NANOS_PER_SECOND;
+    }
+
+    @Override
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public double getDocumentsPerSecond() {
+        return rate(getDocuments());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return rate(getBytes());
+    }
+
+    private double rate(long count) {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    @Override
+    public int getParseQueueDepth() {
+        PipelineChannel<?> queue = parseQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public int getStoreQueueDepth() {
+        PipelineChannel<?> queue = storeQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public double getParseMeanMillis() {
+        return parse.getMeanMillis();
+    }
+
+    @Override
+    public double getParseP50Millis() {
+        return parse.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getParseP99Millis() {
+        return parse.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getParseMaxMillis() {
+        return parse.getMaxMillis();
+    }
+
+    @Override
+    public double getTokenizeMeanMillis() {
+        return tokenize.getMeanMillis();
+    }
+
+    @Override
+    public double getTokenizeP50Millis() {
+        return tokenize.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getTokenizeP99Millis() {
+        return tokenize.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getTokenizeMaxMillis() {
+        return tokenize.getMaxMillis();
+    }
+
+    @Override
+    public double getStoreMeanMillis() {
+        return store.getMeanMillis();
+    }
+
+    @Override
+    public double getStoreP50Millis() {
+        return store.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getStoreP99Millis() {
+        return store.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getStoreMaxMillis() {
+        return store.getMaxMillis();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    @Override
+    public long getDatabaseRoundTrips() {
+        return roundTrips.get();
+    }
+}
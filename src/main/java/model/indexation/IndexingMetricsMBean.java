@@ -0,0 +1,90 @@
+package model.indexation;
+
+/**
+ * Management interface of the metrics of the indexation, read over JMX with
+ * the name {@value IndexingMetrics#OBJECT_NAME}. The latencies are in
+ * milliseconds, the percentiles rounded up to a power of two microseconds.
+ * @see IndexingMetrics
+ */
+public interface IndexingMetricsMBean {
+
+    /**
+     * Gets the time since the indexation started.
+     * @return the time in seconds.
+     */
+    double getElapsedSeconds();
+
+    /**
+     * Gets the number of documents parsed.
+     * @return the number of documents.
+     */
+    long getDocuments();
+
+    /**
+     * Gets the size of the documents parsed.
+     * @return the size in bytes.
+     */
+    long getBytes();
+
+    /**
+     * Gets the mean rate at which the documents are parsed.
+     * @return the documents per second.
+     */
+    double getDocumentsPerSecond();
+
+    /**
+     * Gets the mean rate at which the bytes of the documents are parsed.
+     * @return the bytes per second.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Gets the number of documents read and waiting for a parser.
+     * @return the number of documents.
+     */
+    int getParseQueueDepth();
+
+    /**
+     * Gets the number of inverse files waiting to be stored.
+     * @return the number of inverse files.
+     */
+    int getStoreQueueDepth();
+
+    double getParseMeanMillis();
+
+    double getParseP50Millis();
+
+    double getParseP99Millis();
+
+    double getParseMaxMillis();
+
+    double getTokenizeMeanMillis();
+
+    double getTokenizeP50Millis();
+
+    double getTokenizeP99Millis();
+
+    double getTokenizeMaxMillis();
+
+    double getStoreMeanMillis();
+
+    double getStoreP50Millis();
+
+    double getStoreP99Millis();
+
+    double getStoreMaxMillis();
+
+    /**
+     * Gets the number of documents parsed but not indexed because they are
+     * near-duplicates of another document.
+     * @return the number of documents.
+     */
+    long getDuplicates();
+
+    /**
+     * Gets the number of requests sent to the database to store the
+     * documents: batches, commits and loads.
+     * @return the number of round trips, 0 with the segment files.
+     */
+    long getDatabaseRoundTrips();
+}
@@ -0,0 +1,850 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.database.dao.DocumentDAO;
+import model.database.dao.InverseFileBulkLoader;
+import model.database.dao.InverseFileDAO;
+import model.database.dao.TermDictionaryDAO;
+import model.segment.SegmentDirectory;
+import model.segment.SegmentMerger;
+import model.segment.SegmentWriter;
+import model.segment.TieredMergePolicy;
+import model.store.DocumentStoreWriter;
+
+/**
+ * Indexes documents in three stages: the files are read, then parsed and
+ * tokenized, and finally the inverse files are stored in the database. Each
+ * stage has its own threads and the stages are connected by bounded channels,
+ * so the parsers keep working while the database is slow and only a limited
+ * number of documents wait in memory. The throughput of the stages is
+ * measured while they run.
+ * @see PipelineStage
+ * @see IndexingMetrics
+ * @see IndexerConfiguration
+ */
+class IndexingPipeline {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // Bytes in a megabyte, for the merge rate.
+    private static final long MEGABYTE = 1024 * 1024;
+
+    // Elements telling the workers there are no more documents.
+    private static final RawDocument NO_DOCUMENT = new RawDocument(-1, null);
+    private static final InverseFile NO_INVERSE_FILE = new InverseFile(-1, null);
+
+    private final StopWords stopWords;
+    private final IndexerConfiguration config;
+    private final boolean bulkLoad;
+    private final IndexCheckpoint checkpoint;
+
+    // IDs of the words, shared by all the store threads.
+    private final TermDictionary dictionary = new TermDictionary();
+
+    /**
+     * Creates a pipeline.
+     * @param stopWords the words to be ignored.
+     * @param config the number of threads of each stage and the size of the
+     * channels.
+     * @param bulkLoad true to load the index with the COPY protocol.
+     * @param checkpoint the checkpoint of the indexation.
+     */
+    IndexingPipeline(StopWords stopWords, IndexerConfiguration config,
+            boolean bulkLoad, IndexCheckpoint checkpoint) {
+        this.stopWords = stopWords;
+        this.config = config;
+        this.bulkLoad = bulkLoad;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Indexes the documents and waits until all of them are stored. In the
+     * database, the tf-idf weights are then calculated again if the index
+     * changed. The segment files are written as a new generation of the
+     * index, that the caller commits.
+     * @param documents the documents to be indexed, not read yet.
+     * @param indexChanged true if the tf-idf weights of the index are not up
+     * to date, even if there are no documents to index.
+     * @return true if all the threads finished their job and all the
+     * documents read were stored. Otherwise the checkpoint is kept, so the
+     * indexation can be resumed.
+     */
+    boolean run(List<RawDocument> documents, boolean indexChanged) {
+        return run(documents, null, indexChanged);
+    }
+
+    /**
+     * Indexes all the documents of an archive and waits until all of them are
+     * stored. A single thread reads the entries in their order and puts them
+     * in the bounded channel of the parsers, so only the documents waiting
+     * there are in memory. In the database, the tf-idf weights are then
+     * calculated again.
+     * @param archive the archive, not read yet.
+     * @return true if the whole archive was read and all the threads finished
+     * their job.
+     */
+    boolean run(ArchiveReader archive) {
+        return run(Collections.<RawDocument>emptyList(), archive, true);
+    }
+
+    private boolean run(List<RawDocument> documents, ArchiveReader archive,
+            boolean indexChanged) {
+
+        int readers = config.getReaderThreads();
+        int tokenizers = config.getTokenizerThreads();
+        int storers = bulkLoad ? 1 : config.getStoreThreads();
+        int capacity = config.getQueueCapacity();
+
+        boolean database = config.getBackend() == IndexBackend.DATABASE;
+        // The previous segments are kept until the new ones are committed.
+        SegmentDirectory segments = database ? null
+                : SegmentDirectory.newGeneration(config.getSegmentFolder());
+
+        // A bulk load starts from an empty index, unless it is resumed.
+        if (database && (!bulkLoad || checkpoint.isResuming()) && !loadDictionary()) {
+            LOGGER.error("The words of the index are unknown, no file was indexed.");
+            return false;
+        }
+
+        checkpoint.start(bulkLoad);
+
+        SegmentMerger merger = database ? null : new SegmentMerger(segments,
+                new TieredMergePolicy(config.getMergeFactor(),
+                        TieredMergePolicy.DEFAULT_MAX_MERGED_DOCUMENTS),
+                config.getMergeRate() * MEGABYTE);
+
+        PipelineChannel<RawDocument> files =
+                new PipelineChannel<RawDocument>(0, NO_DOCUMENT, readers);
+        PipelineChannel<RawDocument> contents =
+                new PipelineChannel<RawDocument>(capacity, NO_DOCUMENT, tokenizers);
+        PipelineChannel<InverseFile> inverseFiles =
+                new PipelineChannel<InverseFile>(capacity, NO_INVERSE_FILE, storers);
+
+        try {
+            for (RawDocument document : documents) {
+                files.put(document);
+            }
+
+            files.close();
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while listing the files to index.", e);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        boolean full = archive != null;
+        DocumentStoreWriter documentStore = openDocumentStore(database, full);
+        DuplicateDetector duplicates = config.getDuplicateMode() == DuplicateMode.KEEP ? null
+                : new DuplicateDetector(config.getDuplicateThreshold());
+        DocumentAliases aliases = config.getDuplicateMode() == DuplicateMode.ALIAS
+                ? readAliases(database, full) : null;
+        // The previous postings of a changed file that is now a duplicate.
+        List<IndexedDocument> skipped = duplicates != null && isAppending(database, full)
+                ? Collections.synchronizedList(new ArrayList<IndexedDocument>()) : null;
+        IndexingMetrics metrics = new IndexingMetrics(sharded()
+                ? IndexingMetrics.OBJECT_NAME + "," + IndexingMetrics.SHARD_KEY + "="
+                        + config.getShard()
+                : IndexingMetrics.OBJECT_NAME);
+        String prefix = sharded() ? "shard-" + config.getShard() + "-" : "";
+        metrics.watch(contents, inverseFiles);
+
+        // The entries of an archive can only be read one after the other.
+        ArchiveStage archiveStage = archive == null ? null
+                : new ArchiveStage(archive, contents);
+        int readThreads = archive == null ? readers : 1;
+
+        Thread[] threads = new Thread[readThreads + tokenizers + storers];
+        AtomicInteger runningReaders = new AtomicInteger(readers);
+        AtomicInteger runningTokenizers = new AtomicInteger(tokenizers);
+        AtomicInteger runningStorers = new AtomicInteger(storers);
+        // Set when documents could not be stored, so the run is resumed.
+        AtomicBoolean storeFailed = new AtomicBoolean(false);
+        int next = 0;
+
+        if (archiveStage != null) {
+            threads[next++] = new Thread(archiveStage, prefix + "archive-reader");
+        } else {
+            for (int i = 0; i < readers; ++i) {
+                threads[next++] = new Thread(
+                        new ReadStage(files, contents, runningReaders), prefix + "reader-" + i);
+            }
+        }
+
+        for (int i = 0; i < tokenizers; ++i) {
+            threads[next++] = new Thread(new TokenizeStage(contents, inverseFiles,
+                    runningTokenizers, stopWords, config,
+                    config.isPositions() && !database, isHashing(database),
+                    documentStore, duplicates, aliases, skipped, metrics),
+                    prefix + "tokenizer-" + i);
+        }
+
+        for (int i = 0; i < storers; ++i) {
+            PipelineStage<InverseFile, Void> stage;
+
+            if (!database) {
+                stage = new SegmentStage(inverseFiles, runningStorers, segments,
+                        merger, config.getSegmentSize(),
+                        config.getRamBufferSize() * MEGABYTE / storers, metrics,
+                        storeFailed);
+            } else if (bulkLoad) {
+                stage = new BulkLoadStage(inverseFiles, runningStorers, dictionary,
+                        config.getCommitInterval(), checkpoint, metrics, storeFailed);
+            } else {
+                stage = new StoreStage(inverseFiles, runningStorers, dictionary,
+                        config.getBatchSize(), config.getCommitInterval(), metrics,
+                        storeFailed);
+            }
+
+            threads[next++] = new Thread(stage, prefix + "store-" + i);
+        }
+
+        if (merger != null) {
+            merger.start();
+        }
+
+        metrics.start(config.getMetricsInterval());
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        boolean finished = waitForThreads(threads);
+        metrics.finish();
+
+        if (merger != null) {
+            merger.close();
+
+            if (finished && config.isFinalMerge() && !merger.forceMerge()) {
+                LOGGER.error("Could not merge the segments into one.");
+            }
+        }
+
+        if (documentStore != null) {
+            closeDocumentStore(documentStore);
+        }
+
+        if (duplicates != null) {
+            LOGGER.info("{} near-duplicate documents were not indexed.",
+                    duplicates.getDuplicateCount());
+        }
+
+        if (aliases != null) {
+            writeAliases(aliases);
+        }
+
+        if (skipped != null && !skipped.isEmpty()) {
+            removeDocuments(skipped);
+        }
+
+        if (storeFailed.get()) {
+            LOGGER.error("Some documents could not be stored.");
+            return false;
+        }
+
+        if (!finished || (archiveStage != null && !archiveStage.isComplete())) {
+            return false;
+        }
+
+        if (database && indexChanged
+                && !new TfIdfFinalizer(config.getStoreThreads()).run(dictionary.size())) {
+            return false;
+        }
+
+        checkpoint.finish();
+        return true;
+    }
+
+    /**
+     * Tells if this pipeline writes a shard of the index.
+     */
+    private boolean sharded() {
+        return config.getShard() != IndexerConfiguration.ALL_SHARDS;
+    }
+
+    /**
+     * Opens the document store. The documents already stored are kept when
+     * only some documents are indexed.
+     * @param database true if the index is in the database.
+     * @param full true if all the documents are indexed whatever the options.
+     * @return the writer of the store, or null if there is no store or it
+     * could not be opened.
+     */
+    private DocumentStoreWriter openDocumentStore(boolean database, boolean full) {
+
+        File folder = config.getDocumentStoreFolder();
+
+        if (folder == null) {
+            return null;
+        }
+
+        try {
+            return new DocumentStoreWriter(folder, isAppending(database, full));
+        } catch (IOException e) {
+            LOGGER.error("Could not open the document store, the fields are not stored.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Tells if the documents indexed are added to the ones already indexed,
+     * so the files describing them are kept.
+     * @param database true if the index is in the database.
+     * @param full true if all the documents are indexed whatever the options.
+     * @return true if the documents are added.
+     */
+    private boolean isAppending(boolean database, boolean full) {
+        return !full && database && (checkpoint.isResuming()
+                || (config.isIncremental() && !bulkLoad));
+    }
+
+    /**
+     * Tells if the content of the documents is hashed. Only an incremental
+     * indexation compares the hashes, to know if a touched file changed.
+     * @param database true if the index is in the database.
+     * @return true if the hashes are stored with the documents.
+     */
+    private boolean isHashing(boolean database) {
+        return database && (config.isIncremental() || checkpoint.isResuming());
+    }
+
+    /**
+     * Reads the aliases of the duplicates already found when only some
+     * documents are indexed.
+     * @param database true if the index is in the database.
+     * @param full true if all the documents are indexed whatever the options.
+     * @return the aliases, empty if the previous ones could not be read.
+     */
+    private DocumentAliases readAliases(boolean database, boolean full) {
+
+        if (!isAppending(database, full)) {
+            return new DocumentAliases();
+        }
+
+        try {
+            return DocumentAliases.read(config.getAliasFile());
+        } catch (IOException e) {
+            LOGGER.error("Could not read the aliases, the previous ones are lost.", e);
+            return new DocumentAliases();
+        }
+    }
+
+    /**
+     * Writes the aliases of the duplicates found.
+     * @param aliases the aliases.
+     */
+    private void writeAliases(DocumentAliases aliases) {
+
+        try {
+            aliases.write(config.getAliasFile());
+        } catch (IOException e) {
+            LOGGER.error("Could not write the aliases of the duplicates.", e);
+        }
+    }
+
+    /**
+     * Writes the index of the document store, so the searcher can read the
+     * new documents.
+     * @param documentStore the writer of the store.
+     */
+    private static void closeDocumentStore(DocumentStoreWriter documentStore) {
+
+        try {
+            documentStore.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not write the document store.", e);
+        }
+    }
+
+    /**
+     * Removes from the database the documents of the files that were indexed
+     * before and are now skipped as duplicates.
+     * @param documents the documents to remove.
+     */
+    private static void removeDocuments(List<IndexedDocument> documents) {
+
+        try {
+            DocumentDAO documentDAO = new DocumentDAO();
+
+            for (IndexedDocument document : documents) {
+                documentDAO.remove(document);
+            }
+
+            documentDAO.closeConnection();
+
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not connect to the database, "
+                    + documents.size() + " duplicates keep their previous postings.", e);
+        }
+    }
+
+    /**
+     * Reads the words already in the index, so the new words take other IDs.
+     * @return true if the words were read.
+     */
+    private boolean loadDictionary() {
+
+        try {
+            TermDictionaryDAO dictionaryDAO = new TermDictionaryDAO();
+            boolean loaded = dictionaryDAO.load(dictionary);
+            dictionaryDAO.closeConnection();
+            return loaded;
+
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not connect to the database.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits for all the threads to finish their job.
+     * @param threads the threads to wait.
+     * @return true if all the threads finished.
+     */
+    private static boolean waitForThreads(Thread[] threads) {
+
+        try {
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+        } catch (InterruptedException e) {
+            LOGGER.error("Main thread was interrupted while waiting for other threads.", e);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the files of the documents.
+     */
+    private static class ReadStage extends PipelineStage<RawDocument, RawDocument> {
+
+        ReadStage(PipelineChannel<RawDocument> input,
+                PipelineChannel<RawDocument> output, AtomicInteger running) {
+            super(input, output, running);
+        }
+
+        @Override
+        RawDocument process(RawDocument document) {
+
+            LOGGER.debug("Indexing file: {}.", document.getName());
+
+            try {
+                return document.read();
+            } catch (IOException e) {
+                LOGGER.error("Could not parse file " + document.getName() + ".", e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads the documents of an archive, taking the place of the read stage.
+     * It closes the channel of the parsers when the archive ends or cannot be
+     * read any more.
+     */
+    private static class ArchiveStage implements Runnable {
+
+        private final ArchiveReader archive;
+        private final PipelineChannel<RawDocument> output;
+        private volatile boolean complete = false;
+
+        ArchiveStage(ArchiveReader archive, PipelineChannel<RawDocument> output) {
+            this.archive = archive;
+            this.output = output;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                RawDocument document = archive.next();
+
+                while (document != null) {
+                    LOGGER.debug("Indexing file: {}.", document.getName());
+                    output.put(document);
+                    document = archive.next();
+                }
+
+                complete = true;
+
+            } catch (IOException e) {
+                LOGGER.error("Could not read the archive, its next documents are not indexed.", e);
+            } catch (InterruptedException e) {
+                LOGGER.error("Indexing thread was interrupted.", e);
+                Thread.currentThread().interrupt();
+            } finally {
+                closeOutput();
+            }
+        }
+
+        /**
+         * Tells if all the entries of the archive were read.
+         * @return true if the archive was read to its end.
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        private void closeOutput() {
+
+            try {
+                output.close();
+            } catch (InterruptedException e) {
+                LOGGER.error("Indexing thread was interrupted while finishing.", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Parses the documents and builds their inverse files. Each worker has its
+     * own tokenizer.
+     */
+    private static class TokenizeStage extends PipelineStage<RawDocument, InverseFile> {
+
+        private final HtmlTokenizer tokenizer;
+        // False if only the attributes of the files are stored.
+        private final boolean hashing;
+        // Null if no document store is written.
+        private final DocumentStoreWriter documentStore;
+        // Null if the duplicates are indexed, and if their aliases are not kept.
+        private final DuplicateDetector duplicates;
+        private final DocumentAliases aliases;
+        // Null unless the documents are added to the ones in the database.
+        private final List<IndexedDocument> skipped;
+        private final IndexingMetrics metrics;
+
+        // Time spent by this worker, in nanoseconds.
+        private long parseTotal = 0;
+        private long tokenizeTotal = 0;
+
+        TokenizeStage(PipelineChannel<RawDocument> input,
+                PipelineChannel<InverseFile> output, AtomicInteger running,
+                StopWords stopWords, IndexerConfiguration config, boolean positions,
+                boolean hashing, DocumentStoreWriter documentStore,
+                DuplicateDetector duplicates, DocumentAliases aliases,
+                List<IndexedDocument> skipped, IndexingMetrics metrics) {
+            super(input, output, running);
+            this.tokenizer = HtmlTokenizer.create(config.getTokenizerMode(), stopWords);
+            this.tokenizer.setPositions(positions);
+            this.hashing = hashing;
+            this.documentStore = documentStore;
+            this.duplicates = duplicates;
+            this.aliases = aliases;
+            this.skipped = skipped;
+            this.metrics = metrics;
+
+            if (documentStore != null) {
+                this.tokenizer.setSnippetLength(config.getSnippetLength());
+            }
+        }
+
+        @Override
+        InverseFile process(RawDocument document) {
+
+            LOGGER.debug("Creating inverse file for document {}.", document.getName());
+
+            int size = document.getContent().remaining();
+            InverseFile invFile;
+
+            try {
+                invFile = tokenizer.tokenize(document.getContent(),
+                        document.getDocumentId(), document.getName());
+                invFile.setFingerprint(hashing ? document.getFingerprint()
+                        : document.getAttributes());
+            } finally {
+                // The tokenizers copy the bytes they read.
+                document.release();
+            }
+
+            parseTotal += tokenizer.getParseTime();
+            tokenizeTotal += tokenizer.getTokenizeTime();
+            metrics.documentParsed(size, tokenizer.getParseTime(), tokenizer.getTokenizeTime());
+
+            LOGGER.debug("Document {} parsed in {} ms and tokenized in {} ms.",
+                    document.getName(), toMillis(tokenizer.getParseTime()),
+                    toMillis(tokenizer.getTokenizeTime()));
+
+            if (duplicates != null && isDuplicate(invFile)) {
+                return null;
+            }
+
+            if (documentStore != null) {
+                storeFields(invFile);
+            }
+
+            return invFile;
+        }
+
+        private boolean isDuplicate(InverseFile invFile) {
+
+            int original = duplicates.findOriginal(invFile);
+
+            if (original < 0) {
+                return false;
+            }
+
+            LOGGER.debug("Document {} is a duplicate of document {}.",
+                    invFile.getDocumentName(), original);
+            metrics.documentDuplicated();
+
+            if (aliases != null) {
+                aliases.add(original, invFile.getDocumentName());
+            }
+
+            // The file may have been indexed before it changed.
+            if (skipped != null) {
+                skipped.add(new IndexedDocument(invFile.getDocumentId(),
+                        invFile.getDocumentName(), invFile.getFingerprint()));
+            }
+
+            return true;
+        }
+
+        private void storeFields(InverseFile invFile) {
+
+            try {
+                documentStore.add(invFile.getDocumentId(), invFile.getDocumentName(),
+                        invFile.getTitle(), invFile.getSnippet());
+            } catch (IOException e) {
+                LOGGER.error("Could not store the fields of document "
+                        + invFile.getDocumentName() + ".", e);
+            }
+        }
+
+        @Override
+        void finish() {
+            LOGGER.info("Thread spent {} ms parsing and {} ms tokenizing.",
+                    toMillis(parseTotal), toMillis(tokenizeTotal));
+        }
+
+        private static long toMillis(long nanos) {
+            return nanos / 1000000L;
+        }
+    }
+
+    /**
+     * Stores the inverse files in the database. Each worker has its own
+     * connection and writes its documents in transactions of several
+     * documents.
+     */
+    private static class StoreStage extends PipelineStage<InverseFile, Void> {
+
+        private final TermDictionary dictionary;
+        private final int batchSize;
+        private final int commitInterval;
+        private final IndexingMetrics metrics;
+        private InverseFileDAO invDAO;
+
+        // Round trips of the DAO already added to the metrics.
+        private long roundTrips = 0;
+
+        StoreStage(PipelineChannel<InverseFile> input, AtomicInteger running,
+                TermDictionary dictionary, int batchSize, int commitInterval,
+                IndexingMetrics metrics, AtomicBoolean failed) {
+            super(input, null, running, failed);
+            this.dictionary = dictionary;
+            this.batchSize = batchSize;
+            this.commitInterval = commitInterval;
+            this.metrics = metrics;
+        }
+
+        @Override
+        void init() {
+            invDAO = new InverseFileDAO(dictionary, batchSize, commitInterval);
+        }
+
+        @Override
+        Void process(InverseFile invFile) {
+
+            long start = System.nanoTime();
+
+            if (!invDAO.store(invFile)) {
+                fail();
+            }
+
+            metrics.documentStored(System.nanoTime() - start);
+            countRoundTrips();
+            return null;
+        }
+
+        @Override
+        void finish() {
+
+            if (!invDAO.flush()) {
+                fail();
+            }
+
+            countRoundTrips();
+            invDAO.closeConnection();
+        }
+
+        private void countRoundTrips() {
+            long total = invDAO.getRoundTrips();
+            metrics.addRoundTrips(total - roundTrips);
+            roundTrips = total;
+        }
+    }
+
+    /**
+     * Loads the inverse files in an empty database with the COPY protocol.
+     * There is a single worker of this stage. The indexes it drops are kept in
+     * the checkpoint, to create them again if the load is resumed.
+     */
+    private static class BulkLoadStage extends PipelineStage<InverseFile, Void> {
+
+        private final TermDictionary dictionary;
+        private final int commitInterval;
+        private final IndexCheckpoint checkpoint;
+        private final IndexingMetrics metrics;
+        private InverseFileBulkLoader loader;
+
+        // Round trips of the loader already added to the metrics.
+        private long roundTrips = 0;
+
+        BulkLoadStage(PipelineChannel<InverseFile> input, AtomicInteger running,
+                TermDictionary dictionary, int commitInterval, IndexCheckpoint checkpoint,
+                IndexingMetrics metrics, AtomicBoolean failed) {
+            super(input, null, running, failed);
+            this.dictionary = dictionary;
+            this.commitInterval = commitInterval;
+            this.checkpoint = checkpoint;
+            this.metrics = metrics;
+        }
+
+        @Override
+        void init() {
+
+            if (checkpoint.isResuming()) {
+                loader = new InverseFileBulkLoader(dictionary, commitInterval,
+                        checkpoint.getIndexDefinitions());
+            } else {
+                loader = new InverseFileBulkLoader(dictionary, commitInterval);
+                checkpoint.setIndexDefinitions(loader.getIndexDefinitions());
+            }
+        }
+
+        @Override
+        Void process(InverseFile invFile) {
+
+            long start = System.nanoTime();
+
+            if (!loader.store(invFile)) {
+                fail();
+            }
+
+            metrics.documentStored(System.nanoTime() - start);
+            countRoundTrips();
+            return null;
+        }
+
+        @Override
+        void finish() {
+
+            if (!loader.flush()) {
+                fail();
+            }
+
+            countRoundTrips();
+
+            // The indexes are created again when the load is resumed.
+            if (!loader.closeConnection()) {
+                fail();
+            }
+        }
+
+        private void countRoundTrips() {
+            long total = loader.getRoundTrips();
+            metrics.addRoundTrips(total - roundTrips);
+            roundTrips = total;
+        }
+    }
+
+    /**
+     * Writes the inverse files in segment files. Each worker writes its own
+     * segments, which are merged in the background. A segment is written when
+     * it has enough documents or its postings take the memory of the worker.
+     */
+    private static class SegmentStage extends PipelineStage<InverseFile, Void> {
+
+        private final SegmentDirectory directory;
+        private final SegmentMerger merger;
+        private final int segmentSize;
+        private final long ramBufferSize;
+        private final IndexingMetrics metrics;
+        private final SegmentWriter writer = new SegmentWriter();
+
+        SegmentStage(PipelineChannel<InverseFile> input, AtomicInteger running,
+                SegmentDirectory directory, SegmentMerger merger, int segmentSize,
+                long ramBufferSize, IndexingMetrics metrics, AtomicBoolean failed) {
+            super(input, null, running, failed);
+            this.directory = directory;
+            this.merger = merger;
+            this.segmentSize = segmentSize;
+            this.ramBufferSize = ramBufferSize;
+            this.metrics = metrics;
+        }
+
+        @Override
+        Void process(InverseFile invFile) {
+
+            long start = System.nanoTime();
+            writer.add(invFile);
+
+            if (writer.getDocumentCount() >= segmentSize
+                    || writer.getRamBytesUsed() >= ramBufferSize) {
+                flush();
+            }
+
+            metrics.documentStored(System.nanoTime() - start);
+            return null;
+        }
+
+        @Override
+        void finish() {
+
+            if (!flush()) {
+                LOGGER.error("{} documents were not indexed.", writer.getDocumentCount());
+                fail();
+            }
+        }
+
+        /**
+         * Writes the buffered documents in a new segment. They are kept if
+         * the segment could not be written, so the next flush writes them.
+         * @return true if the documents were written.
+         */
+        private boolean flush() {
+
+            if (writer.getDocumentCount() == 0) {
+                return true;
+            }
+
+            try {
+                directory.add(writer);
+            } catch (IOException e) {
+                LOGGER.error("Could not write a segment with "
+                        + writer.getDocumentCount() + " documents.", e);
+                return false;
+            }
+
+            merger.segmentAdded();
+            writer.clear();
+            return true;
+        }
+    }
+}
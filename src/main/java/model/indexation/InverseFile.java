@@ -1,24 +1,30 @@
 package model.indexation;
 
-import java.util.HashMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Map.Entry;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import java.util.NoSuchElementException;
 
 /**
  * Class to store the words found in a document.
  * It stores the name of the document an associated ID, all the words found and
- * how many times the word has been found.
+ * how many times the word has been found. The frequencies are also kept for
+ * each field of the document. Optionally, the positions of the words in the
+ * body are kept too, so phrases can be searched.
+ * @see Field
  */
 public class InverseFile implements Iterable<Entry<String, Integer>> {
 
-    private Map<String, Integer> map;
+    // Counts of the words in each field, by ordinal. The counts of a field
+    // are created when its first word is found.
+    private final TermCounts[] fieldCounts = new TermCounts[Field.values().length];
+    // Number of words found in each field, by ordinal.
+    private final int[] fieldLengths = new int[Field.values().length];
     private final int documentId;
     private final String documentName;
-    private static final Logger LOGGER = LogManager.getLogger();
+    private DocumentFingerprint fingerprint;
+    private String title;
+    private String snippet = "";
 
     /**
      * Creates an Inverse File with the information of the document.
@@ -26,9 +32,19 @@ public class InverseFile implements Iterable<Entry<String, Integer>> {
      * @param documentName name of the associated document.
      */
     InverseFile(int documentId, String documentName){
+        this(documentId, documentName, false);
+    }
+
+    /**
+     * Creates an Inverse File with the information of the document.
+     * @param documentId ID of the associated document.
+     * @param documentName name of the associated document.
+     * @param withPositions true to keep the positions of the words in the body.
+     */
+    InverseFile(int documentId, String documentName, boolean withPositions){
         this.documentId = documentId;
         this.documentName = documentName;
-        this.map = new HashMap<String, Integer>();
+        this.fieldCounts[Field.BODY.ordinal()] = new TermCounts(withPositions);
     }
 
     /**
@@ -48,27 +64,183 @@ public class InverseFile implements Iterable<Entry<String, Integer>> {
     }
 
     /**
-     * Add a word in the inverse file. If the word is not already in the inverse file
-     * then its frequency is 1, else it is the frequency it had + 1.
+     * Gets the fingerprint of the file of the document.
+     * @return the fingerprint, null if unknown.
      */
-    void addWord(String word){
+    public DocumentFingerprint getFingerprint() {
+        return fingerprint;
+    }
 
-        LOGGER.entry(word);
+    /**
+     * Sets the fingerprint of the file of the document.
+     * @param fingerprint the fingerprint of the file.
+     */
+    void setFingerprint(DocumentFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 
-        int frequency = 1;
+    /**
+     * Gets the title of the document.
+     * @return the text of the first title tag, null if there is none.
+     */
+    public String getTitle() {
+        return title;
+    }
 
-        if (map.containsKey(word)) {
-            frequency = 1 + map.get(word);
+    /**
+     * Sets the title of the document.
+     * @param title the text of the title tag.
+     */
+    void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Gets the first characters of the text of the document.
+     * @return the snippet, empty if the tokenizer did not keep it.
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+
+    /**
+     * Sets the first characters of the text of the document.
+     * @param snippet the snippet.
+     */
+    void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    /**
+     * Add a word found in a field of the inverse file. If the word is not
+     * already in the inverse file then its frequency is 1, else it is the
+     * frequency it had + 1. The frequency of the word in the field is updated
+     * the same way.
+     * @param field the field where the word was found.
+     * @param word the word to add.
+     */
+    void addWord(Field field, String word){
+
+        TermCounts counts = fieldCounts[field.ordinal()];
+
+        if (counts == null) {
+            counts = new TermCounts();
+            fieldCounts[field.ordinal()] = counts;
         }
 
-        map.put(word, frequency);
-        LOGGER.trace("Added word: {} with frequency: {}", word, frequency);
+        counts.increment(word);
+        ++fieldLengths[field.ordinal()];
+    }
+
+    /**
+     * Add a word found in the body of the inverse file at some position. The
+     * position is only kept if the inverse file keeps positions.
+     * @param word the word to add.
+     * @param position the number of words before this one in the body,
+     * counting the stop words.
+     */
+    void addWord(String word, int position) {
+        fieldCounts[Field.BODY.ordinal()].increment(word, position);
+        ++fieldLengths[Field.BODY.ordinal()];
+    }
+
+    /**
+     * Tells if the positions of the words in the body are kept.
+     * @return true if {@link TermCounts.Cursor#positions()} gives them.
+     */
+    public boolean hasPositions() {
+        return fieldCounts[Field.BODY.ordinal()].hasPositions();
+    }
+
+    /**
+     * Gets how many times a word was found in a field of the document.
+     * @param word the word to look for.
+     * @param field the field of the document.
+     * @return the frequency of the word in the field, 0 if it was not found.
+     */
+    public int getFrequency(String word, Field field) {
+
+        TermCounts counts = fieldCounts[field.ordinal()];
+        return counts == null ? 0 : counts.get(word);
+    }
 
+    /**
+     * Gets the number of words found in a field of the document, counting
+     * each occurrence, without the stop words.
+     * @param field the field of the document.
+     * @return the length of the field.
+     */
+    public int getLength(Field field) {
+        return fieldLengths[field.ordinal()];
     }
 
+    /**
+     * Gets the number of different words of the document.
+     * @return the number of words.
+     */
+    public int size() {
+        return fieldCounts[Field.BODY.ordinal()].size();
+    }
+
+    /**
+     * Reads the words of the document and their frequency in the body, which
+     * includes all the fields, and their positions if they are kept, without
+     * creating an object for each word.
+     * @return a cursor positioned before the first word.
+     */
+    public TermCounts.Cursor words() {
+        return fieldCounts[Field.BODY.ordinal()].cursor();
+    }
+
+    /**
+     * Reads the words of a field of the document and their frequency in the
+     * field.
+     * @param field the field of the document.
+     * @return a cursor positioned before the first word, or null if no word
+     * was found in the field.
+     */
+    public TermCounts.Cursor words(Field field) {
+
+        TermCounts counts = fieldCounts[field.ordinal()];
+        return counts == null ? null : counts.cursor();
+    }
+
+    /**
+     * Iterates over the words of the document and their frequency in all the
+     * fields. Each entry is a new object, the storage uses {@link #words()}.
+     */
     @Override
     public Iterator<Entry<String, Integer>> iterator() {
-        return map.entrySet().iterator();
+
+        final TermCounts.Cursor cursor = words();
+
+        return new Iterator<Entry<String, Integer>>() {
+
+            private boolean hasNext = cursor.next();
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public Entry<String, Integer> next() {
+
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+
+                Entry<String, Integer> entry =
+                        new SimpleImmutableEntry<String, Integer>(cursor.term(), cursor.count());
+                hasNext = cursor.next();
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
 }
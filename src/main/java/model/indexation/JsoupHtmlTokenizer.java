@@ -0,0 +1,122 @@
+package model.indexation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Tokenizer that parses the documents using JSoup. The document is parsed once
+ * and its text is added in document order to the body and, if the tag found
+ * directly around it has one, to the field of the tag. A tag that is not void
+ * ends the text before it, so the words of a phrase split by inline tags get
+ * consecutive positions.
+ * @see Field
+ */
+class JsoupHtmlTokenizer extends HtmlTokenizer {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    JsoupHtmlTokenizer(StopWords stopWords) {
+        super(stopWords);
+    }
+
+    @Override
+    InverseFile tokenize(ByteBuffer content, int documentId, String documentName) {
+
+        LOGGER.debug("Using JSoup to parse {}.", documentName);
+
+        long start = System.nanoTime();
+        Document doc = parse(content);
+        long parsed = System.nanoTime();
+
+        InverseFile invFile = createInverseFile(documentId, documentName);
+        new NodeTraversor(new TextVisitor(invFile)).traverse(doc);
+
+        setTimes(parsed - start, System.nanoTime() - parsed);
+        return finishInverseFile(invFile);
+    }
+
+    /**
+     * Parse an HTML document using JSoup.
+     * @param content the bytes of the document.
+     * @return the document.
+     */
+    private static Document parse(ByteBuffer content) {
+
+        String html = CHARSET.decode(content.duplicate()).toString();
+
+        if (!html.isEmpty() && isByteOrderMark(html.charAt(0))) {
+            html = html.substring(1);
+        }
+
+        return Jsoup.parse(html, "");
+    }
+
+    /**
+     * Adds the text of the nodes to the inverse file in document order. The
+     * text found directly inside a tag is added when a child tag starts or
+     * the tag ends, with the field of the tag.
+     */
+    private class TextVisitor implements NodeVisitor {
+
+        private final InverseFile invFile;
+        private final StringBuilder text = new StringBuilder();
+
+        // Fields of the open tags, null for the tags without field.
+        private final List<Field> fields = new ArrayList<Field>();
+
+        TextVisitor(InverseFile invFile) {
+            this.invFile = invFile;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+
+            if (node instanceof TextNode) {
+                text.append(((TextNode) node).getWholeText());
+            } else if (node instanceof Element) {
+                Element element = (Element) node;
+
+                if (element.tag().isEmpty()) {
+                    if (element.tagName().equals("br")) {
+                        text.append(' ');
+                    }
+                    return;
+                }
+
+                flush();
+                tagBoundary(element.tagName());
+                fields.add(Field.fromTag(element.tagName()));
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+
+            if (node instanceof Element && !((Element) node).tag().isEmpty()) {
+                flush();
+                tagBoundary(((Element) node).tagName());
+                fields.remove(fields.size() - 1);
+            }
+        }
+
+        private void flush() {
+
+            if (text.length() > 0) {
+                Field field = fields.isEmpty() ? null : fields.get(fields.size() - 1);
+                addText(text, invFile, field);
+                text.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package model.indexation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of the durations of an operation. The durations are counted in
+ * buckets of powers of two microseconds, so recording is a few atomic
+ * additions and a percentile is known within a factor of two.
+ * @see IndexingMetrics
+ */
+class LatencyHistogram {
+
+    // Bucket i counts the durations of less than 2^i microseconds, and at
+    // least 2^(i-1) for i > 0.
+    private static final int BUCKETS = 64;
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos the duration in nanoseconds.
+     */
+    void record(long nanos) {
+
+        long micros = Math.max(nanos, 0) / 1000;
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(micros));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long current = max.get();
+
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of durations recorded.
+     * @return the count.
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean of the durations.
+     * @return the mean in milliseconds, 0 if there are none.
+     */
+    double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / NANOS_PER_MILLI / n;
+    }
+
+    /**
+     * Gets the longest duration.
+     * @return the maximum in milliseconds, 0 if there are none.
+     */
+    double getMaxMillis() {
+        return max.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Gets a percentile of the durations, rounded up to the upper bound of
+     * its bucket.
+     * @param percentile the percentile, between 0 and 100.
+     * @return the duration in milliseconds that the given percentage of the
+     * durations do not exceed, 0 if there are none.
+     */
+    double getPercentileMillis(double percentile) {
+
+        long n = count.get();
+
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += buckets.get(i);
+
+            if (seen >= rank) {
+                // Never more than the maximum seen.
+                return Math.min((1L << i) / 1000.0, getMaxMillis());
+            }
+        }
+
+        return getMaxMillis();
+    }
+}
@@ -0,0 +1,120 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Maps files in memory and unmaps them once they are read. Without it, a
+ * mapping is only released when the garbage collector frees its buffer,
+ * which can be long after the file was indexed, merged or deleted. The
+ * mappings are released with the cleaner of the JVM, found by reflection;
+ * if the JVM does not give it, they are left to the garbage collector.
+ * @see HtmlTokenizer#map(File)
+ * @see model.segment.Segment
+ */
+public final class MappedFiles {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // Null if the mappings cannot be released.
+    private static final Unmapper UNMAPPER = findUnmapper();
+
+    // To avoid instantiation
+    private MappedFiles() {}
+
+    /**
+     * Maps a whole file in memory, read only.
+     * @param file the file.
+     * @return the bytes of the file.
+     * @throws IOException if the file could not be read.
+     */
+    public static ByteBuffer map(File file) throws IOException {
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Releases the mapping of a buffer returned by {@link #map(File)}. The
+     * buffer, and every buffer sharing its bytes, must not be read after
+     * this call, so it must only be used by the owner of the buffer once all
+     * its readers are done. Other buffers are ignored.
+     * @param buffer the buffer.
+     */
+    public static void unmap(ByteBuffer buffer) {
+
+        if (UNMAPPER == null || !(buffer instanceof MappedByteBuffer)) {
+            return;
+        }
+
+        try {
+            UNMAPPER.unmap(buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Could not unmap a buffer.", e);
+        }
+    }
+
+    /**
+     * Finds the way the JVM releases the mappings: the cleaner of the buffer
+     * through sun.misc.Unsafe since Java 9, or directly before.
+     */
+    private static Unmapper findUnmapper() {
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                    ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            final Object unsafe = field.get(null);
+
+            return new Unmapper() {
+                @Override
+                public void unmap(ByteBuffer buffer) throws ReflectiveOperationException {
+                    invokeCleaner.invoke(unsafe, buffer);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.trace("No sun.misc.Unsafe.invokeCleaner, trying the cleaner.", e);
+        }
+
+        try {
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+
+            return new Unmapper() {
+                @Override
+                public void unmap(ByteBuffer buffer) throws ReflectiveOperationException {
+                    Object bufferCleaner = cleaner.invoke(buffer);
+
+                    if (bufferCleaner != null) {
+                        clean.invoke(bufferCleaner);
+                    }
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("The mapped files are released by the garbage collector.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Releases the mapping of a buffer.
+     */
+    private interface Unmapper {
+
+        void unmap(ByteBuffer buffer) throws ReflectiveOperationException;
+    }
+}
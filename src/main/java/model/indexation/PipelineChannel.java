@@ -0,0 +1,73 @@
+package model.indexation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Queue connecting two stages of the indexing pipeline. A bounded channel
+ * blocks the producers when it is full, so a slow stage holds back the stages
+ * before it instead of letting documents pile up in memory.
+ * When the producers are done, the channel is closed by putting an end marker
+ * for each of the workers that consume from it.
+ * @param <T> the type of the elements in the channel.
+ * @see PipelineStage
+ */
+class PipelineChannel<T> {
+
+    private final BlockingQueue<T> queue;
+    private final T end;
+    private final int consumers;
+
+    /**
+     * Creates a channel.
+     * @param capacity maximum number of elements waiting in the channel, or 0
+     * if the channel is not bounded.
+     * @param end the element that tells a consumer there is no more work. It
+     * is compared by reference.
+     * @param consumers number of workers taking elements from the channel.
+     */
+    PipelineChannel(int capacity, T end, int consumers) {
+        this.queue = capacity > 0 ? new ArrayBlockingQueue<T>(capacity)
+                : new LinkedBlockingQueue<T>();
+        this.end = end;
+        this.consumers = consumers;
+    }
+
+    /**
+     * Puts an element, waiting while the channel is full.
+     * @param element the element to put.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void put(T element) throws InterruptedException {
+        queue.put(element);
+    }
+
+    /**
+     * Takes an element, waiting while the channel is empty.
+     * @return the next element, or null if the channel was closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    T take() throws InterruptedException {
+        T element = queue.take();
+        return element == end ? null : element;
+    }
+
+    /**
+     * Gets the number of elements waiting in the channel.
+     * @return the number of elements, counting the end markers.
+     */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * Tells every consumer there is no more work.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void close() throws InterruptedException {
+        for (int i = 0; i < consumers; ++i) {
+            queue.put(end);
+        }
+    }
+}
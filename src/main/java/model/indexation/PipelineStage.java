@@ -0,0 +1,193 @@
+package model.indexation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Worker of a stage of the indexing pipeline. It takes elements from an input
+ * channel, processes them and puts the results in an output channel. All the
+ * workers of a stage share a counter, the last one to finish closes the
+ * output channel so the next stage can finish too. The workers of a stage
+ * that must not lose any element also share a flag, set when one of them
+ * drops an element.
+ * @param <I> the type of the elements taken.
+ * @param <O> the type of the elements produced.
+ * @see IndexingPipeline
+ */
+abstract class PipelineStage<I, O> implements Runnable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final PipelineChannel<I> input;
+    private final PipelineChannel<O> output;
+
+    // Number of workers of the stage still running.
+    private final AtomicInteger running;
+
+    // Set when an element is lost, null if the stage can drop elements.
+    private final AtomicBoolean failed;
+
+    /**
+     * Creates a worker of a stage that can drop the elements it cannot
+     * process.
+     * @param input the channel the elements are taken from.
+     * @param output the channel the results are put in, null if the stage
+     * does not produce anything.
+     * @param running number of workers of the stage still running, shared by
+     * all of them.
+     */
+    PipelineStage(PipelineChannel<I> input, PipelineChannel<O> output,
+            AtomicInteger running) {
+        this(input, output, running, null);
+    }
+
+    /**
+     * Creates a worker of a stage.
+     * @param input the channel the elements are taken from.
+     * @param output the channel the results are put in, null if the stage
+     * does not produce anything.
+     * @param running number of workers of the stage still running, shared by
+     * all of them.
+     * @param failed set when an element is lost, shared by all the workers,
+     * or null if the stage can drop elements.
+     */
+    PipelineStage(PipelineChannel<I> input, PipelineChannel<O> output,
+            AtomicInteger running, AtomicBoolean failed) {
+        this.input = input;
+        this.output = output;
+        this.running = running;
+        this.failed = failed;
+    }
+
+    @Override
+    public void run() {
+
+        boolean started = false;
+
+        try {
+            started = start();
+            I element = input.take();
+
+            while (element != null) {
+                if (started) {
+                    handle(element);
+                }
+
+                element = input.take();
+            }
+
+        } catch (InterruptedException e) {
+            LOGGER.error("Indexing thread was interrupted.", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (started) {
+                stop();
+            }
+
+            closeOutput();
+        }
+    }
+
+    /**
+     * Prepares the worker. If it fails the worker keeps taking elements
+     * without processing them, so the other stages are not blocked.
+     * @return true if the worker can process elements.
+     */
+    private boolean start() {
+
+        try {
+            init();
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not start indexing thread, its documents are lost.", e);
+            fail();
+            return false;
+        }
+    }
+
+    /**
+     * Processes an element and puts the result in the output channel.
+     * @param element the element to process.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void handle(I element) throws InterruptedException {
+
+        O result;
+
+        try {
+            result = process(element);
+        } catch (RuntimeException e) {
+            LOGGER.error("Indexing thread could not process an element.", e);
+            fail();
+            return;
+        }
+
+        if (result != null && output != null) {
+            output.put(result);
+        }
+    }
+
+    /**
+     * Processes an element of the input.
+     * @param element the element to process.
+     * @return the result to pass to the next stage, or null to drop the
+     * element.
+     */
+    abstract O process(I element);
+
+    /**
+     * Called once by the thread of the worker before taking any element, to
+     * get the resources of the worker.
+     */
+    void init() {}
+
+    /**
+     * Called once when there are no more elements, to release the resources
+     * of the worker.
+     */
+    void finish() {}
+
+    /**
+     * Tells that elements of the worker were lost, if its stage must not
+     * lose any.
+     */
+    void fail() {
+
+        if (failed != null) {
+            failed.set(true);
+        }
+    }
+
+    /**
+     * Releases the resources of the worker.
+     */
+    private void stop() {
+
+        try {
+            finish();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not stop indexing thread.", e);
+            fail();
+        }
+    }
+
+    /**
+     * Closes the output channel if this is the last worker of the stage.
+     */
+    private void closeOutput() {
+
+        if (running.decrementAndGet() > 0 || output == null) {
+            return;
+        }
+
+        try {
+            output.close();
+        } catch (InterruptedException e) {
+            LOGGER.error("Indexing thread was interrupted while finishing.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A document waiting to be indexed. It starts as a reference to a file and,
+ * once read, it also holds the bytes of the file. A document read from an
+ * archive holds its bytes from the start.
+ * @see IndexingPipeline
+ */
+class RawDocument {
+
+    private final int documentId;
+    private final String name;
+    private final File file;
+    private final ByteBuffer content;
+    private final long lastModified;
+
+    // Hashed the first time it is needed.
+    private DocumentFingerprint fingerprint;
+
+    /**
+     * Creates a document that has not been read yet.
+     * @param documentId ID of the document.
+     * @param file the file with the content of the document.
+     */
+    RawDocument(int documentId, File file) {
+        this(documentId, file, null);
+    }
+
+    /**
+     * Creates a document that has already been read, like an entry of an
+     * archive.
+     * @param documentId ID of the document.
+     * @param name the name of the document.
+     * @param lastModified the modification time of the document, in
+     * milliseconds since the epoch.
+     * @param content the bytes of the document.
+     */
+    RawDocument(int documentId, String name, long lastModified, ByteBuffer content) {
+        this.documentId = documentId;
+        this.name = name;
+        this.file = null;
+        this.content = content;
+        this.lastModified = lastModified;
+    }
+
+    private RawDocument(int documentId, File file, ByteBuffer content) {
+        this.documentId = documentId;
+        this.name = file == null ? null : file.getName();
+        this.file = file;
+        this.content = content;
+        this.lastModified = content == null ? 0 : file.lastModified();
+    }
+
+    /**
+     * Reads the content of the file.
+     * @return a new document with the same ID and the bytes of the file, or
+     * this document if it has already been read.
+     * @throws IOException if the file could not be read.
+     */
+    RawDocument read() throws IOException {
+        return content != null ? this
+                : new RawDocument(documentId, file, HtmlTokenizer.map(file));
+    }
+
+    /**
+     * Releases the memory mapping of the file once the document is tokenized.
+     * The content must not be read afterwards.
+     */
+    void release() {
+        MappedFiles.unmap(content);
+    }
+
+    /**
+     * Gets the ID of the document.
+     * @return an ID.
+     */
+    int getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Gets the name of the document.
+     * @return the name of the file or of the archive entry.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the bytes of the document.
+     * @return the content, or null if the document has not been read.
+     */
+    ByteBuffer getContent() {
+        return content;
+    }
+
+    /**
+     * Gets the fingerprint of the file, hashing its content the first time.
+     * @return the fingerprint, or null if the document has not been read.
+     */
+    DocumentFingerprint getFingerprint() {
+
+        if (fingerprint == null && content != null) {
+            fingerprint = DocumentFingerprint.of(lastModified, content);
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Gets the size and the modification time of the file, without hashing
+     * its content.
+     * @return the fingerprint without hash, or null if the document has not
+     * been read.
+     * @see DocumentFingerprint#NO_HASH
+     */
+    DocumentFingerprint getAttributes() {
+        return content == null ? null : new DocumentFingerprint(content.remaining(),
+                lastModified, DocumentFingerprint.NO_HASH);
+    }
+}
@@ -0,0 +1,211 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Indexes the shards of an index in separate local processes, one for each
+ * shard, so each one has its own heap and the shards can be on different
+ * disks. Every process lists the same folder, so the documents get the same
+ * IDs in all of them, and writes the segments of its documents in the folder
+ * of its shard.
+ * <p>
+ * A process is started with the arguments: the folder of the documents, the
+ * file of the stop words, the segment folder, the number of the shard and
+ * the number of shards, followed by some options in the form
+ * {@code --name=value}: {@value #TOKENIZER_THREADS}, {@value #STORE_THREADS},
+ * {@value #RAM_BUFFER_SIZE}, {@value #POSITIONS}, {@value #FINAL_MERGE} and
+ * {@value #DOCUMENT_STORE}. The other options have their default value.
+ * @see IndexerConfiguration#setShard(int)
+ */
+public final class ShardIndexer {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Option with the number of threads parsing the files. */
+    public static final String TOKENIZER_THREADS = "tokenizer-threads";
+
+    /** Option with the number of threads writing the segments. */
+    public static final String STORE_THREADS = "store-threads";
+
+    /** Option with the memory of the postings, in megabytes. */
+    public static final String RAM_BUFFER_SIZE = "ram-buffer-size";
+
+    /** Option telling if the positions of the words are stored. */
+    public static final String POSITIONS = "positions";
+
+    /** Option telling if the segments of the shard are merged at the end. */
+    public static final String FINAL_MERGE = "final-merge";
+
+    /** Option with the folder of the document store. */
+    public static final String DOCUMENT_STORE = "document-store";
+
+    private static final String OPTION_PREFIX = "--";
+    private static final int ARGUMENTS = 5;
+
+    // To avoid instantiation
+    private ShardIndexer() {}
+
+    /**
+     * Indexes a shard.
+     * @param args the folder of the documents, the file of the stop words,
+     * the segment folder, the number of the shard, the number of shards and
+     * the options.
+     */
+    public static void main(String[] args) {
+
+        IndexerConfiguration config;
+
+        try {
+            config = parse(args);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Usage: ShardIndexer folder stopWords segmentFolder shard shardCount"
+                    + " [--option=value]...", e);
+            System.exit(1);
+            return;
+        }
+
+        Indexer.startIndexation(new File(args[0]), new File(args[1]), config);
+    }
+
+    /**
+     * Reads the options of the indexation of a shard.
+     * @param args the arguments of the process.
+     * @return the options.
+     * @throws IllegalArgumentException if the arguments are not valid.
+     */
+    static IndexerConfiguration parse(String[] args) {
+
+        if (args.length < ARGUMENTS) {
+            throw new IllegalArgumentException("Missing arguments.");
+        }
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(new File(args[2]));
+        config.setShardCount(Integer.parseInt(args[4]));
+        config.setShard(Integer.parseInt(args[3]));
+
+        for (int i = ARGUMENTS; i < args.length; ++i) {
+            String arg = args[i];
+            int equals = arg.indexOf('=');
+
+            if (!arg.startsWith(OPTION_PREFIX) || equals < 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + ".");
+            }
+
+            setOption(config, arg.substring(OPTION_PREFIX.length(), equals),
+                    arg.substring(equals + 1));
+        }
+
+        return config;
+    }
+
+    private static void setOption(IndexerConfiguration config, String name, String value) {
+
+        if (name.equals(TOKENIZER_THREADS)) {
+            config.setTokenizerThreads(Integer.parseInt(value));
+        } else if (name.equals(STORE_THREADS)) {
+            config.setStoreThreads(Integer.parseInt(value));
+        } else if (name.equals(RAM_BUFFER_SIZE)) {
+            config.setRamBufferSize(Integer.parseInt(value));
+        } else if (name.equals(POSITIONS)) {
+            config.setPositions(Boolean.parseBoolean(value));
+        } else if (name.equals(FINAL_MERGE)) {
+            config.setFinalMerge(Boolean.parseBoolean(value));
+        } else if (name.equals(DOCUMENT_STORE)) {
+            config.setDocumentStoreFolder(new File(value));
+        } else {
+            throw new IllegalArgumentException("Unknown option " + name + ".");
+        }
+    }
+
+    /**
+     * Gets the arguments of the process of a shard.
+     * @param folder the folder of the documents.
+     * @param stopWordsFile the file with the words to be ignored.
+     * @param config the options of the indexation.
+     * @param shard the number of the shard.
+     * @return the arguments.
+     */
+    static List<String> arguments(File folder, File stopWordsFile,
+            IndexerConfiguration config, int shard) {
+
+        List<String> args = new ArrayList<String>();
+        args.add(folder.getAbsolutePath());
+        args.add(stopWordsFile.getAbsolutePath());
+        args.add(config.getSegmentFolder().getAbsolutePath());
+        args.add(Integer.toString(shard));
+        args.add(Integer.toString(config.getShardCount()));
+        args.add(option(TOKENIZER_THREADS, config.getTokenizerThreads()));
+        args.add(option(STORE_THREADS, config.getStoreThreads()));
+        args.add(option(RAM_BUFFER_SIZE, config.getRamBufferSize()));
+        args.add(option(POSITIONS, config.isPositions()));
+        args.add(option(FINAL_MERGE, config.isFinalMerge()));
+
+        if (config.getDocumentStoreFolder() != null) {
+            args.add(option(DOCUMENT_STORE, config.getDocumentStoreFolder().getAbsolutePath()));
+        }
+
+        return args;
+    }
+
+    private static String option(String name, Object value) {
+        return OPTION_PREFIX + name + "=" + value;
+    }
+
+    /**
+     * Indexes the files of a folder in a process for each shard, with the
+     * class path of this process, and waits until all of them finish. The
+     * segments of the index that is not split are not removed.
+     * @param folder the folder where the documents can be found.
+     * @param stopWordsFile the file with the words to be ignored.
+     * @param config the options of the indexation, with the number of shards.
+     * @return true if all the processes ended normally.
+     */
+    public static boolean launch(File folder, File stopWordsFile, IndexerConfiguration config) {
+
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java")
+                .getPath();
+        List<Process> processes = new ArrayList<Process>();
+        boolean success = true;
+
+        try {
+            for (int shard = 0; shard < config.getShardCount(); ++shard) {
+                List<String> command = new ArrayList<String>();
+                command.add(java);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardIndexer.class.getName());
+                command.addAll(arguments(folder, stopWordsFile, config, shard));
+
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+
+            for (Process process : processes) {
+                success &= process.waitFor() == 0;
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Could not start the process of a shard.", e);
+            success = false;
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for the shards.", e);
+            Thread.currentThread().interrupt();
+            success = false;
+        } finally {
+            for (Process process : processes) {
+                if (!success) {
+                    process.destroy();
+                }
+            }
+        }
+
+        return success;
+    }
+}
@@ -32,7 +32,8 @@ class StopWordSetBuilder {
         Set<String> set = new HashSet<String>();
 
         try {
-            scanner = new Scanner(file);
+            // Read like the documents, whatever the charset of the platform.
+            scanner = new Scanner(file, HtmlTokenizer.CHARSET.name());
 
         } catch (FileNotFoundException e) {
             LOGGER.error("Could not find stop list file.", e);
@@ -0,0 +1,188 @@
+package model.indexation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The words to be ignored, compiled into a trie stored in arrays. A word is
+ * looked up directly on its characters, so the tokenizers drop the stop words
+ * before creating a String for them and the searchers drop them before
+ * querying the index. The objects of this class never change and can be
+ * shared by several threads.
+ * @see StopWordSetBuilder
+ */
+public final class StopWords {
+
+    /** A list without words. */
+    public static final StopWords EMPTY = compile(Collections.<String>emptySet());
+
+    // The transitions of state s go from first[s] to first[s + 1] - 1, with
+    // their characters sorted. State 0 is the empty word.
+    private final int[] first;
+    private final char[] labels;
+    private final int[] targets;
+    private final boolean[] accepting;
+
+    private StopWords(int[] first, char[] labels, int[] targets, boolean[] accepting) {
+        this.first = first;
+        this.labels = labels;
+        this.targets = targets;
+        this.accepting = accepting;
+    }
+
+    /**
+     * Reads the stop words of a file, normalized like the words of the
+     * documents.
+     * @param file the file with the words.
+     * @return the stop words, empty if the file could not be read.
+     */
+    public static StopWords load(File file) {
+        return compile(StopWordSetBuilder.createStopWordsSet(file));
+    }
+
+    /**
+     * Compiles a list of words.
+     * @param words the words, already normalized.
+     * @return the stop words.
+     */
+    public static StopWords compile(Collection<String> words) {
+
+        // The words are added in order, so the children of each node are
+        // sorted by their character.
+        Node root = new Node('\0');
+
+        for (String word : new TreeSet<String>(words)) {
+            Node node = root;
+
+            for (int i = 0; i < word.length(); ++i) {
+                node = node.child(word.charAt(i));
+            }
+
+            node.accepting = true;
+        }
+
+        return flatten(root);
+    }
+
+    /**
+     * Numbers the nodes level by level, so the children of each node get
+     * consecutive states, and copies the transitions into arrays.
+     */
+    private static StopWords flatten(Node root) {
+
+        List<Node> byLevel = new ArrayList<Node>();
+        byLevel.add(root);
+
+        for (int i = 0; i < byLevel.size(); ++i) {
+            byLevel.addAll(byLevel.get(i).children);
+        }
+
+        for (int i = 0; i < byLevel.size(); ++i) {
+            byLevel.get(i).state = i;
+        }
+
+        int[] first = new int[byLevel.size() + 1];
+        char[] labels = new char[byLevel.size() - 1];
+        int[] targets = new int[byLevel.size() - 1];
+        boolean[] accepting = new boolean[byLevel.size()];
+        int transition = 0;
+
+        for (Node node : byLevel) {
+            first[node.state] = transition;
+            accepting[node.state] = node.accepting;
+
+            for (Node child : node.children) {
+                labels[transition] = child.label;
+                targets[transition] = child.state;
+                ++transition;
+            }
+        }
+
+        first[byLevel.size()] = transition;
+        return new StopWords(first, labels, targets, accepting);
+    }
+
+    /**
+     * Tells if normalized characters are a stop word.
+     * @param chars the characters, already lower cased and truncated.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @return true if the characters are a stop word.
+     */
+    public boolean contains(char[] chars, int start, int end) {
+
+        int state = 0;
+
+        for (int i = start; i < end && state >= 0; ++i) {
+            state = next(state, chars[i]);
+        }
+
+        return state >= 0 && accepting[state];
+    }
+
+    /**
+     * Tells if a word is a stop word once normalized. The word is lower cased
+     * and truncated while it is read, without creating a String.
+     * @param word a word, as split by the WordNormalizer.
+     * @return true if the normalized word is a stop word.
+     * @see WordNormalizer#normalize(String)
+     */
+    public boolean contains(CharSequence word) {
+
+        int state = 0;
+        int end = Math.min(word.length(), WordNormalizer.WORD_MAX_LENGTH);
+
+        for (int i = 0; i < end && state >= 0; ++i) {
+            state = next(state, Character.toLowerCase(word.charAt(i)));
+        }
+
+        return state >= 0 && accepting[state];
+    }
+
+    /**
+     * Follows the transition of a character.
+     * @return the next state, or -1 if there is none.
+     */
+    private int next(int state, char c) {
+
+        int index = Arrays.binarySearch(labels, first[state], first[state + 1], c);
+        return index < 0 ? -1 : targets[index];
+    }
+
+    /**
+     * A state of the trie while it is built.
+     */
+    private static class Node {
+
+        private final char label;
+        private final List<Node> children = new ArrayList<Node>();
+        private boolean accepting;
+        private int state;
+
+        Node(char label) {
+            this.label = label;
+        }
+
+        /**
+         * Gets the child of a character, creating it if this is a new one.
+         * As the words are sorted, a new child is always the last one.
+         */
+        Node child(char c) {
+
+            int last = children.size() - 1;
+
+            if (last >= 0 && children.get(last).label == c) {
+                return children.get(last);
+            }
+
+            Node child = new Node(c);
+            children.add(child);
+            return child;
+        }
+    }
+}
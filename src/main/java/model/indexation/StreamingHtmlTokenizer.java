@@ -0,0 +1,1704 @@
+package model.indexation;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.nodes.Entities;
+
+/**
+ * Tokenizer that scans the characters of a document once without building a
+ * DOM. It keeps a stack with the tags that are open and the text found directly
+ * inside each one of them, and passes the text of a tag to the WordNormalizer
+ * when a child tag is opened or the tag is closed, so the words are added in
+ * document order. The rules used to open and close the tags follow the ones of
+ * the JSoup parser, so both tokenizers find the same words in each tag, at the
+ * same positions.
+ * @see JsoupHtmlTokenizer
+ */
+class StreamingHtmlTokenizer extends HtmlTokenizer {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    // Tags that never have content.
+    private static final Set<String> VOID_TAGS = setOf("area", "base", "basefont",
+            "bgsound", "br", "col", "command", "embed", "frame", "hr", "img", "input",
+            "isindex", "keygen", "link", "meta", "param", "source", "track", "wbr");
+
+    // Tags whose content is not HTML. The content of scripts and styles is ignored.
+    private static final Set<String> RAW_TEXT_TAGS = setOf("iframe", "noembed",
+            "noframes", "script", "style", "xmp");
+    private static final Set<String> ESCAPABLE_RAW_TEXT_TAGS = setOf("textarea", "title");
+    private static final Set<String> DATA_TAGS = setOf("script", "style");
+
+    // Tags that are ignored because the document always has them.
+    private static final Set<String> IGNORED_TAGS = setOf("body", "frameset",
+            "head", "html");
+    // Tags after which a frameset no longer replaces the body.
+    private static final Set<String> FRAMESET_BREAKERS = setOf("applet", "area",
+            "body", "br", "button", "dd", "dt", "embed", "hr", "iframe", "img",
+            "input", "keygen", "li", "listing", "marquee", "object", "pre",
+            "select", "table", "textarea", "wbr", "xmp");
+
+    private static final Set<String> P_CLOSERS = setOf("address", "article", "aside",
+            "blockquote", "center", "details", "dir", "div", "dl", "fieldset",
+            "figcaption", "figure", "footer", "form", "header", "hgroup", "hr",
+            "listing", "menu", "nav", "ol", "p", "plaintext", "pre", "section",
+            "summary", "table", "ul", "xmp");
+    private static final Set<String> HEADINGS = setOf("h1", "h2", "h3", "h4", "h5", "h6");
+    private static final Set<String> LI_BREAKERS = setOf("address", "div", "p");
+    private static final Set<String> DD_DT = setOf("dd", "dt");
+    private static final Set<String> FORMATTERS = setOf("a", "b", "big", "code", "em",
+            "font", "i", "nobr", "s", "small", "strike", "strong", "tt", "u");
+    private static final Set<String> APPLETS = setOf("applet", "marquee", "object");
+    private static final Set<String> END_CLOSERS = setOf("address", "article", "aside",
+            "blockquote", "button", "center", "details", "dir", "div", "dl", "fieldset",
+            "figcaption", "figure", "footer", "header", "hgroup", "listing", "menu",
+            "nav", "ol", "pre", "section", "summary", "ul");
+    private static final Set<String> IMPLIED_END_TAGS = setOf("dd", "dt", "li",
+            "option", "optgroup", "p", "rp", "rt");
+    private static final Set<String> TABLE_PARTS = setOf("caption", "col", "colgroup",
+            "tbody", "td", "tfoot", "th", "thead", "tr");
+    private static final Set<String> TABLE_CONTEXT = setOf("table", "tbody", "tfoot",
+            "thead", "tr");
+    private static final Set<String> TABLE_SECTIONS = setOf("tbody", "tfoot", "thead");
+    private static final Set<String> CELLS = setOf("td", "th");
+    private static final Set<String> OPTIONS = setOf("optgroup", "option");
+    private static final Set<String> SELECT_CLOSERS = setOf("input", "keygen", "textarea");
+    private static final Set<String> SELECT_TABLE_CLOSERS = setOf("caption", "table",
+            "tbody", "td", "tfoot", "th", "thead", "tr");
+    private static final Set<String> NO_RECONSTRUCTION = union(union(P_CLOSERS,
+            HEADINGS, TABLE_PARTS, DD_DT, RAW_TEXT_TAGS, ESCAPABLE_RAW_TEXT_TAGS),
+            setOf("li", "param", "source", "track"));
+    private static final Set<String> SPECIAL = setOf("address", "applet", "area",
+            "article", "aside", "base", "basefont", "bgsound", "blockquote", "body",
+            "br", "button", "caption", "center", "col", "colgroup", "command", "dd",
+            "details", "dir", "div", "dl", "dt", "embed", "fieldset", "figcaption",
+            "figure", "footer", "form", "frame", "frameset", "h1", "h2", "h3", "h4",
+            "h5", "h6", "head", "header", "hgroup", "hr", "html", "iframe", "img",
+            "input", "isindex", "li", "link", "listing", "marquee", "menu", "meta",
+            "nav", "noembed", "noframes", "noscript", "object", "ol", "p", "param",
+            "plaintext", "pre", "script", "section", "select", "style", "summary",
+            "table", "tbody", "td", "textarea", "tfoot", "th", "thead", "title", "tr",
+            "ul", "wbr", "xmp");
+
+    // Tags that limit the search of an open tag.
+    private static final Set<String> SCOPE = setOf("applet", "caption", "html",
+            "marquee", "object", "table", "td", "th");
+    private static final Set<String> BUTTON_SCOPE = union(SCOPE, setOf("button"));
+    private static final Set<String> LIST_ITEM_SCOPE = union(SCOPE, setOf("ol", "ul"));
+    private static final Set<String> TABLE_SCOPE = setOf("html", "table");
+
+    // Limits of the loops of the adoption agency algorithm.
+    private static final int ADOPTION_OUTER_LOOPS = 8;
+    private static final int ADOPTION_INNER_LOOPS = 3;
+
+    // States of the content of a script.
+    private static final int SCRIPT_DATA = 0;
+    private static final int SCRIPT_ESCAPED = 1;
+    private static final int SCRIPT_DOUBLE_ESCAPED = 2;
+
+    // Name given to the root of the document, which is never closed.
+    private static final String ROOT = "html";
+
+    private final CharsetDecoder decoder;
+    private ByteBuffer bytes;
+    private CharBuffer chars;
+    private char[] input;
+    private int length;
+    private int pos;
+
+    // Stack of open tags, the first one is the root of the document.
+    private final List<Frame> stack = new ArrayList<Frame>();
+    // Formatting tags that are opened again when closed by another tag. A
+    // null entry is a marker that limits the tags to open again.
+    private final List<Frame> formatting = new ArrayList<Frame>();
+    // Frames no longer used, kept to avoid creating new ones.
+    private final List<Frame> pool = new ArrayList<Frame>();
+
+    private final TagNames tagNames = new TagNames();
+    // Content read after a self-closing tag whose content is not HTML.
+    private final StringBuilder rawText = new StringBuilder();
+    private boolean selfClosing;
+    private boolean formOpen;
+    // A frameset found before any content replaces the body of the document,
+    // then only the text of the noframes tags is kept.
+    private boolean framesetOk;
+    private boolean inFrameset;
+
+    private InverseFile invFile;
+    private long tokenizeTime;
+
+    StreamingHtmlTokenizer(StopWords stopWords) {
+        super(stopWords);
+        decoder = CHARSET.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = ByteBuffer.allocate(0);
+        chars = CharBuffer.allocate(0);
+    }
+
+    private static Set<String> setOf(String... tags) {
+        return new HashSet<String>(Arrays.asList(tags));
+    }
+
+    @SafeVarargs
+    private static Set<String> union(Set<String>... sets) {
+
+        Set<String> result = new HashSet<String>();
+
+        for (Set<String> set : sets) {
+            result.addAll(set);
+        }
+
+        return result;
+    }
+
+    @Override
+    InverseFile tokenize(ByteBuffer content, int documentId, String documentName) {
+
+        LOGGER.debug("Scanning {} without building a DOM.", documentName);
+
+        long start = System.nanoTime();
+        decode(content);
+
+        invFile = createInverseFile(documentId, documentName);
+        tokenizeTime = 0;
+        scan();
+
+        setTimes(System.nanoTime() - start - tokenizeTime, tokenizeTime);
+
+        InverseFile result = invFile;
+        invFile = null;
+        return finishInverseFile(result);
+    }
+
+    /**
+     * Decodes the bytes of the document reusing the same buffers. The bytes
+     * are copied first to an array, which the decoder reads much faster than
+     * a mapped file.
+     */
+    private void decode(ByteBuffer content) {
+
+        int size = content.remaining();
+        int maxChars = (int) (size * (double) decoder.maxCharsPerByte()) + 1;
+
+        if (bytes.capacity() < size) {
+            bytes = ByteBuffer.allocate(size);
+        }
+
+        if (chars.capacity() < maxChars) {
+            chars = CharBuffer.allocate(maxChars);
+        }
+
+        // Calls through Buffer so the classes also run on older JVMs.
+        ((Buffer) bytes).clear();
+        bytes.put(content.duplicate());
+        ((Buffer) bytes).flip();
+        ((Buffer) chars).clear();
+
+        decoder.reset();
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+
+        input = chars.array();
+        length = chars.position();
+        pos = (length > 0 && isByteOrderMark(input[0])) ? 1 : 0;
+    }
+
+    /**
+     * Scans the document, adding the text found to the open tags.
+     */
+    private void scan() {
+
+        stack.clear();
+        formatting.clear();
+        formOpen = false;
+        framesetOk = true;
+        inFrameset = false;
+        push(ROOT);
+
+        while (pos < length) {
+            char c = input[pos];
+
+            if (c == '<') {
+                readMarkup();
+            } else if (c == '&') {
+                ++pos;
+                beforeText(false);
+                readCharacterReference(current().text);
+            } else {
+                int start = pos;
+                while (pos < length && input[pos] != '<' && input[pos] != '&') {
+                    ++pos;
+                }
+                appendText(start, pos);
+            }
+        }
+
+        if (inFrameset) {
+            current().text.setLength(0);
+        }
+
+        while (!stack.isEmpty()) {
+            pop();
+        }
+    }
+
+    /**
+     * Appends a run of text to the current tag.
+     */
+    private void appendText(int start, int end) {
+
+        beforeText(isWhitespace(start, end));
+        current().text.append(input, start, end - start);
+    }
+
+    /**
+     * Opens again the formatting tags before adding text, except in the places
+     * of a table or a select where the parser does not do it.
+     */
+    private void beforeText(boolean whitespace) {
+
+        if (!whitespace) {
+            framesetOk = false;
+            closeColumnGroup();
+        }
+
+        if (inSelect() || (whitespace && TABLE_CONTEXT.contains(current().name))) {
+            return;
+        }
+
+        reconstructFormatting();
+    }
+
+    private boolean isWhitespace(int start, int end) {
+
+        for (int i = start; i < end; ++i) {
+            if (!isWhitespace(input[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isWhitespace(CharSequence text) {
+
+        for (int i = 0; i < text.length(); ++i) {
+            if (!isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private boolean matches(String str, boolean ignoreCase) {
+
+        if (length - pos < str.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < str.length(); ++i) {
+            char c = input[pos + i];
+            if (c != str.charAt(i) && !(ignoreCase
+                    && Character.toUpperCase(c) == str.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads something that starts with '&lt;': a tag, a comment or a doctype.
+     */
+    private void readMarkup() {
+
+        ++pos;
+
+        if (pos >= length) {
+            appendText(pos - 1, pos);
+            return;
+        }
+
+        char c = input[pos];
+
+        if (c == '!') {
+            ++pos;
+            readMarkupDeclaration();
+        } else if (c == '?') {
+            skipTo('>');
+        } else if (c == '/') {
+            ++pos;
+            readEndTag();
+        } else if (isLetter(c)) {
+            String name = readTag();
+            if (name != null) {
+                handleStartTag(name);
+            }
+        } else {
+            appendText(pos - 1, pos);
+        }
+    }
+
+    private void readMarkupDeclaration() {
+
+        if (matches("--", false)) {
+            pos += 2;
+            skipComment();
+        } else if (matches("DOCTYPE", true)) {
+            skipTo('>');
+        } else if (matches("[CDATA[", false)) {
+            pos += "[CDATA[".length();
+            int start = pos;
+            while (pos < length && !matches("]]>", false)) {
+                ++pos;
+            }
+            appendText(start, pos);
+            pos += "]]>".length();
+        } else {
+            skipTo('>');
+        }
+    }
+
+    /**
+     * Skips a comment, following the states of the tokenizer of JSoup.
+     */
+    private void skipComment() {
+
+        // After "<!--" a '>' ends the comment, even after some dashes.
+        while (pos < length && input[pos] == '-') {
+            ++pos;
+        }
+
+        if (pos < length && input[pos] == '>') {
+            ++pos;
+            return;
+        }
+
+        while (pos < length) {
+            char c = input[pos++];
+
+            if (c != '-' || pos >= length || input[pos] != '-') {
+                continue;
+            }
+
+            // After "--" any number of dashes can follow before the end.
+            ++pos;
+
+            while (pos < length && input[pos] == '-') {
+                ++pos;
+            }
+
+            if (pos < length && input[pos] == '>') {
+                ++pos;
+                return;
+            } else if (pos + 1 < length && input[pos] == '!' && input[pos + 1] == '>') {
+                pos += 2;
+                return;
+            }
+        }
+    }
+
+    private void skipTo(char c) {
+
+        while (pos < length && input[pos] != c) {
+            ++pos;
+        }
+
+        ++pos;
+    }
+
+    /**
+     * Reads the name and the attributes of a tag.
+     * @return the name of the tag in lower case or null if the document ended
+     * before the end of the tag.
+     */
+    private String readTag() {
+
+        int start = pos;
+
+        while (pos < length) {
+            char c = input[pos];
+            if (isWhitespace(c) || c == '/' || c == '>') {
+                break;
+            }
+            ++pos;
+        }
+
+        String name = tagNames.get(input, start, pos);
+        return skipAttributes() ? name : null;
+    }
+
+    /**
+     * Skips the attributes of a tag until its end.
+     * @return true if the end of the tag was found.
+     */
+    private boolean skipAttributes() {
+
+        selfClosing = false;
+
+        while (pos < length) {
+            char c = input[pos++];
+
+            if (c == '>') {
+                return true;
+            } else if (c == '/') {
+                if (pos < length && input[pos] == '>') {
+                    ++pos;
+                    selfClosing = true;
+                    return true;
+                }
+            } else if (!isWhitespace(c)) {
+                skipAttribute();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Skips an attribute whose name starts before the current position.
+     */
+    private void skipAttribute() {
+
+        while (pos < length) {
+            char c = input[pos];
+            if (isWhitespace(c) || c == '/' || c == '>' || c == '=') {
+                break;
+            }
+            ++pos;
+        }
+
+        while (pos < length && isWhitespace(input[pos])) {
+            ++pos;
+        }
+
+        if (pos >= length || input[pos] != '=') {
+            return;
+        }
+
+        ++pos;
+
+        while (pos < length && isWhitespace(input[pos])) {
+            ++pos;
+        }
+
+        if (pos >= length) {
+            return;
+        }
+
+        char quote = input[pos];
+
+        if (quote == '"' || quote == '\'') {
+            ++pos;
+            while (pos < length && input[pos] != quote) {
+                ++pos;
+            }
+            ++pos;
+        } else if (quote != '>') {
+            while (pos < length && !isWhitespace(input[pos]) && input[pos] != '>') {
+                ++pos;
+            }
+        }
+    }
+
+    private void readEndTag() {
+
+        if (pos >= length) {
+            appendText(pos - 2, pos);
+        } else if (isLetter(input[pos])) {
+            String name = readTag();
+            if (name != null) {
+                handleEndTag(name);
+                flushStack();
+            }
+        } else if (input[pos] == '>') {
+            ++pos;
+        } else {
+            skipTo('>');
+        }
+    }
+
+    /**
+     * Reads a character reference after '&amp;' and appends its value, or the
+     * '&amp;' if there is no valid reference.
+     * @param text where the character will be appended.
+     */
+    private void readCharacterReference(StringBuilder text) {
+
+        if (pos >= length) {
+            text.append('&');
+            return;
+        }
+
+        char c = input[pos];
+
+        if (isWhitespace(c) || c == '<' || c == '&') {
+            text.append('&');
+        } else if (c == '#') {
+            readNumericReference(text);
+        } else {
+            readNamedReference(text);
+        }
+    }
+
+    private void readNumericReference(StringBuilder text) {
+
+        int mark = pos;
+        ++pos;
+        boolean hex = pos < length && (input[pos] == 'x' || input[pos] == 'X');
+
+        if (hex) {
+            ++pos;
+        }
+
+        int start = pos;
+
+        while (pos < length && isDigit(input[pos], hex)) {
+            ++pos;
+        }
+
+        if (pos == start) {
+            pos = mark;
+            text.append('&');
+            return;
+        }
+
+        int value;
+
+        try {
+            value = Integer.parseInt(new String(input, start, pos - start), hex ? 16 : 10);
+        } catch (NumberFormatException e) {
+            value = -1;
+        }
+
+        if (pos < length && input[pos] == ';') {
+            ++pos;
+        }
+
+        if (value == -1 || (value >= 0xD800 && value <= 0xDFFF) || value > 0x10FFFF) {
+            text.append(REPLACEMENT_CHAR);
+        } else {
+            text.appendCodePoint(value);
+        }
+    }
+
+    private static boolean isDigit(char c, boolean hex) {
+        return (c >= '0' && c <= '9') || (hex && ((c >= 'a' && c <= 'f')
+                || (c >= 'A' && c <= 'F')));
+    }
+
+    private void readNamedReference(StringBuilder text) {
+
+        int start = pos;
+
+        while (pos < length && isLetter(input[pos])) {
+            ++pos;
+        }
+
+        while (pos < length && input[pos] >= '0' && input[pos] <= '9') {
+            ++pos;
+        }
+
+        String name = new String(input, start, pos - start);
+        boolean looksLegit = pos < length && input[pos] == ';';
+        boolean found = Entities.isBaseNamedEntity(name)
+                || (Entities.isNamedEntity(name) && looksLegit);
+
+        if (!found) {
+            pos = start;
+            text.append('&');
+            return;
+        }
+
+        if (looksLegit) {
+            ++pos;
+        }
+
+        text.append(Entities.getCharacterByName(name).charValue());
+    }
+
+    /**
+     * Reads the content of a tag whose content is not HTML and its end tag.
+     * Like JSoup, when a title or a textarea has no end tag its content stops
+     * at the next tag.
+     * @param name the name of the tag.
+     * @param text where the content is appended, null if it must be ignored.
+     * @param decode true if the character references must be decoded.
+     */
+    private void readRawText(String name, StringBuilder text, boolean decode) {
+
+        int endTag = -1;
+
+        while (pos < length) {
+            char c = input[pos];
+
+            if (c == '<' && isEndTagOf(name)) {
+                pos += 2;
+                readTag();
+                return;
+            }
+
+            if (c == '<' && decode && pos + 1 < length && isLetter(input[pos + 1])) {
+                if (endTag < pos) {
+                    endTag = indexOfEndTag(name);
+                }
+                if (endTag < 0) {
+                    return;
+                }
+            }
+
+            ++pos;
+
+            if (text == null) {
+                continue;
+            }
+
+            if (c == '&' && decode) {
+                readCharacterReference(text);
+            } else {
+                text.append(c);
+            }
+        }
+    }
+
+    /**
+     * Searches the next end tag of an element, written either in lower or in
+     * upper case as JSoup does.
+     * @param name the name of the tag.
+     * @return the position of the end tag or -1 if there is none.
+     */
+    private int indexOfEndTag(String name) {
+
+        String lower = "</" + name;
+        String upper = lower.toUpperCase(Locale.ENGLISH);
+
+        for (int i = pos; i <= length - lower.length(); ++i) {
+            if (regionMatches(i, lower) || regionMatches(i, upper)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean regionMatches(int start, String str) {
+
+        for (int i = 0; i < str.length(); ++i) {
+            if (input[start + i] != str.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Skips the content of a script and its end tag. Inside a comment of the
+     * script, a nested script tag hides the end tags until the comment ends.
+     */
+    private void skipScript() {
+
+        int state = SCRIPT_DATA;
+        int dashes = 0;
+
+        while (pos < length) {
+            char c = input[pos];
+
+            if (c == '<' && isEndTagOf("script")) {
+                if (state != SCRIPT_DOUBLE_ESCAPED) {
+                    pos += 2;
+                    readTag();
+                    return;
+                }
+                pos += 2 + "script".length();
+                state = SCRIPT_ESCAPED;
+            } else if (state == SCRIPT_DATA && matches("<!--", false)) {
+                pos += 4;
+                state = SCRIPT_ESCAPED;
+                c = '-';
+                dashes = 1;
+            } else if (c == '<' && state == SCRIPT_ESCAPED && isStartTagOf("script")) {
+                pos += 1 + "script".length();
+                state = SCRIPT_DOUBLE_ESCAPED;
+            } else if (c == '>' && dashes >= 2 && state != SCRIPT_DATA) {
+                state = SCRIPT_DATA;
+                ++pos;
+            } else {
+                ++pos;
+            }
+
+            dashes = c == '-' ? dashes + 1 : 0;
+        }
+    }
+
+    /**
+     * Checks if the start tag of an element starts at the current position.
+     */
+    private boolean isStartTagOf(String name) {
+
+        int end = pos + 1 + name.length();
+
+        if (end >= length) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); ++i) {
+            if (Character.toLowerCase(input[pos + 1 + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+
+        char c = input[end];
+        return isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    /**
+     * Checks if the end tag of an element starts at the current position.
+     */
+    private boolean isEndTagOf(String name) {
+
+        int end = pos + 2 + name.length();
+
+        if (end >= length || input[pos + 1] != '/') {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); ++i) {
+            if (Character.toLowerCase(input[pos + 2 + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+
+        char c = input[end];
+        return isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    private void handleStartTag(String name) {
+
+        if (name.equals("image")) {
+            name = "img";
+        }
+
+        if (inFrameset) {
+            startTagInFrameset(name);
+            return;
+        }
+
+        if (name.equals("frameset") && framesetOk) {
+            openFrameset();
+            return;
+        }
+
+        if (FRAMESET_BREAKERS.contains(name)) {
+            framesetOk = false;
+        }
+
+        if (name.equals("col") && current().name.equals("colgroup")) {
+            return;
+        } else if (!name.equals("html")) {
+            closeColumnGroup();
+        }
+
+        if (IGNORED_TAGS.contains(name)) {
+            return;
+        }
+
+        if (inSelect() && !startTagInSelect(name)) {
+            return;
+        }
+
+        if (!closeBeforeStartTag(name)) {
+            return;
+        }
+
+        if (!NO_RECONSTRUCTION.contains(name) || name.equals("xmp")) {
+            reconstructFormatting();
+        }
+
+        if (name.equals("br")) {
+            fosterParent().text.append(' ');
+            return;
+        }
+
+        if (VOID_TAGS.contains(name)) {
+            return;
+        }
+
+        boolean raw = RAW_TEXT_TAGS.contains(name);
+        boolean escapable = ESCAPABLE_RAW_TEXT_TAGS.contains(name);
+
+        // The parser adds these tags empty, which still ends the text before.
+        if (selfClosing && (raw || escapable || name.equals("plaintext"))) {
+            flush(current());
+        }
+
+        if (selfClosing && name.equals("script")) {
+            return;
+        }
+
+        if (selfClosing && (raw || escapable || name.equals("plaintext"))) {
+            readTextAfterSelfClosing(name, escapable);
+            return;
+        }
+
+        Frame frame = push(name);
+
+        if (FORMATTERS.contains(name)) {
+            formatting.add(frame);
+        } else if (APPLETS.contains(name) || CELLS.contains(name)
+                || name.equals("caption")) {
+            formatting.add(null);
+        } else if (name.equals("form")) {
+            formOpen = true;
+        }
+
+        if (selfClosing) {
+            // The parser closes at once the tags that are not void, except a
+            // form which stays open.
+            if (!name.equals("form")) {
+                handleEndTag(name);
+            }
+        } else if (name.equals("script")) {
+            skipScript();
+            popTo(name);
+        } else if (raw || escapable) {
+            readRawText(name, DATA_TAGS.contains(name) ? null : frame.text, escapable);
+            popTo(name);
+        } else if (name.equals("plaintext")) {
+            frame.text.append(input, pos, length - pos);
+            pos = length;
+        }
+    }
+
+    /**
+     * Reads the content after a self-closing tag whose content is not HTML.
+     * The tag is closed at once, but the parser still reads the content after
+     * it as text, which goes to the parent tag like any other text.
+     * @param name the name of the tag.
+     * @param decode true if the character references must be decoded.
+     */
+    private void readTextAfterSelfClosing(String name, boolean decode) {
+
+        rawText.setLength(0);
+
+        if (name.equals("plaintext")) {
+            rawText.append(input, pos, length - pos);
+            pos = length;
+        } else {
+            readRawText(name, rawText, decode);
+        }
+
+        if (rawText.length() > 0) {
+            beforeText(isWhitespace(rawText));
+            current().text.append(rawText);
+        }
+    }
+
+    /**
+     * Closes the group of columns of a table, which only holds columns and
+     * whitespace.
+     * @return true if a group was closed.
+     */
+    private boolean closeColumnGroup() {
+
+        if (current().name.equals("colgroup")) {
+            pop();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Replaces the body of the document with a frameset. The text found so far
+     * outside the root is dropped, as the parser removes the body.
+     */
+    private void openFrameset() {
+
+        while (stack.size() > 1) {
+            current().text.setLength(0);
+            pop();
+        }
+
+        formatting.clear();
+        flush(current());
+        inFrameset = true;
+    }
+
+    /**
+     * Handles the start tags found inside a frameset, where only the content
+     * of the noframes tags is read.
+     */
+    private void startTagInFrameset(String name) {
+
+        if (name.equals("noframes") && !selfClosing) {
+            Frame frame = push(name);
+            readRawText(name, frame.text, false);
+            popTo(name);
+        } else if (name.equals("noframes")) {
+            readRawText(name, current().text, false);
+        }
+    }
+
+    /**
+     * Handles the start tags found inside a select, where most tags are ignored.
+     * @return true if the tag must be handled as usual.
+     */
+    private boolean startTagInSelect(String name) {
+
+        if (SELECT_TABLE_CLOSERS.contains(name) && getFromStack("table") != null) {
+            popTo("select");
+            return true;
+        }
+
+        if (OPTIONS.contains(name)) {
+            if (current().name.equals("option")) {
+                pop();
+            } else if (name.equals("optgroup") && current().name.equals("optgroup")) {
+                pop();
+            }
+            push(name);
+            if (selfClosing) {
+                endTagInSelect(name);
+            }
+            return false;
+        }
+
+        if (name.equals("select")) {
+            popTo("select");
+            return false;
+        }
+
+        if (SELECT_CLOSERS.contains(name)) {
+            popTo("select");
+            return true;
+        }
+
+        return name.equals("script");
+    }
+
+    /**
+     * Closes the tags implicitly closed by a start tag.
+     * @return false if the start tag must be ignored.
+     */
+    private boolean closeBeforeStartTag(String name) {
+
+        if (name.equals("form") && formOpen) {
+            return false;
+        }
+
+        if (TABLE_PARTS.contains(name)) {
+            return closeBeforeTablePart(name);
+        }
+
+        if (name.equals("table") && inTableMode()) {
+            popTo("table");
+        }
+
+        if (name.equals("form") && inTableMode()) {
+            // The form is added to the table but is not left open.
+            formOpen = true;
+            return false;
+        }
+
+        if (P_CLOSERS.contains(name) || HEADINGS.contains(name)) {
+            closeParagraph();
+
+            if (HEADINGS.contains(name) && HEADINGS.contains(current().name)) {
+                pop();
+            }
+        } else if (name.equals("li") || DD_DT.contains(name)) {
+            closeListItem(name);
+            closeParagraph();
+        } else if (OPTIONS.contains(name)) {
+            if (current().name.equals("option")) {
+                pop();
+            }
+        } else if (name.equals("button")) {
+            if (inScope("button", BUTTON_SCOPE)) {
+                generateImpliedEndTags(null);
+                popTo("button");
+            }
+        } else if (name.equals("a")) {
+            Frame a = getFormatting("a");
+            if (a != null) {
+                adoptionAgency("a");
+                formatting.remove(a);
+                if (stack.remove(a)) {
+                    flush(a);
+                }
+            }
+        } else if (name.equals("nobr")) {
+            reconstructFormatting();
+            if (inScope("nobr", SCOPE)) {
+                adoptionAgency("nobr");
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the parts of a table implicitly closed by another part.
+     * @return false if there is no table and the tag must be ignored.
+     */
+    private boolean closeBeforeTablePart(String name) {
+
+        if (!inScope("table", TABLE_SCOPE)) {
+            return false;
+        }
+
+        closeCell();
+        popUntil(TABLE_CONTEXT);
+
+        // The parser adds the missing body and row of the table, which then
+        // take the text found after the cells.
+        if (CELLS.contains(name)) {
+            if (current().name.equals("table")) {
+                push("tbody");
+            }
+            if (!current().name.equals("tr")) {
+                push("tr");
+            }
+            return true;
+        }
+
+        if (current().name.equals("tr")) {
+            pop();
+        }
+
+        if (name.equals("tr")) {
+            if (current().name.equals("table")) {
+                push("tbody");
+            }
+            return true;
+        }
+
+        if (TABLE_SECTIONS.contains(current().name)) {
+            pop();
+        }
+
+        return true;
+    }
+
+    private void closeCell() {
+
+        if (inScope(CELLS, TABLE_SCOPE)) {
+            generateImpliedEndTags(null);
+            popUntil(CELLS);
+            pop();
+            clearFormattingToMarker();
+        }
+
+        if (inScope("caption", TABLE_SCOPE)) {
+            popTo("caption");
+            clearFormattingToMarker();
+        }
+    }
+
+    private void closeParagraph() {
+
+        if (inScope("p", BUTTON_SCOPE)) {
+            generateImpliedEndTags("p");
+            popTo("p");
+        }
+    }
+
+    private void closeListItem(String name) {
+
+        for (int i = stack.size() - 1; i > 0; --i) {
+            Frame frame = stack.get(i);
+
+            if (frame.name.equals(name)
+                    || (!name.equals("li") && DD_DT.contains(frame.name))) {
+                generateImpliedEndTags(frame.name);
+                popTo(frame.name);
+                return;
+            }
+
+            if (SPECIAL.contains(frame.name) && !LI_BREAKERS.contains(frame.name)) {
+                return;
+            }
+        }
+    }
+
+    private void handleEndTag(String name) {
+
+        if (inFrameset) {
+            return;
+        }
+
+        if (name.equals("col") && current().name.equals("colgroup")) {
+            return;
+        } else if (closeColumnGroup() && name.equals("colgroup")) {
+            return;
+        }
+
+        if (name.equals("br")) {
+            selfClosing = false;
+            handleStartTag("br");
+            return;
+        }
+
+        if (IGNORED_TAGS.contains(name)) {
+            return;
+        }
+
+        if (inSelect() && SELECT_TABLE_CLOSERS.contains(name)
+                && getFromStack("table") != null) {
+            if (inScope(name, TABLE_SCOPE)) {
+                popTo("select");
+                handleEndTag(name);
+            }
+        } else if (inSelect()) {
+            endTagInSelect(name);
+        } else if (END_CLOSERS.contains(name) || APPLETS.contains(name)
+                || DD_DT.contains(name)) {
+            if (inScope(name, SCOPE)) {
+                generateImpliedEndTags(DD_DT.contains(name) ? name : null);
+                popTo(name);
+
+                if (APPLETS.contains(name)) {
+                    clearFormattingToMarker();
+                }
+            }
+        } else if (name.equals("form")) {
+            closeForm();
+        } else if (name.equals("p")) {
+            closeParagraph();
+        } else if (name.equals("li")) {
+            if (inScope("li", LIST_ITEM_SCOPE)) {
+                generateImpliedEndTags("li");
+                popTo("li");
+            }
+        } else if (HEADINGS.contains(name)) {
+            if (inScope(HEADINGS, SCOPE)) {
+                generateImpliedEndTags(name);
+                popUntil(HEADINGS);
+                pop();
+            }
+        } else if (FORMATTERS.contains(name)) {
+            adoptionAgency(name);
+        } else if (name.equals("table")) {
+            if (inScope("table", TABLE_SCOPE)) {
+                closeCell();
+                popTo("table");
+            }
+        } else if (TABLE_PARTS.contains(name)) {
+            closeTablePart(name);
+        } else {
+            anyOtherEndTag(name);
+        }
+    }
+
+    private void closeForm() {
+
+        Frame form = getFromStack("form");
+        formOpen = false;
+
+        if (form != null && inScope("form", SCOPE)) {
+            generateImpliedEndTags(null);
+            stack.remove(form);
+            release(form);
+        }
+    }
+
+    private void closeTablePart(String name) {
+
+        if (!inScope("table", TABLE_SCOPE) || !inScope(name, TABLE_SCOPE)) {
+            return;
+        }
+
+        if (TABLE_CONTEXT.contains(name)) {
+            closeCell();
+        }
+
+        generateImpliedEndTags(null);
+        popTo(name);
+
+        if (CELLS.contains(name) || name.equals("caption")) {
+            clearFormattingToMarker();
+        }
+    }
+
+    private void endTagInSelect(String name) {
+
+        if (name.equals("select")) {
+            popTo("select");
+        } else if (name.equals("option") && current().name.equals("option")) {
+            pop();
+        } else if (name.equals("optgroup")) {
+            if (current().name.equals("option") && stack.size() > 2
+                    && stack.get(stack.size() - 2).name.equals("optgroup")) {
+                pop();
+            }
+            if (current().name.equals("optgroup")) {
+                pop();
+            }
+        }
+    }
+
+    private void anyOtherEndTag(String name) {
+
+        for (int i = stack.size() - 1; i > 0; --i) {
+            Frame frame = stack.get(i);
+
+            if (frame.name.equals(name)) {
+                generateImpliedEndTags(name);
+                popTo(name);
+                return;
+            }
+
+            if (SPECIAL.contains(frame.name)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes a formatting tag following the adoption agency algorithm as
+     * implemented by JSoup. The text of the tags moved by the algorithm is
+     * moved with them.
+     */
+    private void adoptionAgency(String name) {
+
+        for (int i = 0; i < ADOPTION_OUTER_LOOPS; ++i) {
+            Frame formatEl = getFormatting(name);
+
+            if (formatEl == null) {
+                anyOtherEndTag(name);
+                return;
+            } else if (!stack.contains(formatEl)) {
+                formatting.remove(formatEl);
+                return;
+            } else if (!inScope(formatEl.name, SCOPE)) {
+                return;
+            }
+
+            Frame furthestBlock = null;
+
+            for (int j = stack.indexOf(formatEl) + 1; j < stack.size(); ++j) {
+                if (SPECIAL.contains(stack.get(j).name)) {
+                    furthestBlock = stack.get(j);
+                    break;
+                }
+            }
+
+            if (furthestBlock == null) {
+                popTo(formatEl);
+                formatting.remove(formatEl);
+                return;
+            }
+
+            Frame node = furthestBlock;
+
+            for (int j = 0; j < ADOPTION_INNER_LOOPS; ++j) {
+                if (stack.contains(node)) {
+                    node = stack.get(stack.indexOf(node) - 1);
+                }
+
+                if (!formatting.contains(node)) {
+                    stack.remove(node);
+                    flush(node);
+                    continue;
+                } else if (node == formatEl) {
+                    break;
+                }
+
+                Frame replacement = newFrame(node.name);
+                formatting.set(formatting.indexOf(node), replacement);
+                stack.set(stack.indexOf(node), replacement);
+                flush(node);
+                node = replacement;
+            }
+
+            // The content of the furthest block is moved to a new formatting tag.
+            Frame adopter = newFrame(formatEl.name);
+            StringBuilder text = adopter.text;
+            adopter.text = furthestBlock.text;
+            furthestBlock.text = text;
+
+            formatting.remove(formatEl);
+            stack.remove(formatEl);
+            flush(formatEl);
+            stack.add(stack.indexOf(furthestBlock) + 1, adopter);
+        }
+    }
+
+    /**
+     * Opens again the formatting tags that were closed implicitly.
+     */
+    private void reconstructFormatting() {
+
+        int size = formatting.size();
+
+        if (size == 0) {
+            return;
+        }
+
+        Frame last = formatting.get(size - 1);
+
+        if (last == null || stack.contains(last)) {
+            return;
+        }
+
+        int i = size - 1;
+
+        while (i > 0) {
+            Frame entry = formatting.get(i - 1);
+            if (entry == null || stack.contains(entry)) {
+                break;
+            }
+            --i;
+        }
+
+        for (; i < size; ++i) {
+            formatting.set(i, push(formatting.get(i).name));
+        }
+    }
+
+    private void clearFormattingToMarker() {
+
+        while (!formatting.isEmpty()) {
+            if (formatting.remove(formatting.size() - 1) == null) {
+                return;
+            }
+        }
+    }
+
+    private Frame getFormatting(String name) {
+
+        for (int i = formatting.size() - 1; i >= 0; --i) {
+            Frame entry = formatting.get(i);
+
+            if (entry == null) {
+                return null;
+            } else if (entry.name.equals(name)) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    private Frame getFromStack(String name) {
+
+        for (int i = stack.size() - 1; i > 0; --i) {
+            if (stack.get(i).name.equals(name)) {
+                return stack.get(i);
+            }
+        }
+
+        return null;
+    }
+
+    private boolean inSelect() {
+        return getFromStack("select") != null;
+    }
+
+    /**
+     * Tells if the parser follows the rules of a table, which is the case when
+     * the nearest part of a table open is not a cell or a caption.
+     */
+    private boolean inTableMode() {
+
+        for (int i = stack.size() - 1; i >= 0; --i) {
+            String frameName = stack.get(i).name;
+
+            if (TABLE_CONTEXT.contains(frameName)) {
+                return true;
+            } else if (CELLS.contains(frameName) || frameName.equals("caption")) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the tag where a new tag is added. Tags found directly inside a table
+     * are moved before the table, into its parent.
+     */
+    private Frame fosterParent() {
+
+        if (TABLE_CONTEXT.contains(current().name)) {
+            for (int i = stack.size() - 1; i > 0; --i) {
+                if (stack.get(i).name.equals("table")) {
+                    return stack.get(i - 1);
+                }
+            }
+        }
+
+        return current();
+    }
+
+    /**
+     * Closes the tags whose end tag is optional, except the given one. As in
+     * the version of JSoup used, nothing is closed when no tag is excepted.
+     */
+    private void generateImpliedEndTags(String except) {
+
+        while (except != null && IMPLIED_END_TAGS.contains(current().name)
+                && !current().name.equals(except)) {
+            pop();
+        }
+    }
+
+    private boolean inScope(String name, Set<String> scope) {
+        return inScope(Arrays.asList(name), scope);
+    }
+
+    private boolean inScope(Collection<String> names, Set<String> scope) {
+
+        for (int i = stack.size() - 1; i >= 0; --i) {
+            String frameName = stack.get(i).name;
+
+            if (names.contains(frameName)) {
+                return true;
+            } else if (scope.contains(frameName)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private Frame current() {
+        return stack.get(stack.size() - 1);
+    }
+
+    /**
+     * Opens a tag. The text of the parent found so far comes before the text
+     * of the new tag. In a frameset the text outside the noframes tags is
+     * dropped at the end, so it is kept.
+     */
+    private Frame push(String name) {
+
+        if (!inFrameset && !stack.isEmpty()) {
+            flush(current());
+        }
+
+        tagBoundary(name);
+        Frame frame = newFrame(name);
+        stack.add(frame);
+        return frame;
+    }
+
+    private Frame newFrame(String name) {
+
+        Frame frame = pool.isEmpty() ? new Frame() : pool.remove(pool.size() - 1);
+        frame.name = name;
+        frame.field = Field.fromTag(name);
+        frame.text.setLength(0);
+        return frame;
+    }
+
+    /**
+     * Closes the tag on top of the stack and adds its text to the inverse file.
+     */
+    private void pop() {
+        release(stack.remove(stack.size() - 1));
+    }
+
+    /**
+     * Closes the tags until a tag with the given name is closed. The root of
+     * the document is never closed.
+     */
+    private void popTo(String name) {
+
+        while (stack.size() > 1) {
+            Frame frame = current();
+            pop();
+
+            if (frame.name.equals(name)) {
+                return;
+            }
+        }
+    }
+
+    private void popTo(Frame target) {
+
+        while (stack.size() > 1) {
+            Frame frame = current();
+            pop();
+
+            if (frame == target) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the tags until the current one has one of the given names.
+     */
+    private void popUntil(Set<String> names) {
+
+        while (stack.size() > 1 && !names.contains(current().name)) {
+            pop();
+        }
+    }
+
+    /**
+     * Adds the text of a tag to the inverse file and keeps the frame to be
+     * used again if no formatting tag refers to it.
+     */
+    private void release(Frame frame) {
+
+        flush(frame);
+        tagBoundary(frame.name);
+
+        if (!formatting.contains(frame)) {
+            pool.add(frame);
+        }
+    }
+
+    /**
+     * Adds the text left in the open tags after an end tag, which may have
+     * moved the text of the current tag to another one.
+     */
+    private void flushStack() {
+
+        if (inFrameset) {
+            return;
+        }
+
+        for (int i = 0; i < stack.size(); ++i) {
+            flush(stack.get(i));
+        }
+    }
+
+    private void flush(Frame frame) {
+
+        if (frame.text.length() == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        addText(frame.text, invFile, frame.field);
+        tokenizeTime += System.nanoTime() - start;
+
+        frame.text.setLength(0);
+    }
+
+    /**
+     * A tag that is open and the text found directly inside it.
+     */
+    private static class Frame {
+        private String name;
+        private Field field;
+        private StringBuilder text = new StringBuilder();
+    }
+
+    /**
+     * Cache of the names of the tags, used to avoid creating a String each
+     * time a tag is found. Once full, the new names are no longer kept.
+     */
+    private static class TagNames {
+
+        private static final int INITIAL_CAPACITY = 256;
+        private static final int MAX_SIZE = 4096;
+
+        private String[] names = new String[INITIAL_CAPACITY];
+        private int size = 0;
+
+        /**
+         * Gets the name of a tag in lower case.
+         */
+        String get(char[] chars, int start, int end) {
+
+            int hash = 0;
+
+            for (int i = start; i < end; ++i) {
+                hash = 31 * hash + Character.toLowerCase(chars[i]);
+            }
+
+            int mask = names.length - 1;
+            int slot = hash & mask;
+
+            while (names[slot] != null) {
+                if (equalsIgnoreCase(names[slot], chars, start, end)) {
+                    return names[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            char[] lower = new char[end - start];
+
+            for (int i = start; i < end; ++i) {
+                lower[i - start] = Character.toLowerCase(chars[i]);
+            }
+
+            String name = new String(lower);
+
+            if (size >= MAX_SIZE) {
+                return name;
+            }
+
+            names[slot] = name;
+
+            if (++size * 2 > names.length) {
+                rehash();
+            }
+
+            return name;
+        }
+
+        private static boolean equalsIgnoreCase(String name, char[] chars,
+                int start, int end) {
+
+            if (name.length() != end - start) {
+                return false;
+            }
+
+            for (int i = 0; i < name.length(); ++i) {
+                if (name.charAt(i) != Character.toLowerCase(chars[start + i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private void rehash() {
+
+            String[] old = names;
+            names = new String[old.length * 2];
+            int mask = names.length - 1;
+
+            for (String name : old) {
+                if (name != null) {
+                    int slot = name.hashCode() & mask;
+                    while (names[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    names[slot] = name;
+                }
+            }
+        }
+    }
+}
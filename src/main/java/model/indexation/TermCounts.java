@@ -0,0 +1,225 @@
+package model.indexation;
+
+import java.util.Arrays;
+
+/**
+ * Counts how many times each term is found, in an open addressing table of
+ * terms and an array of int counts, so counting a term never boxes an
+ * Integer. The counts are read with a {@link Cursor}, which gives each term
+ * with its count without creating objects. The table can also keep the
+ * position of each occurrence of a term. The objects of this class are not
+ * thread safe.
+ * @see InverseFile
+ */
+public class TermCounts {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_POSITIONS = 2;
+
+    private String[] terms;
+    private int[] counts;
+    // Positions of each term in increasing order, null if they are not kept.
+    private int[][] positions;
+    private int size = 0;
+
+    /**
+     * Creates an empty table without positions.
+     */
+    TermCounts() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty table.
+     * @param withPositions true to keep the positions of the terms.
+     */
+    TermCounts(boolean withPositions) {
+        terms = new String[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        positions = withPositions ? new int[INITIAL_CAPACITY][] : null;
+    }
+
+    /**
+     * Adds one to the count of a term.
+     * @param term the term found.
+     * @return the new count of the term.
+     */
+    int increment(String term) {
+
+        int slot = find(term);
+
+        if (terms[slot] != null) {
+            return ++counts[slot];
+        }
+
+        terms[slot] = term;
+        counts[slot] = 1;
+
+        if (++size * 2 > terms.length) {
+            rehash();
+        }
+
+        return 1;
+    }
+
+    /**
+     * Adds one to the count of a term and keeps its position, if the table
+     * keeps positions.
+     * @param term the term found.
+     * @param position the position of the term, not less than the previous
+     * one.
+     * @return the new count of the term.
+     */
+    int increment(String term, int position) {
+
+        if (positions == null) {
+            return increment(term);
+        }
+
+        int slot = find(term);
+        int count;
+
+        if (terms[slot] == null) {
+            terms[slot] = term;
+            positions[slot] = new int[INITIAL_POSITIONS];
+            count = 0;
+            ++size;
+        } else {
+            count = counts[slot];
+
+            if (count == positions[slot].length) {
+                positions[slot] = Arrays.copyOf(positions[slot], 2 * count);
+            }
+        }
+
+        positions[slot][count] = position;
+        counts[slot] = ++count;
+
+        if (size * 2 > terms.length) {
+            rehash();
+        }
+
+        return count;
+    }
+
+    /**
+     * Tells if the table keeps the positions of the terms.
+     * @return true if the positions are kept.
+     */
+    public boolean hasPositions() {
+        return positions != null;
+    }
+
+    /**
+     * Gets the count of a term.
+     * @param term the term.
+     * @return how many times the term was found, 0 if it was not found.
+     */
+    public int get(String term) {
+        return counts[find(term)];
+    }
+
+    /**
+     * Gets the number of different terms.
+     * @return the number of terms.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a cursor positioned before the first term.
+     * @return a new cursor.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Finds the slot of a term, or the empty slot where it goes.
+     */
+    private int find(String term) {
+
+        int mask = terms.length - 1;
+        int hash = term.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        while (terms[slot] != null && !terms[slot].equals(term)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void rehash() {
+
+        String[] oldTerms = terms;
+        int[] oldCounts = counts;
+        int[][] oldPositions = positions;
+        terms = new String[oldTerms.length * 2];
+        counts = new int[oldTerms.length * 2];
+        positions = oldPositions == null ? null : new int[oldTerms.length * 2][];
+
+        for (int i = 0; i < oldTerms.length; ++i) {
+            if (oldTerms[i] != null) {
+                int slot = find(oldTerms[i]);
+                terms[slot] = oldTerms[i];
+                counts[slot] = oldCounts[i];
+
+                if (positions != null) {
+                    positions[slot] = oldPositions[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the terms of the table and their counts, in no particular order.
+     * The table must not change while it is read.
+     */
+    public class Cursor {
+
+        private int slot = -1;
+
+        /**
+         * Moves to the next term.
+         * @return false if there are no more terms.
+         */
+        public boolean next() {
+
+            while (++slot < terms.length) {
+                if (terms[slot] != null) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Gets the current term.
+         * @return the term.
+         */
+        public String term() {
+            return terms[slot];
+        }
+
+        /**
+         * Gets the count of the current term.
+         * @return the count.
+         */
+        public int count() {
+            return counts[slot];
+        }
+
+        /**
+         * Gets the positions of the current term. The array is the one of
+         * the table and only its first {@link #count()} values are used.
+         * @return the positions in increasing order, null if the table does
+         * not keep them.
+         */
+        public int[] positions() {
+            return positions == null ? null : positions[slot];
+        }
+    }
+}
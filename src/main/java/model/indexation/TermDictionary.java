@@ -0,0 +1,117 @@
+package model.indexation;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives each term an integer ID the first time it is seen. The IDs are dense:
+ * they start at zero and every new term takes the next one. The dictionary
+ * can be used by several threads at once without locks, but a thread asking
+ * for the ID of a term another thread is adding may wait briefly until the
+ * ID is assigned. The index in the database refers to the terms by these
+ * IDs.
+ */
+public class TermDictionary {
+
+    // Value of an ID that is still being assigned.
+    private static final int UNASSIGNED = -1;
+
+    private final ConcurrentMap<String, TermId> ids =
+            new ConcurrentHashMap<String, TermId>();
+    private final AtomicInteger nextId = new AtomicInteger(0);
+
+    /**
+     * Gets the ID of a term, giving it a new one if the term has not been
+     * seen before.
+     * @param term the term.
+     * @return the ID of the term.
+     */
+    public int getId(String term) {
+
+        TermId id = ids.get(term);
+
+        if (id == null) {
+            TermId created = new TermId();
+            id = ids.putIfAbsent(term, created);
+
+            // Only the thread that added the term takes a new ID.
+            if (id == null) {
+                created.value = nextId.getAndIncrement();
+                return created.value;
+            }
+        }
+
+        return id.get();
+    }
+
+    /**
+     * Gets the ID of a term without adding it or waiting for it.
+     * @param term the term.
+     * @return the ID of the term or -1 if the term is not in the dictionary,
+     * or its ID is still being assigned.
+     */
+    public int lookup(String term) {
+        TermId id = ids.get(term);
+        return id == null ? UNASSIGNED : id.value;
+    }
+
+    /**
+     * Adds a term with an ID that was given before, for example when the
+     * dictionary is loaded from the database. New terms take IDs after the
+     * greatest one added.
+     * @param term the term.
+     * @param id the ID of the term.
+     */
+    public void put(String term, int id) {
+
+        TermId termId = new TermId();
+        termId.value = id;
+        ids.put(term, termId);
+
+        int next = nextId.get();
+
+        while (next <= id && !nextId.compareAndSet(next, id + 1)) {
+            next = nextId.get();
+        }
+    }
+
+    /**
+     * Gets the terms in the dictionary.
+     * @return a view of the terms.
+     */
+    public Set<String> terms() {
+        return Collections.unmodifiableSet(ids.keySet());
+    }
+
+    /**
+     * Gets the number of IDs given.
+     * @return the number of IDs.
+     */
+    public int size() {
+        return nextId.get();
+    }
+
+    /**
+     * ID of a term. It is created before the ID is known so only one thread
+     * can add the term, the other threads wait until the value is set.
+     */
+    private static class TermId {
+
+        private volatile int value = UNASSIGNED;
+
+        int get() {
+
+            int id = value;
+
+            while (id == UNASSIGNED) {
+                Thread.yield();
+                id = value;
+            }
+
+            return id;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package model.indexation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.database.dao.TfIdfIndexDAO;
+
+/**
+ * Calculates the tf-idf weights of every word once the documents are stored,
+ * so the searches never have to. The words are split in ranges of IDs and
+ * several threads, each with its own connection, ask the database to
+ * calculate the weights of one range at a time.
+ * @see TfIdfIndexDAO
+ */
+class TfIdfFinalizer {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // Number of words calculated by each statement.
+    static final int WORDS_PER_RANGE = 5000;
+
+    private final int threads;
+
+    /**
+     * Creates a finalizer.
+     * @param threads the number of threads, at least one.
+     */
+    TfIdfFinalizer(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Replaces the tf-idf weights of the index and waits until all of them
+     * are calculated.
+     * @param wordCount the number of words, whose IDs go from 0 to this
+     * number minus one.
+     * @return true if all the weights were calculated.
+     */
+    boolean run(final int wordCount) {
+
+        long start = System.nanoTime();
+        TfIdfIndexDAO dao;
+
+        try {
+            dao = new TfIdfIndexDAO();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not connect to the database.", e);
+            return false;
+        }
+
+        final int numDocs = dao.getNumberOfDocuments();
+
+        if (numDocs < 0 || !dao.clear()) {
+            dao.closeConnection();
+            return false;
+        }
+
+        final AtomicInteger nextRange = new AtomicInteger(0);
+        final AtomicLong stored = new AtomicLong(0);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        int ranges = (wordCount + WORDS_PER_RANGE - 1) / WORDS_PER_RANGE;
+        Thread[] workers = new Thread[Math.min(threads, ranges)];
+
+        for (int i = 0; i < workers.length; ++i) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    computeRanges(wordCount, numDocs, nextRange, stored, failed);
+                }
+            }, "tf-idf-" + i);
+            workers[i].start();
+        }
+
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while calculating the tf-idf weights.", e);
+            Thread.currentThread().interrupt();
+            failed.set(true);
+        }
+
+        if (!failed.get()) {
+            dao.analyze();
+            LOGGER.info("Calculated {} tf-idf weights of {} words in {} ms.", stored.get(),
+                    wordCount, (System.nanoTime() - start) / 1000000);
+        }
+
+        dao.closeConnection();
+        return !failed.get();
+    }
+
+    /**
+     * Calculates ranges of words until there are no more, or one fails.
+     */
+    private static void computeRanges(int wordCount, int numDocs, AtomicInteger nextRange,
+            AtomicLong stored, AtomicBoolean failed) {
+
+        TfIdfIndexDAO dao;
+
+        try {
+            dao = new TfIdfIndexDAO();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not connect to the database.", e);
+            failed.set(true);
+            return;
+        }
+
+        int first = nextRange.getAndIncrement() * WORDS_PER_RANGE;
+
+        while (first < wordCount && !failed.get()) {
+            int last = Math.min(first + WORDS_PER_RANGE, wordCount) - 1;
+            int count = dao.compute(first, last, numDocs);
+
+            if (count < 0) {
+                failed.set(true);
+            } else {
+                stored.addAndGet(count);
+            }
+
+            first = nextRange.getAndIncrement() * WORDS_PER_RANGE;
+        }
+
+        dao.closeConnection();
+    }
+}
@@ -0,0 +1,13 @@
+package model.indexation;
+
+/**
+ * The ways the indexer can parse the HTML files.
+ */
+public enum TokenizerMode {
+
+    /** Builds the DOM of each file with JSoup and reads the text of its tags. */
+    JSOUP,
+
+    /** Scans the file once without building a DOM. */
+    STREAMING
+}
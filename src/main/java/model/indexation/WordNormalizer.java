@@ -1,6 +1,7 @@
 package model.indexation;
 
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,11 +16,34 @@ public class WordNormalizer {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
+    // Letters of the French alphabet that are part of the words, besides the
+    // letters and digits of ASCII.
+    private static final String FRENCH_LETTERS = "éàèùâêîôûëïüÿçœæ";
+
     /** The regular expression used to separate the words in a file.*/
-    private static final String SEPARATOR_REGEXP = "[^A-Za-z0-9éàèùâêîôûëïüÿçœæ]+";
+    private static final String SEPARATOR_REGEXP = "[^A-Za-z0-9" + FRENCH_LETTERS + "]+";
+    private static final Pattern SEPARATOR = Pattern.compile(SEPARATOR_REGEXP);
+
+    /** Maximum length of a word, if it is longer it will be truncated. */
+    static final int WORD_MAX_LENGTH = 7;
+
+    // Characters of the words, indexed by their code.
+    private static final boolean[] WORD_CHARS = new boolean['œ' + 1];
+
+    static {
+        for (char c = 'a'; c <= 'z'; ++c) {
+            WORD_CHARS[c] = true;
+            WORD_CHARS[Character.toUpperCase(c)] = true;
+        }
+
+        for (char c = '0'; c <= '9'; ++c) {
+            WORD_CHARS[c] = true;
+        }
 
-    // Maximum length of a word, if it is longer it will be truncated.
-    private static final int WORD_MAX_LENGTH = 7;
+        for (char c : FRENCH_LETTERS.toCharArray()) {
+            WORD_CHARS[c] = true;
+        }
+    }
 
     //Avoid instantiation.
     private WordNormalizer(){}
@@ -31,16 +55,14 @@ public class WordNormalizer {
      */
     public static String normalize(String keyword) {
 
-        LOGGER.entry(keyword);
-
-        String lowerCaseWord = keyword.toLowerCase();
+        LOGGER.trace("Normalizing {}.", keyword);
 
         // Truncate string if it is too long
-        if (lowerCaseWord.length() > WORD_MAX_LENGTH){
-            lowerCaseWord = lowerCaseWord.substring(0,WORD_MAX_LENGTH);
+        if (keyword.length() > WORD_MAX_LENGTH){
+            keyword = keyword.substring(0,WORD_MAX_LENGTH);
         }
 
-        return LOGGER.exit(lowerCaseWord);
+        return keyword.toLowerCase();
     }
 
     /**
@@ -49,7 +71,18 @@ public class WordNormalizer {
      * @return an array of words.
      */
     public static String[] split(String query){
-        return query.split(SEPARATOR_REGEXP);
+        return SEPARATOR.split(query);
+    }
+
+    /**
+     * Tells if a character is part of the words. The other characters
+     * separate them.
+     * @param c the character.
+     * @return true if it is a letter of the French alphabet or a digit.
+     * @see WordScanner
+     */
+    static boolean isWordChar(char c) {
+        return c < WORD_CHARS.length && WORD_CHARS[c];
     }
 
     /**
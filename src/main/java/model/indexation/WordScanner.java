@@ -0,0 +1,196 @@
+package model.indexation;
+
+/**
+ * Splits text into normalized words like {@link WordNormalizer}, without
+ * creating objects for the words it has already seen. The words are read
+ * character by character into a buffer, lower cased and truncated as they are
+ * read, and looked up in a table of the words found so far, which gives the
+ * same String each time. The stop words are found on the buffer, so no String
+ * is ever created for them.
+ * The objects of this class are not thread safe, each tokenizer has its own.
+ * @see HtmlTokenizer
+ */
+class WordScanner {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Once the table has this many words, the new ones are no longer kept.
+    private static final int MAX_SIZE = 1 << 18;
+
+    private final StopWords stopWords;
+
+    // Words found, in an open addressing table.
+    private String[] words = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // The word being read, lower cased and truncated.
+    private final char[] buffer = new char[WordNormalizer.WORD_MAX_LENGTH];
+    private int length;
+    private int hash;
+
+    private CharSequence text;
+    private int pos;
+
+    // Words read in the text, including the stop words.
+    private int wordsRead;
+
+    /**
+     * Creates a scanner that skips a set of words.
+     * @param stopWords the words to be skipped.
+     */
+    WordScanner(StopWords stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Starts reading a text.
+     * @param text the text to split, which must not change while it is read.
+     */
+    void reset(CharSequence text) {
+        this.text = text;
+        this.pos = 0;
+        this.wordsRead = 0;
+    }
+
+    /**
+     * Gets the number of words read since the last reset, including the stop
+     * words. The word returned by {@link #next()} is the last one read, so
+     * its position in the text is this number minus one.
+     * @return the number of words read.
+     */
+    int getWordsRead() {
+        return wordsRead;
+    }
+
+    /**
+     * Reads the next word of the text that is not a stop word.
+     * @return the word normalized, or null at the end of the text.
+     */
+    String next() {
+
+        int end = text.length();
+
+        while (pos < end) {
+            while (pos < end && !WordNormalizer.isWordChar(text.charAt(pos))) {
+                ++pos;
+            }
+
+            if (pos == end) {
+                break;
+            }
+
+            readWord(end);
+            ++wordsRead;
+
+            if (stopWords.contains(buffer, 0, length)) {
+                continue;
+            }
+
+            int slot = find();
+            String word = words[slot];
+
+            if (word == null) {
+                word = new String(buffer, 0, length);
+
+                if (size < MAX_SIZE) {
+                    add(slot, word);
+                }
+            }
+
+            return word;
+        }
+
+        text = null;
+        return null;
+    }
+
+    /**
+     * Reads the word at the current position into the buffer.
+     */
+    private void readWord(int end) {
+
+        length = 0;
+        hash = 0;
+
+        while (pos < end) {
+            char c = text.charAt(pos);
+
+            if (!WordNormalizer.isWordChar(c)) {
+                break;
+            }
+
+            if (length < buffer.length) {
+                c = Character.toLowerCase(c);
+                buffer[length++] = c;
+                hash = 31 * hash + c;
+            }
+
+            ++pos;
+        }
+    }
+
+    /**
+     * Finds the slot of the word in the buffer, or the empty slot where it
+     * goes.
+     */
+    private int find() {
+
+        int mask = words.length - 1;
+        int slot = spread(hash) & mask;
+
+        while (words[slot] != null && !bufferEquals(words[slot])) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private boolean bufferEquals(String word) {
+
+        if (word.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; ++i) {
+            if (word.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void add(int slot, String word) {
+
+        words[slot] = word;
+
+        if (++size * 2 > words.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+
+        String[] oldWords = words;
+        words = new String[oldWords.length * 2];
+        int mask = words.length - 1;
+
+        for (String word : oldWords) {
+            if (word != null) {
+                // The hash of a String is computed like the one of the buffer.
+                int slot = spread(word.hashCode()) & mask;
+                while (words[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                words[slot] = word;
+            }
+        }
+    }
+
+    /**
+     * Mixes the high bits of a hash into the low ones, which choose the slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,182 @@
+package model.search;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.indexation.Field;
+
+/**
+ * Weights of the fields of the documents, applied when a query is scored so
+ * they can be changed without indexing the documents again. The weight of a
+ * word in a document is the sum over the fields of the boost of the field
+ * times the frequency of the word in it. The frequency can be divided by the
+ * length of the field relative to its average length, as in BM25F, so a word
+ * counts less in a long field. The body has the text of all the fields, so a
+ * boost of one on the title counts the words of the title twice.
+ * <p>
+ * By default only the body counts and the lengths are ignored, which gives
+ * the weights of the index. Only the segment files have the fields; the
+ * database ignores the boosts.
+ * @see model.segment.SegmentIndex
+ */
+public class FieldBoosts {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * System property with the boosts used by the searcher, in the form
+     * {@code title=3,h1=2,length=0.75}. The fields not given keep their
+     * default boost.
+     */
+    public static final String PROPERTY = "searchengine.boosts";
+
+    // Key of the length normalization in the property.
+    private static final String LENGTH_KEY = "length";
+
+    private static final Field[] FIELDS = Field.values();
+
+    private final float[] boosts = new float[FIELDS.length];
+    private float lengthNormalization = 0;
+
+    /**
+     * Creates the default boosts: one for the body, zero for the other fields.
+     */
+    public FieldBoosts() {
+        boosts[Field.BODY.ordinal()] = 1;
+    }
+
+    /**
+     * Reads the boosts of the system property {@value #PROPERTY}.
+     * @return the boosts, the default ones if the property is not set or is
+     * not valid.
+     */
+    public static FieldBoosts fromSystemProperty() {
+
+        String text = System.getProperty(PROPERTY);
+
+        if (text == null) {
+            return new FieldBoosts();
+        }
+
+        try {
+            return parse(text);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Invalid field boosts " + text + ", the defaults are used.", e);
+            return new FieldBoosts();
+        }
+    }
+
+    /**
+     * Reads boosts written as a list of {@code field=boost} separated by
+     * commas, where the field is the name of a {@link Field} in any case or
+     * {@code length} for the length normalization.
+     * @param text the boosts.
+     * @return the boosts, with the default value for the fields not given.
+     * @throws IllegalArgumentException if the text is not valid.
+     */
+    public static FieldBoosts parse(String text) {
+
+        FieldBoosts fieldBoosts = new FieldBoosts();
+
+        for (String part : text.split(",")) {
+            if (part.trim().isEmpty()) {
+                continue;
+            }
+
+            int equals = part.indexOf('=');
+
+            if (equals < 0) {
+                throw new IllegalArgumentException("Missing value in " + part + ".");
+            }
+
+            String key = part.substring(0, equals).trim().toUpperCase(Locale.ROOT);
+            float value;
+
+            try {
+                value = Float.parseFloat(part.substring(equals + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value in " + part + ".", e);
+            }
+
+            if (key.equalsIgnoreCase(LENGTH_KEY)) {
+                fieldBoosts.setLengthNormalization(value);
+            } else {
+                fieldBoosts.setBoost(Field.valueOf(key), value);
+            }
+        }
+
+        return fieldBoosts;
+    }
+
+    /**
+     * Gets the boost of a field.
+     * @param field the field.
+     * @return the boost.
+     */
+    public float getBoost(Field field) {
+        return boosts[field.ordinal()];
+    }
+
+    /**
+     * Sets the boost of a field. By default one for the body and zero for the
+     * other fields.
+     * @param field the field.
+     * @param boost the boost, zero to ignore the field.
+     */
+    public void setBoost(Field field, float boost) {
+
+        if (!(boost >= 0) || Float.isInfinite(boost)) {
+            throw new IllegalArgumentException("The boost must be a positive number or zero.");
+        }
+
+        boosts[field.ordinal()] = boost;
+    }
+
+    /**
+     * Gets how much the frequencies depend on the length of the fields.
+     * @return the length normalization, between 0 and 1.
+     */
+    public float getLengthNormalization() {
+        return lengthNormalization;
+    }
+
+    /**
+     * Sets how much the frequency of a word in a field depends on the length
+     * of the field: it is divided by {@code 1 - b + b * length / average},
+     * where b is this value. By default zero, the lengths are ignored.
+     * @param lengthNormalization the length normalization, between 0 and 1.
+     */
+    public void setLengthNormalization(float lengthNormalization) {
+
+        if (!(lengthNormalization >= 0 && lengthNormalization <= 1)) {
+            throw new IllegalArgumentException(
+                    "The length normalization must be between 0 and 1.");
+        }
+
+        this.lengthNormalization = lengthNormalization;
+    }
+
+    /**
+     * Tells if only the frequencies in the body count, as in the index.
+     * @return true if the boosts are the default ones.
+     */
+    public boolean isDefault() {
+        return lengthNormalization == 0 && Arrays.equals(boosts, new FieldBoosts().boosts);
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder text = new StringBuilder();
+
+        for (Field field : FIELDS) {
+            text.append(field.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(boosts[field.ordinal()]).append(',');
+        }
+
+        return text.append(LENGTH_KEY).append('=').append(lengthNormalization).toString();
+    }
+}
@@ -0,0 +1,121 @@
+package model.search;
+
+/**
+ * Approximate number of recent accesses to each key, used by the postings
+ * cache to admit only the terms searched more often than the ones they
+ * replace. It is a count-min sketch of four rows of 4-bit counters, sixteen
+ * counters packed in each long. All the counters are halved after a number
+ * of increments proportional to the size of the table, so old accesses are
+ * forgotten. It is only used under the lock of its cache.
+ * @see PostingsCache
+ */
+class FrequencySketch {
+
+    // Highest value of a counter.
+    private static final int MAX_COUNT = 15;
+
+    // Halves the sixteen counters of a long once shifted.
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long[] SEEDS = {
+        0x9e3779b97f4a7c15L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0xd6e8feb86659fd93L
+    };
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions = 0;
+
+    /**
+     * Creates a sketch with all the counters at zero.
+     * @param expectedKeys the number of keys expected in the cache.
+     */
+    FrequencySketch(int expectedKeys) {
+
+        int length = Integer.highestOneBit(Math.max(expectedKeys, MAX_COUNT) - 1) << 1;
+        table = new long[length];
+        sampleSize = 10 * length;
+    }
+
+    /**
+     * Gets the approximate number of recent accesses to a key.
+     * @param key the key.
+     * @return the number of accesses, at most fifteen.
+     */
+    int frequency(Object key) {
+
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+
+        for (int row = 0; row < SEEDS.length; ++row) {
+            long h = mix(hash, row);
+            frequency = Math.min(frequency, count(index(h), shift(h, row)));
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records an access to a key.
+     * @param key the key.
+     */
+    void increment(Object key) {
+
+        int hash = key.hashCode();
+        boolean added = false;
+
+        for (int row = 0; row < SEEDS.length; ++row) {
+            long h = mix(hash, row);
+            int index = index(h);
+            int shift = shift(h, row);
+
+            if (count(index, shift) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halves all the counters, so the recent accesses count more.
+     */
+    private void reset() {
+
+        for (int i = 0; i < table.length; ++i) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+
+        additions /= 2;
+    }
+
+    private int count(int index, int shift) {
+        return (int) ((table[index] >>> shift) & MAX_COUNT);
+    }
+
+    private int index(long h) {
+        return (int) (h >>> 32) & (table.length - 1);
+    }
+
+    /**
+     * Each row uses four of the sixteen counters of a long.
+     */
+    private static int shift(long h, int row) {
+        return ((row << 2) + ((int) h & 3)) << 2;
+    }
+
+    /**
+     * Hashes a key for a row of the sketch with the finalizer of MurmurHash3.
+     */
+    private static long mix(int hash, int row) {
+
+        long h = (hash + SEEDS[row]) * SEEDS[(row + 1) & 3];
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,459 @@
+package model.search;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Cache of the postings of the searched terms, so a popular term is not read
+ * from the index on every search. It is bounded by the estimated memory of
+ * the postings, not by the number of terms, and follows the W-TinyLFU
+ * policy: a new term enters a small window of recent terms, and leaves it
+ * for the main region only if it was searched more often than the term it
+ * would replace, counted by a {@link FrequencySketch}. The main region keeps
+ * the terms found again in a protected part, so a burst of new terms does
+ * not remove them.
+ * <p>
+ * The postings are kept in immutable objects and each search gets its own
+ * copy, because the relevance of the documents is changed in place when a
+ * query is scored. The copies are made outside the lock of the cache, which
+ * is only held to find or replace the postings. The cache is emptied when a
+ * new version of the index is searched, and the postings of the other
+ * versions are neither found nor added, since a search may still read the
+ * previous one. The metrics of the cache are published over JMX.
+ * @see model.database.dao.RelevantDocumentDAO
+ */
+public class PostingsCache implements PostingsCacheMBean {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * System property with the maximum memory of the postings cache used by
+     * the searcher, in megabytes. Zero disables the cache.
+     */
+    public static final String PROPERTY = "searchengine.postingsCache";
+
+    /** Name of the metrics of the cache in the platform MBean server. */
+    public static final String OBJECT_NAME = "model.search:type=PostingsCache";
+
+    // Default maximum memory of the postings, in megabytes.
+    private static final int DEFAULT_SIZE = 32;
+
+    private static final long BYTES_PER_MEGABYTE = 1 << 20;
+
+    // Percentage of the memory of the recent terms, and of the terms found
+    // again in the main region.
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    // Estimated size of a term with few postings, to size the sketch.
+    private static final int EXPECTED_ENTRY_SIZE = 1024;
+    private static final int MAX_EXPECTED_ENTRIES = 1 << 20;
+
+    // Estimated bytes of an entry in the maps with its arrays, and of a
+    // posting with the String of its name, without the characters.
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final int POSTING_OVERHEAD = 52;
+
+    // Cache used by the searches, created the first time.
+    private static PostingsCache instance;
+
+    private final long maximumSize;
+    private final long windowMaximum;
+    private final long mainMaximum;
+    private final long protectedMaximum;
+
+    private final FrequencySketch sketch;
+
+    // Least recently used first.
+    private final Map<String, Postings> window = newRegion();
+    private final Map<String, Postings> probation = newRegion();
+    private final Map<String, Postings> protectedRegion = newRegion();
+    private long windowSize = 0;
+    private long probationSize = 0;
+    private long protectedSize = 0;
+
+    // Version of the index of the postings.
+    private String version;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long rejections = 0;
+    private long invalidations = 0;
+
+    /**
+     * Creates an empty cache.
+     * @param maximumSize the maximum memory of the postings, in bytes.
+     */
+    public PostingsCache(long maximumSize) {
+
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The size of the cache must not be negative.");
+        }
+
+        this.maximumSize = maximumSize;
+        this.windowMaximum = maximumSize * WINDOW_PERCENT / 100;
+        this.mainMaximum = maximumSize - windowMaximum;
+        this.protectedMaximum = mainMaximum * PROTECTED_PERCENT / 100;
+        this.sketch = new FrequencySketch((int) Math.min(MAX_EXPECTED_ENTRIES,
+                maximumSize / EXPECTED_ENTRY_SIZE));
+    }
+
+    /**
+     * Gets the cache used by the searches, creating it the first time with
+     * the size of the system property {@value #PROPERTY}.
+     * @return the cache.
+     */
+    public static synchronized PostingsCache getInstance() {
+
+        if (instance == null) {
+            instance = new PostingsCache(sizeFromSystemProperty() * BYTES_PER_MEGABYTE);
+            instance.register();
+        }
+
+        return instance;
+    }
+
+    private static int sizeFromSystemProperty() {
+
+        String text = System.getProperty(PROPERTY);
+
+        if (text == null) {
+            return DEFAULT_SIZE;
+        }
+
+        try {
+            int size = Integer.parseInt(text.trim());
+
+            if (size >= 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Postings cache size is not a number.", e);
+        }
+
+        LOGGER.error("Invalid postings cache size {}, the default is used.", text);
+        return DEFAULT_SIZE;
+    }
+
+    private static Map<String, Postings> newRegion() {
+        return new LinkedHashMap<String, Postings>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the postings of a term, if they are in the cache.
+     * @param indexVersion the version of the index searched.
+     * @param key the normalized term, with the options that change its
+     * postings.
+     * @return a new copy of the postings, or null if they are not in the
+     * cache or the index searched is not the current version.
+     * @see #validate(String)
+     */
+    public List<RelevantDocument> get(String indexVersion, String key) {
+
+        Postings postings = find(indexVersion, key);
+        return postings == null ? null : postings.toList();
+    }
+
+    private synchronized Postings find(String indexVersion, String key) {
+
+        sketch.increment(key);
+
+        if (!isCurrent(indexVersion)) {
+            ++misses;
+            return null;
+        }
+
+        Postings postings = window.get(key);
+
+        if (postings == null) {
+            postings = protectedRegion.get(key);
+        }
+
+        if (postings == null) {
+            postings = probation.remove(key);
+
+            if (postings != null) {
+                probationSize -= postings.size;
+                protectedRegion.put(key, postings);
+                protectedSize += postings.size;
+                demote();
+            }
+        }
+
+        if (postings == null) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+
+        return postings;
+    }
+
+    /**
+     * Adds the postings of a term read from the index. They are copied, so
+     * the list can be changed afterwards. They may be rejected if the term
+     * is searched less often than the ones in the cache, or if the index
+     * they were read from is not the current version any more.
+     * @param indexVersion the version of the index the postings were read
+     * from.
+     * @param key the normalized term, with the options that change its
+     * postings.
+     * @param documents the postings.
+     * @see #validate(String)
+     */
+    public void put(String indexVersion, String key, List<RelevantDocument> documents) {
+
+        Postings postings = new Postings(key, documents);
+
+        synchronized (this) {
+            if (!isCurrent(indexVersion)) {
+                LOGGER.debug("Postings of {} read from a previous index, not cached.", key);
+                return;
+            }
+
+            remove(key);
+
+            if (postings.size > mainMaximum) {
+                ++rejections;
+                return;
+            }
+
+            window.put(key, postings);
+            windowSize += postings.size;
+
+            while (windowSize > windowMaximum) {
+                Map.Entry<String, Postings> eldest = window.entrySet().iterator().next();
+                window.remove(eldest.getKey());
+                windowSize -= eldest.getValue().size;
+                admit(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Moves a term out of the window to the main region, or drops it. The
+     * least recently used terms that would make room for it, on probation
+     * first, are only removed if it was searched more often than all of
+     * them.
+     */
+    private void admit(String key, Postings candidate) {
+
+        int frequency = sketch.frequency(key);
+        long free = mainMaximum - probationSize - protectedSize;
+        List<String> victims = new ArrayList<String>();
+        Iterator<Map.Entry<String, Postings>> probationTerms = probation.entrySet().iterator();
+        Iterator<Map.Entry<String, Postings>> protectedTerms =
+                protectedRegion.entrySet().iterator();
+
+        while (free < candidate.size) {
+            Map.Entry<String, Postings> victim = probationTerms.hasNext()
+                    ? probationTerms.next() : protectedTerms.next();
+
+            if (sketch.frequency(victim.getKey()) >= frequency) {
+                ++rejections;
+                return;
+            }
+
+            victims.add(victim.getKey());
+            free += victim.getValue().size;
+        }
+
+        for (String victim : victims) {
+            remove(victim);
+            ++evictions;
+        }
+
+        probation.put(key, candidate);
+        probationSize += candidate.size;
+    }
+
+    /**
+     * Moves the least recently used protected terms back to probation.
+     */
+    private void demote() {
+
+        while (protectedSize > protectedMaximum) {
+            Map.Entry<String, Postings> eldest = protectedRegion.entrySet().iterator().next();
+            protectedRegion.remove(eldest.getKey());
+            protectedSize -= eldest.getValue().size;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationSize += eldest.getValue().size;
+        }
+    }
+
+    private void remove(String key) {
+
+        Postings postings = window.remove(key);
+
+        if (postings != null) {
+            windowSize -= postings.size;
+        }
+
+        postings = probation.remove(key);
+
+        if (postings != null) {
+            probationSize -= postings.size;
+        }
+
+        postings = protectedRegion.remove(key);
+
+        if (postings != null) {
+            protectedSize -= postings.size;
+        }
+    }
+
+    private boolean isCurrent(String indexVersion) {
+        return version != null && version.equals(indexVersion);
+    }
+
+    /**
+     * Empties the cache if the index is not the one of the postings. The
+     * version becomes the current one, the only one whose postings are found
+     * and added.
+     * @param indexVersion the version of the index searched, which changes
+     * with its documents.
+     */
+    public synchronized void validate(String indexVersion) {
+
+        if (version != null && !version.equals(indexVersion)) {
+            LOGGER.debug("The index changed, emptying the postings cache.");
+            invalidateAll();
+        }
+
+        version = indexVersion;
+    }
+
+    /**
+     * Empties the cache. The number of times each term was searched is kept.
+     */
+    @Override
+    public synchronized void invalidateAll() {
+
+        window.clear();
+        probation.clear();
+        protectedRegion.clear();
+        windowSize = 0;
+        probationSize = 0;
+        protectedSize = 0;
+        ++invalidations;
+    }
+
+    private void register() {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.error("Could not publish the metrics of the postings cache.", e);
+        }
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized long getSize() {
+        return windowSize + probationSize + protectedSize;
+    }
+
+    @Override
+    public synchronized int getEntries() {
+        return window.size() + probation.size() + protectedRegion.size();
+    }
+
+    @Override
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    @Override
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    @Override
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Postings of a term that cannot be changed, with their estimated size.
+     */
+    private static class Postings {
+
+        private final int[] documentIds;
+        private final String[] documentNames;
+        private final float[] relevances;
+        final long size;
+
+        Postings(String key, List<RelevantDocument> documents) {
+
+            int count = documents.size();
+            documentIds = new int[count];
+            documentNames = new String[count];
+            relevances = new float[count];
+            long characters = key.length();
+
+            for (int i = 0; i < count; ++i) {
+                RelevantDocument document = documents.get(i);
+                documentIds[i] = document.getDocumentId();
+                documentNames[i] = document.getDocumentName();
+                relevances[i] = document.getRelevance();
+
+                if (documentNames[i] != null) {
+                    characters += documentNames[i].length();
+                }
+            }
+
+            size = ENTRY_OVERHEAD + (long) POSTING_OVERHEAD * count + 2 * characters;
+        }
+
+        List<RelevantDocument> toList() {
+
+            List<RelevantDocument> list = new ArrayList<RelevantDocument>(documentIds.length);
+
+            for (int i = 0; i < documentIds.length; ++i) {
+                list.add(new RelevantDocument(documentIds[i], documentNames[i], relevances[i]));
+            }
+
+            return list;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package model.search;
+
+/**
+ * Management interface of the cache of the postings of the searched terms,
+ * read over JMX with the name {@value PostingsCache#OBJECT_NAME}.
+ * @see PostingsCache
+ */
+public interface PostingsCacheMBean {
+
+    /**
+     * Gets the maximum memory used by the postings.
+     * @return the estimated size in bytes.
+     */
+    long getMaximumSize();
+
+    /**
+     * Gets the memory used by the postings in the cache.
+     * @return the estimated size in bytes.
+     */
+    long getSize();
+
+    /**
+     * Gets the number of terms in the cache.
+     * @return the number of terms.
+     */
+    int getEntries();
+
+    /**
+     * Gets the number of searched terms found in the cache.
+     * @return the number of terms.
+     */
+    long getHits();
+
+    /**
+     * Gets the number of searched terms read from the index.
+     * @return the number of terms.
+     */
+    long getMisses();
+
+    /**
+     * Gets the fraction of the searched terms found in the cache.
+     * @return the hit rate, between zero and one.
+     */
+    double getHitRate();
+
+    /**
+     * Gets the number of terms removed to make room for others.
+     * @return the number of terms.
+     */
+    long getEvictions();
+
+    /**
+     * Gets the number of terms not admitted, because they were searched less
+     * often than the ones they would replace or were too big.
+     * @return the number of terms.
+     */
+    long getRejections();
+
+    /**
+     * Gets the number of times the cache was emptied because the index
+     * changed.
+     * @return the number of times.
+     */
+    long getInvalidations();
+
+    /**
+     * Empties the cache, after the index was changed by another process.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,52 @@
+package model.search;
+
+import java.util.List;
+
+/**
+ * Where the postings of the index are read from. Implements the Strategy
+ * Pattern so the searcher can use the database or the segment files.
+ * @see RelevantDocument
+ */
+public interface PostingsSource {
+
+    /**
+     * Gets the list of relevant documents with tf weights associated to a word.
+     * @param word the word to search.
+     * @return the documents containing the word sorted by ID.
+     */
+    List<RelevantDocument> getRelevantDocsTf(String word);
+
+    /**
+     * Gets the list of relevant documents associated to a word, with a tf
+     * weight computed from the frequency of the word in each field of the
+     * documents.
+     * @param word the word to search.
+     * @param boosts the boosts of the fields, ignored by the sources without
+     * fields.
+     * @return the documents containing the word sorted by ID.
+     */
+    List<RelevantDocument> getRelevantDocsTf(String word, FieldBoosts boosts);
+
+    /**
+     * Gets the list of relevant documents containing a phrase, with the
+     * number of times the phrase is found in each one as tf weight.
+     * @param words the words of the phrase.
+     * @param offsets the position of each word in the phrase, in increasing
+     * order.
+     * @return the documents containing the phrase sorted by ID, or null if
+     * the source does not have the positions of the words.
+     */
+    List<RelevantDocument> getRelevantDocsOfPhraseTf(String[] words, int[] offsets);
+
+    /**
+     * Gets the number of documents in the index.
+     * @return the number of documents, -1 if it is unknown.
+     */
+    int getNumberOfDocuments();
+
+    /**
+     * Releases the resources of the source.
+     * It should be used after all the operations are done.
+     */
+    void close();
+}
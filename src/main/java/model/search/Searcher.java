@@ -3,6 +3,7 @@ package model.search;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -12,8 +13,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import model.database.dao.RelevantDocumentDAO;
+import model.indexation.StopWords;
 import model.indexation.WordNormalizer;
 import model.search.calculators.RelevanceCalculator;
+import model.store.DocumentStore;
+import model.store.StoredDocument;
 
 /**
  * Class that searches relevant documents in the database.
@@ -21,11 +25,18 @@ import model.search.calculators.RelevanceCalculator;
 public class Searcher {
 
     private static final Logger LOGGER = LogManager.getLogger();
+
+    // Delimiter of the phrases in a query.
+    private static final String PHRASE_QUOTE = "\"";
+
     private final String resultFolder;
 
     // Implements strategy pattern to use different calculators
     protected RelevanceCalculator calculator;
     private RelevantDocumentDAO relvDocDAO;
+    private StopWords stopWords = StopWords.EMPTY;
+    private DocumentStore documentStore;
+    private FieldBoosts fieldBoosts = FieldBoosts.fromSystemProperty();
 
     /**
      * Creates a searcher object.
@@ -38,6 +49,81 @@ public class Searcher {
         this.resultFolder = resultFolder;
     }
 
+    /**
+     * Sets the words ignored in the queries. They are not in the index, so
+     * the database is not queried for them. They should be the ones ignored
+     * by the indexer, so the phrases that have them are found. By default no
+     * word is ignored.
+     * @param stopWords the words to be ignored.
+     */
+    public void setStopWords(StopWords stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Sets the document store where the fields of the results are read.
+     * @param documentStore the store, null if there is none.
+     */
+    public void setDocumentStore(DocumentStore documentStore) {
+        this.documentStore = documentStore;
+    }
+
+    /**
+     * Sets the weights of the fields of the documents in the relevance. They
+     * are applied to each search, so they can be tuned without indexing
+     * again. By default the ones of the system property
+     * {@value FieldBoosts#PROPERTY}.
+     * @param fieldBoosts the boosts of the fields.
+     */
+    public void setFieldBoosts(FieldBoosts fieldBoosts) {
+        this.fieldBoosts = fieldBoosts;
+    }
+
+    /**
+     * Executes a single query and gets the fields of its best documents. The
+     * result is not written to a file.
+     * @param query the query to execute.
+     * @param count the maximum number of documents.
+     * @return the fields of the documents found, from the most relevant.
+     * @see #getStoredDocuments(List, int)
+     */
+    public List<StoredDocument> search(String query, int count) {
+
+        relvDocDAO = new RelevantDocumentDAO(fieldBoosts);
+        List<RelevantDocument> list = executeQuery(query);
+        relvDocDAO.closeConnection();
+
+        return getStoredDocuments(list, count);
+    }
+
+    /**
+     * Gets the fields of the first documents of a result from the document
+     * store, so the files of the documents are not read again. The documents
+     * that are not in the store, or all of them if there is no store, only
+     * have their name.
+     * @param docs the documents found, already sorted.
+     * @param count the maximum number of documents.
+     * @return the fields of the documents, in the same order.
+     */
+    public List<StoredDocument> getStoredDocuments(List<RelevantDocument> docs, int count) {
+
+        List<StoredDocument> result = new ArrayList<StoredDocument>();
+
+        for (RelevantDocument doc : docs.subList(0, Math.min(count, docs.size()))) {
+            StoredDocument stored = documentStore == null ? null
+                    : documentStore.get(doc.getDocumentId());
+
+            if (stored == null) {
+                stored = new StoredDocument(doc.getDocumentId(), doc.getDocumentName(),
+                        null, "");
+            }
+
+            result.add(stored);
+        }
+
+        return result;
+    }
+
     /**
      * Executes a single query in the form of a String. It writes the result to 
      * a file too.
@@ -47,7 +133,7 @@ public class Searcher {
      */
     public void executeSingleQuery(String query) {
 
-        relvDocDAO = new RelevantDocumentDAO();
+        relvDocDAO = new RelevantDocumentDAO(fieldBoosts);
         List<RelevantDocument> list;
 
         if(resultFolderExists()){
@@ -60,37 +146,114 @@ public class Searcher {
 
     /**
      * Executes a single query in the form of a String but does not establish
-     * the connection to the database.
-     * @param query the query containing keywords.
+     * the connection to the database. The text between double quotes is a
+     * phrase, whose words must be found next to each other.
+     * @param query the query containing keywords and phrases.
      * @return the list of relevant documents found already sorted.
      */
     protected List<RelevantDocument> executeQuery(String query) {
 
         LOGGER.entry(query);
 
-        String[] keywords = WordNormalizer.split(query);
-        return executeQuery(keywords);
+        // The parts with an odd index are between quotes, unless the last
+        // quote is not closed.
+        String[] parts = query.split(PHRASE_QUOTE, -1);
+        List<String> keywords = new ArrayList<String>();
+        List<String> phrases = new ArrayList<String>();
+
+        for (int i = 0; i < parts.length; ++i) {
+            if (i % 2 == 1 && i + 1 < parts.length) {
+                phrases.add(parts[i]);
+            } else {
+                keywords.addAll(Arrays.asList(WordNormalizer.split(parts[i])));
+            }
+        }
+
+        return executeQuery(keywords, phrases);
     }
 
     /**
-     * Executes a query already split in keywords.
+     * Executes a query already split in keywords and phrases.
      * @param keywords the keywords of the query.
+     * @param phrases the phrases of the query.
      * @return the list of relevant documents found already sorted.
      */
-    private List<RelevantDocument> executeQuery(String[] keywords) {
+    private List<RelevantDocument> executeQuery(List<String> keywords,
+            List<String> phrases) {
 
-        LOGGER.info("Calculating relevant documents for the query: {}.",
-                Arrays.toString(keywords));
+        LOGGER.info("Calculating relevant documents for the query: {} {}.",
+                keywords, phrases);
 
-        for (int i = 0; i < keywords.length; ++i) {
-            List<RelevantDocument> relevantDocs = getRelevantDocsOfKeyword(keywords[i]);
+        for (String keyword : keywords) {
+            List<RelevantDocument> relevantDocs = getRelevantDocsOfKeyword(keyword);
             calculator.addDocuments(relevantDocs);
         }
 
+        for (String phrase : phrases) {
+            addDocumentsOfPhrase(phrase);
+        }
+
         return LOGGER.exit(sortRelevantDocs());
 
     }
 
+    /**
+     * Adds the documents of a phrase to the calculator. The position of each
+     * word counts the stop words before it, like the indexer does. If the
+     * index has no positions, the words of the phrase are searched as
+     * keywords.
+     * @param phrase the text of the phrase.
+     */
+    private void addDocumentsOfPhrase(String phrase) {
+
+        List<String> words = new ArrayList<String>();
+        List<Integer> offsets = new ArrayList<Integer>();
+        int position = 0;
+
+        for (String word : WordNormalizer.split(phrase)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+
+            if (!stopWords.contains(word)) {
+                words.add(WordNormalizer.normalize(word));
+                offsets.add(position);
+            }
+
+            ++position;
+        }
+
+        if (words.size() < 2) {
+            for (String word : words) {
+                calculator.addDocuments(relvDocDAO.getRelevantDocs(word));
+            }
+
+            return;
+        }
+
+        LOGGER.debug("Calculating relevant documents for the phrase {}.", words);
+
+        int[] wordOffsets = new int[offsets.size()];
+
+        for (int i = 0; i < wordOffsets.length; ++i) {
+            wordOffsets[i] = offsets.get(i);
+        }
+
+        List<RelevantDocument> relevantDocs = relvDocDAO.getRelevantDocsOfPhrase(
+                words.toArray(new String[words.size()]), wordOffsets);
+
+        if (relevantDocs != null) {
+            calculator.addDocuments(relevantDocs);
+            return;
+        }
+
+        LOGGER.info("The index has no positions, searching the words of {}.", phrase);
+
+        for (String word : words) {
+            calculator.addDocuments(relvDocDAO.getRelevantDocs(word));
+        }
+    }
+
     /**
      * Sorts the documents found.
      * @return the list of relevant documents found.
@@ -108,6 +271,11 @@ public class Searcher {
      */
     protected List<RelevantDocument> getRelevantDocsOfKeyword(String keyword) {
 
+        if (stopWords.contains(keyword)) {
+            LOGGER.debug("Ignoring the stop word {}.", keyword);
+            return new ArrayList<RelevantDocument>();
+        }
+
         LOGGER.debug("Calculating relevant documents for the keyword {}.",
                 keyword);
 
@@ -141,7 +309,7 @@ public class Searcher {
      */
     private void executeQueries(Scanner scanner) {
 
-        relvDocDAO = new RelevantDocumentDAO();
+        relvDocDAO = new RelevantDocumentDAO(fieldBoosts);
 
         for(int i = 1; scanner.hasNextLine(); ++i){
 
@@ -0,0 +1,53 @@
+package model.segment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slows down a merge so it does not read more than a number of bytes per
+ * second, leaving the disk to the searches and the indexation. An object is
+ * used by a single merge.
+ * @see SegmentMerger
+ */
+class MergeRateLimiter {
+
+    // Do not sleep for less than this, in nanoseconds.
+    private static final long MIN_PAUSE = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final long bytesPerSecond;
+    private final long start = System.nanoTime();
+    private long bytes = 0;
+
+    /**
+     * Creates a limiter.
+     * @param bytesPerSecond the maximum rate, 0 for no limit.
+     */
+    MergeRateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Counts bytes read by the merge, sleeping if it goes faster than the
+     * maximum rate.
+     * @param read the number of bytes just read.
+     */
+    void pause(long read) {
+
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+
+        bytes += read;
+        long expected = bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        long ahead = expected - (System.nanoTime() - start);
+
+        if (ahead < MIN_PAUSE) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(ahead);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
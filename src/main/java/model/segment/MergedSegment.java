@@ -0,0 +1,204 @@
+package model.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Segments merged into one with a k-way merge. The terms of all the segments
+ * are read in order from a priority queue, and the documents of each term
+ * are merged by ID, so the segments are read and the merged one is written
+ * sequentially, and the memory taken does not depend on their size.
+ * @see SegmentMerger
+ * @see SegmentOutput
+ */
+class MergedSegment implements SegmentSource {
+
+    private static final Comparator<Segment.TermCursor> TERM_ORDER =
+            new Comparator<Segment.TermCursor>() {
+                @Override
+                public int compare(Segment.TermCursor a, Segment.TermCursor b) {
+                    return SegmentFormat.compare(a.term(), b.term());
+                }
+            };
+
+    private final List<Segment> segments;
+    private final MergeRateLimiter limiter;
+    private final boolean withPositions;
+    private final int documentCount;
+
+    /**
+     * Creates the merge of some segments.
+     * @param segments the segments to merge, with different documents.
+     * @param limiter limits the speed at which the segments are read.
+     */
+    MergedSegment(List<Segment> segments, MergeRateLimiter limiter) {
+
+        this.segments = segments;
+        this.limiter = limiter;
+
+        boolean positions = true;
+        int documents = 0;
+
+        for (Segment segment : segments) {
+            positions &= segment.hasPositions();
+            documents += segment.getDocumentCount();
+        }
+
+        this.withPositions = positions;
+        this.documentCount = documents;
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    @Override
+    public void writeTo(File file) throws IOException {
+
+        try (SegmentOutput out = new SegmentOutput(file, withPositions)) {
+            writeDocuments(out);
+            writeTerms(out);
+            out.finish();
+        }
+    }
+
+    /**
+     * Merges the documents of the segments by ID.
+     */
+    private void writeDocuments(SegmentOutput out) throws IOException {
+
+        int[] next = new int[segments.size()];
+
+        while (true) {
+            int min = -1;
+            int minId = 0;
+
+            for (int i = 0; i < next.length; ++i) {
+                Segment segment = segments.get(i);
+
+                if (next[i] < segment.getDocumentCount()
+                        && (min < 0 || segment.documentIdAt(next[i]) < minId)) {
+                    min = i;
+                    minId = segment.documentIdAt(next[i]);
+                }
+            }
+
+            if (min < 0) {
+                return;
+            }
+
+            Segment segment = segments.get(min);
+            out.addDocument(minId, segment.documentNameAt(next[min]),
+                    segment.documentFieldLengthsAt(next[min]));
+            skipDocument(next, minId);
+        }
+    }
+
+    /**
+     * Moves every segment after a document, so a document in several
+     * segments is written once.
+     */
+    private void skipDocument(int[] next, int documentId) {
+
+        for (int i = 0; i < next.length; ++i) {
+            Segment segment = segments.get(i);
+
+            if (next[i] < segment.getDocumentCount()
+                    && segment.documentIdAt(next[i]) == documentId) {
+                ++next[i];
+            }
+        }
+    }
+
+    /**
+     * Merges the terms of the segments in order, and the documents of each
+     * term by ID.
+     */
+    private void writeTerms(SegmentOutput out) throws IOException {
+
+        PriorityQueue<Segment.TermCursor> queue =
+                new PriorityQueue<Segment.TermCursor>(Math.max(1, segments.size()), TERM_ORDER);
+
+        for (Segment segment : segments) {
+            Segment.TermCursor cursor = segment.terms();
+
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+
+        List<Segment.TermCursor> current = new ArrayList<Segment.TermCursor>();
+
+        while (!queue.isEmpty()) {
+            current.add(queue.poll());
+
+            while (!queue.isEmpty() && TERM_ORDER.compare(queue.peek(), current.get(0)) == 0) {
+                current.add(queue.poll());
+            }
+
+            out.startTerm(current.get(0).term());
+            writePostings(out, current);
+            out.finishTerm();
+
+            for (Segment.TermCursor cursor : current) {
+                limiter.pause(cursor.postings().getBytesRead());
+
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+
+            current.clear();
+        }
+    }
+
+    /**
+     * Merges the documents of a term in the segments that have it. There are
+     * a few segments, so the next document is found with a linear scan.
+     */
+    private void writePostings(SegmentOutput out, List<Segment.TermCursor> cursors) {
+
+        PostingsCursor[] postings = new PostingsCursor[cursors.size()];
+        int remaining = 0;
+
+        for (Segment.TermCursor cursor : cursors) {
+            PostingsCursor documents = cursor.postings();
+
+            if (documents.next()) {
+                postings[remaining++] = documents;
+            }
+        }
+
+        while (remaining > 0) {
+            int min = 0;
+
+            for (int i = 1; i < remaining; ++i) {
+                if (postings[i].getDocumentId() < postings[min].getDocumentId()) {
+                    min = i;
+                }
+            }
+
+            PostingsCursor documents = postings[min];
+            int documentId = documents.getDocumentId();
+
+            if (withPositions) {
+                int count = documents.readPositions();
+                out.addPosting(documentId, documents.getWeight(), documents.getPositions(), count);
+            } else {
+                out.addPosting(documentId, documents.getWeight(), null, 0);
+            }
+
+            // A document in several segments keeps its first postings.
+            for (int i = remaining - 1; i >= 0; --i) {
+                if (postings[i].getDocumentId() == documentId && !postings[i].next()) {
+                    postings[i] = postings[--remaining];
+                }
+            }
+        }
+    }
+}
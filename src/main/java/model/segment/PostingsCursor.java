@@ -0,0 +1,255 @@
+package model.segment;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads the postings of a term in a segment, one document at a time in
+ * increasing order of ID. The cursor can jump to a document using the skip
+ * list of the term, without decoding the blocks before it. The positions of
+ * a document are only decoded when they are asked for. A cursor is used by a
+ * single thread.
+ * @see SegmentFormat
+ */
+class PostingsCursor {
+
+    private static final int INITIAL_POSITIONS = 16;
+
+    private final int frequency;
+    private final int postingsStart;
+    private final int positionsStart;
+    private final ByteBuffer postings;
+    // Null if the segment has no positions.
+    private final ByteBuffer positions;
+    private final ByteBuffer skips;
+
+    // Entries of the skip list not read yet.
+    private int skipsLeft;
+    // True if the current block has an entry, which is not the case of the
+    // last one.
+    private boolean hasSkip;
+    // Number of documents read at the end of the current block.
+    private int blockEnd = 0;
+    // Last ID of the current block, and where the next block starts.
+    private int skipDocumentId = 0;
+    private int nextBlockPostings;
+    private int nextBlockPositions;
+
+    private int read = 0;
+    private int documentId = 0;
+    private int weight;
+
+    // True if the positions of the current document were not read.
+    private boolean positionsPending = false;
+    private int[] positionBuffer = new int[INITIAL_POSITIONS];
+    private int positionCount = 0;
+
+    /**
+     * Creates a cursor positioned before the first document of a term.
+     * @param buffer the segment.
+     * @param frequency the number of documents of the term.
+     * @param postingsStart where the postings of the term start.
+     * @param positionsStart where the positions of the term start, -1 if the
+     * segment has no positions.
+     */
+    PostingsCursor(ByteBuffer buffer, int frequency, int postingsStart, int positionsStart) {
+
+        this.frequency = frequency;
+        this.postingsStart = postingsStart;
+        this.positionsStart = positionsStart;
+        this.postings = buffer.duplicate();
+        ((Buffer) postings).position(postingsStart);
+
+        if (frequency > SegmentFormat.SKIP_INTERVAL) {
+            int length = VarInt.read(postings);
+            skips = postings.duplicate();
+            skipsLeft = (frequency - 1) / SegmentFormat.SKIP_INTERVAL;
+            ((Buffer) postings).position(postings.position() + length);
+        } else {
+            skips = null;
+            skipsLeft = 0;
+        }
+
+        nextBlockPostings = postings.position();
+
+        if (positionsStart >= 0) {
+            positions = buffer.duplicate();
+            ((Buffer) positions).position(positionsStart);
+            nextBlockPositions = positionsStart;
+        } else {
+            positions = null;
+        }
+
+        nextSkip();
+    }
+
+    /**
+     * Gets the number of documents of the term.
+     * @return the number of documents.
+     */
+    int getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Moves to the next document.
+     * @return false if there are no more documents.
+     */
+    boolean next() {
+
+        if (read == frequency) {
+            return false;
+        }
+
+        if (hasSkip && read == blockEnd) {
+            nextSkip();
+        }
+
+        skipPositions();
+        documentId += VarInt.read(postings);
+        weight = VarInt.read(postings);
+        ++read;
+        positionsPending = positions != null;
+
+        return true;
+    }
+
+    /**
+     * Moves to the first document whose ID is at least a target, if the
+     * current one is before it.
+     * @param target the ID of the document.
+     * @return false if there are no documents left with such an ID.
+     */
+    boolean advance(int target) {
+
+        if (read > 0 && documentId >= target) {
+            return true;
+        }
+
+        while (hasSkip && skipDocumentId < target) {
+            ((Buffer) postings).position(nextBlockPostings);
+
+            if (positions != null) {
+                ((Buffer) positions).position(nextBlockPositions);
+            }
+
+            positionsPending = false;
+            documentId = skipDocumentId;
+            read = blockEnd;
+            nextSkip();
+        }
+
+        while (next()) {
+            if (documentId >= target) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the ID of the current document.
+     * @return the ID.
+     */
+    int getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Gets the weight of the term in the current document.
+     * @return the weight.
+     */
+    int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Decodes the positions of the term in the current document, which are
+     * then given by {@link #getPositions()}.
+     * @return the number of positions.
+     */
+    int readPositions() {
+
+        if (!positionsPending) {
+            return positionCount;
+        }
+
+        positionCount = VarInt.read(positions);
+
+        if (positionCount > positionBuffer.length) {
+            positionBuffer = Arrays.copyOf(positionBuffer,
+                    Math.max(positionCount, 2 * positionBuffer.length));
+        }
+
+        int position = 0;
+
+        for (int i = 0; i < positionCount; ++i) {
+            position += VarInt.read(positions);
+            positionBuffer[i] = position;
+        }
+
+        positionsPending = false;
+        return positionCount;
+    }
+
+    /**
+     * Gets the positions decoded by {@link #readPositions()}. The array is
+     * reused for the next documents.
+     * @return the positions in increasing order.
+     */
+    int[] getPositions() {
+        return positionBuffer;
+    }
+
+    /**
+     * Gets the number of bytes of the segment read so far.
+     * @return the number of bytes.
+     */
+    long getBytesRead() {
+
+        long bytes = postings.position() - postingsStart;
+        return positions == null ? bytes : bytes + positions.position() - positionsStart;
+    }
+
+    /**
+     * Moves the positions after the ones of the current document, if they
+     * were not read.
+     */
+    private void skipPositions() {
+
+        if (!positionsPending) {
+            return;
+        }
+
+        int count = VarInt.read(positions);
+
+        for (int i = 0; i < count; ++i) {
+            VarInt.read(positions);
+        }
+
+        positionsPending = false;
+    }
+
+    /**
+     * Reads the entry of the skip list of the next block.
+     */
+    private void nextSkip() {
+
+        blockEnd += SegmentFormat.SKIP_INTERVAL;
+        hasSkip = skipsLeft > 0;
+
+        if (!hasSkip) {
+            return;
+        }
+
+        --skipsLeft;
+        skipDocumentId += VarInt.read(skips);
+        nextBlockPostings += VarInt.read(skips);
+
+        if (positions != null) {
+            nextBlockPositions += VarInt.read(skips);
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package model.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import model.indexation.Field;
+import model.indexation.MappedFiles;
+import model.search.FieldBoosts;
+import model.search.RelevantDocument;
+
+/**
+ * A segment file mapped in memory. Looking up a term is a binary search over
+ * the term index, so no database is needed to read the postings. A segment
+ * never changes once written and can be read by several threads at once.
+ * @see SegmentFormat
+ * @see SegmentWriter
+ */
+public class Segment {
+
+    private static final Field[] FIELDS = Field.values();
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int documentCount;
+    private final int termCount;
+    private final boolean hasPositions;
+    private final boolean hasFields;
+    private final int documentsOffset;
+    private final int termsOffset;
+    private final int termIndexOffset;
+    private final int positionsOffset;
+
+    // Number of words of all the documents in each field, read when needed.
+    private volatile long[] fieldLengthTotals;
+
+    private Segment(String name, ByteBuffer buffer) throws IOException {
+
+        this.name = name;
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != SegmentFormat.MAGIC) {
+            throw new IOException(name + " is not a segment.");
+        }
+
+        int version = buffer.getInt(4);
+
+        if (version < SegmentFormat.MIN_VERSION || version > SegmentFormat.VERSION) {
+            throw new IOException("Version of segment " + name + " not supported.");
+        }
+
+        this.hasFields = version > SegmentFormat.MIN_VERSION;
+
+        this.documentCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.hasPositions = (buffer.getInt(16) & SegmentFormat.FLAG_POSITIONS) != 0;
+        this.documentsOffset = (int) buffer.getLong(20);
+        this.termsOffset = (int) buffer.getLong(28);
+        this.termIndexOffset = (int) buffer.getLong(36);
+        this.positionsOffset = (int) buffer.getLong(44);
+    }
+
+    /**
+     * Maps a segment file in memory.
+     * @param file the segment file.
+     * @return the segment.
+     * @throws IOException if the file could not be read or is not a segment.
+     */
+    public static Segment open(File file) throws IOException {
+
+        ByteBuffer buffer = MappedFiles.map(file);
+
+        try {
+            return new Segment(file.getName(), buffer);
+        } catch (IOException e) {
+            MappedFiles.unmap(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the memory mapping of the segment file. The segment must not
+     * be read afterwards, by any thread.
+     */
+    public void close() {
+        MappedFiles.unmap(buffer);
+    }
+
+    /**
+     * Releases the memory mappings of some segments.
+     * @param segments the segments, not read afterwards.
+     */
+    static void closeAll(List<Segment> segments) {
+
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Gets the name of the file of the segment.
+     * @return the name of the file.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of documents in the segment.
+     * @return the number of documents.
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the size of the segment file.
+     * @return the size in bytes.
+     */
+    public long getSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Tells if the segment has the positions of its terms, which phrases
+     * need.
+     * @return true if the positions are stored.
+     */
+    public boolean hasPositions() {
+        return hasPositions;
+    }
+
+    /**
+     * Tells if the segment has the postings and the length of the fields
+     * other than the body.
+     * @return false for the segments of version 2.
+     */
+    public boolean hasFields() {
+        return hasFields;
+    }
+
+    /**
+     * Gets the number of words of all the documents of the segment in each
+     * field. They are read the first time.
+     * @return the lengths, in the order of {@link Field}, zero if the segment
+     * has no fields.
+     */
+    public long[] getFieldLengthTotals() {
+
+        long[] totals = fieldLengthTotals;
+
+        if (totals == null) {
+            totals = new long[FIELDS.length];
+            int[] lengths = new int[FIELDS.length];
+
+            for (int i = 0; i < documentCount && hasFields; ++i) {
+                readFieldLengths(i, lengths);
+
+                for (int j = 0; j < lengths.length; ++j) {
+                    totals[j] += lengths[j];
+                }
+            }
+
+            fieldLengthTotals = totals;
+        }
+
+        return totals;
+    }
+
+    /**
+     * Gets the number of documents of the segment that contain a term.
+     * @param term the term.
+     * @return the number of documents, 0 if the term is not in the segment.
+     */
+    public int getDocumentFrequency(String term) {
+
+        ByteBuffer entry = findTerm(term);
+        return entry == null ? 0 : VarInt.read(entry);
+    }
+
+    /**
+     * Adds the documents that contain a term, with the weight of the term in
+     * each one, in increasing order of ID.
+     * @param term the term.
+     * @param result the list where the documents are added.
+     */
+    public void addPostings(String term, List<RelevantDocument> result) {
+
+        PostingsCursor postings = postings(term);
+
+        if (postings == null) {
+            return;
+        }
+
+        while (postings.next()) {
+            int documentId = postings.getDocumentId();
+            result.add(new RelevantDocument(documentId, getDocumentName(documentId),
+                    postings.getWeight()));
+        }
+    }
+
+    /**
+     * Adds the documents that contain a term, with the weight of the term in
+     * each one computed from its frequency in each field, in increasing order
+     * of ID. Without fields only the body is read.
+     * @param term the term.
+     * @param boosts the boosts of the fields.
+     * @param averageLengths the average number of words of a document in each
+     * field, in the order of {@link Field}.
+     * @param result the list where the documents are added.
+     * @see FieldBoosts
+     */
+    public void addPostings(String term, FieldBoosts boosts, float[] averageLengths,
+            List<RelevantDocument> result) {
+
+        PostingsCursor[] cursors = new PostingsCursor[FIELDS.length];
+        float[] cursorBoosts = new float[FIELDS.length];
+        int[] cursorFields = new int[FIELDS.length];
+        int remaining = 0;
+
+        for (Field field : FIELDS) {
+            float boost = boosts.getBoost(field);
+
+            if (boost == 0 || (field != Field.BODY && !hasFields)) {
+                continue;
+            }
+
+            PostingsCursor postings = postings(field == Field.BODY ? term
+                    : SegmentFormat.fieldTerm(field, term));
+
+            if (postings != null && postings.next()) {
+                cursors[remaining] = postings;
+                cursorBoosts[remaining] = boost;
+                cursorFields[remaining++] = field.ordinal();
+            }
+        }
+
+        float normalization = hasFields ? boosts.getLengthNormalization() : 0;
+        int[] lengths = new int[FIELDS.length];
+
+        while (remaining > 0) {
+            int documentId = cursors[0].getDocumentId();
+
+            for (int i = 1; i < remaining; ++i) {
+                documentId = Math.min(documentId, cursors[i].getDocumentId());
+            }
+
+            int index = documentIndex(documentId);
+
+            if (normalization > 0) {
+                readFieldLengths(index, lengths);
+            }
+
+            float weight = 0;
+
+            for (int i = remaining - 1; i >= 0; --i) {
+                PostingsCursor postings = cursors[i];
+
+                if (postings.getDocumentId() != documentId) {
+                    continue;
+                }
+
+                float frequency = postings.getWeight();
+                float average = averageLengths[cursorFields[i]];
+
+                if (normalization > 0 && average > 0) {
+                    frequency /= 1 - normalization
+                            + normalization * lengths[cursorFields[i]] / average;
+                }
+
+                weight += cursorBoosts[i] * frequency;
+
+                if (!postings.next()) {
+                    --remaining;
+                    cursors[i] = cursors[remaining];
+                    cursorBoosts[i] = cursorBoosts[remaining];
+                    cursorFields[i] = cursorFields[remaining];
+                }
+            }
+
+            result.add(new RelevantDocument(documentId, readName(nameOffsetAt(index)),
+                    weight));
+        }
+    }
+
+    /**
+     * Adds the documents that contain a phrase, with the number of times the
+     * phrase is found in each one, in increasing order of ID. The documents
+     * are found by intersecting the postings of the terms, starting with the
+     * rarest one and skipping the blocks of the others, and then their
+     * positions. Nothing is added if the segment has no positions.
+     * @param terms the terms of the phrase.
+     * @param offsets the position of each term in the phrase, in increasing
+     * order.
+     * @param result the list where the documents are added.
+     */
+    public void addPhrase(String[] terms, int[] offsets, List<RelevantDocument> result) {
+
+        if (!hasPositions || terms.length == 0) {
+            return;
+        }
+
+        PostingsCursor[] cursors = new PostingsCursor[terms.length];
+        int rarest = 0;
+
+        for (int i = 0; i < terms.length; ++i) {
+            cursors[i] = postings(terms[i]);
+
+            if (cursors[i] == null) {
+                return;
+            }
+
+            if (cursors[i].getFrequency() < cursors[rarest].getFrequency()) {
+                rarest = i;
+            }
+        }
+
+        PostingsCursor lead = cursors[rarest];
+        int[] next = new int[terms.length];
+        int target = 0;
+
+        documents:
+        while (lead.advance(target)) {
+            int documentId = lead.getDocumentId();
+
+            for (PostingsCursor cursor : cursors) {
+                if (!cursor.advance(documentId)) {
+                    return;
+                }
+
+                if (cursor.getDocumentId() > documentId) {
+                    target = cursor.getDocumentId();
+                    continue documents;
+                }
+            }
+
+            int matches = countPhrase(cursors, offsets, next);
+
+            if (matches > 0) {
+                result.add(new RelevantDocument(documentId, getDocumentName(documentId),
+                        matches));
+            }
+
+            target = documentId + 1;
+        }
+    }
+
+    /**
+     * Counts the times the terms are found in the current document at the
+     * offsets of the phrase.
+     * @param next an array used to walk through the positions of each term.
+     */
+    private static int countPhrase(PostingsCursor[] cursors, int[] offsets, int[] next) {
+
+        Arrays.fill(next, 0);
+        int firstCount = cursors[0].readPositions();
+        int[] firstPositions = cursors[0].getPositions();
+        int matches = 0;
+
+        for (int i = 0; i < firstCount; ++i) {
+            int start = firstPositions[i] - offsets[0];
+            boolean found = true;
+
+            for (int j = 1; j < cursors.length && found; ++j) {
+                int count = cursors[j].readPositions();
+                int[] positions = cursors[j].getPositions();
+                int wanted = start + offsets[j];
+
+                while (next[j] < count && positions[next[j]] < wanted) {
+                    ++next[j];
+                }
+
+                if (next[j] == count) {
+                    return matches;
+                }
+
+                found = positions[next[j]] == wanted;
+            }
+
+            if (found) {
+                ++matches;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Gets a cursor over the postings of a term.
+     * @param term the term.
+     * @return the cursor, or null if the term is not in the segment.
+     */
+    PostingsCursor postings(String term) {
+
+        ByteBuffer entry = findTerm(term);
+        return entry == null ? null : readTermEntry(entry);
+    }
+
+    /**
+     * Reads the number of documents and offsets of a term, at the position
+     * of a buffer after the term.
+     */
+    private PostingsCursor readTermEntry(ByteBuffer entry) {
+
+        int frequency = VarInt.read(entry);
+        int postingsStart = SegmentFormat.HEADER_SIZE + VarInt.read(entry);
+        int positionsStart = hasPositions ? positionsOffset + VarInt.read(entry) : -1;
+
+        return new PostingsCursor(buffer, frequency, postingsStart, positionsStart);
+    }
+
+    /**
+     * Gets the ID of a document of the segment.
+     * @param index the number of the document, in increasing order of ID.
+     * @return the ID.
+     */
+    int documentIdAt(int index) {
+        return buffer.getInt(documentsOffset + index * SegmentFormat.DOCUMENT_ENTRY_SIZE);
+    }
+
+    /**
+     * Gets the name of a document of the segment.
+     * @param index the number of the document, in increasing order of ID.
+     * @return the name, in UTF-8.
+     */
+    byte[] documentNameAt(int index) {
+        return readNameBytes(nameOffsetAt(index));
+    }
+
+    /**
+     * Gets the number of words of a document of the segment in each field.
+     * @param index the number of the document, in increasing order of ID.
+     * @return the lengths in the order of {@link Field}, or null if the
+     * segment has no fields.
+     */
+    int[] documentFieldLengthsAt(int index) {
+
+        if (!hasFields) {
+            return null;
+        }
+
+        int[] lengths = new int[FIELDS.length];
+        readFieldLengths(index, lengths);
+        return lengths;
+    }
+
+    private int nameOffsetAt(int index) {
+        return buffer.getInt(documentsOffset + index * SegmentFormat.DOCUMENT_ENTRY_SIZE + 4);
+    }
+
+    /**
+     * Reads the lengths of the fields of a document, which follow its name.
+     * The fields the segment does not know are left at zero.
+     */
+    private void readFieldLengths(int index, int[] lengths) {
+
+        Arrays.fill(lengths, 0);
+        ByteBuffer names = buffer.duplicate();
+        ((Buffer) names).position(namesStart() + nameOffsetAt(index));
+
+        int nameLength = VarInt.read(names);
+        ((Buffer) names).position(names.position() + nameLength);
+        int count = VarInt.read(names);
+
+        for (int i = 0; i < count; ++i) {
+            int length = VarInt.read(names);
+
+            if (i < lengths.length) {
+                lengths[i] = length;
+            }
+        }
+    }
+
+    private int namesStart() {
+        return documentsOffset + documentCount * SegmentFormat.DOCUMENT_ENTRY_SIZE;
+    }
+
+    /**
+     * Gets a cursor over the terms of the segment, in their order. Used to
+     * merge segments.
+     * @return the cursor, before the first term.
+     */
+    TermCursor terms() {
+        return new TermCursor();
+    }
+
+    /**
+     * Finds a term in the segment.
+     * @param term the term.
+     * @return a buffer positioned after the term in the terms section, or
+     * null if the term is not in the segment.
+     */
+    private ByteBuffer findTerm(String term) {
+
+        byte[] key = term.getBytes(SegmentFormat.CHARSET);
+        ByteBuffer entry = buffer.duplicate();
+        int low = 0;
+        int high = termCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            ((Buffer) entry).position(termsOffset + buffer.getInt(
+                    termIndexOffset + middle * SegmentFormat.TERM_INDEX_ENTRY_SIZE));
+
+            int cmp = compareTerm(entry, key);
+
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Compares the term at the position of a buffer with a key, leaving the
+     * buffer after the term.
+     */
+    private static int compareTerm(ByteBuffer entry, byte[] key) {
+
+        int length = VarInt.read(entry);
+        int start = entry.position();
+        int common = Math.min(length, key.length);
+
+        for (int i = 0; i < common; ++i) {
+            int diff = (entry.get(start + i) & 0xFF) - (key[i] & 0xFF);
+
+            if (diff != 0) {
+                return diff;
+            }
+        }
+
+        ((Buffer) entry).position(start + length);
+        return length - key.length;
+    }
+
+    /**
+     * Gets the name of a document of the segment.
+     * @param documentId ID of the document.
+     * @return the name, or null if the document is not in the segment.
+     */
+    public String getDocumentName(int documentId) {
+
+        int index = documentIndex(documentId);
+        return index < 0 ? null : readName(nameOffsetAt(index));
+    }
+
+    /**
+     * Finds a document with a binary search over the documents.
+     * @param documentId ID of the document.
+     * @return the number of the document in increasing order of ID, or -1 if
+     * it is not in the segment.
+     */
+    private int documentIndex(int documentId) {
+
+        int low = 0;
+        int high = documentCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = documentIdAt(middle);
+
+            if (id < documentId) {
+                low = middle + 1;
+            } else if (id > documentId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    private String readName(int offset) {
+        return new String(readNameBytes(offset), SegmentFormat.CHARSET);
+    }
+
+    private byte[] readNameBytes(int offset) {
+
+        ByteBuffer names = buffer.duplicate();
+        ((Buffer) names).position(namesStart() + offset);
+
+        byte[] bytes = new byte[VarInt.read(names)];
+        names.get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Reads the terms section from the start to the end.
+     */
+    class TermCursor {
+
+        private final ByteBuffer terms = buffer.duplicate();
+        private int read = 0;
+        private byte[] term;
+        private PostingsCursor postings;
+
+        TermCursor() {
+            ((Buffer) terms).position(termsOffset);
+        }
+
+        /**
+         * Moves to the next term.
+         * @return false if there are no more terms.
+         */
+        boolean next() {
+
+            if (read == termCount) {
+                return false;
+            }
+
+            term = new byte[VarInt.read(terms)];
+            terms.get(term);
+            postings = readTermEntry(terms);
+            ++read;
+            return true;
+        }
+
+        /**
+         * Gets the current term.
+         * @return the term, in UTF-8.
+         */
+        byte[] term() {
+            return term;
+        }
+
+        /**
+         * Gets the documents of the current term.
+         * @return a cursor before the first document.
+         */
+        PostingsCursor postings() {
+            return postings;
+        }
+    }
+}
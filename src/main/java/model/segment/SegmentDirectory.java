@@ -0,0 +1,462 @@
+package model.segment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Folder with the segment files of an index. The segments that belong to the
+ * index are listed in a file that is replaced atomically every time a segment
+ * is added, so readers never see a segment that is not completely written.
+ * A new index can be written in the same folder as a new generation, with its
+ * own list, while the searches read the previous one; committing it replaces
+ * the list in one step.
+ * The segments are written outside the lock of the directory, which is only
+ * held to name them and to change the list, so several writers can add
+ * segments at once.
+ * @see Segment
+ * @see SegmentWriter
+ */
+public class SegmentDirectory {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // File listing the segments of the index.
+    private static final String SEGMENTS_FILE = "segments";
+    // File listing the segments of a generation not committed yet.
+    private static final String GENERATION_FILE = "segments.new";
+    private static final String SEGMENT_PREFIX = "_";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    // Prefix of the subfolders of the shards of an index split by document.
+    private static final String SHARD_PREFIX = "shard-";
+
+    // Times the list of segments is read again when a merge removes one.
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+
+    private final File folder;
+
+    // File listing the segments added and replaced through this object.
+    private final String listFile;
+
+    // Number of the next segment written.
+    private int nextSegment = 0;
+
+    /**
+     * Opens the folder of an index, creating it if it does not exist.
+     * @param folder the folder of the segments.
+     */
+    public SegmentDirectory(File folder) {
+        this(folder, SEGMENTS_FILE);
+    }
+
+    private SegmentDirectory(File folder, String listFile) {
+
+        this.folder = folder;
+        this.listFile = listFile;
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            LOGGER.error("Could not create folder {}.", folder.getAbsolutePath());
+        }
+
+        // The files of other generations keep their names.
+        String[] files = folder.list();
+
+        for (String name : files == null ? new String[0] : files) {
+            nextSegment = Math.max(nextSegment, segmentNumber(name) + 1);
+        }
+    }
+
+    /**
+     * Starts a new generation of the index of a folder, without segments.
+     * The segments added and merged through the returned object are not
+     * seen by the searches until the generation is committed. A previous
+     * generation that was not committed is discarded.
+     * @param folder the folder of the segments.
+     * @return the folder, writing the new generation.
+     * @see #commitGeneration()
+     */
+    public static SegmentDirectory newGeneration(File folder) {
+
+        new SegmentDirectory(folder).discardGeneration();
+        SegmentDirectory generation = new SegmentDirectory(folder, GENERATION_FILE);
+
+        try {
+            generation.writeSegmentNames(Collections.<String>emptyList());
+        } catch (IOException e) {
+            LOGGER.error("Could not start a new generation of " + folder.getName() + ".", e);
+        }
+
+        return generation;
+    }
+
+    /**
+     * Replaces the segments of the index by the ones of the new generation in
+     * one step, then deletes the files of the previous segments. It must be
+     * called once the generation is completely written.
+     * @return true if there was a new generation to commit.
+     * @throws IOException if the list of segments could not be replaced.
+     * @see #newGeneration(File)
+     */
+    public synchronized boolean commitGeneration() throws IOException {
+
+        File generation = new File(folder, GENERATION_FILE);
+
+        if (!generation.exists()) {
+            return false;
+        }
+
+        List<String> names = readSegmentNames(GENERATION_FILE);
+        Files.move(generation.toPath(), new File(folder, SEGMENTS_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<String> previous = new ArrayList<String>();
+        String[] files = folder.list();
+
+        for (String name : files == null ? new String[0] : files) {
+            if (segmentNumber(name) >= 0 && !names.contains(name)) {
+                previous.add(name);
+            }
+        }
+
+        deleteSegments(previous);
+        return true;
+    }
+
+    /**
+     * Deletes the new generation of the index and its segments, keeping the
+     * segments of the index.
+     */
+    public synchronized void discardGeneration() {
+
+        File generation = new File(folder, GENERATION_FILE);
+
+        if (!generation.exists()) {
+            return;
+        }
+
+        List<String> names = readSegmentNames(GENERATION_FILE);
+
+        if (!generation.delete()) {
+            LOGGER.error("Could not delete the new generation of {}.", folder.getName());
+            return;
+        }
+
+        deleteSegments(names);
+    }
+
+    /**
+     * Gets the folder of a shard of an index split by document ID.
+     * @param folder the folder of the index.
+     * @param shard the number of the shard.
+     * @return the folder of the segments of the shard.
+     */
+    public static File shardFolder(File folder, int shard) {
+        return new File(folder, SHARD_PREFIX + shard);
+    }
+
+    /**
+     * Opens the shards of an index split by document ID.
+     * @param folder the folder of the index.
+     * @return the folders of the shards with a committed index, in
+     * increasing order, empty if the index is not split.
+     */
+    public static List<SegmentDirectory> openShards(File folder) {
+
+        TreeMap<Integer, File> shards = new TreeMap<Integer, File>();
+        File[] files = folder.listFiles();
+
+        for (File file : files == null ? new File[0] : files) {
+            int shard = shardNumber(file);
+
+            // The first generation of the shard is not committed yet.
+            if (shard >= 0 && new File(file, SEGMENTS_FILE).exists()) {
+                shards.put(shard, file);
+            }
+        }
+
+        List<SegmentDirectory> directories = new ArrayList<SegmentDirectory>();
+
+        for (File shard : shards.values()) {
+            directories.add(new SegmentDirectory(shard));
+        }
+
+        return directories;
+    }
+
+    /**
+     * Gets the number of the shard of a folder.
+     * @param file the folder.
+     * @return the number, or -1 if the folder is not a shard.
+     */
+    public static int shardNumber(File file) {
+
+        String name = file.getName();
+
+        if (!file.isDirectory() || !name.startsWith(SHARD_PREFIX)) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(name.substring(SHARD_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the folder of the index.
+     * @return the folder.
+     */
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Writes a new segment and adds it to the index.
+     * @param writer the writer with the documents of the segment.
+     * @return the name of the segment.
+     * @throws IOException if the segment could not be written.
+     */
+    public String add(SegmentWriter writer) throws IOException {
+
+        String name = newSegmentName();
+        File temporary = new File(folder, name + TEMPORARY_EXTENSION);
+
+        try {
+            writer.writeTo(temporary);
+        } catch (IOException e) {
+            deleteSegments(Collections.singletonList(temporary.getName()));
+            throw e;
+        }
+
+        Files.move(temporary.toPath(), new File(folder, name).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            List<String> names = new ArrayList<String>(getSegmentNames());
+            names.add(name);
+            writeSegmentNames(names);
+        }
+
+        LOGGER.debug("Segment {} added with {} documents.", name, writer.getDocumentCount());
+        return name;
+    }
+
+    /**
+     * Replaces segments of the index by a segment with their documents. The
+     * replaced segment files are deleted; the searches that mapped them keep
+     * reading them until they are done.
+     * @param replaced the names of the segments to remove from the index.
+     * @param writer the writer with the documents of the new segment.
+     * @return the name of the new segment, or null if some of the replaced
+     * segments are not in the index any more.
+     * @throws IOException if the segment could not be written.
+     */
+    public String replace(List<String> replaced, SegmentWriter writer) throws IOException {
+        return replace(replaced, (SegmentSource) writer);
+    }
+
+    /**
+     * Replaces segments of the index by a segment with their documents.
+     * @param replaced the names of the segments to remove from the index.
+     * @param source the documents of the new segment.
+     * @return the name of the new segment, or null if some of the replaced
+     * segments are not in the index any more.
+     * @throws IOException if the segment could not be written.
+     * @see #replace(List, SegmentWriter)
+     */
+    String replace(List<String> replaced, SegmentSource source) throws IOException {
+
+        String name = newSegmentName();
+        File file = new File(folder, name);
+        File temporary = new File(folder, name + TEMPORARY_EXTENSION);
+
+        source.writeTo(temporary);
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            List<String> names = new ArrayList<String>(getSegmentNames());
+
+            // The index was cleared while the segments were merged.
+            if (!names.containsAll(replaced)) {
+                LOGGER.warn("Segments {} were removed, merge discarded.", replaced);
+                deleteSegments(Collections.singletonList(name));
+                return null;
+            }
+
+            names.removeAll(replaced);
+            names.add(name);
+            writeSegmentNames(names);
+        }
+
+        deleteSegments(replaced);
+        return name;
+    }
+
+    /**
+     * Removes all the segments of the index.
+     */
+    public synchronized void clear() {
+
+        List<String> names = getSegmentNames();
+
+        try {
+            writeSegmentNames(Collections.<String>emptyList());
+            deleteSegments(names);
+        } catch (IOException e) {
+            LOGGER.error("Could not remove the segments of " + folder.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Gets the names of the segments of the index.
+     * @return the names of the segment files, in the order they were added.
+     */
+    public synchronized List<String> getSegmentNames() {
+        return readSegmentNames(listFile);
+    }
+
+    private List<String> readSegmentNames(String fileName) {
+
+        File file = new File(folder, fileName);
+        List<String> names = new ArrayList<String>();
+
+        if (!file.exists()) {
+            return names;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), SegmentFormat.CHARSET))) {
+
+            String line = reader.readLine();
+
+            while (line != null) {
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+
+                line = reader.readLine();
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Could not read the segments of " + folder.getName() + ".", e);
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the time the list of segments was last replaced.
+     * @return the time in milliseconds, 0 if there is no list yet.
+     */
+    public long getLastModified() {
+        return new File(folder, listFile).lastModified();
+    }
+
+    /**
+     * Maps the segments of the index in memory.
+     * @return the segments, skipping the ones that could not be read.
+     */
+    public List<Segment> openSegments() {
+
+        List<Segment> segments = new ArrayList<Segment>();
+
+        for (int attempt = 1; attempt <= MAX_OPEN_ATTEMPTS; ++attempt) {
+            Segment.closeAll(segments);
+            segments.clear();
+            boolean removed = false;
+
+            for (String name : getSegmentNames()) {
+                File file = new File(folder, name);
+
+                // A merge replaced it after the list was read.
+                if (!file.exists() && attempt < MAX_OPEN_ATTEMPTS) {
+                    removed = true;
+                    break;
+                }
+
+                try {
+                    segments.add(Segment.open(file));
+                } catch (IOException e) {
+                    LOGGER.error("Could not open segment " + name + ".", e);
+                }
+            }
+
+            if (!removed) {
+                break;
+            }
+        }
+
+        return segments;
+    }
+
+    private synchronized String newSegmentName() {
+        return SEGMENT_PREFIX + Integer.toString(nextSegment++, Character.MAX_RADIX)
+                + SegmentFormat.EXTENSION;
+    }
+
+    private static int segmentNumber(String name) {
+
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SegmentFormat.EXTENSION)) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SegmentFormat.EXTENSION.length()), Character.MAX_RADIX);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replaces the list of segments.
+     * @param names the names of the segment files.
+     * @throws IOException if the list could not be written.
+     */
+    private void writeSegmentNames(List<String> names) throws IOException {
+
+        File temporary = new File(folder, listFile + TEMPORARY_EXTENSION);
+
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            Writer writer = new OutputStreamWriter(out, SegmentFormat.CHARSET);
+
+            for (String name : names) {
+                writer.write(name);
+                writer.write('\n');
+            }
+
+            writer.flush();
+            out.getFD().sync();
+        }
+
+        Files.move(temporary.toPath(), new File(folder, listFile).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteSegments(List<String> names) {
+
+        for (String name : names) {
+            File file = new File(folder, name);
+
+            if (file.exists() && !file.delete()) {
+                LOGGER.error("Could not delete segment {}.", name);
+            }
+        }
+    }
+}
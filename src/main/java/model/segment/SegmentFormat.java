@@ -0,0 +1,102 @@
+package model.segment;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import model.indexation.Field;
+
+/**
+ * Layout of a segment file. All the numbers are big endian.
+ * <pre>
+ * header     MAGIC, VERSION, number of documents, number of terms, flags
+ *            (ints), offsets of the documents, the terms, the term index and
+ *            the positions (longs)
+ * postings   for each term: if it has more than SKIP_INTERVAL documents, the
+ *            length of its skip list and the skip list; then its documents,
+ *            each one as the difference with the previous ID and the weight
+ *            (varints)
+ * positions  only with FLAG_POSITIONS, for each term and each of its
+ *            documents: number of positions and each position as the
+ *            difference with the previous one (varints)
+ * documents  for each document sorted by ID: ID and offset of its name (ints),
+ *            followed by the names (varint length and UTF-8 bytes), each
+ *            one followed by the number of fields and the number of words
+ *            of the document in each field in the order of {@link Field}
+ *            (varints)
+ * terms      for each term sorted by its UTF-8 bytes: the term (varint length
+ *            and bytes), number of documents, offset of the postings and,
+ *            with FLAG_POSITIONS, offset of the positions (varints)
+ * term index offset of each term in the terms section (ints)
+ * </pre>
+ * The documents of a term are split in blocks of SKIP_INTERVAL. The skip list
+ * has an entry for each block but the last: the difference between the last
+ * ID of the block and the one of the previous block, the length of the
+ * postings of the block and, with FLAG_POSITIONS, the length of its positions
+ * (varints). A reader can jump over a block without decoding it.
+ * <p>
+ * The body has the words of all the fields, under the word itself. The
+ * postings of a word in another field are under the name of the field, the
+ * FIELD_SEPARATOR and the word, so the searcher can weigh each field. They
+ * have no positions. Version 2 had neither the fields nor their length, and
+ * can still be read.
+ */
+final class SegmentFormat {
+
+    static final int MAGIC = 0x53454731;
+    static final int VERSION = 3;
+
+    /** Oldest version that can be read, without the fields. */
+    static final int MIN_VERSION = 2;
+
+    static final int HEADER_SIZE = 52;
+    static final int DOCUMENT_ENTRY_SIZE = 8;
+    static final int TERM_INDEX_ENTRY_SIZE = 4;
+
+    /** Flag of the segments that have the positions of the terms. */
+    static final int FLAG_POSITIONS = 1;
+
+    /** Number of documents of a term in each block of the skip list. */
+    static final int SKIP_INTERVAL = 64;
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** Separator between the name of a field and a word in a term. */
+    static final char FIELD_SEPARATOR = '\u001F';
+
+    /** Extension of the segment files. */
+    static final String EXTENSION = ".seg";
+
+    // To avoid instantiation
+    private SegmentFormat() {}
+
+    /**
+     * Gets the term of the postings of a word in a field.
+     * @param field the field, other than the body.
+     * @param word the word.
+     * @return the term.
+     */
+    static String fieldTerm(Field field, String word) {
+        return field.name().toLowerCase(Locale.ROOT) + FIELD_SEPARATOR + word;
+    }
+
+    /**
+     * Compares two UTF-8 encoded terms byte by byte, as unsigned numbers.
+     * This is the order of the terms in a segment.
+     * @return a negative number, zero or a positive number if the first term
+     * is before, equal or after the second.
+     */
+    static int compare(byte[] a, byte[] b) {
+
+        int length = Math.min(a.length, b.length);
+
+        for (int i = 0; i < length; ++i) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+
+            if (diff != 0) {
+                return diff;
+            }
+        }
+
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,243 @@
+package model.segment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import model.indexation.Field;
+import model.search.FieldBoosts;
+import model.search.PostingsSource;
+import model.search.RelevantDocument;
+
+/**
+ * Reads the postings of an index stored in segment files. The segments are
+ * the ones of the index when this object is created. An index split in
+ * shards by document ID is read as a single one, so the number of documents
+ * of each word and of the index, which give the idf, are the global ones.
+ * @see SegmentDirectory
+ */
+public class SegmentIndex implements PostingsSource {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * System property with the folder of the segments. When it is set the
+     * searcher reads the postings from the segments instead of the database.
+     */
+    public static final String FOLDER_PROPERTY = "searchengine.segments";
+
+    private static final Comparator<RelevantDocument> BY_ID =
+            new Comparator<RelevantDocument>() {
+                @Override
+                public int compare(RelevantDocument a, RelevantDocument b) {
+                    return Integer.compare(a.getDocumentId(), b.getDocumentId());
+                }
+            };
+
+    private List<Segment> segments;
+    private final int documentCount;
+    private final String version;
+
+    // Average number of words of a document in each field, read when needed.
+    private volatile float[] averageLengths;
+
+    /**
+     * Opens the segments of an index.
+     * @param directory the folder of the index.
+     */
+    public SegmentIndex(SegmentDirectory directory) {
+        this(Collections.singletonList(directory));
+    }
+
+    /**
+     * Opens the segments of the shards of an index, which have different
+     * documents.
+     * @param directories the folders of the shards.
+     */
+    public SegmentIndex(List<SegmentDirectory> directories) {
+
+        segments = new ArrayList<Segment>();
+        StringBuilder names = new StringBuilder();
+
+        for (SegmentDirectory directory : directories) {
+            long modified = directory.getLastModified();
+            List<Segment> opened = directory.openSegments();
+            segments.addAll(opened);
+            names.append(directory.getFolder().getAbsolutePath()).append(' ')
+                    .append(modified);
+
+            for (Segment segment : opened) {
+                names.append(' ').append(segment.getName()).append(':')
+                        .append(segment.getSize());
+            }
+
+            names.append('\n');
+        }
+
+        int count = 0;
+
+        for (Segment segment : segments) {
+            count += segment.getDocumentCount();
+        }
+
+        documentCount = count;
+        version = names.toString();
+        LOGGER.debug("Index with {} segments and {} documents opened.",
+                segments.size(), documentCount);
+    }
+
+    /**
+     * Opens the index of a folder, with all its shards if it is split.
+     * @param folder the folder of the index.
+     * @return the index.
+     * @see SegmentDirectory#openShards(java.io.File)
+     */
+    public static SegmentIndex open(File folder) {
+
+        List<SegmentDirectory> shards = SegmentDirectory.openShards(folder);
+
+        if (shards.isEmpty()) {
+            return new SegmentIndex(new SegmentDirectory(folder));
+        }
+
+        LOGGER.debug("Index split in {} shards.", shards.size());
+        return new SegmentIndex(shards);
+    }
+
+    @Override
+    public List<RelevantDocument> getRelevantDocsTf(String word) {
+
+        LOGGER.trace("Getting relevant documents of the word {} using tf.", word);
+
+        List<RelevantDocument> list = new ArrayList<RelevantDocument>();
+
+        for (Segment segment : segments) {
+            segment.addPostings(word, list);
+        }
+
+        // Each segment gives its documents sorted.
+        if (segments.size() > 1) {
+            Collections.sort(list, BY_ID);
+        }
+
+        return list;
+    }
+
+    @Override
+    public List<RelevantDocument> getRelevantDocsTf(String word, FieldBoosts boosts) {
+
+        if (boosts.isDefault()) {
+            return getRelevantDocsTf(word);
+        }
+
+        LOGGER.trace("Getting relevant documents of the word {} using tf with boosts {}.",
+                word, boosts);
+
+        float[] averages = getAverageLengths();
+        List<RelevantDocument> list = new ArrayList<RelevantDocument>();
+
+        for (Segment segment : segments) {
+            segment.addPostings(word, boosts, averages, list);
+        }
+
+        if (segments.size() > 1) {
+            Collections.sort(list, BY_ID);
+        }
+
+        return list;
+    }
+
+    /**
+     * Gets the average number of words of a document in each field, over the
+     * documents of the segments that have the fields.
+     * @return the averages, in the order of {@link Field}.
+     */
+    private float[] getAverageLengths() {
+
+        float[] averages = averageLengths;
+
+        if (averages == null) {
+            long[] totals = new long[Field.values().length];
+            long documents = 0;
+
+            for (Segment segment : segments) {
+                if (segment.hasFields()) {
+                    long[] segmentTotals = segment.getFieldLengthTotals();
+                    documents += segment.getDocumentCount();
+
+                    for (int i = 0; i < totals.length; ++i) {
+                        totals[i] += segmentTotals[i];
+                    }
+                }
+            }
+
+            averages = new float[totals.length];
+
+            for (int i = 0; i < totals.length && documents > 0; ++i) {
+                averages[i] = (float) totals[i] / documents;
+            }
+
+            averageLengths = averages;
+        }
+
+        return averages;
+    }
+
+    @Override
+    public List<RelevantDocument> getRelevantDocsOfPhraseTf(String[] words, int[] offsets) {
+
+        LOGGER.trace("Getting relevant documents of the phrase {} using tf.",
+                Arrays.toString(words));
+
+        for (Segment segment : segments) {
+            if (!segment.hasPositions()) {
+                LOGGER.debug("Segment {} has no positions.", segment.getName());
+                return null;
+            }
+        }
+
+        List<RelevantDocument> list = new ArrayList<RelevantDocument>();
+
+        for (Segment segment : segments) {
+            segment.addPhrase(words, offsets, list);
+        }
+
+        if (segments.size() > 1) {
+            Collections.sort(list, BY_ID);
+        }
+
+        return list;
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the version of the index: the time the list of segments of each
+     * folder was replaced, and the segments opened with their size. A segment
+     * is not changed once written, so the version changes when segments are
+     * added, merged or removed, even if a new index reuses their names.
+     * @return the version.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Releases the memory mappings of the segments. The postings already read
+     * are copies and can still be used.
+     */
+    @Override
+    public void close() {
+        Segment.closeAll(segments);
+        segments = Collections.emptyList();
+    }
+}
@@ -0,0 +1,183 @@
+package model.segment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Merges the segments of an index in a background thread, so the number of
+ * segments read by each search stays small while documents keep being added.
+ * The segments are merged with a k-way merge that reads them and writes the
+ * new one sequentially, without holding their postings in memory.
+ * The merged segment replaces the old ones atomically: the searches that
+ * already opened the old segments keep reading them, and the new searches
+ * read the merged one. Merges read the segments at a limited rate so they do
+ * not slow down the searches.
+ * @see TieredMergePolicy
+ * @see SegmentDirectory#replace(List, SegmentWriter)
+ */
+public class SegmentMerger {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final SegmentDirectory directory;
+    private final TieredMergePolicy policy;
+    private final long bytesPerSecond;
+    private final Thread thread;
+
+    // Guarded by this.
+    private boolean segmentsAdded = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a merger, which does nothing until it is started.
+     * @param directory the folder of the index.
+     * @param policy chooses the segments to merge.
+     * @param bytesPerSecond the maximum rate at which the segments are read,
+     * 0 for no limit.
+     */
+    public SegmentMerger(SegmentDirectory directory, TieredMergePolicy policy,
+            long bytesPerSecond) {
+
+        this.directory = directory;
+        this.policy = policy;
+        this.bytesPerSecond = bytesPerSecond;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mergeWhenAdded();
+            }
+        }, "segment-merger");
+    }
+
+    /**
+     * Starts the background thread, which looks for merges every time
+     * segments are added.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Tells the background thread that segments were added to the index.
+     */
+    public synchronized void segmentAdded() {
+        segmentsAdded = true;
+        notifyAll();
+    }
+
+    /**
+     * Stops the background thread once the merges needed by the segments
+     * already added are done.
+     */
+    public void close() {
+
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while waiting for the merges to finish.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Merges segments in the current thread until the policy finds no more
+     * merges.
+     * @return the number of merges done.
+     */
+    public int mergeAll() {
+
+        int merges = 0;
+        boolean merged = true;
+
+        while (merged) {
+            List<Segment> opened = directory.openSegments();
+            List<Segment> segments = policy.findMerge(opened);
+            merged = !segments.isEmpty() && merge(segments) != null;
+            Segment.closeAll(opened);
+
+            if (merged) {
+                ++merges;
+            }
+        }
+
+        return merges;
+    }
+
+    /**
+     * Merges all the segments of the index into one, in the current thread.
+     * @return true if the index has at most one segment.
+     */
+    public boolean forceMerge() {
+
+        List<Segment> segments = directory.openSegments();
+        boolean merged = segments.size() <= 1 || merge(segments) != null;
+        Segment.closeAll(segments);
+        return merged;
+    }
+
+    /**
+     * Merges segments into one.
+     * @param segments the segments to merge.
+     * @return the name of the new segment, or null if the segments could not
+     * be merged.
+     */
+    String merge(List<Segment> segments) {
+
+        long start = System.nanoTime();
+        MergedSegment merged = new MergedSegment(segments,
+                new MergeRateLimiter(bytesPerSecond));
+        List<String> names = new ArrayList<String>();
+
+        for (Segment segment : segments) {
+            names.add(segment.getName());
+        }
+
+        try {
+            String name = directory.replace(names, merged);
+
+            if (name != null) {
+                LOGGER.info("Merged {} segments into {} with {} documents in {} ms.",
+                        names.size(), name, merged.getDocumentCount(),
+                        (System.nanoTime() - start) / 1000000);
+            }
+
+            return name;
+
+        } catch (IOException e) {
+            LOGGER.error("Could not merge segments " + names + ".", e);
+            return null;
+        }
+    }
+
+    private void mergeWhenAdded() {
+
+        boolean closing = false;
+
+        while (!closing) {
+            synchronized (this) {
+                try {
+                    while (!segmentsAdded && !closed) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.error("Segment merger interrupted.", e);
+                    return;
+                }
+
+                closing = closed;
+                segmentsAdded = false;
+            }
+
+            mergeAll();
+        }
+    }
+}
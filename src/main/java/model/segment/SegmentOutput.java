@@ -0,0 +1,362 @@
+package model.segment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes a segment file sequentially, one term after the other, so a segment
+ * of any size is written holding only the postings of the current term in
+ * memory. The postings go straight to the file; the sections that come
+ * after them are written to temporary files next to it and appended when the
+ * segment is finished, and the header is written last.
+ * @see SegmentFormat
+ */
+class SegmentOutput implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final boolean withPositions;
+
+    private final FileOutputStream fileOut;
+    private final CountingOutputStream postingsOut;
+
+    // Sections written after the postings, and their temporary files.
+    private final File[] temporaries;
+    private final CountingOutputStream positionsOut;
+    private final CountingOutputStream documentIndexOut;
+    private final CountingOutputStream namesOut;
+    private final CountingOutputStream termsOut;
+    private final CountingOutputStream termIndexOut;
+
+    private int documentCount = 0;
+    private int termCount = 0;
+    private int lastDocument = -1;
+    private boolean finished = false;
+
+    // Postings of the current term, encoded.
+    private final ByteArrayOutputStream documents = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream skips = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream positions = new ByteArrayOutputStream();
+    private byte[] term;
+    private int frequency;
+    private int previous;
+    private int previousSkip;
+    private int blockStart;
+    private int positionsBlockStart;
+
+    /**
+     * Creates the segment file.
+     * @param file the file to write.
+     * @param withPositions true if the postings have positions.
+     * @throws IOException if the files could not be created.
+     */
+    SegmentOutput(File file, boolean withPositions) throws IOException {
+
+        this.file = file;
+        this.withPositions = withPositions;
+        this.temporaries = new File[] {
+            temporary(".positions"), temporary(".documents"), temporary(".names"),
+            temporary(".terms"), temporary(".termindex")
+        };
+
+        this.fileOut = new FileOutputStream(file);
+        this.postingsOut = new CountingOutputStream(fileOut);
+        this.positionsOut = new CountingOutputStream(new FileOutputStream(temporaries[0]));
+        this.documentIndexOut = new CountingOutputStream(new FileOutputStream(temporaries[1]));
+        this.namesOut = new CountingOutputStream(new FileOutputStream(temporaries[2]));
+        this.termsOut = new CountingOutputStream(new FileOutputStream(temporaries[3]));
+        this.termIndexOut = new CountingOutputStream(new FileOutputStream(temporaries[4]));
+
+        // The header is written when the offsets of the sections are known.
+        postingsOut.write(new byte[SegmentFormat.HEADER_SIZE]);
+    }
+
+    private File temporary(String section) {
+        return new File(file.getPath() + section);
+    }
+
+    /**
+     * Adds a document. The documents are added in increasing order of ID.
+     * @param documentId ID of the document.
+     * @param name name of the document, in UTF-8.
+     * @param fieldLengths number of words of the document in each field, in
+     * the order of {@link model.indexation.Field}, null if they are unknown.
+     * @throws IOException if the document could not be written.
+     */
+    void addDocument(int documentId, byte[] name, int[] fieldLengths) throws IOException {
+
+        if (documentId <= lastDocument) {
+            throw new IllegalArgumentException("Document " + documentId + " is not in order.");
+        }
+
+        writeInt(documentIndexOut, documentId);
+        writeInt(documentIndexOut, checkOffset(namesOut.count));
+        VarInt.write(namesOut, name.length);
+        namesOut.write(name);
+
+        if (fieldLengths == null) {
+            VarInt.write(namesOut, 0);
+        } else {
+            VarInt.write(namesOut, fieldLengths.length);
+
+            for (int length : fieldLengths) {
+                VarInt.write(namesOut, length);
+            }
+        }
+
+        lastDocument = documentId;
+        ++documentCount;
+    }
+
+    /**
+     * Starts the postings of a term. The terms are added in the order of
+     * {@link SegmentFormat#compare(byte[], byte[])}, each one with at least
+     * one posting.
+     * @param term the term, in UTF-8.
+     */
+    void startTerm(byte[] term) {
+
+        this.term = term;
+        frequency = 0;
+        previous = 0;
+        previousSkip = 0;
+        blockStart = 0;
+        positionsBlockStart = 0;
+        documents.reset();
+        skips.reset();
+        positions.reset();
+    }
+
+    /**
+     * Adds a posting of the current term. The postings are added in
+     * increasing order of document.
+     * @param documentId ID of the document.
+     * @param weight weight of the term in the document.
+     * @param documentPositions the positions of the term in the document,
+     * ignored if the segment has no positions.
+     * @param count number of positions in the array.
+     */
+    void addPosting(int documentId, int weight, int[] documentPositions, int count) {
+
+        // The skip list entry of the previous block, which is not the last.
+        if (frequency > 0 && frequency % SegmentFormat.SKIP_INTERVAL == 0) {
+            VarInt.write(skips, previous - previousSkip);
+            VarInt.write(skips, documents.size() - blockStart);
+            previousSkip = previous;
+            blockStart = documents.size();
+
+            if (withPositions) {
+                VarInt.write(skips, positions.size() - positionsBlockStart);
+                positionsBlockStart = positions.size();
+            }
+        }
+
+        VarInt.write(documents, documentId - previous);
+        VarInt.write(documents, weight);
+        previous = documentId;
+        ++frequency;
+
+        if (withPositions) {
+            VarInt.write(positions, count);
+            int previousPosition = 0;
+
+            for (int i = 0; i < count; ++i) {
+                VarInt.write(positions, documentPositions[i] - previousPosition);
+                previousPosition = documentPositions[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the postings of the current term and its entry in the terms.
+     * @throws IOException if the term could not be written.
+     */
+    void finishTerm() throws IOException {
+
+        writeInt(termIndexOut, checkOffset(termsOut.count));
+        VarInt.write(termsOut, term.length);
+        termsOut.write(term);
+        VarInt.write(termsOut, frequency);
+        VarInt.write(termsOut, checkOffset(postingsOut.count - SegmentFormat.HEADER_SIZE));
+
+        if (withPositions) {
+            VarInt.write(termsOut, checkOffset(positionsOut.count));
+        }
+
+        if (frequency > SegmentFormat.SKIP_INTERVAL) {
+            VarInt.write(postingsOut, skips.size());
+            skips.writeTo(postingsOut);
+        }
+
+        documents.writeTo(postingsOut);
+
+        if (withPositions) {
+            positions.writeTo(positionsOut);
+        }
+
+        ++termCount;
+    }
+
+    /**
+     * Appends the sections to the postings, writes the header and waits
+     * until the file is on disk.
+     * @throws IOException if the file could not be written.
+     */
+    void finish() throws IOException {
+
+        closeSections();
+
+        long positionsOffset = postingsOut.count;
+        long documentsOffset = positionsOffset + (withPositions ? positionsOut.count : 0);
+        long termsOffset = documentsOffset + documentIndexOut.count + namesOut.count;
+        long termIndexOffset = termsOffset + termsOut.count;
+        checkOffset(termIndexOffset + termIndexOut.count);
+
+        if (withPositions) {
+            append(temporaries[0]);
+        }
+
+        for (int i = 1; i < temporaries.length; ++i) {
+            append(temporaries[i]);
+        }
+
+        postingsOut.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(SegmentFormat.HEADER_SIZE);
+        header.putInt(SegmentFormat.MAGIC);
+        header.putInt(SegmentFormat.VERSION);
+        header.putInt(documentCount);
+        header.putInt(termCount);
+        header.putInt(withPositions ? SegmentFormat.FLAG_POSITIONS : 0);
+        header.putLong(documentsOffset);
+        header.putLong(termsOffset);
+        header.putLong(termIndexOffset);
+        header.putLong(positionsOffset);
+        ((Buffer) header).flip();
+
+        FileChannel channel = fileOut.getChannel();
+
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+
+        fileOut.getFD().sync();
+        finished = true;
+    }
+
+    /**
+     * Closes the files and deletes the temporary ones. If the segment was not
+     * finished its file is deleted too.
+     */
+    @Override
+    public void close() {
+
+        closeSections();
+        closeQuietly(postingsOut);
+
+        for (File temporary : temporaries) {
+            delete(temporary);
+        }
+
+        if (!finished) {
+            delete(file);
+        }
+    }
+
+    private void closeSections() {
+        closeQuietly(positionsOut);
+        closeQuietly(documentIndexOut);
+        closeQuietly(namesOut);
+        closeQuietly(termsOut);
+        closeQuietly(termIndexOut);
+    }
+
+    private void append(File section) throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(section), BUFFER_SIZE)) {
+            int read = in.read(buffer);
+
+            while (read >= 0) {
+                postingsOut.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+    }
+
+    private static int checkOffset(long offset) throws IOException {
+
+        // The segments are mapped in a single buffer.
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Segment larger than 2 GB.");
+        }
+
+        return (int) offset;
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not close a file of a segment.", e);
+        }
+    }
+
+    private static void delete(File file) {
+
+        if (file.exists() && !file.delete()) {
+            LOGGER.error("Could not delete {}.", file.getName());
+        }
+    }
+
+    /**
+     * Buffered stream that counts the bytes written to it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(new BufferedOutputStream(out, BUFFER_SIZE));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+}
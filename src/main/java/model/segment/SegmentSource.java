@@ -0,0 +1,25 @@
+package model.segment;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Documents that can be written as a segment file: the ones collected by a
+ * writer, or the ones of segments being merged.
+ * @see SegmentDirectory
+ */
+interface SegmentSource {
+
+    /**
+     * Gets the number of documents of the segment.
+     * @return the number of documents.
+     */
+    int getDocumentCount();
+
+    /**
+     * Writes the segment and waits until it is on disk.
+     * @param file the file to write.
+     * @throws IOException if the file could not be written.
+     */
+    void writeTo(File file) throws IOException;
+}
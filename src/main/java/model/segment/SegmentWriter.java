@@ -0,0 +1,294 @@
+package model.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import model.indexation.Field;
+import model.indexation.InverseFile;
+import model.indexation.TermCounts;
+
+/**
+ * Collects the postings of documents in memory and writes them as a segment
+ * file. The words of the fields other than the body get postings of their
+ * own, and the length of each field is kept with the document. The positions
+ * of the terms are written if every document added has them. The memory taken is estimated as the documents are added, so the
+ * indexer can write a segment when it reaches its budget. A writer is used
+ * by a single thread.
+ * @see SegmentFormat
+ * @see Segment
+ */
+public class SegmentWriter implements SegmentSource {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Estimated bytes taken by the objects of a document and of a term, and
+    // by each element of the arrays of the postings.
+    private static final int DOCUMENT_BYTES = 96;
+    private static final int TERM_BYTES = 200;
+    private static final int POSTING_BYTES = 16;
+    private static final int POSITIONS_BYTES = 16;
+
+    // Positions of the postings of the fields, which have none.
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private static final Field[] FIELDS = Field.values();
+
+    // Names of the documents by ID.
+    private final Map<Integer, String> documents = new TreeMap<Integer, String>();
+
+    // Number of words of each document in each field, when they are known.
+    private final Map<Integer, int[]> fieldLengths = new HashMap<Integer, int[]>();
+
+    // Postings of each term, not sorted yet.
+    private final Map<String, PostingsBuffer> postings = new HashMap<String, PostingsBuffer>();
+
+    // False once a posting without positions is added.
+    private boolean withPositions = true;
+
+    private long ramBytesUsed = 0;
+
+    /**
+     * Adds the words of a document.
+     * @param inv the inverse file of the document.
+     */
+    public void add(InverseFile inv) {
+
+        int[] lengths = new int[FIELDS.length];
+
+        for (Field field : FIELDS) {
+            lengths[field.ordinal()] = inv.getLength(field);
+        }
+
+        addDocument(inv.getDocumentId(), inv.getDocumentName(), lengths);
+        TermCounts.Cursor word = inv.words();
+
+        while (word.next()) {
+            int[] positions = word.positions();
+
+            if (positions != null && positions.length != word.count()) {
+                positions = Arrays.copyOf(positions, word.count());
+            }
+
+            addPosting(word.term(), inv.getDocumentId(), word.count(), positions);
+        }
+
+        int[] fieldPositions = inv.hasPositions() ? NO_POSITIONS : null;
+
+        for (Field field : FIELDS) {
+            TermCounts.Cursor fieldWord = field == Field.BODY ? null : inv.words(field);
+
+            while (fieldWord != null && fieldWord.next()) {
+                addPosting(SegmentFormat.fieldTerm(field, fieldWord.term()),
+                        inv.getDocumentId(), fieldWord.count(), fieldPositions);
+            }
+        }
+    }
+
+    /**
+     * Adds the words of a document.
+     * @param documentId ID of the document, not negative.
+     * @param documentName name of the document.
+     * @param words each word of the document with its weight.
+     */
+    public void add(int documentId, String documentName,
+            Iterable<Entry<String, Integer>> words) {
+
+        addDocument(documentId, documentName);
+
+        for (Entry<String, Integer> word : words) {
+            addPosting(word.getKey(), documentId, word.getValue(), null);
+        }
+    }
+
+    /**
+     * Adds a document without its words, which are added with
+     * {@link #addPosting(String, int, int, int[])}.
+     * @param documentId ID of the document, not negative.
+     * @param documentName name of the document.
+     */
+    void addDocument(int documentId, String documentName) {
+        addDocument(documentId, documentName, null);
+    }
+
+    /**
+     * Adds a document without its words, with the number of words of each
+     * field.
+     * @param documentId ID of the document, not negative.
+     * @param documentName name of the document.
+     * @param lengths number of words in each field, in the order of
+     * {@link Field}, null if they are unknown.
+     */
+    void addDocument(int documentId, String documentName, int[] lengths) {
+
+        documents.put(documentId, documentName);
+        ramBytesUsed += DOCUMENT_BYTES + 2 * documentName.length();
+
+        if (lengths != null) {
+            fieldLengths.put(documentId, lengths);
+            ramBytesUsed += DOCUMENT_BYTES + 4 * lengths.length;
+        }
+    }
+
+    /**
+     * Adds a word of a document.
+     * @param term the word.
+     * @param documentId ID of the document, not negative.
+     * @param weight weight of the word in the document.
+     * @param positions the positions of the word in the document in
+     * increasing order, null if they are unknown.
+     */
+    void addPosting(String term, int documentId, int weight, int[] positions) {
+
+        PostingsBuffer buffer = postings.get(term);
+
+        if (buffer == null) {
+            buffer = new PostingsBuffer();
+            postings.put(term, buffer);
+            ramBytesUsed += TERM_BYTES + 2 * term.length()
+                    + INITIAL_CAPACITY * POSTING_BYTES;
+        }
+
+        if (buffer.size == buffer.entries.length) {
+            // The arrays of the postings are about to double.
+            ramBytesUsed += buffer.size * POSTING_BYTES;
+        }
+
+        buffer.add(documentId, weight, positions);
+        withPositions &= positions != null;
+
+        if (positions != null) {
+            ramBytesUsed += POSITIONS_BYTES + 4 * positions.length;
+        }
+    }
+
+    /**
+     * Gets the number of documents added.
+     * @return the number of documents.
+     */
+    @Override
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * Gets an estimate of the memory taken by the documents and postings
+     * added, to write them before they take too much.
+     * @return the number of bytes.
+     */
+    public long getRamBytesUsed() {
+        return ramBytesUsed;
+    }
+
+    /**
+     * Writes the segment and waits until it is on disk. The writer can be
+     * used again after it is cleared.
+     * @param file the file to write.
+     * @throws IOException if the file could not be written.
+     */
+    @Override
+    public void writeTo(File file) throws IOException {
+
+        try (SegmentOutput out = new SegmentOutput(file, withPositions)) {
+
+            for (Entry<Integer, String> document : documents.entrySet()) {
+                out.addDocument(document.getKey(),
+                        document.getValue().getBytes(SegmentFormat.CHARSET),
+                        fieldLengths.get(document.getKey()));
+            }
+
+            for (byte[] term : sortedTerms()) {
+                PostingsBuffer buffer = postings.get(new String(term, SegmentFormat.CHARSET));
+                out.startTerm(term);
+                buffer.writeTo(out);
+                out.finishTerm();
+            }
+
+            out.finish();
+        }
+    }
+
+    /**
+     * Removes all the documents added.
+     */
+    public void clear() {
+        documents.clear();
+        fieldLengths.clear();
+        postings.clear();
+        withPositions = true;
+        ramBytesUsed = 0;
+    }
+
+    /**
+     * Gets the terms encoded in UTF-8, in the order of the segment.
+     */
+    private byte[][] sortedTerms() {
+
+        byte[][] terms = new byte[postings.size()][];
+        int i = 0;
+
+        for (String term : postings.keySet()) {
+            terms[i++] = term.getBytes(SegmentFormat.CHARSET);
+        }
+
+        Arrays.sort(terms, new Comparator<byte[]>() {
+            @Override
+            public int compare(byte[] a, byte[] b) {
+                return SegmentFormat.compare(a, b);
+            }
+        });
+
+        return terms;
+    }
+
+    /**
+     * Postings of a term. Each one is kept in a long, with the ID of the
+     * document in the high bits and the order in which it was added in the
+     * low bits, so sorting them sorts by document.
+     */
+    private static class PostingsBuffer {
+
+        private static final int ID_SHIFT = 32;
+        private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+        private long[] entries = new long[INITIAL_CAPACITY];
+        private int[] weights = new int[INITIAL_CAPACITY];
+        private int[][] positions = new int[INITIAL_CAPACITY][];
+        private int size = 0;
+
+        void add(int documentId, int weight, int[] documentPositions) {
+
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+                positions = Arrays.copyOf(positions, 2 * size);
+            }
+
+            entries[size] = ((long) documentId << ID_SHIFT) | size;
+            weights[size] = weight;
+            positions[size] = documentPositions;
+            ++size;
+        }
+
+        /**
+         * Writes the documents of the term sorted by ID.
+         */
+        void writeTo(SegmentOutput out) {
+
+            Arrays.sort(entries, 0, size);
+
+            for (int i = 0; i < size; ++i) {
+                int index = (int) (entries[i] & INDEX_MASK);
+                int[] documentPositions = positions[index];
+                out.addPosting((int) (entries[i] >>> ID_SHIFT), weights[index],
+                        documentPositions,
+                        documentPositions == null ? 0 : documentPositions.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package model.segment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chooses the segments to merge. The segments are grouped in tiers by their
+ * number of documents, each tier holding segments a merge factor times larger
+ * than the tier below it. When a tier has as many segments as the merge factor
+ * they are merged into one segment of the next tier, so an index of n
+ * documents has a number of segments logarithmic in n and each document is
+ * merged a logarithmic number of times.
+ * @see SegmentMerger
+ */
+public class TieredMergePolicy {
+
+    /** Default number of segments merged at once. */
+    public static final int DEFAULT_MERGE_FACTOR = 10;
+
+    /** Default number of documents above which a segment is not merged. */
+    public static final int DEFAULT_MAX_MERGED_DOCUMENTS = 5000000;
+
+    private final int mergeFactor;
+    private final int maxMergedDocuments;
+
+    /**
+     * Creates a policy.
+     * @param mergeFactor the number of segments merged at once, at least two.
+     * @param maxMergedDocuments the number of documents above which a segment
+     * is not merged any more.
+     */
+    public TieredMergePolicy(int mergeFactor, int maxMergedDocuments) {
+
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("The merge factor must be at least two.");
+        }
+
+        this.mergeFactor = mergeFactor;
+        this.maxMergedDocuments = maxMergedDocuments;
+    }
+
+    /**
+     * Gets the number of segments merged at once.
+     * @return the merge factor.
+     */
+    public int getMergeFactor() {
+        return mergeFactor;
+    }
+
+    /**
+     * Finds segments to merge, starting with the smallest tier.
+     * @param segments the segments of the index, in the order they were added.
+     * @return the segments to merge into one, empty if no merge is needed.
+     */
+    public List<Segment> findMerge(List<Segment> segments) {
+
+        List<List<Segment>> tiers = new ArrayList<List<Segment>>();
+
+        for (Segment segment : segments) {
+            if (segment.getDocumentCount() >= maxMergedDocuments) {
+                continue;
+            }
+
+            int tier = tier(segment.getDocumentCount());
+
+            while (tiers.size() <= tier) {
+                tiers.add(new ArrayList<Segment>());
+            }
+
+            tiers.get(tier).add(segment);
+        }
+
+        // The oldest segments of the smallest full tier are merged first.
+        for (List<Segment> members : tiers) {
+            if (members.size() >= mergeFactor) {
+                return members.subList(0, mergeFactor);
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the tier of a segment: the number of times the merge factor fits
+     * in its number of documents.
+     */
+    private int tier(int documentCount) {
+
+        int tier = 0;
+
+        for (long size = mergeFactor; size <= documentCount; size *= mergeFactor) {
+            ++tier;
+        }
+
+        return tier;
+    }
+}
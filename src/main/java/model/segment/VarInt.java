@@ -0,0 +1,73 @@
+package model.segment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads non negative integers using 7 bits per byte, so small
+ * numbers take a single byte. The highest bit of each byte tells if more
+ * bytes follow.
+ */
+final class VarInt {
+
+    private static final int DATA_BITS = 7;
+    private static final int DATA_MASK = 0x7F;
+    private static final int MORE_BIT = 0x80;
+
+    // To avoid instantiation
+    private VarInt() {}
+
+    /**
+     * Writes a number.
+     * @param out where the bytes are written.
+     * @param value the number, not negative.
+     */
+    static void write(ByteArrayOutputStream out, int value) {
+
+        while ((value & ~DATA_MASK) != 0) {
+            out.write((value & DATA_MASK) | MORE_BIT);
+            value >>>= DATA_BITS;
+        }
+
+        out.write(value);
+    }
+
+    /**
+     * Writes a number to a stream.
+     * @param out where the bytes are written.
+     * @param value the number, not negative.
+     * @throws IOException if the bytes could not be written.
+     */
+    static void write(OutputStream out, int value) throws IOException {
+
+        while ((value & ~DATA_MASK) != 0) {
+            out.write((value & DATA_MASK) | MORE_BIT);
+            value >>>= DATA_BITS;
+        }
+
+        out.write(value);
+    }
+
+    /**
+     * Reads a number at the position of a buffer, moving the position after
+     * it.
+     * @param in the buffer.
+     * @return the number read.
+     */
+    static int read(ByteBuffer in) {
+
+        int value = 0;
+        int shift = 0;
+        int b = in.get();
+
+        while ((b & MORE_BIT) != 0) {
+            value |= (b & DATA_MASK) << shift;
+            shift += DATA_BITS;
+            b = in.get();
+        }
+
+        return value | (b << shift);
+    }
+}
@@ -0,0 +1,201 @@
+package model.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads the fields of the documents from a document store. Both files are
+ * mapped in memory: a document is found with a binary search over the index
+ * and only its block is decompressed. The store is the one written when this
+ * object is created.
+ * @see DocumentStoreFormat
+ * @see DocumentStoreWriter
+ */
+public class DocumentStore {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ByteBuffer index;
+    private final ByteBuffer data;
+    private final int documentCount;
+
+    private DocumentStore(ByteBuffer index, ByteBuffer data) throws IOException {
+
+        this.index = index;
+        this.data = data;
+
+        if (index.getInt(0) != DocumentStoreFormat.MAGIC
+                || index.getInt(4) != DocumentStoreFormat.VERSION) {
+            throw new IOException("Not a document store index.");
+        }
+
+        this.documentCount = index.getInt(8);
+    }
+
+    /**
+     * Opens the document store of a folder.
+     * @param folder the folder of the store.
+     * @return the store.
+     * @throws IOException if the files could not be read or are not a store.
+     */
+    public static DocumentStore open(File folder) throws IOException {
+
+        ByteBuffer index = map(new File(folder, DocumentStoreFormat.INDEX_FILE));
+        ByteBuffer data = map(new File(folder, DocumentStoreFormat.DATA_FILE));
+
+        return new DocumentStore(index, data);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Gets the number of documents in the store.
+     * @return the number of documents.
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Gets the fields of a document.
+     * @param documentId ID of the document.
+     * @return the fields, or null if the document is not in the store or its
+     * block could not be read.
+     */
+    public StoredDocument get(int documentId) {
+
+        int entry = findEntry(documentId);
+
+        if (entry < 0) {
+            return null;
+        }
+
+        int blockOffset = (int) index.getLong(entry + 4);
+        int record = index.getInt(entry + 12);
+
+        try {
+            ByteBuffer block = readBlock(blockOffset);
+
+            for (int i = 0; i < record; ++i) {
+                skipRecord(block);
+            }
+
+            int id = block.getInt();
+            return new StoredDocument(id, readString(block), readString(block),
+                    readString(block));
+
+        } catch (DataFormatException e) {
+            LOGGER.error("Block of document " + documentId + " is corrupted.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Finds a document in the index.
+     * @return the offset of its entry, or -1 if it is not in the index.
+     */
+    private int findEntry(int documentId) {
+
+        int low = 0;
+        int high = documentCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = DocumentStoreFormat.INDEX_HEADER_SIZE
+                    + middle * DocumentStoreFormat.INDEX_ENTRY_SIZE;
+            int id = index.getInt(entry);
+
+            if (id < documentId) {
+                low = middle + 1;
+            } else if (id > documentId) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Decompresses the records of a block.
+     */
+    private ByteBuffer readBlock(int offset) throws DataFormatException {
+
+        int length = data.getInt(offset);
+        byte[] compressed = new byte[length];
+        ByteBuffer source = data.duplicate();
+        ((Buffer) source).position(offset + DocumentStoreFormat.BLOCK_HEADER_SIZE);
+        source.get(compressed);
+
+        Inflater inflater = new Inflater();
+        byte[] records = new byte[2 * DocumentStoreFormat.BLOCK_SIZE];
+        int size = 0;
+
+        try {
+            inflater.setInput(compressed);
+
+            while (!inflater.finished()) {
+                if (size == records.length) {
+                    records = Arrays.copyOf(records, 2 * size);
+                }
+
+                int inflated = inflater.inflate(records, size, records.length - size);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Block truncated.");
+                }
+
+                size += inflated;
+            }
+        } finally {
+            inflater.end();
+        }
+
+        return ByteBuffer.wrap(records, 0, size);
+    }
+
+    private static void skipRecord(ByteBuffer block) {
+
+        block.getInt();
+
+        for (int i = 0; i < 3; ++i) {
+            int length = block.getInt();
+
+            if (length > 0) {
+                ((Buffer) block).position(block.position() + length);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer block) {
+
+        int length = block.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        String value = new String(block.array(), block.position(), length,
+                DocumentStoreFormat.CHARSET);
+        ((Buffer) block).position(block.position() + length);
+        return value;
+    }
+}
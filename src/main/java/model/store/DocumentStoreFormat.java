@@ -0,0 +1,40 @@
+package model.store;
+
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the files of a document store. All the numbers are big endian.
+ * <pre>
+ * data file   blocks of documents, each one: length of the compressed
+ *             records and number of records (ints), followed by the records
+ *             compressed with Deflate. Each record is the ID of the document
+ *             (int) and its name, title and snippet (int length, -1 if null,
+ *             and UTF-8 bytes)
+ * index file  MAGIC, VERSION and number of documents (ints), followed for
+ *             each document sorted by ID: ID (int), offset of its block in
+ *             the data file (long) and number of its record in the block (int)
+ * </pre>
+ * The data file only grows: when a document is stored again its new record
+ * is appended and the index points to it.
+ */
+final class DocumentStoreFormat {
+
+    static final int MAGIC = 0x444F4331;
+    static final int VERSION = 1;
+
+    static final int INDEX_HEADER_SIZE = 12;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int BLOCK_HEADER_SIZE = 8;
+
+    /** Size of the records of a block before compressing them. */
+    static final int BLOCK_SIZE = 16 * 1024;
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    static final String DATA_FILE = "documents.dat";
+    static final String INDEX_FILE = "documents.idx";
+    static final String TEMPORARY_EXTENSION = ".tmp";
+
+    // To avoid instantiation
+    private DocumentStoreFormat() {}
+}
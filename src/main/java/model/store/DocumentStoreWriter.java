@@ -0,0 +1,257 @@
+package model.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes the fields of the documents in a document store. The records are
+ * collected in blocks that are compressed and appended to the data file, and
+ * the index is written when the writer is closed, replacing the previous one
+ * atomically.
+ * @see DocumentStoreFormat
+ * @see DocumentStore
+ */
+public class DocumentStoreWriter {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_BUFFER = 2 * DocumentStoreFormat.BLOCK_SIZE;
+
+    private final File folder;
+    private final FileOutputStream dataFile;
+    private final DataOutputStream data;
+    private long dataSize;
+
+    // Records of the current block, not compressed yet.
+    private final ByteArrayOutputStream block =
+            new ByteArrayOutputStream(DocumentStoreFormat.BLOCK_SIZE);
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private int blockRecords = 0;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[INITIAL_BUFFER];
+
+    // Where each document is, in the order they were stored.
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private long[] blockOffsets = new long[INITIAL_CAPACITY];
+    private int[] records = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Opens the document store of a folder to write documents, creating the
+     * folder if it does not exist.
+     * @param folder the folder of the store.
+     * @param append true to keep the documents already stored, false to
+     * start an empty store.
+     * @throws IOException if the files could not be opened.
+     */
+    public DocumentStoreWriter(File folder, boolean append) throws IOException {
+
+        this.folder = folder;
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create folder " + folder.getAbsolutePath() + ".");
+        }
+
+        File index = new File(folder, DocumentStoreFormat.INDEX_FILE);
+
+        if (append && index.exists()) {
+            readIndex(index);
+        }
+
+        File file = new File(folder, DocumentStoreFormat.DATA_FILE);
+        this.dataFile = new FileOutputStream(file, append);
+        this.data = new DataOutputStream(dataFile);
+        this.dataSize = append ? file.length() : 0;
+    }
+
+    /**
+     * Adds the fields of a document. If the document was already stored,
+     * the new fields replace the old ones.
+     * @param documentId ID of the document.
+     * @param name name of the document.
+     * @param title title of the document, null if it has none.
+     * @param snippet first characters of the text of the document.
+     * @throws IOException if a block could not be written.
+     */
+    public synchronized void add(int documentId, String name, String title, String snippet)
+            throws IOException {
+
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+            blockOffsets = Arrays.copyOf(blockOffsets, 2 * size);
+            records = Arrays.copyOf(records, 2 * size);
+        }
+
+        ids[size] = documentId;
+        blockOffsets[size] = dataSize;
+        records[size] = blockRecords;
+        ++size;
+
+        blockOut.writeInt(documentId);
+        writeString(name);
+        writeString(title);
+        writeString(snippet);
+        ++blockRecords;
+
+        if (block.size() >= DocumentStoreFormat.BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and the index. The documents are not visible to
+     * the readers until then.
+     * @throws IOException if the files could not be written.
+     */
+    public synchronized void close() throws IOException {
+
+        try {
+            flushBlock();
+            data.flush();
+            dataFile.getFD().sync();
+        } finally {
+            data.close();
+            deflater.end();
+        }
+
+        writeIndex();
+        LOGGER.debug("Document store {} written with {} records.", folder.getName(), size);
+    }
+
+    private void writeString(String value) throws IOException {
+
+        if (value == null) {
+            blockOut.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(DocumentStoreFormat.CHARSET);
+        blockOut.writeInt(bytes.length);
+        blockOut.write(bytes);
+    }
+
+    /**
+     * Compresses the records of the current block and appends them to the
+     * data file.
+     */
+    private void flushBlock() throws IOException {
+
+        if (blockRecords == 0) {
+            return;
+        }
+
+        deflater.reset();
+        deflater.setInput(block.toByteArray());
+        deflater.finish();
+        int length = 0;
+
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, 2 * length);
+            }
+
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        data.writeInt(length);
+        data.writeInt(blockRecords);
+        data.write(compressed, 0, length);
+        dataSize += DocumentStoreFormat.BLOCK_HEADER_SIZE + length;
+
+        block.reset();
+        blockRecords = 0;
+    }
+
+    /**
+     * Reads the index of the store, so its documents are kept.
+     */
+    private void readIndex(File index) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(index)))) {
+
+            if (in.readInt() != DocumentStoreFormat.MAGIC
+                    || in.readInt() != DocumentStoreFormat.VERSION) {
+                throw new IOException(index.getName() + " is not a document store index.");
+            }
+
+            int count = in.readInt();
+            ids = new int[Math.max(count, INITIAL_CAPACITY)];
+            blockOffsets = new long[ids.length];
+            records = new int[ids.length];
+
+            for (int i = 0; i < count; ++i) {
+                ids[i] = in.readInt();
+                blockOffsets[i] = in.readLong();
+                records[i] = in.readInt();
+            }
+
+            size = count;
+        }
+    }
+
+    /**
+     * Writes the index sorted by ID, keeping the last record of each
+     * document.
+     */
+    private void writeIndex() throws IOException {
+
+        // The ID in the high bits and the order in the low bits, so the last
+        // record of a document is the last one with its ID.
+        long[] order = new long[size];
+
+        for (int i = 0; i < size; ++i) {
+            order[i] = ((long) ids[i] << 32) | i;
+        }
+
+        Arrays.sort(order);
+        int count = 0;
+
+        for (int i = 0; i < size; ++i) {
+            if (i + 1 == size || (int) (order[i] >>> 32) != (int) (order[i + 1] >>> 32)) {
+                order[count++] = order[i];
+            }
+        }
+
+        File temporary = new File(folder,
+                DocumentStoreFormat.INDEX_FILE + DocumentStoreFormat.TEMPORARY_EXTENSION);
+
+        try (FileOutputStream fileOut = new FileOutputStream(temporary);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(fileOut))) {
+
+            out.writeInt(DocumentStoreFormat.MAGIC);
+            out.writeInt(DocumentStoreFormat.VERSION);
+            out.writeInt(count);
+
+            for (int i = 0; i < count; ++i) {
+                int index = (int) order[i];
+                out.writeInt(ids[index]);
+                out.writeLong(blockOffsets[index]);
+                out.writeInt(records[index]);
+            }
+
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        Files.move(temporary.toPath(), new File(folder, DocumentStoreFormat.INDEX_FILE).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,66 @@
+package model.store;
+
+/**
+ * The fields of a document kept in the document store, so a result can be
+ * shown without reading the file of the document again.
+ * @see DocumentStore
+ */
+public class StoredDocument {
+
+    private final int documentId;
+    private final String name;
+    private final String title;
+    private final String snippet;
+
+    /**
+     * Creates a stored document.
+     * @param documentId ID of the document.
+     * @param name name of the document.
+     * @param title title of the document, null if it has none.
+     * @param snippet first characters of the text of the document.
+     */
+    public StoredDocument(int documentId, String name, String title, String snippet) {
+        this.documentId = documentId;
+        this.name = name;
+        this.title = title;
+        this.snippet = snippet;
+    }
+
+    /**
+     * Gets the ID of the document.
+     * @return the ID.
+     */
+    public int getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Gets the name of the document.
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the title of the document.
+     * @return the title, null if the document has none.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the first characters of the text of the document, with its
+     * spaces collapsed.
+     * @return the snippet, empty if no characters were kept.
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+
+    @Override
+    public String toString() {
+        return documentId + " " + name + " " + title;
+    }
+}
@@ -0,0 +1,182 @@
+package model.database.layer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPoolConfiguration config;
+    private ConnectionPool.ConnectionFactory factory;
+
+    // Answer of the fake connections to their validation.
+    private boolean valid;
+
+    @Before
+    public void setUp() {
+
+        config = new ConnectionPoolConfiguration();
+        config.setMaxSize(2);
+        config.setMinIdle(1);
+        config.setAcquireTimeout(50);
+        valid = true;
+
+        factory = new ConnectionPool.ConnectionFactory() {
+            @Override
+            public Connection open() {
+                return fakeConnection();
+            }
+        };
+    }
+
+    private Connection fakeConnection() {
+        return (Connection) fake(Connection.class);
+    }
+
+    /**
+     * Creates an object that can be closed, prepares fake statements and
+     * does nothing else.
+     */
+    private Object fake(Class<?> type) {
+
+        return Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {type}, new InvocationHandler() {
+
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+
+                String name = method.getName();
+
+                if (name.equals("close")) {
+                    closed = true;
+                } else if (name.equals("isClosed")) {
+                    return closed;
+                } else if (name.equals("isValid")) {
+                    return valid;
+                } else if (name.equals("prepareStatement")) {
+                    return fake(PreparedStatement.class);
+                } else if (name.equals("getAutoCommit")) {
+                    return true;
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void warmUpTest() {
+
+        config.setMinIdle(5);
+        ConnectionPool pool = new ConnectionPool(factory, config);
+
+        // No more than the size of the pool are opened.
+        assertEquals(2, pool.getIdleConnections());
+        assertEquals(2, pool.getCreated());
+    }
+
+    @Test
+    public void reuseTest() {
+
+        ConnectionPool pool = new ConnectionPool(factory, config);
+        Connection first = pool.acquire();
+        pool.release(first);
+
+        assertSame(first, pool.acquire());
+        assertEquals(1, pool.getCreated());
+        assertEquals(2, pool.getAcquired());
+        assertEquals(1, pool.getActiveConnections());
+    }
+
+    @Test
+    public void timeoutTest() {
+
+        ConnectionPool pool = new ConnectionPool(factory, config);
+        Connection first = pool.acquire();
+        pool.acquire();
+
+        assertNull(pool.acquire());
+        assertEquals(1, pool.getTimeouts());
+        assertEquals(2, pool.getOpenConnections());
+
+        pool.release(first);
+        assertSame(first, pool.acquire());
+    }
+
+    @Test
+    public void validationTest() {
+
+        config.setValidationInterval(0);
+        ConnectionPool pool = new ConnectionPool(factory, config);
+        Connection first = pool.acquire();
+        pool.release(first);
+
+        valid = false;
+        Connection second = pool.acquire();
+
+        assertNotSame(first, second);
+        assertEquals(1, pool.getValidationFailures());
+        assertEquals(1, pool.getOpenConnections());
+    }
+
+    @Test
+    public void closedConnectionTest() throws Exception {
+
+        ConnectionPool pool = new ConnectionPool(factory, config);
+        Connection first = pool.acquire();
+        first.close();
+        pool.release(first);
+
+        assertEquals(0, pool.getOpenConnections());
+        assertNotSame(first, pool.acquire());
+    }
+
+    @Test
+    public void statementCacheTest() throws Exception {
+
+        config.setStatementCacheSize(2);
+        ConnectionPool pool = new ConnectionPool(factory, config);
+        Connection connection = pool.acquire();
+
+        PreparedStatement first = pool.prepare(connection, "SELECT 1;");
+        pool.prepare(connection, "SELECT 2;");
+        assertSame(first, pool.prepare(connection, "SELECT 1;"));
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(2, pool.getStatementCacheMisses());
+
+        // The least recently used statement is closed.
+        PreparedStatement third = pool.prepare(connection, "SELECT 3;");
+        assertFalse(first.isClosed());
+        PreparedStatement second = pool.prepare(connection, "SELECT 2;");
+        assertEquals(4, pool.getStatementCacheMisses());
+        assertTrue(first.isClosed());
+
+        // The statements are kept while the connection is in the pool.
+        pool.release(connection);
+        assertSame(connection, pool.acquire());
+        assertSame(third, pool.prepare(connection, "SELECT 3;"));
+
+        connection.close();
+        pool.release(connection);
+        assertTrue(second.isClosed());
+        assertTrue(third.isClosed());
+    }
+}
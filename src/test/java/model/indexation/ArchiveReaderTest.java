@@ -0,0 +1,203 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.store.DocumentStore;
+
+public class ArchiveReaderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void isArchiveTest() {
+        assertTrue(ArchiveReader.isArchive(new File("corpus.zip")));
+        assertTrue(ArchiveReader.isArchive(new File("corpus.TAR")));
+        assertTrue(ArchiveReader.isArchive(new File("corpus.tar.gz")));
+        assertTrue(ArchiveReader.isArchive(new File("corpus.tgz")));
+        assertFalse(ArchiveReader.isArchive(new File("corpus.gz")));
+        assertFalse(ArchiveReader.isArchive(new File("D1.html")));
+    }
+
+    @Test
+    public void zipTest() throws IOException {
+
+        File file = folder.newFile("documents.zip");
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file), UTF8)) {
+            zip.putNextEntry(new ZipEntry("pages/"));
+            zip.closeEntry();
+            writeZipEntry(zip, "pages/été.html", "<p>premier</p>");
+            writeZipEntry(zip, "pages/vide.html", "");
+            writeZipEntry(zip, "second.html", "<p>second</p>");
+        }
+
+        try (ArchiveReader archive = ArchiveReader.open(file)) {
+            assertDocument(archive.next(), 0, "pages/été.html", "<p>premier</p>");
+            assertDocument(archive.next(), 1, "pages/vide.html", "");
+            assertDocument(archive.next(), 2, "second.html", "<p>second</p>");
+            assertNull(archive.next());
+        }
+    }
+
+    @Test
+    public void tarGzipTest() throws IOException {
+
+        File file = folder.newFile("documents.tar.gz");
+        StringBuilder longName = new StringBuilder("pages/");
+
+        while (longName.length() < 150) {
+            longName.append("long/");
+        }
+
+        longName.append("D3.html");
+        // A size that is a multiple of the block size, with no padding.
+        char[] block = new char[512];
+        Arrays.fill(block, 'x');
+
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            writeTarEntry(out, "pages/", "", '5', "");
+            writeTarEntry(out, "D1.html", "", '0', "<p>premier</p>");
+            writeTarEntry(out, "D2.html", "pages", '0', new String(block));
+            writeTarEntry(out, "././@LongLink", "", 'L', longName + "\0");
+            writeTarEntry(out, "D3.html", "", '0', "<p>long</p>");
+            writeTarEntry(out, "lien.html", "", '2', "");
+            String record = " path=pax/D4.html\n";
+            String length = Integer.toString(record.length() + 2);
+            writeTarEntry(out, "PaxHeader", "", 'x', length + record);
+            writeTarEntry(out, "D4.html", "", '0', "<p>pax</p>");
+            out.write(new byte[1024]);
+        }
+
+        try (ArchiveReader archive = ArchiveReader.open(file)) {
+            assertDocument(archive.next(), 0, "D1.html", "<p>premier</p>");
+            assertDocument(archive.next(), 1, "pages/D2.html", new String(block));
+            assertDocument(archive.next(), 2, longName.toString(), "<p>long</p>");
+            assertDocument(archive.next(), 3, "pax/D4.html", "<p>pax</p>");
+            assertNull(archive.next());
+        }
+    }
+
+    @Test
+    public void indexCorpusTest() throws IOException {
+
+        File corpus = new File("extra/CORPUS");
+        File[] files = corpus.listFiles();
+        Arrays.sort(files);
+        File archive = folder.newFile("corpus.zip");
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive), UTF8)) {
+            for (File file : files) {
+                zip.putNextEntry(new ZipEntry("CORPUS/" + file.getName()));
+                zip.write(Files.readAllBytes(file.toPath()));
+                zip.closeEntry();
+            }
+        }
+
+        File store = folder.newFolder("store");
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(folder.newFolder("segments"));
+        config.setDocumentStoreFolder(store);
+        config.setQueueCapacity(4);
+        Indexer.startIndexation(archive, new File("extra/stopliste.txt"), config);
+
+        DocumentStore reader = DocumentStore.open(store);
+        assertEquals(files.length, reader.getDocumentCount());
+        Set<String> names = new HashSet<String>();
+
+        for (int i = 0; i < files.length; ++i) {
+            names.add(reader.get(i).getName());
+        }
+
+        for (File file : files) {
+            assertTrue(names.contains("CORPUS/" + file.getName()));
+        }
+    }
+
+    private static void assertDocument(RawDocument document, int documentId, String name,
+            String content) {
+
+        assertNotNull(document);
+        assertEquals(documentId, document.getDocumentId());
+        assertEquals(name, document.getName());
+
+        ByteBuffer bytes = document.getContent();
+        assertEquals(content, new String(bytes.array(), bytes.position(), bytes.remaining(),
+                UTF8));
+        assertEquals(bytes.remaining(), document.getFingerprint().getSize());
+    }
+
+    private static void writeZipEntry(ZipOutputStream zip, String name, String content)
+            throws IOException {
+
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(UTF8));
+        zip.closeEntry();
+    }
+
+    /**
+     * Writes an entry in the ustar format, padded to the block size.
+     */
+    private static void writeTarEntry(OutputStream out, String name, String prefix,
+            char type, String content) throws IOException {
+
+        byte[] data = content.getBytes(UTF8);
+        byte[] header = new byte[512];
+
+        put(header, 0, name);
+        put(header, 100, "0000644");
+        put(header, 124, String.format("%011o", data.length));
+        put(header, 136, String.format("%011o", 1500000000L));
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        header[156] = (byte) type;
+        put(header, 257, "ustar");
+        put(header, 263, "00");
+        put(header, 345, prefix);
+
+        int checksum = 0;
+
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+
+        put(header, 148, String.format("%06o", checksum));
+        header[154] = 0;
+
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        entry.write(header);
+        entry.write(data);
+        entry.write(new byte[(512 - data.length % 512) % 512]);
+        entry.writeTo(out);
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(UTF8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
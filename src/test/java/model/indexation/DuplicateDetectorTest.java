@@ -0,0 +1,113 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.segment.Segment;
+import model.segment.SegmentDirectory;
+import model.segment.SegmentIndex;
+
+public class DuplicateDetectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void detectorTest() {
+
+        DuplicateDetector detector = new DuplicateDetector(DuplicateDetector.DEFAULT_THRESHOLD);
+
+        assertEquals(-1, detector.findOriginal(words(1, "word", 0, 200)));
+        assertEquals(-1, detector.findOriginal(words(2, "other", 0, 200)));
+
+        // 195 words out of 205 in common, then 150 out of 250.
+        assertEquals(1, detector.findOriginal(words(3, "word", 5, 205)));
+        assertEquals(-1, detector.findOriginal(words(4, "word", 50, 250)));
+
+        // A duplicate of a duplicate is found from the original.
+        assertEquals(2, detector.findOriginal(words(5, "other", 0, 201)));
+
+        // The documents without words are never duplicates.
+        assertEquals(-1, detector.findOriginal(new InverseFile(6, "empty")));
+        assertEquals(-1, detector.findOriginal(new InverseFile(7, "empty")));
+
+        assertEquals(2, detector.getDuplicateCount());
+    }
+
+    @Test
+    public void aliasCorpusTest() throws IOException {
+
+        File corpus = folder.newFolder("corpus");
+        File[] files = new File("extra/CORPUS").listFiles();
+
+        for (File file : files) {
+            Files.copy(file.toPath(), new File(corpus, file.getName()).toPath());
+        }
+
+        // A copy of a page with another footer.
+        byte[] page = Files.readAllBytes(new File(corpus, "D1.html").toPath());
+        byte[] footer = "<p>Copie de sauvegarde</p>".getBytes(HtmlTokenizer.CHARSET);
+        byte[] copy = new byte[page.length + footer.length];
+        System.arraycopy(page, 0, copy, 0, page.length);
+        System.arraycopy(footer, 0, copy, page.length, footer.length);
+        Files.write(new File(corpus, "copy.html").toPath(), copy);
+
+        File segments = folder.newFolder("segments");
+        File aliasFile = new File(folder.getRoot(), "aliases.txt");
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(segments);
+        config.setMetricsInterval(0);
+        config.setDuplicateMode(DuplicateMode.ALIAS);
+        config.setAliasFile(aliasFile);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        SegmentDirectory directory = new SegmentDirectory(segments);
+        assertEquals(files.length, new SegmentIndex(directory).getNumberOfDocuments());
+
+        // Either file can be parsed first.
+        DocumentAliases aliases = DocumentAliases.read(aliasFile);
+        assertEquals(1, aliases.size());
+
+        int documentId = -1;
+
+        for (int i = 0; i <= files.length && documentId < 0; ++i) {
+            if (!aliases.getAliases(i).isEmpty()) {
+                documentId = i;
+            }
+        }
+
+        List<String> names = aliases.getAliases(documentId);
+        String original = null;
+
+        for (Segment segment : directory.openSegments()) {
+            if (original == null) {
+                original = segment.getDocumentName(documentId);
+            }
+        }
+
+        assertTrue(original.equals("D1.html") && names.get(0).equals("copy.html")
+                || original.equals("copy.html") && names.get(0).equals("D1.html"));
+    }
+
+    private static InverseFile words(int documentId, String prefix, int from, int to) {
+
+        InverseFile invFile = new InverseFile(documentId, prefix + documentId);
+
+        for (int i = from; i < to; ++i) {
+            invFile.addWord(Field.BODY, prefix + i);
+        }
+
+        return invFile;
+    }
+}
@@ -0,0 +1,214 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.search.RelevantDocument;
+import model.segment.SegmentIndex;
+
+public class HtmlTokenizerTest {
+
+    final File CORPUS = new File("extra/CORPUS");
+    final File STOP_WORDS = new File("extra/stopliste.txt");
+
+    final String INLINE_TAGS = "<title>Palmarès</title><p>Les <b>Globes</b> de "
+            + "<a href=\"cristal.html\">Cristal</a> sont remis <i>ce soir</i>.</p>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    final String[] MALFORMED = {
+        "<title>Hello &amp; world&nbsp;x</title><h1>Head <b>bold</b> tail</h1>",
+        "<p>one<p>two<div>three</div><ul><li>four<li>five</ul>",
+        "<b>bold <i>both</b> italic</i> plain<p><b>x<div>y</div>z</b>",
+        "<table><tr><td>cell a<td>cell b</tr>stray<tr><th>th</table>after",
+        "<table>sigma<th/>gamma<colgroup>theta</table>",
+        "<select><option>one<option>two<b>three</b></select>four",
+        "<title>unclosed title <h1>heading</h1>",
+        "<script><!--<script>x</script>-->two</script>three<style/>raw <b>text",
+        "<frameset><frame><noframes>no frames</noframes></frameset>lost",
+        "<textarea>text &lt;area</textarea><xmp><b>xmp</b></xmp>&#65;&#x42;c &copy2015"
+    };
+
+    @Test
+    public void sameWordsOnCorpusTest() throws IOException {
+
+        StopWords stopWords = StopWords.load(STOP_WORDS);
+        HtmlTokenizer jsoup = new JsoupHtmlTokenizer(stopWords);
+        HtmlTokenizer streaming = new StreamingHtmlTokenizer(stopWords);
+        jsoup.setPositions(true);
+        streaming.setPositions(true);
+        jsoup.setSnippetLength(300);
+        streaming.setSnippetLength(300);
+
+        for (File file : listCorpus()) {
+            ByteBuffer content = HtmlTokenizer.map(file);
+            InverseFile expected = jsoup.tokenize(content, 0, file.getName());
+            InverseFile result = streaming.tokenize(content, 0, file.getName());
+            assertSameWords(file.getName(), expected, result);
+        }
+    }
+
+    @Test
+    public void sameWordsOnMalformedHtmlTest() {
+
+        StopWords stopWords = StopWords.EMPTY;
+        HtmlTokenizer jsoup = new JsoupHtmlTokenizer(stopWords);
+        HtmlTokenizer streaming = new StreamingHtmlTokenizer(stopWords);
+        jsoup.setPositions(true);
+        streaming.setPositions(true);
+
+        for (String html : MALFORMED) {
+            ByteBuffer content = ByteBuffer.wrap(html.getBytes(HtmlTokenizer.CHARSET));
+            InverseFile expected = jsoup.tokenize(content, 0, html);
+            InverseFile result = streaming.tokenize(content, 0, html);
+            assertSameWords(html, expected, result);
+        }
+    }
+
+    @Test
+    public void inlineTagsPositionsTest() {
+
+        for (TokenizerMode mode : TokenizerMode.values()) {
+            HtmlTokenizer tokenizer = HtmlTokenizer.create(mode, StopWords.EMPTY);
+            tokenizer.setPositions(true);
+            Map<String, List<Integer>> positions = positions(tokenizer.tokenize(
+                    ByteBuffer.wrap(INLINE_TAGS.getBytes(HtmlTokenizer.CHARSET)), 0, "D0"));
+
+            // The words follow the text of the document, the title first.
+            String[] words = {"palmarès", "les", "globes", "de", "cristal", "sont",
+                "remis", "ce", "soir"};
+
+            for (int i = 0; i < words.length; ++i) {
+                assertEquals(mode + ": " + words[i], Arrays.asList(i),
+                        positions.get(WordNormalizer.normalize(words[i])));
+            }
+        }
+    }
+
+    @Test
+    public void snippetTest() {
+
+        String html = INLINE_TAGS + "<div>Une <em>deuxième</em><span>soirée</span>"
+                + "<ul><li>en <a href=\"direct\">direct</a></li><li>demain</li></ul></div>";
+        String visible = Jsoup.parse(html).body().text();
+
+        for (TokenizerMode mode : TokenizerMode.values()) {
+            HtmlTokenizer tokenizer = HtmlTokenizer.create(mode, StopWords.EMPTY);
+            tokenizer.setSnippetLength(1000);
+            InverseFile invFile = tokenizer.tokenize(
+                    ByteBuffer.wrap(html.getBytes(HtmlTokenizer.CHARSET)), 0, "D0");
+
+            assertEquals(mode.name(), visible, invFile.getSnippet());
+            assertEquals(mode.name(), "Palmarès", invFile.getTitle());
+
+            // Cut in the middle of the text, without a space at the end.
+            tokenizer.setSnippetLength(14);
+            invFile = tokenizer.tokenize(
+                    ByteBuffer.wrap(html.getBytes(HtmlTokenizer.CHARSET)), 0, "D0");
+            assertEquals(mode.name(), "Les Globes de", invFile.getSnippet());
+        }
+    }
+
+    @Test
+    public void phraseAcrossInlineTagsTest() throws IOException {
+
+        File documents = folder.newFolder("documents");
+        Files.write(new File(documents, "D0.html").toPath(),
+                INLINE_TAGS.getBytes(StandardCharsets.UTF_8));
+        String[] phrase = {WordNormalizer.normalize("globes"),
+                WordNormalizer.normalize("cristal"), WordNormalizer.normalize("remis")};
+
+        for (TokenizerMode mode : TokenizerMode.values()) {
+            IndexerConfiguration config = new IndexerConfiguration();
+            config.setBackend(IndexBackend.SEGMENTS);
+            config.setSegmentFolder(folder.newFolder(mode.name()));
+            config.setTokenizerMode(mode);
+            config.setPositions(true);
+            config.setMetricsInterval(0);
+            Indexer.startIndexation(documents, STOP_WORDS, config);
+
+            // "de" and "sont" are stop words, which keep their positions.
+            List<RelevantDocument> found = SegmentIndex.open(config.getSegmentFolder())
+                    .getRelevantDocsOfPhraseTf(phrase, new int[] {0, 2, 4});
+            assertEquals(mode.name(), 1, found.size());
+        }
+    }
+
+    private File[] listCorpus() {
+        File[] files = CORPUS.listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Gets the positions of each word of the body of a document.
+     */
+    private static Map<String, List<Integer>> positions(InverseFile invFile) {
+
+        Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+        TermCounts.Cursor cursor = invFile.words();
+
+        while (cursor.next()) {
+            List<Integer> list = new ArrayList<Integer>();
+
+            for (int i = 0; i < cursor.count(); ++i) {
+                list.add(cursor.positions()[i]);
+            }
+
+            positions.put(cursor.term(), list);
+        }
+
+        return positions;
+    }
+
+    private static void assertSameWords(String document, InverseFile expected,
+            InverseFile result) {
+
+        assertTrue(document, expected.hasPositions() == result.hasPositions());
+
+        if (expected.hasPositions()) {
+            assertEquals(document, positions(expected), positions(result));
+        }
+
+        assertEquals(document, expected.getTitle(), result.getTitle());
+        assertEquals(document, expected.getSnippet(), result.getSnippet());
+
+        Set<String> words = new HashSet<String>();
+
+        for (Entry<String, Integer> entry : expected) {
+            words.add(entry.getKey());
+        }
+
+        for (Entry<String, Integer> entry : result) {
+            words.add(entry.getKey());
+        }
+
+        for (String word : words) {
+            for (Field field : Field.values()) {
+                assertEquals(document + ": " + word + " in " + field,
+                        expected.getFrequency(word, field),
+                        result.getFrequency(word, field));
+            }
+        }
+    }
+}
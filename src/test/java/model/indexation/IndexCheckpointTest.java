@@ -0,0 +1,53 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resumeUnfinishedTest() {
+
+        File file = new File(folder.getRoot(), "indexer.checkpoint");
+
+        IndexCheckpoint first = new IndexCheckpoint(file);
+        assertFalse(first.isResuming());
+        first.start(true);
+        first.setIndexDefinitions(Arrays.asList("CREATE INDEX a ON indx (document)",
+                "CREATE INDEX b ON word (term)"));
+
+        // The first indexation crashes before finishing.
+        IndexCheckpoint second = new IndexCheckpoint(file);
+        assertTrue(second.isResuming());
+        assertTrue(second.wasBulkLoad());
+        assertEquals(2, second.getIndexDefinitions().size());
+        assertEquals("CREATE INDEX b ON word (term)", second.getIndexDefinitions().get(1));
+
+        second.start(true);
+        second.finish();
+
+        assertFalse(file.exists());
+        assertFalse(new IndexCheckpoint(file).isResuming());
+    }
+
+    @Test
+    public void disabledTest() {
+
+        IndexCheckpoint checkpoint = new IndexCheckpoint(null);
+        checkpoint.start(false);
+
+        assertFalse(checkpoint.isResuming());
+        checkpoint.finish();
+    }
+}
@@ -0,0 +1,142 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexPlanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fullPlanTest() throws IOException {
+
+        File[] files = {write("D1.html", "one"), write("D2.html", "two")};
+        IndexPlan plan = IndexPlan.full(files);
+
+        assertEquals(2, plan.getDocumentsToIndex().size());
+        assertEquals(1, plan.getDocumentsToIndex().get(1).getDocumentId());
+    }
+
+    @Test
+    public void incrementalPlanTest() throws IOException {
+
+        File unchanged = write("D1.html", "one");
+        File touched = write("D2.html", "two");
+        File changed = write("D3.html", "three");
+        File deleted = write("D4.html", "four");
+
+        List<IndexedDocument> indexed = new ArrayList<IndexedDocument>();
+        indexed.add(index(0, unchanged));
+        indexed.add(index(1, touched));
+        indexed.add(index(5, changed));
+        indexed.add(index(3, deleted));
+
+        touched.setLastModified(touched.lastModified() - 10000);
+        write("D3.html", "three, changed");
+        assertTrue(deleted.delete());
+        File added = write("D5.html", "five");
+
+        File[] files = {unchanged, touched, changed, added};
+        IndexPlan plan = IndexPlan.incremental(files, indexed);
+
+        List<RawDocument> toIndex = plan.getDocumentsToIndex();
+        assertEquals(2, toIndex.size());
+        assertEquals("D3.html", toIndex.get(0).getName());
+        assertEquals(5, toIndex.get(0).getDocumentId());
+        assertEquals("D5.html", toIndex.get(1).getName());
+        assertEquals(6, toIndex.get(1).getDocumentId());
+
+        assertEquals(1, plan.getRemovedDocuments().size());
+        assertEquals(3, plan.getRemovedDocuments().get(0).getDocumentId());
+
+        assertEquals(1, plan.getTouchedDocuments().size());
+        IndexedDocument touchedDocument = plan.getTouchedDocuments().get(0);
+        assertEquals(1, touchedDocument.getDocumentId());
+        assertEquals(touched.lastModified(), touchedDocument.getFingerprint().getLastModified());
+
+        assertTrue(plan.changesIndex());
+    }
+
+    @Test
+    public void resumePlanTest() throws IOException {
+
+        File stored = write("D1.html", "one");
+        File storedAgain = write("D2.html", "two");
+        File missing = write("D3.html", "three");
+
+        List<IndexedDocument> committed = new ArrayList<IndexedDocument>();
+        committed.add(index(0, stored));
+        committed.add(index(7, storedAgain));
+        write("D2.html", "two, changed");
+
+        IndexPlan plan = IndexPlan.resume(new File[] {stored, storedAgain, missing}, committed);
+
+        List<RawDocument> toIndex = plan.getDocumentsToIndex();
+        assertEquals(2, toIndex.size());
+        assertEquals(7, toIndex.get(0).getDocumentId());
+        assertEquals("D3.html", toIndex.get(1).getName());
+        assertEquals(2, toIndex.get(1).getDocumentId());
+    }
+
+    @Test
+    public void noHashTest() throws IOException {
+
+        File touched = write("D1.html", "one");
+        RawDocument read = new RawDocument(0, touched).read();
+        DocumentFingerprint attributes = read.getAttributes();
+
+        assertEquals(touched.length(), attributes.getSize());
+        assertEquals(DocumentFingerprint.NO_HASH, attributes.getHash());
+        assertEquals(DocumentFingerprint.of(touched).getHash(), read.getFingerprint().getHash());
+
+        // Without its hash, a touched file is indexed again.
+        List<IndexedDocument> indexed = new ArrayList<IndexedDocument>();
+        indexed.add(new IndexedDocument(0, touched.getName(), attributes));
+        touched.setLastModified(touched.lastModified() - 10000);
+
+        IndexPlan plan = IndexPlan.incremental(new File[] {touched}, indexed);
+
+        assertEquals(1, plan.getDocumentsToIndex().size());
+        assertTrue(plan.getTouchedDocuments().isEmpty());
+    }
+
+    @Test
+    public void nothingChangedTest() throws IOException {
+
+        File file = write("D1.html", "one");
+        List<IndexedDocument> indexed = new ArrayList<IndexedDocument>();
+        indexed.add(index(0, file));
+
+        IndexPlan plan = IndexPlan.incremental(new File[] {file}, indexed);
+
+        assertTrue(plan.getDocumentsToIndex().isEmpty());
+        assertFalse(plan.changesIndex());
+    }
+
+    private File write(String name, String content) throws IOException {
+
+        File file = new File(folder.getRoot(), name);
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(HtmlTokenizer.CHARSET));
+        }
+
+        return file;
+    }
+
+    private static IndexedDocument index(int documentId, File file) throws IOException {
+        return new IndexedDocument(documentId, file.getName(), DocumentFingerprint.of(file));
+    }
+}
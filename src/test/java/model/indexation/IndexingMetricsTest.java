@@ -0,0 +1,77 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexingMetricsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void histogramTest() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(50), DELTA);
+
+        // 90 durations of 10 microseconds and 10 of 3 milliseconds.
+        for (int i = 0; i < 90; ++i) {
+            histogram.record(10000);
+        }
+
+        for (int i = 0; i < 10; ++i) {
+            histogram.record(3000000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals((90 * 0.01 + 10 * 3) / 100, histogram.getMeanMillis(), DELTA);
+        assertEquals(3, histogram.getMaxMillis(), DELTA);
+
+        // Rounded up to 16 microseconds, and capped by the maximum.
+        assertEquals(0.016, histogram.getPercentileMillis(50), DELTA);
+        assertEquals(0.016, histogram.getPercentileMillis(90), DELTA);
+        assertEquals(3, histogram.getPercentileMillis(99), DELTA);
+    }
+
+    @Test
+    public void indexCorpusTest() throws Exception {
+
+        File corpus = new File("extra/CORPUS");
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(folder.newFolder("segments"));
+        config.setMetricsInterval(0);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        // The metrics of the last indexation stay published.
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(IndexingMetrics.OBJECT_NAME);
+
+        assertEquals((long) corpus.list().length, attribute(server, name, "Documents"));
+        assertTrue((Long) attribute(server, name, "Bytes") > 0);
+        assertTrue((Double) attribute(server, name, "DocumentsPerSecond") > 0);
+        assertEquals(0, attribute(server, name, "ParseQueueDepth"));
+        assertTrue((Double) attribute(server, name, "ParseP99Millis")
+                >= (Double) attribute(server, name, "ParseP50Millis"));
+        assertEquals(0L, attribute(server, name, "DatabaseRoundTrips"));
+    }
+
+    private static Object attribute(MBeanServer server, ObjectName name, String attribute)
+            throws JMException {
+        return server.getAttribute(name, attribute);
+    }
+}
@@ -0,0 +1,134 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PipelineStageTest {
+
+    // The elements are positive, so they are never the end marker.
+    final Integer END = Integer.valueOf(-1);
+    final int ELEMENTS = 1000;
+
+    @Test
+    public void allElementsReachLastStageTest() throws InterruptedException {
+
+        int doublers = 4;
+        int summers = 3;
+
+        PipelineChannel<Integer> numbers = new PipelineChannel<Integer>(0, END, doublers);
+        PipelineChannel<Integer> doubled = new PipelineChannel<Integer>(2, END, summers);
+
+        for (int i = 1; i <= ELEMENTS; ++i) {
+            numbers.put(i);
+        }
+
+        numbers.close();
+
+        final AtomicInteger sum = new AtomicInteger(0);
+        AtomicInteger runningDoublers = new AtomicInteger(doublers);
+        AtomicInteger runningSummers = new AtomicInteger(summers);
+        Thread[] threads = new Thread[doublers + summers];
+
+        for (int i = 0; i < doublers; ++i) {
+            threads[i] = new Thread(new PipelineStage<Integer, Integer>(numbers,
+                    doubled, runningDoublers) {
+                @Override
+                Integer process(Integer element) {
+                    return element % 10 == 0 ? null : 2 * element;
+                }
+            });
+        }
+
+        for (int i = doublers; i < threads.length; ++i) {
+            threads[i] = new Thread(new PipelineStage<Integer, Void>(doubled, null,
+                    runningSummers) {
+                @Override
+                Void process(Integer element) {
+                    sum.addAndGet(element);
+                    return null;
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int expected = 0;
+
+        for (int i = 1; i <= ELEMENTS; ++i) {
+            if (i % 10 != 0) {
+                expected += 2 * i;
+            }
+        }
+
+        assertEquals(expected, sum.get());
+        assertEquals(0, runningDoublers.get());
+        assertEquals(0, runningSummers.get());
+    }
+
+    @Test
+    public void lostElementFailsStageTest() throws InterruptedException {
+
+        PipelineChannel<Integer> numbers = new PipelineChannel<Integer>(0, END, 1);
+
+        for (int i = 1; i <= 3; ++i) {
+            numbers.put(i);
+        }
+
+        numbers.close();
+
+        AtomicBoolean failed = new AtomicBoolean(false);
+        final AtomicInteger processed = new AtomicInteger(0);
+
+        // The elements after the lost one are still processed.
+        new PipelineStage<Integer, Void>(numbers, null, new AtomicInteger(1), failed) {
+            @Override
+            Void process(Integer element) {
+
+                if (element == 2) {
+                    throw new IllegalStateException("lost");
+                }
+
+                processed.incrementAndGet();
+                return null;
+            }
+        }.run();
+
+        assertTrue(failed.get());
+        assertEquals(2, processed.get());
+    }
+
+    @Test
+    public void failedStartTest() throws InterruptedException {
+
+        PipelineChannel<Integer> numbers = new PipelineChannel<Integer>(0, END, 1);
+        numbers.put(1);
+        numbers.close();
+
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        new PipelineStage<Integer, Void>(numbers, null, new AtomicInteger(1), failed) {
+            @Override
+            void init() {
+                throw new IllegalStateException("No connection");
+            }
+
+            @Override
+            Void process(Integer element) {
+                return null;
+            }
+        }.run();
+
+        assertTrue(failed.get());
+    }
+}
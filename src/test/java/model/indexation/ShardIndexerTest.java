@@ -0,0 +1,116 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.database.dao.RelevantDocumentDAO;
+import model.search.RelevantDocument;
+import model.segment.SegmentDirectory;
+import model.segment.SegmentIndex;
+
+public class ShardIndexerTest {
+
+    private static final File CORPUS = new File("extra/CORPUS");
+    private static final File STOP_WORDS = new File("extra/stopliste.txt");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void allShardsTest() throws Exception {
+
+        File single = folder.newFolder("single");
+        File sharded = folder.newFolder("sharded");
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setMetricsInterval(0);
+        config.setSegmentFolder(single);
+        Indexer.startIndexation(CORPUS, STOP_WORDS, config);
+
+        config.setSegmentFolder(sharded);
+        config.setShardCount(3);
+        Indexer.startIndexation(CORPUS, STOP_WORDS, config);
+
+        List<SegmentDirectory> shards = SegmentDirectory.openShards(sharded);
+        assertEquals(3, shards.size());
+
+        for (int shard = 0; shard < 3; ++shard) {
+            SegmentIndex index = new SegmentIndex(shards.get(shard));
+            assertTrue(index.getNumberOfDocuments() > 0);
+
+            for (RelevantDocument doc : index.getRelevantDocsTf(
+                    WordNormalizer.normalize("personnes"))) {
+                assertEquals(shard, doc.getDocumentId() % 3);
+            }
+        }
+
+        // The shards read together give the same tf-idf as a single index.
+        String word = WordNormalizer.normalize("personnes");
+        List<RelevantDocument> expected =
+                new RelevantDocumentDAO(SegmentIndex.open(single)).getRelevantDocs(word);
+        List<RelevantDocument> result =
+                new RelevantDocumentDAO(SegmentIndex.open(sharded)).getRelevantDocs(word);
+
+        assertEquals(CORPUS.list().length, SegmentIndex.open(sharded).getNumberOfDocuments());
+        assertEquals(expected.size(), result.size());
+
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getDocumentId(), result.get(i).getDocumentId());
+            assertEquals(expected.get(i).getRelevance(), result.get(i).getRelevance(), 0);
+        }
+    }
+
+    @Test
+    public void oneShardTest() {
+
+        File segments = folder.getRoot();
+        IndexerConfiguration config = ShardIndexer.parse(new String[] {
+            CORPUS.getPath(), STOP_WORDS.getPath(), segments.getPath(), "1", "4",
+            "--tokenizer-threads=2", "--positions=true"
+        });
+
+        assertEquals(2, config.getTokenizerThreads());
+        assertTrue(config.isPositions());
+        config.setMetricsInterval(0);
+        Indexer.startIndexation(CORPUS, STOP_WORDS, config);
+
+        // Only the folder of the shard is written.
+        List<SegmentDirectory> shards = SegmentDirectory.openShards(segments);
+        assertEquals(1, shards.size());
+        assertEquals(1, SegmentDirectory.shardNumber(shards.get(0).getFolder()));
+
+        int documents = CORPUS.list().length;
+        assertEquals((documents + 2) / 4, SegmentIndex.open(segments).getNumberOfDocuments());
+    }
+
+    @Test
+    public void argumentsTest() {
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setSegmentFolder(new File("index"));
+        config.setShardCount(3);
+        config.setStoreThreads(4);
+        config.setFinalMerge(true);
+        config.setDocumentStoreFolder(new File("store"));
+
+        List<String> args = ShardIndexer.arguments(CORPUS, STOP_WORDS, config, 2);
+        IndexerConfiguration parsed = ShardIndexer.parse(args.toArray(new String[args.size()]));
+
+        assertEquals(IndexBackend.SEGMENTS, parsed.getBackend());
+        assertEquals(2, parsed.getShard());
+        assertEquals(3, parsed.getShardCount());
+        assertEquals(4, parsed.getStoreThreads());
+        assertEquals(config.getRamBufferSize(), parsed.getRamBufferSize());
+        assertTrue(parsed.isFinalMerge());
+        assertEquals(new File("store").getAbsoluteFile(), parsed.getDocumentStoreFolder());
+        assertEquals(new File("index").getAbsoluteFile(), parsed.getSegmentFolder());
+    }
+}
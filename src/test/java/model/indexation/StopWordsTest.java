@@ -0,0 +1,65 @@
+package model.indexation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class StopWordsTest {
+
+    final File STOP_WORDS = new File("extra/stopliste.txt");
+
+    @Test
+    public void sameWordsAsSetTest() {
+
+        Set<String> set = StopWordSetBuilder.createStopWordsSet(STOP_WORDS);
+        StopWords stopWords = StopWords.load(STOP_WORDS);
+
+        assertFalse(set.isEmpty());
+
+        for (String word : set) {
+            assertTrue(word, stopWords.contains(word));
+            assertTrue(word, stopWords.contains(word.toCharArray(), 0, word.length()));
+            assertFalse(word, stopWords.contains((word + "q").toCharArray(), 0,
+                    word.length() + 1));
+        }
+
+        assertFalse(stopWords.contains("ordinateur"));
+        assertFalse(stopWords.contains(""));
+    }
+
+    @Test
+    public void normalizeTest() {
+
+        StopWords stopWords = StopWords.compile(Arrays.asList("les", "quelque"));
+
+        assertTrue(stopWords.contains("LES"));
+        assertTrue(stopWords.contains("Quelques"));
+        assertFalse(stopWords.contains("le"));
+        assertFalse(stopWords.contains("quelq"));
+    }
+
+    @Test
+    public void sliceTest() {
+
+        StopWords stopWords = StopWords.compile(Arrays.asList("de", "des"));
+        char[] chars = "xdesx".toCharArray();
+
+        assertTrue(stopWords.contains(chars, 1, 3));
+        assertTrue(stopWords.contains(chars, 1, 4));
+        assertFalse(stopWords.contains(chars, 0, 3));
+        assertFalse(stopWords.contains(chars, 1, 2));
+    }
+
+    @Test
+    public void emptyTest() {
+
+        assertFalse(StopWords.EMPTY.contains(""));
+        assertFalse(StopWords.EMPTY.contains("les"));
+        assertFalse(StopWords.EMPTY.contains(new char[0], 0, 0));
+    }
+}
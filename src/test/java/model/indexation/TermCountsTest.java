@@ -0,0 +1,75 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TermCountsTest {
+
+    @Test
+    public void countTest() {
+
+        TermCounts counts = new TermCounts();
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+
+        for (int i = 0; i < 10000; ++i) {
+            String term = "t" + (i * 7919 % 1500);
+            Integer previous = expected.get(term);
+            int count = previous == null ? 1 : previous + 1;
+
+            expected.put(term, count);
+            assertEquals(count, counts.increment(term));
+        }
+
+        assertEquals(expected.size(), counts.size());
+        assertEquals(0, counts.get("missing"));
+
+        Map<String, Integer> result = new HashMap<String, Integer>();
+        TermCounts.Cursor cursor = counts.cursor();
+
+        while (cursor.next()) {
+            result.put(cursor.term(), cursor.count());
+            assertEquals(cursor.count(), counts.get(cursor.term()));
+        }
+
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void positionsTest() {
+
+        TermCounts counts = new TermCounts(true);
+
+        // Enough terms to grow the table while keeping the positions.
+        for (int i = 0; i < 3000; ++i) {
+            counts.increment("t" + i % 1000, i);
+        }
+
+        TermCounts.Cursor cursor = counts.cursor();
+
+        while (cursor.next()) {
+            int first = Integer.parseInt(cursor.term().substring(1));
+            int[] positions = cursor.positions();
+
+            assertEquals(3, cursor.count());
+
+            for (int i = 0; i < cursor.count(); ++i) {
+                assertEquals(first + 1000 * i, positions[i]);
+            }
+        }
+
+        assertEquals(null, new TermCounts().cursor().positions());
+    }
+
+    @Test
+    public void emptyTest() {
+
+        TermCounts counts = new TermCounts();
+
+        assertEquals(0, counts.size());
+        assertEquals(false, counts.cursor().next());
+    }
+}
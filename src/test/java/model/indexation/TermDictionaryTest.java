@@ -0,0 +1,72 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TermDictionaryTest {
+
+    final int THREADS = 8;
+    final int TERMS = 10000;
+
+    @Test
+    public void denseIdsTest() throws InterruptedException {
+
+        final TermDictionary dictionary = new TermDictionary();
+        final int[][] ids = new int[THREADS][TERMS];
+        Thread[] threads = new Thread[THREADS];
+
+        for (int i = 0; i < THREADS; ++i) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    // Each thread asks for the terms in a different order.
+                    for (int j = 0; j < TERMS; ++j) {
+                        int term = (j + thread * TERMS / THREADS) % TERMS;
+                        ids[thread][term] = dictionary.getId("term" + term);
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Set<Integer> distinct = new HashSet<Integer>();
+
+        for (int term = 0; term < TERMS; ++term) {
+            for (int thread = 1; thread < THREADS; ++thread) {
+                assertEquals(ids[0][term], ids[thread][term]);
+            }
+
+            assertTrue(distinct.add(ids[0][term]));
+            assertTrue(ids[0][term] < TERMS);
+        }
+
+        assertEquals(TERMS, dictionary.size());
+    }
+
+    @Test
+    public void loadedIdsTest() {
+
+        TermDictionary dictionary = new TermDictionary();
+        dictionary.put("old", 5);
+        dictionary.put("older", 2);
+
+        assertEquals(5, dictionary.lookup("old"));
+        assertEquals(-1, dictionary.lookup("new"));
+        assertEquals(6, dictionary.getId("new"));
+        assertEquals(2, dictionary.getId("older"));
+        assertEquals(7, dictionary.size());
+    }
+}
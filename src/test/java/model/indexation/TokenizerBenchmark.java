@@ -0,0 +1,97 @@
+package model.indexation;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Measures the time and the memory each tokenizer mode takes to tokenize a
+ * corpus. It is not a test, so the build does not run it; it is started with
+ * the test classpath and, optionally, the folder of the corpus, the file of
+ * the stop words and the number of rounds.
+ * @see TokenizerMode
+ */
+public final class TokenizerBenchmark {
+
+    private static final String CORPUS = "extra/CORPUS";
+    private static final String STOP_WORDS = "extra/stopliste.txt";
+    private static final int DEFAULT_ROUNDS = 5;
+
+    // To avoid instantiation
+    private TokenizerBenchmark() {}
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args the folder of the corpus, the file of the stop words and
+     * the number of rounds, all optional.
+     * @throws IOException if the corpus could not be read.
+     */
+    public static void main(String[] args) throws IOException {
+
+        File corpus = new File(args.length > 0 ? args[0] : CORPUS);
+        StopWords stopWords = StopWords.load(new File(args.length > 1 ? args[1] : STOP_WORDS));
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+
+        File[] files = corpus.listFiles();
+
+        if (files == null) {
+            System.err.println("Folder " + corpus.getPath() + " does not exist.");
+            return;
+        }
+
+        Arrays.sort(files);
+        ByteBuffer[] contents = new ByteBuffer[files.length];
+        long bytes = 0;
+
+        for (int i = 0; i < files.length; ++i) {
+            contents[i] = HtmlTokenizer.map(files[i]);
+            bytes += contents[i].remaining();
+        }
+
+        for (TokenizerMode mode : TokenizerMode.values()) {
+            HtmlTokenizer tokenizer = HtmlTokenizer.create(mode, stopWords);
+
+            // Warm up.
+            tokenizeAll(tokenizer, contents);
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < rounds; ++i) {
+                tokenizeAll(tokenizer, contents);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+
+            System.out.println(mode + ": " + elapsed / rounds / 1000000
+                    + " ms per corpus, "
+                    + (bytes * rounds * 1000 / elapsed) + " MB/s, "
+                    + (allocated < 0 ? "unknown" : allocated / rounds / 1024)
+                    + " KB allocated per corpus.");
+        }
+    }
+
+    private static void tokenizeAll(HtmlTokenizer tokenizer, ByteBuffer[] contents) {
+        for (int i = 0; i < contents.length; ++i) {
+            tokenizer.tokenize(contents[i], i, "D" + i);
+        }
+    }
+
+    /**
+     * Bytes allocated by the current thread, or -1 if the JVM does not tell.
+     */
+    private static long allocatedBytes() {
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+}
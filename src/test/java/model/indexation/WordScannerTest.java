@@ -0,0 +1,104 @@
+package model.indexation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class WordScannerTest {
+
+    final File CORPUS = new File("extra/CORPUS");
+    final File STOP_WORDS = new File("extra/stopliste.txt");
+
+    final String[] TEXTS = {
+        "",
+        "   ",
+        "Hello",
+        " Les Intouchables, 2011 ",
+        "ANTICONSTITUTIONNELLEMENT anticonstitutionnellement",
+        "œuvre Ça ça façade Élodie élodie naïveté",
+        "l'été--déjà...fini ou\tpas\nencore",
+        "x1y2z3 123456789 ÿ æ"
+    };
+
+    @Test
+    public void sameWordsAsNormalizerTest() throws IOException {
+
+        Set<String> stopWords = StopWordSetBuilder.createStopWordsSet(STOP_WORDS);
+        WordScanner scanner = new WordScanner(StopWords.compile(stopWords));
+
+        for (String text : TEXTS) {
+            assertEquals(text, expectedWords(text, stopWords), scan(scanner, text));
+        }
+
+        for (File file : CORPUS.listFiles()) {
+            String text = HtmlTokenizer.CHARSET.decode(HtmlTokenizer.map(file)).toString();
+            assertEquals(file.getName(), expectedWords(text, stopWords), scan(scanner, text));
+        }
+    }
+
+    @Test
+    public void sameStringForSameWordTest() {
+
+        WordScanner scanner = new WordScanner(StopWords.EMPTY);
+        StringBuilder text = new StringBuilder("Bonjour bonjour BONJOURS");
+
+        scanner.reset(text);
+        String first = scanner.next();
+
+        assertEquals("bonjour", first);
+        assertSame(first, scanner.next());
+        assertSame(first, scanner.next());
+        assertEquals(null, scanner.next());
+    }
+
+    @Test
+    public void manyWordsTest() {
+
+        WordScanner scanner = new WordScanner(StopWords.compile(Arrays.asList("w7")));
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 100000; ++i) {
+            text.append('w').append(Integer.toString(i, Character.MAX_RADIX)).append(' ');
+        }
+
+        String words = text.toString();
+        assertEquals(expectedWords(words, new HashSet<String>(Arrays.asList("w7"))),
+                scan(scanner, words));
+    }
+
+    private static List<String> scan(WordScanner scanner, CharSequence text) {
+
+        List<String> words = new ArrayList<String>();
+        scanner.reset(text);
+
+        for (String word = scanner.next(); word != null; word = scanner.next()) {
+            words.add(word);
+        }
+
+        return words;
+    }
+
+    private static List<String> expectedWords(String text, Set<String> stopWords) {
+
+        List<String> words = new ArrayList<String>();
+
+        for (String word : WordNormalizer.split(text)) {
+            String normalized = WordNormalizer.normalize(word);
+
+            if (!normalized.isEmpty() && !stopWords.contains(normalized)) {
+                words.add(normalized);
+            }
+        }
+
+        return words;
+    }
+}
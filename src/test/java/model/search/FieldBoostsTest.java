@@ -0,0 +1,38 @@
+package model.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import model.indexation.Field;
+
+public class FieldBoostsTest {
+
+    @Test
+    public void parseTest() {
+
+        assertTrue(FieldBoosts.parse("").isDefault());
+
+        FieldBoosts boosts = FieldBoosts.parse("title=3, H1 = 2.5,length=0.75");
+        assertFalse(boosts.isDefault());
+        assertEquals(1, boosts.getBoost(Field.BODY), 0);
+        assertEquals(3, boosts.getBoost(Field.TITLE), 0);
+        assertEquals(2.5, boosts.getBoost(Field.H1), 0);
+        assertEquals(0, boosts.getBoost(Field.H2), 0);
+        assertEquals(0.75, boosts.getLengthNormalization(), 0);
+
+        assertEquals(boosts.toString(), FieldBoosts.parse(boosts.toString()).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldTest() {
+        FieldBoosts.parse("footer=2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeBoostTest() {
+        FieldBoosts.parse("title=-1");
+    }
+}
@@ -0,0 +1,157 @@
+package model.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PostingsCacheTest {
+
+    private static final String VERSION = "first";
+
+    private static List<RelevantDocument> postings(int count) {
+
+        List<RelevantDocument> list = new ArrayList<RelevantDocument>();
+
+        for (int i = 0; i < count; ++i) {
+            list.add(new RelevantDocument(i, "D" + i, i + 0.5f));
+        }
+
+        return list;
+    }
+
+    @Test
+    public void copyTest() {
+
+        PostingsCache cache = new PostingsCache(1 << 20);
+        cache.validate(VERSION);
+        List<RelevantDocument> list = postings(3);
+        cache.put(VERSION, "word", list);
+        list.get(0).setRelevance(100);
+
+        List<RelevantDocument> cached = cache.get(VERSION, "word");
+        assertEquals(3, cached.size());
+        assertEquals(0.5f, cached.get(0).getRelevance(), 0);
+        assertEquals("D1", cached.get(1).getDocumentName());
+
+        // Scoring a search does not change the cached postings.
+        cached.get(0).setRelevance(100);
+        assertEquals(0.5f, cache.get(VERSION, "word").get(0).getRelevance(), 0);
+
+        assertNull(cache.get(VERSION, "other"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void sizeTest() {
+
+        PostingsCache cache = new PostingsCache(20000);
+        cache.validate(VERSION);
+
+        for (int i = 0; i < 200; ++i) {
+            cache.put(VERSION, "word" + i, postings(10));
+            assertTrue(cache.getSize() <= cache.getMaximumSize());
+        }
+
+        // The terms are as rare as the ones they would replace.
+        assertTrue(cache.getRejections() > 0);
+        assertEquals(200, cache.getEntries() + cache.getEvictions() + cache.getRejections());
+
+        // Postings bigger than the cache are not kept.
+        long rejections = cache.getRejections();
+        cache.put(VERSION, "big", postings(1000));
+        assertNull(cache.get(VERSION, "big"));
+        assertEquals(rejections + 1, cache.getRejections());
+    }
+
+    @Test
+    public void frequencyTest() {
+
+        PostingsCache cache = new PostingsCache(20000);
+        cache.validate(VERSION);
+
+        for (int i = 0; i < 10; ++i) {
+            assertNull(cache.get(VERSION, "popular" + i));
+            cache.put(VERSION, "popular" + i, postings(10));
+        }
+
+        for (int round = 0; round < 5; ++round) {
+            for (int i = 0; i < 10; ++i) {
+                assertNotNull(cache.get(VERSION, "popular" + i));
+            }
+        }
+
+        // Words searched once do not replace the popular ones.
+        for (int i = 0; i < 500; ++i) {
+            cache.get(VERSION, "rare" + i);
+            cache.put(VERSION, "rare" + i, postings(10));
+        }
+
+        for (int i = 0; i < 10; ++i) {
+            assertNotNull(cache.get(VERSION, "popular" + i));
+        }
+    }
+
+    @Test
+    public void rejectionTest() {
+
+        PostingsCache cache = new PostingsCache(20000);
+        cache.validate(VERSION);
+        int entries = 0;
+
+        // Fill the main region, until a term is not admitted.
+        while (cache.getRejections() == 0) {
+            cache.put(VERSION, "term" + entries++, postings(10));
+        }
+
+        // The first term is rare, the others popular.
+        for (int round = 0; round < 10; ++round) {
+            for (int i = 1; i < entries - 1; ++i) {
+                cache.get(VERSION, "term" + i);
+            }
+        }
+
+        for (int i = 0; i < 3; ++i) {
+            cache.get(VERSION, "new");
+        }
+
+        // The new term needs the room of the rare term and of a popular one.
+        long evictions = cache.getEvictions();
+        cache.put(VERSION, "new", postings(30));
+
+        assertNull(cache.get(VERSION, "new"));
+        assertNotNull(cache.get(VERSION, "term0"));
+        assertEquals(evictions, cache.getEvictions());
+        assertEquals(2, cache.getRejections());
+    }
+
+    @Test
+    public void validateTest() {
+
+        PostingsCache cache = new PostingsCache(1 << 20);
+        cache.validate(VERSION);
+        cache.put(VERSION, "word", postings(2));
+        cache.validate(VERSION);
+        assertNotNull(cache.get(VERSION, "word"));
+
+        cache.validate("second");
+        assertNull(cache.get(VERSION, "word"));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getInvalidations());
+
+        // A search still reading the previous index does not add its postings.
+        cache.put(VERSION, "word", postings(2));
+        assertNull(cache.get("second", "word"));
+        assertEquals(0, cache.getEntries());
+
+        cache.put("second", "word", postings(2));
+        assertNull(cache.get(VERSION, "word"));
+        assertNotNull(cache.get("second", "word"));
+    }
+}
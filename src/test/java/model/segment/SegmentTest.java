@@ -0,0 +1,433 @@
+package model.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.indexation.Field;
+import model.indexation.IndexBackend;
+import model.indexation.Indexer;
+import model.indexation.IndexerConfiguration;
+import model.indexation.WordNormalizer;
+import model.search.FieldBoosts;
+import model.search.RelevantDocument;
+
+public class SegmentTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndReadTest() throws IOException {
+
+        SegmentWriter writer = new SegmentWriter();
+        writer.add(300, "D300.html", words("zèbre", 2, "apple", 1));
+        writer.add(7, "D7.html", words("apple", 4, "banana", 1));
+        writer.add(100000, "D100000.html", words("apple", 128));
+
+        File file = folder.newFile("test.seg");
+        writer.writeTo(file);
+        Segment segment = Segment.open(file);
+
+        assertEquals(3, segment.getDocumentCount());
+        assertEquals(3, segment.getDocumentFrequency("apple"));
+        assertEquals(0, segment.getDocumentFrequency("cherry"));
+
+        List<RelevantDocument> postings = new ArrayList<RelevantDocument>();
+        segment.addPostings("apple", postings);
+
+        assertEquals(3, postings.size());
+        assertPosting(postings.get(0), 7, "D7.html", 4);
+        assertPosting(postings.get(1), 300, "D300.html", 1);
+        assertPosting(postings.get(2), 100000, "D100000.html", 128);
+
+        postings.clear();
+        segment.addPostings("zèbre", postings);
+        assertEquals(1, postings.size());
+        assertPosting(postings.get(0), 300, "D300.html", 2);
+
+        assertNull(segment.getDocumentName(8));
+    }
+
+    @Test
+    public void directoryTest() throws IOException {
+
+        SegmentDirectory directory = new SegmentDirectory(folder.newFolder("index"));
+        SegmentWriter writer = new SegmentWriter();
+
+        writer.add(2, "D2.html", words("word", 1));
+        String first = directory.add(writer);
+        writer.clear();
+        writer.add(1, "D1.html", words("word", 3, "other", 1));
+        String second = directory.add(writer);
+
+        assertEquals(Arrays.asList(first, second), directory.getSegmentNames());
+
+        SegmentIndex index = new SegmentIndex(directory);
+        List<RelevantDocument> postings = index.getRelevantDocsTf("word");
+
+        assertEquals(2, index.getNumberOfDocuments());
+        assertEquals(2, postings.size());
+        assertPosting(postings.get(0), 1, "D1.html", 3);
+        assertPosting(postings.get(1), 2, "D2.html", 1);
+
+        writer.clear();
+        writer.add(1, "D1.html", words("word", 3, "other", 1));
+        writer.add(2, "D2.html", words("word", 1));
+        String merged = directory.replace(Arrays.asList(first, second), writer);
+
+        assertEquals(Arrays.asList(merged), directory.getSegmentNames());
+        assertEquals(2, new SegmentIndex(new SegmentDirectory(directory.getFolder()))
+                .getNumberOfDocuments());
+
+        directory.clear();
+        assertTrue(directory.getSegmentNames().isEmpty());
+    }
+
+    @Test
+    public void generationTest() throws IOException {
+
+        File index = folder.newFolder("generation");
+        SegmentDirectory directory = new SegmentDirectory(index);
+        SegmentWriter writer = new SegmentWriter();
+        writer.add(1, "D1.html", words("old", 1));
+        String old = directory.add(writer);
+
+        // The searches read the previous segments while the new ones are written.
+        SegmentDirectory generation = SegmentDirectory.newGeneration(index);
+        writer.clear();
+        writer.add(2, "D2.html", words("new", 1));
+        String added = generation.add(writer);
+
+        assertEquals(Arrays.asList(old), directory.getSegmentNames());
+        assertEquals(1, new SegmentIndex(directory).getRelevantDocsTf("old").size());
+
+        // A discarded generation leaves the index as it was.
+        directory.discardGeneration();
+        assertEquals(Arrays.asList(old), directory.getSegmentNames());
+        assertTrue(!new File(index, added).exists());
+        assertTrue(!directory.commitGeneration());
+
+        generation = SegmentDirectory.newGeneration(index);
+        String replacing = generation.add(writer);
+        assertTrue(directory.commitGeneration());
+
+        assertEquals(Arrays.asList(replacing), directory.getSegmentNames());
+        assertTrue(!new File(index, old).exists());
+        assertTrue(!replacing.equals(old));
+        assertTrue(new SegmentIndex(directory).getRelevantDocsTf("old").isEmpty());
+        assertEquals(1, new SegmentIndex(directory).getRelevantDocsTf("new").size());
+    }
+
+    @Test
+    public void mergeTest() throws IOException {
+
+        SegmentDirectory directory = new SegmentDirectory(folder.newFolder("merge"));
+        SegmentWriter writer = new SegmentWriter();
+
+        for (int i = 0; i < 5; ++i) {
+            writer.clear();
+            writer.add(i, "D" + i + ".html", words("word", i + 1, "w" + i, 1));
+            directory.add(writer);
+        }
+
+        SegmentMerger merger = new SegmentMerger(directory, new TieredMergePolicy(2, 100), 0);
+
+        // 1 + 1 into 2, 1 + 1 into 2, then 2 + 2 into 4, leaving 4 + 1.
+        assertEquals(3, merger.mergeAll());
+        assertEquals(2, directory.getSegmentNames().size());
+
+        SegmentIndex index = new SegmentIndex(directory);
+        List<RelevantDocument> postings = index.getRelevantDocsTf("word");
+
+        assertEquals(5, index.getNumberOfDocuments());
+        assertEquals(5, postings.size());
+
+        for (int i = 0; i < 5; ++i) {
+            assertPosting(postings.get(i), i, "D" + i + ".html", i + 1);
+            assertEquals(1, index.getRelevantDocsTf("w" + i).size());
+        }
+
+        assertEquals(0, merger.mergeAll());
+    }
+
+    @Test
+    public void kWayMergeTest() throws IOException {
+
+        SegmentDirectory directory = new SegmentDirectory(folder.newFolder("kway"));
+        SegmentWriter writer = new SegmentWriter();
+
+        // Three runs with interleaved IDs and enough documents for skip lists.
+        for (int run = 0; run < 3; ++run) {
+            writer.clear();
+            assertEquals(0, writer.getRamBytesUsed());
+
+            for (int i = run; i < 600; i += 3) {
+                writer.addDocument(i, "D" + i + ".html");
+                writer.addPosting("common", i, i % 5 + 1, new int[] {i % 4});
+                writer.addPosting("run" + run, i, 1, new int[] {9});
+            }
+
+            assertTrue(writer.getRamBytesUsed() > 200 * 16);
+            directory.add(writer);
+        }
+
+        SegmentMerger merger = new SegmentMerger(directory, new TieredMergePolicy(10, 1000), 0);
+        assertTrue(merger.forceMerge());
+        assertEquals(1, directory.getSegmentNames().size());
+
+        SegmentIndex index = new SegmentIndex(directory);
+        List<RelevantDocument> postings = index.getRelevantDocsTf("common");
+
+        assertEquals(600, index.getNumberOfDocuments());
+        assertEquals(600, postings.size());
+
+        for (int i = 0; i < 600; ++i) {
+            assertPosting(postings.get(i), i, "D" + i + ".html", i % 5 + 1);
+        }
+
+        for (int run = 0; run < 3; ++run) {
+            assertEquals(200, index.getRelevantDocsTf("run" + run).size());
+        }
+
+        // The positions are merged with their documents: the multiples of 3
+        // with the first word at position 1.
+        assertEquals(50, index.getRelevantDocsOfPhraseTf(
+                new String[] {"common", "run0"}, new int[] {0, 8}).size());
+        assertTrue(merger.forceMerge());
+    }
+
+    @Test
+    public void phraseTest() throws IOException {
+
+        SegmentDirectory directory = new SegmentDirectory(folder.newFolder("phrase"));
+        SegmentWriter writer = new SegmentWriter();
+
+        // Enough documents for several blocks of the skip list.
+        for (int i = 0; i < 300; ++i) {
+            if (i == 150) {
+                directory.add(writer);
+                writer.clear();
+            }
+
+            writer.addDocument(i, "D" + i + ".html");
+            writer.addPosting("omar", i, 2, new int[] {0, 10});
+            writer.addPosting("sy", i, 1, new int[] {i % 3 == 0 ? 1 : 5});
+
+            if (i % 7 == 0) {
+                writer.addPosting("rare", i, 1, new int[] {6});
+            }
+        }
+
+        directory.add(writer);
+        SegmentIndex index = new SegmentIndex(directory);
+
+        List<RelevantDocument> adjacent = index.getRelevantDocsOfPhraseTf(
+                new String[] {"omar", "sy"}, new int[] {0, 1});
+        assertEquals(100, adjacent.size());
+
+        for (int i = 0; i < adjacent.size(); ++i) {
+            assertPosting(adjacent.get(i), 3 * i, "D" + 3 * i + ".html", 1);
+        }
+
+        // Led by the rarest word, skipping the blocks of the others.
+        List<RelevantDocument> gap = index.getRelevantDocsOfPhraseTf(
+                new String[] {"omar", "sy", "rare"}, new int[] {0, 5, 6});
+        List<Integer> expected = new ArrayList<Integer>();
+        List<Integer> found = new ArrayList<Integer>();
+
+        for (int i = 0; i < 300; ++i) {
+            if (i % 7 == 0 && i % 3 != 0) {
+                expected.add(i);
+            }
+        }
+
+        for (RelevantDocument doc : gap) {
+            found.add(doc.getDocumentId());
+        }
+
+        assertEquals(expected, found);
+
+        // The positions are kept when the segments are merged.
+        SegmentMerger merger = new SegmentMerger(directory, new TieredMergePolicy(2, 1000), 0);
+        assertEquals(1, merger.mergeAll());
+        index = new SegmentIndex(directory);
+
+        assertEquals(100, index.getRelevantDocsOfPhraseTf(
+                new String[] {"omar", "sy"}, new int[] {0, 1}).size());
+        assertEquals(0, index.getRelevantDocsOfPhraseTf(
+                new String[] {"sy", "omar"}, new int[] {0, 1}).size());
+        assertEquals(0, index.getRelevantDocsOfPhraseTf(
+                new String[] {"omar", "cristal"}, new int[] {0, 1}).size());
+
+        // Without positions the phrases cannot be searched.
+        writer.clear();
+        writer.add(300, "D300.html", words("omar", 1));
+        directory.add(writer);
+        assertNull(new SegmentIndex(directory).getRelevantDocsOfPhraseTf(
+                new String[] {"omar", "sy"}, new int[] {0, 1}));
+    }
+
+    @Test
+    public void indexCorpusTest() throws IOException {
+
+        File corpus = new File("extra/CORPUS");
+        File segments = folder.newFolder("corpus");
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(segments);
+        config.setSegmentSize(20);
+        config.setMergeFactor(2);
+        config.setPositions(true);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        SegmentIndex index = new SegmentIndex(new SegmentDirectory(segments));
+        List<RelevantDocument> postings = index.getRelevantDocsTf(
+                WordNormalizer.normalize("personnes"));
+
+        assertEquals(corpus.list().length, index.getNumberOfDocuments());
+        assertTrue(!postings.isEmpty());
+
+        for (int i = 1; i < postings.size(); ++i) {
+            assertTrue(postings.get(i - 1).getDocumentId() < postings.get(i).getDocumentId());
+        }
+
+        // "de" is a stop word, so "cristal" is two words after "globes".
+        List<RelevantDocument> phrase = index.getRelevantDocsOfPhraseTf(
+                new String[] {WordNormalizer.normalize("globes"),
+                        WordNormalizer.normalize("cristal")}, new int[] {0, 2});
+        List<RelevantDocument> cristal = index.getRelevantDocsTf(
+                WordNormalizer.normalize("cristal"));
+
+        assertTrue(!phrase.isEmpty());
+        assertTrue(phrase.size() <= cristal.size());
+    }
+
+    @Test
+    public void ramBufferTest() throws IOException {
+
+        File corpus = new File("extra/CORPUS");
+        File segments = folder.newFolder("budget");
+
+        // The postings of a thread take more than half a megabyte long before
+        // the segment size is reached.
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(segments);
+        config.setStoreThreads(2);
+        config.setRamBufferSize(1);
+        config.setMergeFactor(100);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        SegmentDirectory directory = new SegmentDirectory(segments);
+        assertTrue(directory.getSegmentNames().size() > 2);
+        List<RelevantDocument> before = new SegmentIndex(directory).getRelevantDocsTf(
+                WordNormalizer.normalize("personnes"));
+
+        // A final merge leaves a single segment with the same postings.
+        config.setFinalMerge(true);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        SegmentIndex index = new SegmentIndex(directory);
+        List<RelevantDocument> after = index.getRelevantDocsTf(
+                WordNormalizer.normalize("personnes"));
+
+        assertEquals(1, directory.getSegmentNames().size());
+        assertEquals(corpus.list().length, index.getNumberOfDocuments());
+        assertEquals(before.size(), after.size());
+
+        for (int i = 0; i < before.size(); ++i) {
+            assertEquals(before.get(i).getDocumentId(), after.get(i).getDocumentId());
+            assertEquals(before.get(i).getRelevance(), after.get(i).getRelevance(), 0);
+        }
+    }
+
+    @Test
+    public void fieldBoostTest() throws IOException {
+
+        File corpus = folder.newFolder("fields");
+        write(new File(corpus, "title.html"),
+                "<html><head><title>java</title></head><body><p>coffee tea</p></body></html>");
+        write(new File(corpus, "body.html"), "<p>java java coffee cup mug saucer</p>");
+
+        File segments = folder.newFolder("fieldsegments");
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(segments);
+        config.setFinalMerge(true);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        SegmentDirectory directory = new SegmentDirectory(segments);
+        Segment segment = directory.openSegments().get(0);
+        assertTrue(segment.hasFields());
+        assertEquals(9, segment.getFieldLengthTotals()[Field.BODY.ordinal()]);
+        assertEquals(1, segment.getFieldLengthTotals()[Field.TITLE.ordinal()]);
+
+        SegmentIndex index = new SegmentIndex(directory);
+        String java = WordNormalizer.normalize("java");
+
+        // The body has the words of the title.
+        assertEquals(1, weight(index.getRelevantDocsTf(java, new FieldBoosts()), "title.html"), 0);
+        assertEquals(2, weight(index.getRelevantDocsTf(java, new FieldBoosts()), "body.html"), 0);
+
+        FieldBoosts boosts = FieldBoosts.parse("title=5");
+        assertEquals(6, weight(index.getRelevantDocsTf(java, boosts), "title.html"), 0);
+        assertEquals(2, weight(index.getRelevantDocsTf(java, boosts), "body.html"), 0);
+
+        // The average body has 4.5 words: 1 / (3 / 4.5) and 2 / (6 / 4.5).
+        boosts = FieldBoosts.parse("length=1");
+        assertEquals(1.5, weight(index.getRelevantDocsTf(java, boosts), "title.html"), 1e-6);
+        assertEquals(1.5, weight(index.getRelevantDocsTf(java, boosts), "body.html"), 1e-6);
+    }
+
+    private static void write(File file, String html) throws IOException {
+        Files.write(file.toPath(), html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static float weight(List<RelevantDocument> docs, String name) {
+
+        for (RelevantDocument doc : docs) {
+            if (doc.getDocumentName().equals(name)) {
+                return doc.getRelevance();
+            }
+        }
+
+        return 0;
+    }
+
+    private static Set<Entry<String, Integer>> words(Object... wordsAndWeights) {
+
+        Map<String, Integer> words = new LinkedHashMap<String, Integer>();
+
+        for (int i = 0; i < wordsAndWeights.length; i += 2) {
+            words.put((String) wordsAndWeights[i], (Integer) wordsAndWeights[i + 1]);
+        }
+
+        return words.entrySet();
+    }
+
+    private static void assertPosting(RelevantDocument doc, int documentId, String name,
+            float weight) {
+
+        assertEquals(documentId, doc.getDocumentId());
+        assertEquals(name, doc.getDocumentName());
+        assertEquals(weight, doc.getRelevance(), 0);
+    }
+}
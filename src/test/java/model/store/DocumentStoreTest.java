@@ -0,0 +1,113 @@
+package model.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.indexation.IndexBackend;
+import model.indexation.Indexer;
+import model.indexation.IndexerConfiguration;
+
+public class DocumentStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndReadTest() throws IOException {
+
+        File store = folder.newFolder("store");
+        DocumentStoreWriter writer = new DocumentStoreWriter(store, false);
+
+        // Enough documents for several blocks, not in order.
+        for (int i = 2999; i >= 0; --i) {
+            writer.add(2 * i, "D" + i + ".html", i % 10 == 0 ? null : "Titre é " + i,
+                    "Texte du document " + i);
+        }
+
+        writer.close();
+        DocumentStore reader = DocumentStore.open(store);
+
+        assertEquals(3000, reader.getDocumentCount());
+        assertNull(reader.get(1));
+        assertNull(reader.get(6000));
+
+        for (int i = 0; i < 3000; ++i) {
+            StoredDocument document = reader.get(2 * i);
+
+            assertEquals(2 * i, document.getDocumentId());
+            assertEquals("D" + i + ".html", document.getName());
+            assertEquals(i % 10 == 0 ? null : "Titre é " + i, document.getTitle());
+            assertEquals("Texte du document " + i, document.getSnippet());
+        }
+    }
+
+    @Test
+    public void appendTest() throws IOException {
+
+        File store = folder.newFolder("append");
+        DocumentStoreWriter writer = new DocumentStoreWriter(store, false);
+        writer.add(1, "D1.html", "One", "first");
+        writer.add(2, "D2.html", "Two", "second");
+        writer.close();
+
+        writer = new DocumentStoreWriter(store, true);
+        writer.add(2, "D2.html", "Two again", "changed");
+        writer.add(3, "D3.html", "Three", "third");
+        writer.close();
+
+        DocumentStore reader = DocumentStore.open(store);
+        assertEquals(3, reader.getDocumentCount());
+        assertEquals("One", reader.get(1).getTitle());
+        assertEquals("Two again", reader.get(2).getTitle());
+        assertEquals("third", reader.get(3).getSnippet());
+
+        // Without appending the store starts empty.
+        writer = new DocumentStoreWriter(store, false);
+        writer.add(4, "D4.html", "Four", "fourth");
+        writer.close();
+
+        reader = DocumentStore.open(store);
+        assertEquals(1, reader.getDocumentCount());
+        assertNull(reader.get(1));
+    }
+
+    @Test
+    public void indexCorpusTest() throws IOException {
+
+        File corpus = new File("extra/CORPUS");
+        File store = folder.newFolder("corpus-store");
+
+        IndexerConfiguration config = new IndexerConfiguration();
+        config.setBackend(IndexBackend.SEGMENTS);
+        config.setSegmentFolder(folder.newFolder("corpus-segments"));
+        config.setDocumentStoreFolder(store);
+        config.setSnippetLength(100);
+        Indexer.startIndexation(corpus, new File("extra/stopliste.txt"), config);
+
+        DocumentStore reader = DocumentStore.open(store);
+        assertEquals(corpus.list().length, reader.getDocumentCount());
+
+        int titles = 0;
+
+        for (int i = 0; i < reader.getDocumentCount(); ++i) {
+            StoredDocument document = reader.get(i);
+            assertNotNull(document);
+            assertTrue(document.getSnippet().length() <= 100);
+
+            if (document.getTitle() != null) {
+                ++titles;
+            }
+        }
+
+        assertTrue(titles > 0);
+    }
+}